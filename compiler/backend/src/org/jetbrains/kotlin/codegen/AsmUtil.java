@@ -45,6 +45,10 @@ import org.jetbrains.kotlin.resolve.jvm.JvmClassName;
 import org.jetbrains.kotlin.resolve.jvm.JvmPackage;
 import org.jetbrains.kotlin.resolve.jvm.JvmPrimitiveType;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
+import org.jetbrains.kotlin.serialization.DescriptorSerializer;
+import org.jetbrains.kotlin.serialization.ProtoBuf;
+import org.jetbrains.kotlin.serialization.StringTable;
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
 import org.jetbrains.kotlin.types.Approximation;
 import org.jetbrains.kotlin.types.JetType;
 import org.jetbrains.kotlin.types.TypesPackage;
@@ -800,6 +804,22 @@ public class AsmUtil {
         av.visitEnd();
     }
 
+    /**
+     * @return the string tables to be written to the "data" of the Kotlin annotation along with the proto built by the given serializer.
+     * If the strings are shared between all classes of the module (see GenerationState#getSharedStringTable), the tables are empty
+     */
+    @NotNull
+    public static NameResolver createNameResolverForAnnotationData(
+            @NotNull DescriptorSerializer serializer,
+            @Nullable StringTable sharedStrings
+    ) {
+        if (sharedStrings != null) {
+            return new NameResolver(ProtoBuf.StringTable.getDefaultInstance(), ProtoBuf.QualifiedNameTable.getDefaultInstance());
+        }
+        StringTable strings = serializer.getStringTable();
+        return new NameResolver(strings.serializeSimpleNames(), strings.serializeQualifiedNames());
+    }
+
     @NotNull
     public static String asmDescByFqNameWithoutInnerClasses(@NotNull FqName fqName) {
         return asmTypeByFqNameWithoutInnerClasses(fqName).getDescriptor();
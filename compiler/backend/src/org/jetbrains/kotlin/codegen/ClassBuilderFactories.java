@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.codegen;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
 import org.jetbrains.org.objectweb.asm.ClassWriter;
 import org.jetbrains.org.objectweb.asm.util.TraceClassVisitor;
 
@@ -82,17 +83,31 @@ public class ClassBuilderFactories {
     };
 
     @NotNull
-    public static ClassBuilderFactory BINARIES = new ClassBuilderFactory() {
+    public static ClassBuilderFactory BINARIES = new BinariesFactory(ClassBuilderMode.FULL);
+
+    @NotNull
+    public static ClassBuilderFactory ABI_BINARIES = new BinariesFactory(ClassBuilderMode.ABI);
+
+    private ClassBuilderFactories() {
+    }
+
+    private static class BinariesFactory implements ClassBuilderFactory {
+        private final ClassBuilderMode mode;
+
+        public BinariesFactory(@NotNull ClassBuilderMode mode) {
+            this.mode = mode;
+        }
+
         @NotNull
         @Override
         public ClassBuilderMode getClassBuilderMode() {
-            return ClassBuilderMode.FULL;
+            return mode;
         }
 
         @NotNull
         @Override
         public ClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-            return new AbstractClassBuilder.Concrete(new BinaryClassWriter());
+            return new BinaryClassBuilder();
         }
 
         @Override
@@ -102,12 +117,38 @@ public class ClassBuilderFactories {
 
         @Override
         public byte[] asBytes(ClassBuilder builder) {
-            ClassWriter visitor = (ClassWriter) builder.getVisitor();
-            return visitor.toByteArray();
+            return ((BinaryClassBuilder) builder).asBytes();
         }
-    };
+    }
 
-    private ClassBuilderFactories() {
+    /**
+     * Keeps only the bytes of a class once it's done, which take much less memory than the writer with its constant pool
+     * and the instructions of all methods
+     */
+    private static class BinaryClassBuilder extends AbstractClassBuilder {
+        private ClassWriter writer = new BinaryClassWriter();
+        private byte[] bytes = null;
+
+        @NotNull
+        @Override
+        public ClassVisitor getVisitor() {
+            if (writer == null) {
+                throw new IllegalStateException("Class is already done: " + getThisName());
+            }
+            return writer;
+        }
+
+        @Override
+        public void done() {
+            super.done();
+            bytes = writer.toByteArray();
+            writer = null;
+        }
+
+        @NotNull
+        public byte[] asBytes() {
+            return bytes != null ? bytes : writer.toByteArray();
+        }
     }
 
     private static class BinaryClassWriter extends ClassWriter {
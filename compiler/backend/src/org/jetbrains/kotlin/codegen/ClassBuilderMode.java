@@ -25,4 +25,8 @@ public enum ClassBuilderMode {
      * Generating light classes: Only function signatures
      */
     LIGHT_CLASSES,
+    /**
+     * Generating ABI stubs: declarations and Kotlin metadata as in FULL mode, but only bodies of inline functions
+     */
+    ABI,
 }
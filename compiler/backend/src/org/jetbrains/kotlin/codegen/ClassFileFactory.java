@@ -30,8 +30,11 @@ import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.backend.common.output.OutputFile;
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection;
+import org.jetbrains.kotlin.serialization.SerializationUtil;
+import org.jetbrains.kotlin.serialization.StringTable;
 import org.jetbrains.org.objectweb.asm.Type;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.*;
 
@@ -82,17 +85,24 @@ public class ClassFileFactory implements OutputFileCollection {
     @Override
     public List<OutputFile> asList() {
         done();
-        return ContainerUtil.map(generators.keySet(), new Function<String, OutputFile>() {
+        List<OutputFile> result = new ArrayList<OutputFile>(ContainerUtil.map(generators.keySet(), new Function<String, OutputFile>() {
             @Override
             public OutputFile fun(String relativeClassFilePath) {
                 return new OutputClassFile(relativeClassFilePath);
             }
-        });
+        }));
+        if (state.getSharedStringTablePath() != null) {
+            result.add(new SharedStringTableFile());
+        }
+        return result;
     }
 
     @Override
     @Nullable
     public OutputFile get(@NotNull String relativePath) {
+        if (relativePath.equals(state.getSharedStringTablePath())) {
+            return new SharedStringTableFile();
+        }
         return generators.containsKey(relativePath) ? new OutputClassFile(relativePath) : null;
     }
 
@@ -178,6 +188,52 @@ public class ClassFileFactory implements OutputFileCollection {
         }
     }
 
+    /**
+     * The string table shared by all classes generated in this session, complete only after all of them are generated
+     */
+    private class SharedStringTableFile implements OutputFile {
+        @NotNull
+        @Override
+        public String getRelativePath() {
+            //noinspection ConstantConditions
+            return state.getSharedStringTablePath();
+        }
+
+        @NotNull
+        @Override
+        public List<File> getSourceFiles() {
+            return toIoFilesIgnoringNonPhysical(state.getFiles());
+        }
+
+        @NotNull
+        @Override
+        public byte[] asByteArray() {
+            StringTable strings = state.getSharedStringTable();
+            assert strings != null : "No shared string table: " + getRelativePath();
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            SerializationUtil.serializeStringTable(result, strings.serializeSimpleNames(), strings.serializeQualifiedNames());
+            return result.toByteArray();
+        }
+
+        @NotNull
+        @Override
+        public String asText() {
+            StringTable strings = state.getSharedStringTable();
+            assert strings != null : "No shared string table: " + getRelativePath();
+            StringBuilder result = new StringBuilder();
+            for (String string : strings.serializeSimpleNames().getStringList()) {
+                result.append(string).append('\n');
+            }
+            return result.toString();
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return getRelativePath();
+        }
+    }
+
     private static final class ClassBuilderAndSourceFileList {
         private final ClassBuilder classBuilder;
         private final List<File> sourceFiles;
@@ -239,7 +239,7 @@ public class ClosureCodegen extends MemberCodegen<JetElement> {
 
         v.newField(OtherOrigin(element, funDescriptor), ACC_STATIC | ACC_FINAL | ACC_PUBLIC, JvmAbi.INSTANCE_FIELD, asmType.getDescriptor(), null, null);
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() != ClassBuilderMode.LIGHT_CLASSES) {
             mv.visitCode();
             iv.anew(asmType);
             iv.dup();
@@ -256,7 +256,7 @@ public class ClosureCodegen extends MemberCodegen<JetElement> {
         MethodVisitor mv =
                 v.newMethod(OtherOrigin(element, funDescriptor), ACC_PUBLIC | ACC_BRIDGE, bridge.getName(), bridge.getDescriptor(), null, ArrayUtil.EMPTY_STRING_ARRAY);
 
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
 
         mv.visitCode();
 
@@ -295,7 +295,7 @@ public class ClosureCodegen extends MemberCodegen<JetElement> {
         Method constructor = new Method("<init>", Type.VOID_TYPE, argTypes);
         MethodVisitor mv = v.newMethod(OtherOrigin(element, funDescriptor), visibilityFlag, "<init>", constructor.getDescriptor(), null,
                                         ArrayUtil.EMPTY_STRING_ARRAY);
-        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() != ClassBuilderMode.LIGHT_CLASSES) {
             mv.visitCode();
             InstructionAdapter iv = new InstructionAdapter(mv);
 
@@ -127,7 +127,7 @@ public class DefaultParameterValueSubstitutor(val state: GenerationState) {
             annotationCodegen.genAnnotations(it.value, signature.getValueParameters()[it.index].getAsmType())
         }
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) {
+        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) {
             mv.visitEnd()
             return
         }
@@ -2511,7 +2511,7 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
                 else {
                     Type currentScriptType = asmTypeForScriptDescriptor(bindingContext, scriptContext.getScriptDescriptor());
                     Type classType = asmTypeForScriptDescriptor(bindingContext, receiverDeclarationDescriptor);
-                    String fieldName = scriptContext.getScriptFieldName(receiverDeclarationDescriptor);
+                    String fieldName = ScriptContext.getScriptFieldName(receiverDeclarationDescriptor);
                     return StackValue.field(classType, currentScriptType, fieldName, false, result, receiverDeclarationDescriptor);
                 }
             }
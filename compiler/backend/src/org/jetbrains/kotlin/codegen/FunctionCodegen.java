@@ -185,7 +185,7 @@ public class FunctionCodegen {
             parentBodyCodegen.addAdditionalTask(new PlatformStaticGenerator(functionDescriptor, origin, state));
         }
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES || isAbstractMethod(functionDescriptor, contextKind)) {
+        if (!isBodyGenerated(functionDescriptor) || isAbstractMethod(functionDescriptor, contextKind)) {
             generateLocalVariableTable(
                     mv,
                     jvmSignature,
@@ -218,6 +218,10 @@ public class FunctionCodegen {
         methodContext.recordSyntheticAccessorIfNeeded(functionDescriptor, bindingContext);
     }
 
+    private boolean isBodyGenerated(@NotNull FunctionDescriptor functionDescriptor) {
+        return JvmCodegenUtil.isCodeGenerated(state.getClassBuilderMode(), functionDescriptor);
+    }
+
     private void generateParameterAnnotations(
             @NotNull FunctionDescriptor functionDescriptor,
             @NotNull MethodVisitor mv,
@@ -603,7 +607,7 @@ public class FunctionCodegen {
                 getThrownExceptions(functionDescriptor, typeMapper)
         );
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+        if (isBodyGenerated(functionDescriptor)) {
             if (this.owner instanceof PackageFacadeContext) {
                 mv.visitCode();
                 generatePackageDelegateMethodBody(mv, defaultMethod, (PackageFacadeContext) this.owner);
@@ -759,7 +763,7 @@ public class FunctionCodegen {
 
         MethodVisitor mv =
                 v.newMethod(DiagnosticsPackage.Bridge(descriptor, origin), flags, delegateTo.getName(), bridge.getDescriptor(), null, null);
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
 
         mv.visitCode();
 
@@ -59,7 +59,6 @@ import org.jetbrains.kotlin.resolve.jvm.jvmSignature.JvmMethodParameterKind;
 import org.jetbrains.kotlin.resolve.jvm.jvmSignature.JvmMethodParameterSignature;
 import org.jetbrains.kotlin.resolve.jvm.jvmSignature.JvmMethodSignature;
 import org.jetbrains.kotlin.serialization.*;
-import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
 import org.jetbrains.kotlin.serialization.jvm.BitEncoding;
 import org.jetbrains.kotlin.types.JetType;
 import org.jetbrains.kotlin.types.checker.JetTypeChecker;
@@ -220,7 +219,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
 
     @Override
     protected void generateKotlinAnnotation() {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
 
         KotlinClass.Kind kind;
         if (isAnonymousObject(descriptor)) {
@@ -234,14 +233,15 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
             kind = KotlinClass.Kind.LOCAL_CLASS;
         }
 
-        DescriptorSerializer serializer =
-                DescriptorSerializer.create(descriptor, new JvmSerializerExtension(v.getSerializationBindings(), typeMapper));
+        JvmSerializerExtension extension = new JvmSerializerExtension(v.getSerializationBindings(), typeMapper);
+        StringTable sharedStrings = state.getSharedStringTable();
+        DescriptorSerializer serializer = sharedStrings != null
+                                          ? DescriptorSerializer.create(descriptor, extension, sharedStrings)
+                                          : DescriptorSerializer.create(descriptor, extension);
 
         ProtoBuf.Class classProto = serializer.classProto(descriptor).build();
 
-        StringTable strings = serializer.getStringTable();
-        NameResolver nameResolver = new NameResolver(strings.serializeSimpleNames(), strings.serializeQualifiedNames());
-        ClassData data = new ClassData(nameResolver, classProto);
+        ClassData data = new ClassData(createNameResolverForAnnotationData(serializer, sharedStrings), classProto);
 
         AnnotationVisitor av = v.getVisitor().visitAnnotation(asmDescByFqNameWithoutInnerClasses(JvmAnnotationNames.KOTLIN_CLASS), true);
         av.visit(JvmAnnotationNames.ABI_VERSION_FIELD_NAME, JvmAbi.VERSION);
@@ -250,6 +250,9 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
                 Type.getObjectType(KotlinClass.KIND_INTERNAL_NAME).getDescriptor(),
                 kind.toString()
         );
+        if (sharedStrings != null) {
+            av.visit(JvmAnnotationNames.STRING_TABLE_FIELD_NAME, state.getSharedStringTablePath());
+        }
         AnnotationVisitor array = av.visitArray(JvmAnnotationNames.DATA_FIELD_NAME);
         for (String string : BitEncoding.encodeBytes(SerializationUtil.serializeClassData(data))) {
             array.visit(null, string);
@@ -366,6 +369,10 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
         }
     }
 
+    private boolean isCodeGenerated() {
+        return JvmCodegenUtil.isCodeGenerated(state.getClassBuilderMode(), descriptor);
+    }
+
     private void generateReflectionObjectFieldIfNeeded() {
         if (isAnnotationClass(descriptor)) {
             // There's a bug in JDK 6 and 7 that prevents us from generating a static field in an annotation class:
@@ -775,7 +782,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
                 });
         MethodVisitor mv = v.newMethod(OtherOrigin(myClass, valuesFunction), ACC_PUBLIC | ACC_STATIC, ENUM_VALUES.asString(),
                                        "()" + type.getDescriptor(), null, null);
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (!isCodeGenerated()) return;
 
         mv.visitCode();
         mv.visitFieldInsn(GETSTATIC, classAsmType.getInternalName(), ENUM_VALUES_FIELD_NAME, type.getDescriptor());
@@ -795,7 +802,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
                 });
         MethodVisitor mv = v.newMethod(OtherOrigin(myClass, valueOfFunction), ACC_PUBLIC | ACC_STATIC, ENUM_VALUE_OF.asString(),
                                        "(Ljava/lang/String;)" + classAsmType.getDescriptor(), null, null);
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (!isCodeGenerated()) return;
 
         mv.visitCode();
         mv.visitLdcInsn(classAsmType);
@@ -938,7 +945,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
             StackValue.Field field = StackValue.singleton(descriptor, typeMapper);
             v.newField(OtherOrigin(myClass), ACC_PUBLIC | ACC_STATIC | ACC_FINAL, field.name, field.type.getDescriptor(), null, null);
 
-            if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+            if (!isCodeGenerated()) return;
 
             // Invoke the object constructor but ignore the result because INSTANCE$ will be initialized in the first line of <init>
             InstructionAdapter v = createOrGetClInitCodegen().v;
@@ -964,7 +971,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
 
         fv.visitAnnotation(asmDescByFqNameWithoutInnerClasses(new FqName("java.lang.Deprecated")), true).visitEnd();
 
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (!isCodeGenerated()) return;
 
         if (!isCompanionObjectWithBackingFieldsInOuter(companionObjectDescriptor)) {
             generateCompanionObjectInitializer(companionObjectDescriptor);
@@ -988,7 +995,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
             //This field are always static and final so if it has constant initializer don't do anything in clinit,
             //field would be initialized via default value in v.newField(...) - see JVM SPEC Ch.4
             // TODO: test this code
-            if (state.getClassBuilderMode() == ClassBuilderMode.FULL && info.defaultValue == null) {
+            if (isCodeGenerated() && info.defaultValue == null) {
                 ExpressionCodegen codegen = createOrGetClInitCodegen();
                 int companionObjectIndex = putCompanionObjectInLocalVar(codegen);
                 StackValue.local(companionObjectIndex, OBJECT_TYPE).put(OBJECT_TYPE, codegen.v);
@@ -1269,7 +1276,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
     }
 
     private void lookupConstructorExpressionsInClosureIfPresent() {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL || descriptor.getConstructors().isEmpty()) return;
+        if (!isCodeGenerated() || descriptor.getConstructors().isEmpty()) return;
 
         JetVisitorVoid visitor = new JetVisitorVoid() {
             @Override
@@ -1605,7 +1612,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
     private final List<JetEnumEntry> myEnumConstants = new ArrayList<JetEnumEntry>();
 
     private void initializeEnumConstants() {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return;
+        if (!isCodeGenerated()) return;
 
         ExpressionCodegen codegen = createOrGetClInitCodegen();
         InstructionAdapter iv = codegen.v;
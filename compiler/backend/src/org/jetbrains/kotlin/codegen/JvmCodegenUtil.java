@@ -236,6 +236,20 @@ public class JvmCodegenUtil {
                InlineUtil.isInlinedArgument((JetFunction) declaration, bindingContext, false);
     }
 
+    /**
+     * ABI stubs only contain the code of inline functions and of the lambdas and classes declared inside them,
+     * because the inliner copies inline functions to the call sites in other modules and regenerates the classes they contain
+     */
+    public static boolean isCodeGenerated(@NotNull ClassBuilderMode mode, @NotNull DeclarationDescriptor descriptor) {
+        if (mode == ClassBuilderMode.FULL) return true;
+        if (mode != ClassBuilderMode.ABI) return false;
+
+        for (DeclarationDescriptor current = descriptor; current != null; current = current.getContainingDeclaration()) {
+            if (InlineUtil.isInline(current)) return true;
+        }
+        return false;
+    }
+
     @Nullable
     public static ResolvedCall<ConstructorDescriptor> getDelegationConstructorCall(
             @NotNull BindingContext bindingContext,
@@ -458,6 +458,7 @@ public abstract class MemberCodegen<T extends JetElement/* TODO: & JetDeclaratio
         // TODO: generic signature
         classBuilder.newField(NO_ORIGIN, ACC_PUBLIC | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, fieldName, type, null, null);
 
+        // Kept in ABI stubs, because anonymous objects in inline functions are regenerated from them in other modules
         if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
 
         v.aconst(thisAsmType);
@@ -480,7 +481,7 @@ public abstract class MemberCodegen<T extends JetElement/* TODO: & JetDeclaratio
         v.newField(NO_ORIGIN, ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, JvmAbi.PROPERTY_METADATA_ARRAY_NAME,
                    "[" + PROPERTY_METADATA_TYPE, null, null);
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
+        if (!JvmCodegenUtil.isCodeGenerated(state.getClassBuilderMode(), context.getContextDescriptor())) return;
 
         InstructionAdapter iv = createOrGetClInitCodegen().v;
         iv.iconst(delegatedProperties.size());
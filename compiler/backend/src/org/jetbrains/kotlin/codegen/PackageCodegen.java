@@ -50,7 +50,6 @@ import org.jetbrains.kotlin.resolve.jvm.jvmSignature.JvmMethodSignature;
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter;
 import org.jetbrains.kotlin.resolve.scopes.JetScope;
 import org.jetbrains.kotlin.serialization.*;
-import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedCallableMemberDescriptor;
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedPropertyDescriptor;
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedSimpleFunctionDescriptor;
@@ -64,6 +63,7 @@ import org.jetbrains.org.objectweb.asm.commons.Method;
 import java.util.*;
 
 import static org.jetbrains.kotlin.codegen.AsmUtil.asmDescByFqNameWithoutInnerClasses;
+import static org.jetbrains.kotlin.codegen.AsmUtil.createNameResolverForAnnotationData;
 import static org.jetbrains.kotlin.codegen.AsmUtil.method;
 import static org.jetbrains.kotlin.load.kotlin.PackageClassUtils.getPackageClassFqName;
 import static org.jetbrains.kotlin.resolve.jvm.AsmTypes.K_PACKAGE_TYPE;
@@ -261,7 +261,7 @@ public class PackageCodegen {
     }
 
     private void writeKotlinPackageAnnotationIfNeeded(@NotNull JvmSerializationBindings bindings) {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) {
             return;
         }
 
@@ -270,7 +270,11 @@ public class PackageCodegen {
             if (file.isScript()) return;
         }
 
-        DescriptorSerializer serializer = DescriptorSerializer.createTopLevel(new JvmSerializerExtension(bindings, state.getTypeMapper()));
+        JvmSerializerExtension extension = new JvmSerializerExtension(bindings, state.getTypeMapper());
+        StringTable sharedStrings = state.getSharedStringTable();
+        DescriptorSerializer serializer = sharedStrings != null
+                                          ? DescriptorSerializer.createTopLevel(extension, sharedStrings)
+                                          : DescriptorSerializer.createTopLevel(extension);
         Collection<PackageFragmentDescriptor> packageFragments = Lists.newArrayList();
         ContainerUtil.addIfNotNull(packageFragments, packageFragment);
         ContainerUtil.addIfNotNull(packageFragments, compiledPackageFragment);
@@ -278,12 +282,13 @@ public class PackageCodegen {
 
         if (packageProto.getMemberCount() == 0) return;
 
-        StringTable strings = serializer.getStringTable();
-        NameResolver nameResolver = new NameResolver(strings.serializeSimpleNames(), strings.serializeQualifiedNames());
-        PackageData data = new PackageData(nameResolver, packageProto);
+        PackageData data = new PackageData(createNameResolverForAnnotationData(serializer, sharedStrings), packageProto);
 
         AnnotationVisitor av = v.newAnnotation(asmDescByFqNameWithoutInnerClasses(JvmAnnotationNames.KOTLIN_PACKAGE), true);
         av.visit(JvmAnnotationNames.ABI_VERSION_FIELD_NAME, JvmAbi.VERSION);
+        if (sharedStrings != null) {
+            av.visit(JvmAnnotationNames.STRING_TABLE_FIELD_NAME, state.getSharedStringTablePath());
+        }
         AnnotationVisitor array = av.visitArray(JvmAnnotationNames.DATA_FIELD_NAME);
         for (String string : BitEncoding.encodeBytes(SerializationUtil.serializePackageData(data))) {
             array.visit(null, string);
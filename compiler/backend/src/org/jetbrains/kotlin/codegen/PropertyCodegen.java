@@ -177,7 +177,7 @@ public class PropertyCodegen {
                 null
         );
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() != ClassBuilderMode.LIGHT_CLASSES) {
             JetExpression defaultValue = p.getDefaultValue();
             if (defaultValue != null) {
                 CompileTimeConstant<?> constant = ExpressionCodegen.getCompileTimeConstant(defaultValue, bindingContext);
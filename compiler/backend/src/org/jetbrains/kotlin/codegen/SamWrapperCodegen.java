@@ -118,7 +118,7 @@ public class SamWrapperCodegen {
         MethodVisitor mv = cv.newMethod(OtherOrigin(samType.getJavaClassDescriptor()),
                                         NO_FLAG_PACKAGE_PRIVATE, "<init>", Type.getMethodDescriptor(Type.VOID_TYPE, functionType), null, null);
 
-        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() != ClassBuilderMode.LIGHT_CLASSES) {
             mv.visitCode();
             InstructionAdapter iv = new InstructionAdapter(mv);
 
@@ -174,7 +174,7 @@ public class ScriptCodegen extends MemberCodegen<JetScript> {
                 iv.load(0, classType);
                 iv.load(offset, earlierClassType);
                 offset += earlierClassType.getSize();
-                iv.putfield(classType.getInternalName(), context.getScriptFieldName(earlierScript), earlierClassType.getDescriptor());
+                iv.putfield(classType.getInternalName(), ScriptContext.getScriptFieldName(earlierScript), earlierClassType.getDescriptor());
             }
 
             for (ValueParameterDescriptor parameter : scriptDescriptor.getScriptCodeDescriptor().getValueParameters()) {
@@ -214,8 +214,9 @@ public class ScriptCodegen extends MemberCodegen<JetScript> {
     private void genFieldsForParameters(@NotNull ScriptDescriptor script, @NotNull ClassBuilder classBuilder) {
         for (ScriptDescriptor earlierScript : context.getEarlierScripts()) {
             Type earlierClassName = asmTypeForScriptDescriptor(bindingContext, earlierScript);
-            int access = ACC_PRIVATE | ACC_FINAL;
-            classBuilder.newField(NO_ORIGIN, access, context.getScriptFieldName(earlierScript), earlierClassName.getDescriptor(), null, null);
+            // Inlined functions of this script read these fields from the script calling them
+            int access = ACC_PUBLIC | ACC_FINAL;
+            classBuilder.newField(NO_ORIGIN, access, ScriptContext.getScriptFieldName(earlierScript), earlierClassName.getDescriptor(), null, null);
         }
 
         for (ValueParameterDescriptor parameter : script.getScriptCodeDescriptor().getValueParameters()) {
@@ -53,12 +53,12 @@ public class ScriptContext extends FieldOwnerContext<ClassDescriptor> {
         return earlierScripts;
     }
 
+    /**
+     * The name doesn't depend on the position of the script among the earlier scripts, since each script has its own earlier scripts,
+     * and the body of an inline function of an earlier script refers to them by the names in its own class
+     */
     @NotNull
-    public String getScriptFieldName(@NotNull ScriptDescriptor scriptDescriptor) {
-        int index = earlierScripts.indexOf(scriptDescriptor);
-        if (index < 0) {
-            throw new IllegalStateException("Unregistered script: " + scriptDescriptor);
-        }
-        return "script$" + (index + 1);
+    public static String getScriptFieldName(@NotNull ScriptDescriptor scriptDescriptor) {
+        return "script$" + scriptDescriptor.getClassDescriptor().getName().asString();
     }
 }
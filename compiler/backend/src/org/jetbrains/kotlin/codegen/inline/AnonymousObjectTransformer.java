@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.codegen.inline;
 
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtil;
 import kotlin.Function0;
 import org.jetbrains.annotations.NotNull;
@@ -26,13 +27,25 @@ import org.jetbrains.kotlin.codegen.FieldInfo;
 import org.jetbrains.kotlin.codegen.StackValue;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.codegen.state.JetTypeMapper;
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames;
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache;
+import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.serialization.SerializationUtil;
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
+import org.jetbrains.kotlin.serialization.jvm.BitEncoding;
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
+import org.jetbrains.kotlin.utils.UtilsPackage;
 import org.jetbrains.org.objectweb.asm.*;
 import org.jetbrains.org.objectweb.asm.commons.InstructionAdapter;
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jetbrains.org.objectweb.asm.tree.AnnotationNode;
 import org.jetbrains.org.objectweb.asm.tree.FieldInsnNode;
 import org.jetbrains.org.objectweb.asm.tree.MethodNode;
 import org.jetbrains.org.objectweb.asm.tree.VarInsnNode;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.*;
 
 import static org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin.NO_ORIGIN;
@@ -108,6 +121,22 @@ public class AnonymousObjectTransformer {
                 super.visit(version, access, name, signature, superName, interfaces);
             }
 
+            @Override
+            public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                final AnnotationVisitor annotationVisitor = super.visitAnnotation(desc, visible);
+                if (!desc.equals(AsmUtil.asmDescByFqNameWithoutInnerClasses(JvmAnnotationNames.KOTLIN_CLASS))) {
+                    return annotationVisitor;
+                }
+
+                return new AnnotationNode(InlineCodegenUtil.API, desc) {
+                    @Override
+                    public void visitEnd() {
+                        inlineSharedStringTable(this);
+                        accept(annotationVisitor);
+                    }
+                };
+            }
+
             @Override
             public void visitOuterClass(@NotNull String owner, String name, String desc) {
                 InliningContext parent = inliningContext.getParent();
@@ -223,6 +252,59 @@ public class AnonymousObjectTransformer {
         return result;
     }
 
+    /**
+     * The data of a class compiled with a string table shared by its module refers to that table by its path in the same class path
+     * entry. The regenerated class is written to the output of this module though, so the shared table of the original class
+     * is written into the data of the regenerated one instead
+     */
+    private void inlineSharedStringTable(@NotNull AnnotationNode kotlinClassAnnotation) {
+        List<Object> values = kotlinClassAnnotation.values;
+        if (values == null) return;
+
+        int stringTableIndex = findAnnotationValue(values, JvmAnnotationNames.STRING_TABLE_FIELD_NAME);
+        int dataIndex = findAnnotationValue(values, JvmAnnotationNames.DATA_FIELD_NAME);
+        if (stringTableIndex < 0 || dataIndex < 0) return;
+
+        // Classes generated in this module refer to the shared table of this module, which is written to the same output
+        if (state.getFactory().get(oldObjectType.getInternalName() + ".class") != null) return;
+
+        VirtualFile file = InlineCodegenUtil.findVirtualFile(state.getProject(), oldObjectType.getInternalName());
+        KotlinJvmBinaryClass kotlinClass = file != null ? KotlinBinaryClassCache.getKotlinBinaryClass(file) : null;
+        if (kotlinClass == null) {
+            throw new IllegalStateException("Couldn't find Kotlin class for " + oldObjectType.getInternalName());
+        }
+
+        String path = (String) values.get(stringTableIndex);
+        URL url = kotlinClass.findResourceInSameRoot(path);
+        if (url == null) {
+            throw new IllegalStateException("Shared string table " + path + " is not found for " + kotlinClass.getLocation());
+        }
+
+        NameResolver sharedNameResolver;
+        try {
+            sharedNameResolver = JvmProtoBufUtil.readSharedStringTable(url);
+        }
+        catch (IOException e) {
+            throw UtilsPackage.rethrow(e);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> data = (List<String>) values.get(dataIndex);
+        ClassData classData = JvmProtoBufUtil.readClassDataFrom(ArrayUtil.toStringArray(data), sharedNameResolver);
+        values.set(dataIndex, Arrays.asList(BitEncoding.encodeBytes(SerializationUtil.serializeClassData(classData))));
+
+        values.remove(stringTableIndex);
+        values.remove(stringTableIndex - 1);
+    }
+
+    // Names and values of annotation arguments alternate in AnnotationNode.values
+    private static int findAnnotationValue(@NotNull List<Object> values, @NotNull String name) {
+        for (int i = 0; i < values.size(); i += 2) {
+            if (name.equals(values.get(i))) return i + 1;
+        }
+        return -1;
+    }
+
     @NotNull
     private InlineResult inlineMethod(
             @NotNull AnonymousObjectGeneration anonymousObjectGen,
@@ -30,6 +30,7 @@ import org.jetbrains.kotlin.codegen.context.PackageContext;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.codegen.state.JetTypeMapper;
 import org.jetbrains.kotlin.descriptors.*;
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
 import org.jetbrains.kotlin.name.ClassId;
 import org.jetbrains.kotlin.psi.*;
@@ -180,7 +181,7 @@ public class InlineCodegen extends CallGenerator {
                 /*use facade class*/
                 containerClassId = PackageClassUtils.getPackageClassId(containerClassId.getPackageFqName());
             }
-            nodeAndSMAP = InlineCodegenUtil.getMethodNode(file.contentsToByteArray(),
+            nodeAndSMAP = InlineCodegenUtil.getMethodNode(KotlinBinaryClassCache.getFileContents(file),
                                                           asmMethod.getName(),
                                                           asmMethod.getDescriptor(),
                                                           containerClassId);
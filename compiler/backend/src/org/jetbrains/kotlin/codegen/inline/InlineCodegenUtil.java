@@ -33,6 +33,7 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.codegen.state.JetTypeMapper;
 import org.jetbrains.kotlin.descriptors.*;
 import org.jetbrains.kotlin.load.java.JvmAbi;
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
 import org.jetbrains.kotlin.load.kotlin.PackagePartClassUtils;
 import org.jetbrains.kotlin.load.kotlin.VirtualFileFinder;
@@ -411,7 +412,7 @@ public class InlineCodegenUtil {
                 if (file == null) {
                     throw new RuntimeException("Couldn't find virtual file for " + internalName);
                 }
-                return new ClassReader(file.contentsToByteArray());
+                return new ClassReader(KotlinBinaryClassCache.getFileContents(file));
             }
         }
         catch (IOException e) {
@@ -34,6 +34,7 @@ import org.jetbrains.kotlin.psi.JetScript;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.jetbrains.kotlin.resolve.BindingTrace;
 import org.jetbrains.kotlin.resolve.DelegatingBindingTrace;
+import org.jetbrains.kotlin.serialization.StringTable;
 import org.jetbrains.kotlin.builtins.ReflectionTypes;
 
 import java.io.File;
@@ -117,6 +118,12 @@ public class GenerationState {
     @Nullable
     private List<ScriptDescriptor> earlierScriptsForReplInterpreter;
 
+    @Nullable
+    private String sharedStringTablePath;
+
+    @Nullable
+    private StringTable sharedStringTable;
+
     private final ReflectionTypes reflectionTypes;
 
     private final JvmRuntimeTypes runtimeTypes;
@@ -308,6 +315,27 @@ public class GenerationState {
         this.earlierScriptsForReplInterpreter = earlierScriptsForReplInterpreter;
     }
 
+    /**
+     * @param sharedStringTablePath path of the string table shared by all generated classes relative to the output root,
+     *                              or null if each class should have its own string table
+     */
+    public void setSharedStringTablePath(@Nullable String sharedStringTablePath) {
+        this.sharedStringTablePath = sharedStringTablePath;
+        this.sharedStringTable = sharedStringTablePath == null
+                                 ? null
+                                 : new StringTable(new JvmSerializerExtension(new JvmSerializationBindings(), typeMapper));
+    }
+
+    @Nullable
+    public String getSharedStringTablePath() {
+        return sharedStringTablePath;
+    }
+
+    @Nullable
+    public StringTable getSharedStringTable() {
+        return sharedStringTable;
+    }
+
     @NotNull
     public ModuleDescriptor getModule() {
         return module;
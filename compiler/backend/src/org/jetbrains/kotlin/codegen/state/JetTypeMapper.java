@@ -975,7 +975,7 @@ public class JetTypeMapper {
 
         // We may generate a slightly wrong signature for a local class / anonymous object in light classes mode but we don't care,
         // because such classes are not accessible from the outside world
-        if (classBuilderMode == ClassBuilderMode.FULL) {
+        if (classBuilderMode != ClassBuilderMode.LIGHT_CLASSES) {
             ResolvedCall<ConstructorDescriptor> superCall = findFirstDelegatingSuperCall(descriptor);
             if (superCall == null) return;
             writeSuperConstructorCallParameters(sw, descriptor, superCall, captureThis != null);
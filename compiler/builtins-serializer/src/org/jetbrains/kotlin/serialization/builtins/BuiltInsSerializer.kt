@@ -22,6 +22,7 @@ import com.intellij.psi.search.GlobalSearchScope
 import org.jetbrains.kotlin.analyzer.ModuleContent
 import org.jetbrains.kotlin.analyzer.ModuleInfo
 import org.jetbrains.kotlin.builtins.BuiltInsSerializedResourcePaths
+import org.jetbrains.kotlin.builtins.BuiltInsSnapshot
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
@@ -45,6 +46,7 @@ import org.jetbrains.kotlin.serialization.SerializationUtil
 import org.jetbrains.kotlin.utils.recursePostOrder
 import java.io.ByteArrayOutputStream
 import java.io.File
+import java.util.LinkedHashMap
 
 public class BuiltInsSerializer(private val dependOnOldBuiltIns: Boolean) {
     private var totalSize = 0
@@ -115,27 +117,38 @@ public class BuiltInsSerializer(private val dependOnOldBuiltIns: Boolean) {
 
         val serializer = DescriptorSerializer.createTopLevel(BuiltInsSerializerExtension)
 
+        // Contents of all the files of the package by their names relative to the package directory, see BuiltInsSnapshot
+        val snapshotFiles = LinkedHashMap<String, ByteArray>()
+        fun writeFile(fileName: String, stream: ByteArrayOutputStream, legacyFileName: String? = null) {
+            write(destDir, fileName, stream, legacyFileName)
+            snapshotFiles[File(fileName).getName()] = stream.toByteArray()
+        }
+
         val classifierDescriptors = DescriptorSerializer.sort(packageView.getMemberScope().getDescriptors(DescriptorKindFilter.CLASSIFIERS))
 
         serializeClasses(classifierDescriptors, serializer) {
             classDescriptor, classProto ->
             val stream = ByteArrayOutputStream()
             classProto.writeTo(stream)
-            write(destDir, getFileName(classDescriptor), stream)
+            writeFile(getFileName(classDescriptor), stream)
         }
 
         val packageStream = ByteArrayOutputStream()
         val fragments = module.getPackageFragmentProvider().getPackageFragments(fqName)
         val packageProto = serializer.packageProto(fragments).build() ?: error("Package fragments not serialized: $fragments")
         packageProto.writeTo(packageStream)
-        write(destDir, BuiltInsSerializedResourcePaths.getPackageFilePath(fqName), packageStream,
-              BuiltInsSerializedResourcePaths.fallbackPaths.getPackageFilePath(fqName))
+        writeFile(BuiltInsSerializedResourcePaths.getPackageFilePath(fqName), packageStream,
+                  BuiltInsSerializedResourcePaths.fallbackPaths.getPackageFilePath(fqName))
 
         val nameStream = ByteArrayOutputStream()
         val strings = serializer.getStringTable()
         SerializationUtil.serializeStringTable(nameStream, strings.serializeSimpleNames(), strings.serializeQualifiedNames())
-        write(destDir, BuiltInsSerializedResourcePaths.getStringTableFilePath(fqName), nameStream,
-              BuiltInsSerializedResourcePaths.fallbackPaths.getStringTableFilePath(fqName))
+        writeFile(BuiltInsSerializedResourcePaths.getStringTableFilePath(fqName), nameStream,
+                  BuiltInsSerializedResourcePaths.fallbackPaths.getStringTableFilePath(fqName))
+
+        val snapshotStream = ByteArrayOutputStream()
+        BuiltInsSnapshot.write(snapshotFiles, snapshotStream)
+        write(destDir, BuiltInsSerializedResourcePaths.getSnapshotFilePath(fqName), snapshotStream)
     }
 
     private fun write(destDir: File, fileName: String, stream: ByteArrayOutputStream, legacyFileName: String? = null) {
@@ -43,6 +43,9 @@ public abstract class CommonCompilerArguments {
     @Argument(value = "Xno-inline", description = "Disable method inlining")
     public boolean noInline;
 
+    @Argument(value = "Xdaemon", description = "Compile in a long-lived daemon process, starting it if necessary")
+    public boolean daemon;
+
     @Argument(value = "Xplugin", description = "Load plugins from the given classpath")
     @ValueDescription("<path>")
     public String[] pluginClasspaths;
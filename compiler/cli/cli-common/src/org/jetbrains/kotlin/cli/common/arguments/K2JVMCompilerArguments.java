@@ -66,6 +66,37 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "Xno-optimize", description = "Disable optimizations")
     public boolean noOptimize;
 
+    @Argument(value = "Xabi-stubs", description = "Generate only declarations and bodies of inline functions, to compile dependent modules against")
+    public boolean abiStubs;
+
+    @Argument(value = "Xbinary-java-classes", description = "Read Java classes from the classpath directly from class files, without building PSI for them")
+    public boolean binaryJavaClasses;
+
+    @Argument(value = "Xno-mapped-jars", description = "Read classpath jars with the default jar file system instead of memory-mapping them")
+    public boolean noMappedJars;
+
+    @Argument(value = "Xshared-string-table", description = "Write one string table for all classes of a module instead of one per class")
+    public boolean sharedStringTable;
+
+    @Argument(value = "Xprefetch-classpath", description = "Read classes of the imported library packages in background threads")
+    public boolean prefetchClasspath;
+
+    @Argument(value = "Xlight-java-sources", description = "Read only the declarations of Java sources, without building PSI for them")
+    public boolean lightJavaSources;
+
+    @Argument(value = "Xscript-cache", description = "Cache compiled scripts in the given directory, to run unchanged scripts without compiling them")
+    @ValueDescription("<path>")
+    public String scriptCache;
+
+    @Argument(value = "Xparallel-parsing", description = "Parse source files in background threads before the analysis")
+    public boolean parallelParsing;
+
+    @Argument(value = "Xuncompressed-jar", description = "Store entries of the output jar without compression, e.g. for jars only used by later build steps")
+    public boolean uncompressedJar;
+
+    @Argument(value = "Xreport-plugin-costs", description = "Report the number of calls, time and allocated memory of compiler plugin extensions")
+    public boolean reportPluginCosts;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
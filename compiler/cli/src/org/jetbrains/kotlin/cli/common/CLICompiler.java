@@ -24,12 +24,14 @@ import com.sampullara.cli.Args;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments;
+import org.jetbrains.kotlin.cli.common.daemon.CompileDaemonClient;
 import org.jetbrains.kotlin.cli.common.messages.*;
 import org.jetbrains.kotlin.cli.jvm.compiler.CompileEnvironmentException;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.config.Services;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.jetbrains.kotlin.cli.common.ExitCode.*;
@@ -85,6 +87,25 @@ public abstract class CLICompiler<A extends CommonCompilerArguments> {
         return null;
     }
 
+    /**
+     * @return false if the compilation with the given arguments needs the terminal, e.g. runs a script or the REPL, and so can't run
+     * in the compile daemon. Arguments which can't be parsed are reported by the compilation itself, wherever it runs
+     */
+    public boolean canRunInDaemon(@NotNull String[] args) {
+        A arguments = createArguments();
+        try {
+            arguments.freeArgs = Args.parse(arguments, args);
+        }
+        catch (Throwable t) {
+            return true;
+        }
+        return canRunInDaemon(arguments);
+    }
+
+    protected boolean canRunInDaemon(@NotNull A arguments) {
+        return true;
+    }
+
     /**
      * Allow derived classes to add additional command line arguments
      */
@@ -185,7 +206,19 @@ public abstract class CLICompiler<A extends CommonCompilerArguments> {
         // We depend on swing (indirectly through PSI or something), so we want to declare headless mode,
         // to avoid accidentally starting the UI thread
         System.setProperty("java.awt.headless", "true");
-        ExitCode exitCode = doMainNoExit(compiler, args);
+        ExitCode exitCode = null;
+        if (Arrays.asList(args).contains("-Xdaemon")) {
+            if (compiler.canRunInDaemon(args)) {
+                exitCode = CompileDaemonClient.compile(compiler, args, System.out, System.err);
+            }
+            else {
+                System.err.println("warning: compiling without the daemon: scripts and the REPL need the terminal");
+            }
+        }
+        if (exitCode == null) {
+            // The daemon could not be started or refused the compilation
+            exitCode = doMainNoExit(compiler, args);
+        }
         if (exitCode != OK) {
             System.exit(exitCode.getCode());
         }
@@ -193,11 +226,16 @@ public abstract class CLICompiler<A extends CommonCompilerArguments> {
 
     @NotNull
     public static ExitCode doMainNoExit(@NotNull CLICompiler compiler, @NotNull String[] args) {
+        return doMainNoExit(compiler, args, System.err);
+    }
+
+    @NotNull
+    public static ExitCode doMainNoExit(@NotNull CLICompiler compiler, @NotNull String[] args, @NotNull PrintStream errStream) {
         try {
-            return compiler.exec(System.err, args);
+            return compiler.exec(errStream, args);
         }
         catch (CompileEnvironmentException e) {
-            System.err.println(e.getMessage());
+            errStream.println(e.getMessage());
             return INTERNAL_ERROR;
         }
     }
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.common.daemon;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.common.CLICompiler;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.KotlinVersion;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileLock;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Long-lived process which runs compilations requested by {@link CompileDaemonClient} one at a time, so that the loaded
+ * and JIT-compiled compiler classes, built-ins and the application environment with its jar file systems are reused.
+ *
+ * The daemon listens on the loopback interface only and writes its port together with a random token to a file in the daemon
+ * directory, readable only by its owner, requests without this token are ignored. It exits when no compilation is requested
+ * for the idle timeout, or after a compilation which left it short of memory
+ */
+public class CompileDaemon {
+    public static final String DAEMON_DIR_PROPERTY = "kotlin.daemon.dir";
+    public static final String IDLE_TIMEOUT_PROPERTY = "kotlin.daemon.idle.timeout";
+    static final String DAEMON_NAME_PROPERTY = "kotlin.daemon.name";
+
+    static final int STATUS_STARTED = 0;
+    static final int STATUS_REJECTED = 1;
+
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30 * 60;
+    private static final int REQUEST_TIMEOUT_MILLIS = 10000;
+    private static final double MAX_USED_MEMORY_RATIO = 0.8;
+
+    // Variables maintained by the shell, which differ between terminals but don't affect compilations
+    private static final Set<String> SHELL_VARIABLES = new HashSet<String>(Arrays.asList("PWD", "OLDPWD", "SHLVL", "_"));
+
+    private static final Set<String> DAEMON_PROPERTIES =
+            new HashSet<String>(Arrays.asList(DAEMON_DIR_PROPERTY, IDLE_TIMEOUT_PROPERTY, DAEMON_NAME_PROPERTY, "java.awt.headless"));
+
+    private final String token;
+    private final String workingDirectory = new File("").getAbsolutePath();
+
+    // Last modification stamps of the jars passed to the compilations, to drop the cached jar file systems when a jar changes
+    private final Map<File, Long> jarStamps = new HashMap<File, Long>();
+
+    CompileDaemon(@NotNull String token) {
+        this.token = token;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File daemonDir = getDaemonDir();
+        FileUtil.createDirectory(daemonDir);
+        setOwnerOnlyPermissions(daemonDir);
+        String name = getDaemonName();
+
+        // The log of a running daemon must not be truncated, so the lock is taken first
+        FileLock lock = new RandomAccessFile(new File(daemonDir, name + ".lock"), "rw").getChannel().tryLock();
+        if (lock == null) return;
+
+        // The output of a detached process is not read by anyone
+        File logFile = new File(daemonDir, name + ".log");
+        createOwnerOnlyFile(logFile);
+        PrintStream log = new PrintStream(new FileOutputStream(logFile), true);
+        System.setOut(log);
+        System.setErr(log);
+
+        System.setProperty("java.awt.headless", "true");
+        KotlinCoreEnvironment.setKeepApplicationEnvironment(true);
+
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        File portFile = getPortFile(daemonDir, name);
+        try {
+            serverSocket.setSoTimeout(Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS) * 1000);
+
+            String token = new BigInteger(130, new SecureRandom()).toString(32);
+            // The token is written only after the file is made unreadable for others
+            File tmpFile = new File(daemonDir, portFile.getName() + ".tmp");
+            createOwnerOnlyFile(tmpFile);
+            FileUtil.writeToFile(tmpFile, serverSocket.getLocalPort() + "\n" + token);
+            FileUtil.rename(tmpFile, portFile);
+
+            log.println("Daemon started on port " + serverSocket.getLocalPort() + " in " + new File("").getAbsolutePath());
+            new CompileDaemon(token).serve(serverSocket, log);
+        }
+        finally {
+            FileUtil.delete(portFile);
+            serverSocket.close();
+            lock.release();
+            log.println("Daemon stopped");
+            // Compiler threads, e.g. the ones prefetching the classpath, must not keep the process alive
+            System.exit(0);
+        }
+    }
+
+    void serve(@NotNull ServerSocket serverSocket, @NotNull PrintStream log) throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (SocketTimeoutException e) {
+                log.println("No compilations requested for " + serverSocket.getSoTimeout() / 1000 + "s");
+                return;
+            }
+
+            try {
+                // A client which doesn't send the whole request must not block the daemon
+                socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                handle(socket);
+            }
+            catch (IOException e) {
+                e.printStackTrace(log);
+            }
+            finally {
+                socket.close();
+            }
+
+            if (isShortOfMemory()) {
+                log.println("Used memory after the compilation exceeds " + (int) (MAX_USED_MEMORY_RATIO * 100) + "% of the maximum");
+                return;
+            }
+        }
+    }
+
+    private void handle(@NotNull Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (!token.equals(input.readUTF())) return;
+        String version = input.readUTF();
+        String clientWorkingDirectory = input.readUTF();
+        String compilerClassName = input.readUTF();
+        String[] args = new String[input.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = input.readUTF();
+        }
+
+        CLICompiler<?> compiler = createCompiler(compilerClassName);
+        String rejectionReason = null;
+        if (!version.equals(KotlinVersion.VERSION)) {
+            rejectionReason = "Compiler version of the daemon is " + KotlinVersion.VERSION;
+        }
+        else if (!clientWorkingDirectory.equals(workingDirectory)) {
+            rejectionReason = "Working directory of the daemon is " + workingDirectory;
+        }
+        else if (compiler == null) {
+            rejectionReason = "Unknown compiler: " + compilerClassName;
+        }
+        else if (!compiler.canRunInDaemon(args)) {
+            rejectionReason = "Scripts and the REPL need the terminal";
+        }
+
+        if (rejectionReason != null) {
+            output.writeInt(STATUS_REJECTED);
+            output.writeUTF(rejectionReason);
+            output.flush();
+            return;
+        }
+
+        // Once this is sent, the client doesn't run the compilation itself even if the connection breaks, so that it isn't run twice
+        output.writeInt(STATUS_STARTED);
+        output.flush();
+
+        invalidateChangedJars(args);
+        if (ApplicationManager.getApplication() != null) {
+            // Class files in directories may have changed since the previous compilations
+            KotlinBinaryClassCache.clearClassesFromLocalFileSystem();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        ExitCode exitCode;
+        PrintStream systemOut = System.out;
+        System.setOut(new PrintStream(out, true));
+        try {
+            exitCode = CLICompiler.doMainNoExit(compiler, args, new PrintStream(messages, true));
+        }
+        finally {
+            System.setOut(systemOut);
+        }
+
+        output.writeInt(exitCode.getCode());
+        output.writeInt(out.size());
+        out.writeTo(output);
+        output.writeInt(messages.size());
+        messages.writeTo(output);
+        output.flush();
+    }
+
+    @Nullable
+    private static CLICompiler<?> createCompiler(@NotNull String className) {
+        try {
+            Class<?> compilerClass = Class.forName(className);
+            if (!CLICompiler.class.isAssignableFrom(compilerClass)) return null;
+            return (CLICompiler<?>) compilerClass.newInstance();
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The application environment caches the contents of the jars it has opened, so it's recreated if any of the jars
+     * passed in the arguments, e.g. on the classpath, has changed since the previous compilations
+     */
+    private void invalidateChangedJars(@NotNull String[] args) {
+        boolean changed = false;
+        for (String arg : args) {
+            for (String path : arg.split("[" + File.pathSeparator + ",]")) {
+                if (!path.endsWith(".jar")) continue;
+
+                File jar = new File(path).getAbsoluteFile();
+                long stamp = jar.lastModified();
+                Long previousStamp = jarStamps.put(jar, stamp);
+                if (previousStamp != null && previousStamp != stamp) {
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed) {
+            KotlinCoreEnvironment.disposeApplicationEnvironment();
+        }
+    }
+
+    private static boolean isShortOfMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        if (usedMemory < runtime.maxMemory() * MAX_USED_MEMORY_RATIO) return false;
+
+        // Garbage from the last compilation is not a reason to stop
+        System.gc();
+        usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        return usedMemory >= runtime.maxMemory() * MAX_USED_MEMORY_RATIO;
+    }
+
+    private static void createOwnerOnlyFile(@NotNull File file) throws IOException {
+        FileUtil.delete(file);
+        if (!file.createNewFile()) {
+            throw new IOException("Could not create " + file);
+        }
+        setOwnerOnlyPermissions(file);
+    }
+
+    // There's no API for POSIX permissions in Java 6: all permissions are taken away and then given back to the owner only
+    private static void setOwnerOnlyPermissions(@NotNull File file) {
+        file.setReadable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(false, false);
+        file.setWritable(true, true);
+        file.setExecutable(false, false);
+        if (file.isDirectory()) {
+            file.setExecutable(true, true);
+        }
+    }
+
+    @NotNull
+    static File getDaemonDir() {
+        String path = System.getProperty(DAEMON_DIR_PROPERTY);
+        return path != null ? new File(path) : new File(System.getProperty("user.home"), ".kotlin/daemon");
+    }
+
+    @NotNull
+    static File getPortFile(@NotNull File daemonDir, @NotNull String daemonName) {
+        return new File(daemonDir, daemonName + ".port");
+    }
+
+    /**
+     * The name of the daemon started by a client is given by the client, see {@link #computeDaemonName()}
+     */
+    @NotNull
+    private static String getDaemonName() {
+        String name = System.getProperty(DAEMON_NAME_PROPERTY);
+        return name != null ? name : computeDaemonName();
+    }
+
+    /**
+     * Relative paths in the arguments are resolved against the working directory of the process, and the compilation also depends
+     * on the compiler version, the JDK, the environment and the system properties. A daemon is shared only by the clients which agree
+     * on all of them, the daemon started by a client runs with the same JDK, environment and properties
+     */
+    @NotNull
+    static String computeDaemonName() {
+        StringBuilder identity = new StringBuilder();
+        identity.append(new File("").getAbsolutePath()).append('\n');
+        identity.append(System.getProperty("java.home")).append('\n');
+        for (Map.Entry<String, String> variable : new TreeMap<String, String>(System.getenv()).entrySet()) {
+            if (SHELL_VARIABLES.contains(variable.getKey())) continue;
+            identity.append(variable.getKey()).append('=').append(variable.getValue()).append('\n');
+        }
+        for (String property : getCommandLineProperties()) {
+            identity.append(property).append('\n');
+        }
+
+        String identityHash = Integer.toHexString(identity.toString().hashCode());
+        return "daemon-" + KotlinVersion.VERSION.replaceAll("[^\\w.-]", "_") + "-" + identityHash;
+    }
+
+    /**
+     * @return system properties given to this process on the command line as "-Dname=value", except the ones of the daemon itself
+     */
+    @NotNull
+    static List<String> getCommandLineProperties() {
+        List<String> result = new ArrayList<String>();
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!argument.startsWith("-D")) continue;
+            String name = argument.substring(2).split("=", 2)[0];
+            if (!DAEMON_PROPERTIES.contains(name)) {
+                result.add(argument);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.common.daemon;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.common.CLICompiler;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.KotlinVersion;
+import org.jetbrains.kotlin.utils.PathUtil;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends compilations to {@link CompileDaemon}, starting it if it's not running yet
+ */
+public class CompileDaemonClient {
+    private static final long DAEMON_STARTUP_TIMEOUT_MILLIS = 10000;
+    private static final long DAEMON_STARTUP_POLL_INTERVAL_MILLIS = 50;
+
+    private CompileDaemonClient() {}
+
+    /**
+     * @return the exit code of the compilation in the daemon, or null if the daemon could not be started or refused
+     * to run the compilation, in which case it should be run in this process
+     */
+    @Nullable
+    public static ExitCode compile(
+            @NotNull CLICompiler<?> compiler,
+            @NotNull String[] args,
+            @NotNull PrintStream out,
+            @NotNull PrintStream errStream
+    ) {
+        String daemonName = CompileDaemon.computeDaemonName();
+        File portFile = CompileDaemon.getPortFile(CompileDaemon.getDaemonDir(), daemonName);
+        try {
+            Connection connection = connect(portFile);
+            if (connection == null) {
+                if (!startDaemon(daemonName)) return null;
+                connection = waitForDaemon(portFile);
+                if (connection == null) return null;
+            }
+            try {
+                return compile(connection.socket, connection.token, compiler, args, out, errStream);
+            }
+            finally {
+                connection.socket.close();
+            }
+        }
+        catch (IOException e) {
+            // The daemon hasn't started the compilation
+            return null;
+        }
+        catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @throws IOException if the connection failed before the daemon has started the compilation
+     */
+    @Nullable
+    static ExitCode compile(
+            @NotNull Socket socket,
+            @NotNull String token,
+            @NotNull CLICompiler<?> compiler,
+            @NotNull String[] args,
+            @NotNull PrintStream out,
+            @NotNull PrintStream errStream
+    ) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeUTF(token);
+        output.writeUTF(KotlinVersion.VERSION);
+        output.writeUTF(new File("").getAbsolutePath());
+        output.writeUTF(compiler.getClass().getName());
+        output.writeInt(args.length);
+        for (String arg : args) {
+            output.writeUTF(arg);
+        }
+        output.flush();
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        int status = input.readInt();
+        if (status == CompileDaemon.STATUS_REJECTED) {
+            errStream.println("warning: compiling without the daemon: " + input.readUTF());
+            return null;
+        }
+        if (status != CompileDaemon.STATUS_STARTED) {
+            throw new IOException("Unexpected status: " + status);
+        }
+
+        // The daemon may have written some of the output already, so the compilation must not be repeated in this process
+        try {
+            int code = input.readInt();
+            out.write(readBytes(input));
+            out.flush();
+            errStream.write(readBytes(input));
+            errStream.flush();
+
+            for (ExitCode exitCode : ExitCode.values()) {
+                if (exitCode.getCode() == code) return exitCode;
+            }
+            return ExitCode.INTERNAL_ERROR;
+        }
+        catch (IOException e) {
+            errStream.println("error: lost the connection to the compile daemon: " + e.getMessage());
+            return ExitCode.INTERNAL_ERROR;
+        }
+    }
+
+    @NotNull
+    private static byte[] readBytes(@NotNull DataInputStream input) throws IOException {
+        byte[] result = new byte[input.readInt()];
+        input.readFully(result);
+        return result;
+    }
+
+    private static class Connection {
+        final Socket socket;
+        final String token;
+
+        Connection(@NotNull Socket socket, @NotNull String token) {
+            this.socket = socket;
+            this.token = token;
+        }
+    }
+
+    @Nullable
+    private static Connection connect(@NotNull File portFile) {
+        if (!portFile.isFile()) return null;
+        try {
+            // The port and the token are read at once, the file may be replaced by another daemon in the meantime
+            String[] lines = FileUtil.loadFile(portFile).split("\n");
+            if (lines.length < 2) return null;
+            int port = Integer.parseInt(lines[0]);
+            return new Connection(new Socket(InetAddress.getByName(null), port), lines[1]);
+        }
+        catch (IOException e) {
+            // A daemon which has just stopped
+            return null;
+        }
+        catch (NumberFormatException e) {
+            // A port file which is being written
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Connection waitForDaemon(@NotNull File portFile) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DAEMON_STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            Connection connection = connect(portFile);
+            if (connection != null) return connection;
+            Thread.sleep(DAEMON_STARTUP_POLL_INTERVAL_MILLIS);
+        }
+        return null;
+    }
+
+    private static boolean startDaemon(@NotNull String daemonName) throws IOException {
+        // When the compiler is run by the preloader, the compiler jar is not on the class path of this process
+        File compilerJar = PathUtil.getPathUtilJar();
+        String classpath = compilerJar.isFile() ? compilerJar.getPath() : System.getProperty("java.class.path");
+        if (classpath == null) return false;
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-Xmx" + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "m");
+        command.add("-Djava.awt.headless=true");
+        for (String property : new String[] {CompileDaemon.DAEMON_DIR_PROPERTY, CompileDaemon.IDLE_TIMEOUT_PROPERTY}) {
+            String value = System.getProperty(property);
+            if (value != null) {
+                command.add("-D" + property + "=" + value);
+            }
+        }
+        command.add("-D" + CompileDaemon.DAEMON_NAME_PROPERTY + "=" + daemonName);
+        // The compilations in the daemon see the same system properties as in this process, the environment is inherited
+        command.addAll(CompileDaemon.getCommandLineProperties());
+        command.add("-cp");
+        command.add(classpath);
+        command.add(CompileDaemon.class.getName());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        // The daemon writes its output to the log file, and must outlive this process
+        process.getOutputStream().close();
+        process.getInputStream().close();
+        return true;
+    }
+}
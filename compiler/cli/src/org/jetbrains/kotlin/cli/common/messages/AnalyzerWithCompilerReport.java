@@ -85,9 +85,13 @@ public final class AnalyzerWithCompilerReport {
         };
     }
 
-    private static boolean reportDiagnostic(@NotNull Diagnostic diagnostic, @NotNull MessageCollector messageCollector) {
+    private static boolean reportDiagnostic(
+            @NotNull Diagnostic diagnostic,
+            @NotNull MessageCollector messageCollector,
+            @NotNull LineOffsets.Cache lineOffsets
+    ) {
         if (!diagnostic.isValid()) return false;
-        DiagnosticUtils.LineAndColumn lineAndColumn = DiagnosticUtils.getLineAndColumn(diagnostic);
+        DiagnosticUtils.LineAndColumn lineAndColumn = DiagnosticUtils.getLineAndColumn(diagnostic, lineOffsets);
         String render;
         if (diagnostic instanceof MyDiagnostic) {
             render = ((MyDiagnostic)diagnostic).message;
@@ -162,8 +166,9 @@ public final class AnalyzerWithCompilerReport {
 
     public static boolean reportDiagnostics(@NotNull Diagnostics diagnostics, @NotNull MessageCollector messageCollector) {
         boolean hasErrors = false;
+        LineOffsets.Cache lineOffsets = new LineOffsets.Cache();
         for (Diagnostic diagnostic : sortedDiagnostics(diagnostics.all())) {
-            hasErrors |= reportDiagnostic(diagnostic, messageCollector);
+            hasErrors |= reportDiagnostic(diagnostic, messageCollector, lineOffsets);
         }
         return hasErrors;
     }
@@ -196,10 +201,11 @@ public final class AnalyzerWithCompilerReport {
         class ErrorReportingVisitor extends AnalyzingUtils.PsiErrorElementVisitor {
             boolean hasErrors = false;
             boolean allErrorsAtEof = true;
+            final LineOffsets.Cache lineOffsets = new LineOffsets.Cache();
 
             private <E extends PsiElement> void reportDiagnostic(E element, DiagnosticFactory0<E> factory, String message) {
                 MyDiagnostic<?> diagnostic = new MyDiagnostic<E>(element, factory, message);
-                AnalyzerWithCompilerReport.reportDiagnostic(diagnostic, messageCollector);
+                AnalyzerWithCompilerReport.reportDiagnostic(diagnostic, messageCollector, lineOffsets);
                 if (element.getTextRange().getStartOffset() != file.getTextRange().getEndOffset()) {
                     allErrorsAtEof = false;
                 }
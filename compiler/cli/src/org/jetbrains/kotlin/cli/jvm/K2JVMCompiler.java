@@ -42,6 +42,7 @@ import org.jetbrains.kotlin.utils.KotlinPathsFromHomeDir;
 import org.jetbrains.kotlin.utils.PathUtil;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -134,7 +135,7 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
         configuration.addAll(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY, getAnnotationsPath(paths, arguments));
 
-        if (arguments.module == null && arguments.freeArgs.isEmpty() && !arguments.version) {
+        if (isRepl(arguments)) {
             ReplFromTerminal.run(rootDisposable, configuration);
             return ExitCode.OK;
         }
@@ -181,9 +182,7 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
             }
             else if (arguments.script) {
                 List<String> scriptArgs = arguments.freeArgs.subList(1, arguments.freeArgs.size());
-                KotlinCoreEnvironment environment =
-                        KotlinCoreEnvironment.createForProduction(rootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
-                KotlinToJVMBytecodeCompiler.compileAndExecuteScript(configuration, paths, environment, scriptArgs);
+                KotlinToJVMBytecodeCompiler.compileAndExecuteScript(configuration, paths, rootDisposable, scriptArgs);
             }
             else {
                 KotlinCoreEnvironment environment =
@@ -204,6 +203,27 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         configuration.put(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS, arguments.noParamAssertions);
         configuration.put(JVMConfigurationKeys.DISABLE_INLINE, arguments.noInline);
         configuration.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize);
+        configuration.put(JVMConfigurationKeys.GENERATE_ABI_STUBS, arguments.abiStubs);
+        configuration.put(JVMConfigurationKeys.USE_BINARY_JAVA_CLASSES, arguments.binaryJavaClasses);
+        configuration.put(JVMConfigurationKeys.DISABLE_MAPPED_JARS, arguments.noMappedJars);
+        configuration.put(JVMConfigurationKeys.SHARED_STRING_TABLE, arguments.sharedStringTable);
+        configuration.put(JVMConfigurationKeys.PREFETCH_CLASSPATH, arguments.prefetchClasspath);
+        configuration.put(JVMConfigurationKeys.USE_LIGHT_JAVA_SOURCES, arguments.lightJavaSources);
+        configuration.put(JVMConfigurationKeys.PARALLEL_PARSING, arguments.parallelParsing);
+        configuration.put(JVMConfigurationKeys.UNCOMPRESSED_JAR, arguments.uncompressedJar);
+        configuration.put(JVMConfigurationKeys.REPORT_PLUGIN_COSTS, arguments.reportPluginCosts);
+        if (arguments.scriptCache != null) {
+            configuration.put(JVMConfigurationKeys.SCRIPT_CACHE_DIRECTORY, new File(arguments.scriptCache));
+        }
+        // Plugins are already loaded, these are kept for the compiled script cache, which depends on them
+        if (arguments.pluginClasspaths != null) {
+            for (String path : arguments.pluginClasspaths) {
+                configuration.add(JVMConfigurationKeys.PLUGIN_CLASSPATH, new File(path));
+            }
+        }
+        if (arguments.pluginOptions != null) {
+            configuration.addAll(JVMConfigurationKeys.PLUGIN_OPTIONS, Arrays.asList(arguments.pluginOptions));
+        }
     }
 
     /**
@@ -215,6 +235,15 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         return new K2JVMCompilerArguments();
     }
 
+    @Override
+    protected boolean canRunInDaemon(@NotNull K2JVMCompilerArguments arguments) {
+        return !arguments.script && !isRepl(arguments);
+    }
+
+    private static boolean isRepl(@NotNull K2JVMCompilerArguments arguments) {
+        return arguments.module == null && arguments.freeArgs.isEmpty() && !arguments.version;
+    }
+
     @NotNull
     private static List<File> getClasspath(@NotNull KotlinPaths paths, @NotNull K2JVMCompilerArguments arguments) {
         List<File> classpath = Lists.newArrayList();
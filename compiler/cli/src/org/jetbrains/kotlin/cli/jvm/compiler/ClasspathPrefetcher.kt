@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.annotations.TestOnly
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.psi.JetFile
+import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM
+import java.util.LinkedHashSet
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reads the headers of the library classes from the packages imported by the sources on background threads,
+ * so that the analysis finds them in [KotlinBinaryClassCache] instead of reading them itself.
+ *
+ * Descriptors can't be prefetched: they're created by the module of a particular analysis, which doesn't exist yet.
+ * The index of the classpath ([JvmDependenciesIndex]) isn't thread-safe, so the roots are traversed directly
+ */
+public class ClasspathPrefetcher(private val binaryRoots: List<VirtualFile>, parentDisposable: Disposable) {
+    private val executor: ExecutorService = Executors.newFixedThreadPool(THREAD_COUNT, object : ThreadFactory {
+        override fun newThread(r: Runnable): Thread {
+            val thread = Thread(r, "Kotlin classpath prefetch")
+            thread.setDaemon(true)
+            return thread
+        }
+    })
+
+    volatile private var cancelled = false
+
+    private val prefetchedClasses = ConcurrentLinkedQueue<VirtualFile>()
+
+    init {
+        Disposer.register(parentDisposable, object : Disposable {
+            override fun dispose() {
+                cancel()
+            }
+        })
+    }
+
+    public fun prefetch(files: Collection<JetFile>) {
+        // PSI is only accessed on the calling thread
+        val packages = collectPackages(files)
+
+        // The built-ins are a singleton which is initialized lazily without synchronization, so another thread could see it half-built.
+        // Initialize them here before any task starts, the analysis needs them first anyway
+        KotlinBuiltIns.getInstance()
+
+        for (packageFqName in packages) {
+            for (root in binaryRoots) {
+                submit { prefetchPackage(root, packageFqName) }
+            }
+        }
+        executor.shutdown()
+    }
+
+    private fun submit(task: () -> Unit) {
+        executor.execute {
+            if (!cancelled) {
+                try {
+                    task()
+                }
+                catch (e: Throwable) {
+                    // The analysis will load everything it needs by itself and report errors, if any
+                    LOG.debug(e)
+                }
+            }
+        }
+    }
+
+    private fun prefetchPackage(root: VirtualFile, packageFqName: FqName) {
+        val directory = (if (packageFqName.isRoot()) root else root.findFileByRelativePath(packageFqName.asString().replace('.', '/')))
+                        ?: return
+        for (child in directory.getChildren()) {
+            if (cancelled) return
+            if (!child.isDirectory() && child.getName().endsWith(".class")) {
+                KotlinBinaryClassCache.getKotlinBinaryClass(child)
+                prefetchedClasses.add(child)
+            }
+        }
+    }
+
+    TestOnly public fun awaitTermination(timeoutSeconds: Long): Boolean = executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)
+
+    TestOnly public fun getPrefetchedClasses(): Collection<VirtualFile> = prefetchedClasses
+
+    private fun cancel() {
+        cancelled = true
+        executor.shutdownNow()
+        // The classes are cached in the application, which may be disposed right after this, so wait until no task is reading them
+        if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Classpath prefetch is not finished in $TERMINATION_TIMEOUT_SECONDS seconds")
+        }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(javaClass<ClasspathPrefetcher>())
+
+        private val THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1))
+
+        private val TERMINATION_TIMEOUT_SECONDS = 10L
+
+        private fun collectPackages(files: Collection<JetFile>): Set<FqName> {
+            val result = LinkedHashSet<FqName>()
+            for (importPath in TopDownAnalyzerFacadeForJVM.DEFAULT_IMPORTS) {
+                result.add(if (importPath.isAllUnder()) importPath.fqnPart() else importPath.fqnPart().parent())
+            }
+            for (file in files) {
+                result.add(file.getPackageFqName())
+                for (directive in file.getImportDirectives()) {
+                    val importPath = directive.getImportPath() ?: continue
+                    // It's not known yet whether a non-star import refers to a class or to a package member, so assume the former
+                    result.add(if (importPath.isAllUnder()) importPath.fqnPart() else importPath.fqnPart().parent())
+                }
+            }
+            return result
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.kotlin.cli.common.KotlinVersion;
+import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys;
+import org.jetbrains.kotlin.codegen.ClassFileFactory;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.config.ContentRoot;
+import org.jetbrains.kotlin.config.KotlinSourceRoot;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.parsing.JetScriptDefinition;
+import org.jetbrains.kotlin.renderer.DescriptorRenderer;
+import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
+import org.jetbrains.kotlin.utils.KotlinPaths;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import static org.jetbrains.kotlin.cli.jvm.config.ConfigPackage.getJvmClasspathRoots;
+
+/**
+ * Jars with the classes of compiled scripts, so that a script which is run again is not compiled, and the compilation
+ * environment is not even created.
+ *
+ * A jar is named by the hash of everything the compiled classes depend on: the compiler version, the script text and name,
+ * the options affecting the generated code, the script definitions and parameters, the options of compiler plugins, and the paths,
+ * sizes and modification stamps of the files on the classpath, the annotations path and the classpath of compiler plugins.
+ * When the cache outgrows its limits, the least recently used jars are deleted
+ */
+public class CompiledScriptCache {
+    public static final String MAX_SIZE_PROPERTY = "kotlin.script.cache.max.size";
+    public static final String MAX_ENTRIES_PROPERTY = "kotlin.script.cache.max.entries";
+
+    private static final long DEFAULT_MAX_SIZE_MB = 100;
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String ENTRY_EXTENSION = ".jar";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final File entryFile;
+
+    private CompiledScriptCache(@NotNull File directory, @NotNull String key) {
+        this.directory = directory;
+        this.entryFile = new File(directory, key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * @return the cache for the script being compiled with the given configuration,
+     * or null if the cache is not enabled or the script can't be read
+     */
+    @Nullable
+    public static CompiledScriptCache create(@NotNull CompilerConfiguration configuration, @NotNull KotlinPaths paths) {
+        File directory = configuration.get(JVMConfigurationKeys.SCRIPT_CACHE_DIRECTORY);
+        if (directory == null) return null;
+
+        File scriptFile = null;
+        for (ContentRoot root : configuration.getList(CommonConfigurationKeys.CONTENT_ROOTS)) {
+            if (root instanceof KotlinSourceRoot) {
+                scriptFile = new File(((KotlinSourceRoot) root).getPath());
+                break;
+            }
+        }
+        if (scriptFile == null || !scriptFile.isFile()) return null;
+
+        try {
+            return new CompiledScriptCache(directory, computeKey(scriptFile, configuration, paths));
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    private static String computeKey(
+            @NotNull File scriptFile,
+            @NotNull CompilerConfiguration configuration,
+            @NotNull KotlinPaths paths
+    ) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        update(digest, "version:" + KotlinVersion.VERSION);
+        byte[] scriptBytes = FileUtil.loadFileBytes(scriptFile);
+        update(digest, "script:" + scriptFile.getName() + ":" + scriptBytes.length);
+        digest.update(scriptBytes);
+
+        update(digest, "options:inline=" + !configuration.get(JVMConfigurationKeys.DISABLE_INLINE, false) +
+                       ",optimize=" + !configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION, false) +
+                       ",callAssertions=" + !configuration.get(JVMConfigurationKeys.DISABLE_CALL_ASSERTIONS, false) +
+                       ",paramAssertions=" + !configuration.get(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS, false));
+
+        // Parameters of the script become parameters of the constructor of its class
+        for (AnalyzerScriptParameter parameter : configuration.getList(JVMConfigurationKeys.SCRIPT_PARAMETERS)) {
+            update(digest, "parameter:" + render(parameter));
+        }
+        for (JetScriptDefinition definition : configuration.getList(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY)) {
+            update(digest, "definition:" + definition.getExtension());
+            for (AnalyzerScriptParameter parameter : definition.getScriptParameters()) {
+                update(digest, "definition parameter:" + render(parameter));
+            }
+        }
+        for (String option : configuration.getList(JVMConfigurationKeys.PLUGIN_OPTIONS)) {
+            update(digest, "plugin option:" + option);
+        }
+
+        updateWithFiles(digest, "classpath", getJvmClasspathRoots(configuration));
+        updateWithFiles(digest, "annotations", configuration.getList(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY));
+        updateWithFiles(digest, "plugin classpath", configuration.getList(JVMConfigurationKeys.PLUGIN_CLASSPATH));
+        updateWithFiles(digest, "runtime", Collections.singletonList(paths.getRuntimePath()));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+        return key.toString();
+    }
+
+    @NotNull
+    private static String render(@NotNull AnalyzerScriptParameter parameter) {
+        return parameter.getName() + ":" + DescriptorRenderer.FQ_NAMES_IN_TYPES.renderType(parameter.getType());
+    }
+
+    private static void update(@NotNull MessageDigest digest, @NotNull String line) {
+        digest.update((line + "\n").getBytes(UTF_8));
+    }
+
+    private static void updateWithFiles(@NotNull final MessageDigest digest, @NotNull final String kind, @NotNull Collection<File> roots) {
+        for (File root : roots) {
+            // A missing root is different from no root
+            update(digest, kind + " root:" + root.getPath());
+            FileUtil.processFilesRecursively(root, new Processor<File>() {
+                @Override
+                public boolean process(File file) {
+                    if (file.isFile()) {
+                        update(digest, kind + ":" + file.getPath() + ":" + file.length() + ":" + file.lastModified());
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
+    @TestOnly
+    @NotNull
+    File getEntryFile() {
+        return entryFile;
+    }
+
+    /**
+     * @return the class of the script from the cache, loaded by a new class loader with the given parent,
+     * or null if the script is not in the cache
+     */
+    @Nullable
+    public Class<?> load(@NotNull ClassLoader parent) {
+        if (!entryFile.isFile()) return null;
+
+        try {
+            String mainClass = readMainClass(entryFile);
+            if (mainClass == null) return null;
+
+            //noinspection ResultOfMethodCallIgnored
+            entryFile.setLastModified(System.currentTimeMillis());
+
+            ClassLoader classLoader = new URLClassLoader(new URL[] {entryFile.toURI().toURL()}, parent);
+            return classLoader.loadClass(mainClass);
+        }
+        catch (IOException e) {
+            // The jar might have been evicted by another process in the meantime
+            return null;
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String readMainClass(@NotNull File jar) throws IOException {
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Manifest manifest = jarFile.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
+        }
+        finally {
+            jarFile.close();
+        }
+    }
+
+    /**
+     * Stores the classes of the compiled script and evicts the least recently used scripts if the cache is too big
+     */
+    public void store(@NotNull ClassFileFactory outputFiles, @NotNull FqName scriptClassName) throws IOException {
+        FileUtil.createDirectory(directory);
+
+        // Other processes running the same script may be reading or writing the jar, so it's replaced at once
+        File tmpFile = FileUtil.createTempFile(directory, entryFile.getName(), ".tmp", true, true);
+        try {
+            // The jar is only read by the compiler, so the time to compress it is not worth the space
+            CompileEnvironmentUtil.writeToJar(tmpFile, false, scriptClassName, outputFiles, false);
+            if (!tmpFile.renameTo(entryFile) && !entryFile.isFile()) {
+                throw new IOException("Could not rename " + tmpFile + " to " + entryFile);
+            }
+        }
+        finally {
+            FileUtil.delete(tmpFile);
+        }
+
+        evict();
+    }
+
+    private void evict() {
+        File[] entries = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(ENTRY_EXTENSION);
+            }
+        });
+        if (entries == null) return;
+
+        long maxSize = Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB) * 1024 * 1024;
+        int maxEntries = Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES);
+
+        long size = 0;
+        for (File entry : entries) {
+            size += entry.length();
+        }
+        if (size <= maxSize && entries.length <= maxEntries) return;
+
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(@NotNull File file1, @NotNull File file2) {
+                long lastModified1 = file1.lastModified();
+                long lastModified2 = file2.lastModified();
+                return lastModified1 < lastModified2 ? -1 : lastModified1 == lastModified2 ? 0 : 1;
+            }
+        });
+
+        int count = entries.length;
+        for (File entry : entries) {
+            if (size <= maxSize && count <= maxEntries) break;
+            if (entry.equals(entryFile)) continue;
+
+            long length = entry.length();
+            if (FileUtil.delete(entry)) {
+                size -= length;
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.MappedJarHandler;
+import org.jetbrains.kotlin.utils.UtilsPackage;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a jar with entries compressed on a pool of threads, and with the same timestamp for all entries,
+ * so that the jar only depends on the contents of its entries.
+ *
+ * Entries are written in the order they are added, each one as soon as its compression is finished. Entries copied from
+ * another jar are written as they're stored there, without decompressing them. ZIP64 is not supported, so a jar can't
+ * have more than 65535 entries or be larger than 4 GB
+ */
+class JarWriter {
+    // 1980-02-01 00:00, so that the time stays after the beginning of the DOS epoch when converted to any time zone
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (2 << 5) | 1;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    // Names are encoded in UTF-8
+    private static final int FLAGS = 0x800;
+
+    // The extra field which marks a file as a jar, expected in the first entry, see JarOutputStream
+    private static final byte[] JAR_MAGIC = {(byte) 0xFE, (byte) 0xCA, 0, 0};
+
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class Entry {
+        final byte[] name;
+        final int method;
+        final int crc;
+        final int size;
+        final byte[] data;
+
+        Entry(@NotNull byte[] name, int method, int crc, int size, @NotNull byte[] data) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    private final DataOutputStream output;
+    private final boolean compress;
+    private final ExecutorService executor;
+
+    private final List<Future<Entry>> pendingEntries = Lists.newArrayList();
+    private final Set<String> names = Sets.newHashSet();
+
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private int entryCount = 0;
+    private long offset = 0;
+
+    /**
+     * @param compress whether to deflate the entries, or just store them, e.g. in jars which are only read by later build steps
+     */
+    JarWriter(@NotNull OutputStream output, boolean compress) {
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.compress = compress;
+        this.executor = compress && THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, "Kotlin jar writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+    }
+
+    void addEntry(@NotNull final String name, @NotNull final byte[] contents) throws IOException {
+        checkName(name);
+        Callable<Entry> task = new Callable<Entry>() {
+            @Override
+            public Entry call() {
+                return createEntry(name, contents);
+            }
+        };
+        if (executor != null) {
+            pendingEntries.add(executor.submit(task));
+            // The entries which are already compressed are written right away, so that the rest is compressed meanwhile
+            writeCompletedEntries();
+        }
+        else {
+            writeEntry(createEntry(name, contents));
+        }
+    }
+
+    /**
+     * Copies the class files from the given jar, without recompressing them
+     */
+    void addClassesFromJar(@NotNull File jar) throws IOException {
+        MappedJarHandler handler;
+        try {
+            handler = new MappedJarHandler(jar);
+        }
+        catch (IOException e) {
+            // The format of this jar is not supported, its entries are read and compressed again
+            addClassesFromJarByStream(jar);
+            return;
+        }
+
+        try {
+            for (int entry = 0; entry < handler.getEntryCount(); entry++) {
+                String name = handler.getName(entry);
+                if (FileUtilRt.extensionEquals(name, "class")) {
+                    checkName(name);
+                    pendingEntries.add(Futures.immediateFuture(new Entry(
+                            name.getBytes(UTF_8), handler.getMethod(entry), handler.getCrc(entry), handler.getSize(entry),
+                            handler.getRawContents(entry)
+                    )));
+                }
+            }
+        }
+        finally {
+            // Raw contents are copied out of the mapping, so it can be released right away
+            handler.close();
+        }
+        writeCompletedEntries();
+    }
+
+    private void addClassesFromJarByStream(@NotNull File jar) throws IOException {
+        JarInputStream stream = new JarInputStream(new FileInputStream(jar));
+        try {
+            while (true) {
+                JarEntry entry = stream.getNextJarEntry();
+                if (entry == null) break;
+                if (FileUtilRt.extensionEquals(entry.getName(), "class")) {
+                    addEntry(entry.getName(), FileUtil.loadBytes(stream));
+                }
+            }
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes the rest of the entries and the central directory. The underlying stream is not closed
+     */
+    void finish() throws IOException {
+        for (Future<Entry> entry : pendingEntries) {
+            writeEntry(getEntry(entry));
+        }
+        pendingEntries.clear();
+
+        long centralDirectoryOffset = offset;
+        centralDirectory.writeTo(output);
+        if (centralDirectoryOffset + centralDirectory.size() > 0xFFFFFFFFL) {
+            throw new IOException("Jar is too large: " + (centralDirectoryOffset + centralDirectory.size()) + " bytes");
+        }
+
+        writeInt(output, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(output, 0);
+        writeShort(output, 0);
+        writeShort(output, entryCount);
+        writeShort(output, entryCount);
+        writeInt(output, centralDirectory.size());
+        writeInt(output, (int) centralDirectoryOffset);
+        writeShort(output, 0);
+        output.flush();
+    }
+
+    /**
+     * Stops the compression threads, should be called whether the jar is finished or not
+     */
+    void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void checkName(@NotNull String name) throws IOException {
+        if (!names.add(name)) {
+            throw new IOException("Duplicate entry: " + name);
+        }
+        if (names.size() > MAX_ENTRIES) {
+            throw new IOException("Too many entries in jar: " + names.size());
+        }
+    }
+
+    @NotNull
+    private Entry createEntry(@NotNull String name, @NotNull byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+
+        byte[] data = contents;
+        int method = ZipEntry.STORED;
+        if (compress) {
+            data = deflate(contents);
+            method = ZipEntry.DEFLATED;
+        }
+        return new Entry(name.getBytes(UTF_8), method, (int) crc.getValue(), contents.length, data);
+    }
+
+    @NotNull
+    private static byte[] deflate(@NotNull byte[] contents) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream result = new ByteArrayOutputStream(contents.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                result.write(buffer, 0, count);
+            }
+            return result.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private void writeCompletedEntries() throws IOException {
+        int written = 0;
+        while (written < pendingEntries.size() && pendingEntries.get(written).isDone()) {
+            writeEntry(getEntry(pendingEntries.get(written)));
+            written++;
+        }
+        pendingEntries.subList(0, written).clear();
+    }
+
+    @NotNull
+    private static Entry getEntry(@NotNull Future<Entry> entry) throws IOException {
+        try {
+            return entry.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            throw UtilsPackage.rethrow(e.getCause());
+        }
+    }
+
+    private void writeEntry(@NotNull Entry entry) throws IOException {
+        byte[] extra = entryCount == 0 ? JAR_MAGIC : new byte[0];
+        int version = entry.method == ZipEntry.STORED ? 10 : 20;
+
+        if (offset > 0xFFFFFFFFL) {
+            throw new IOException("Jar is too large: " + offset + " bytes");
+        }
+
+        DataOutputStream central = new DataOutputStream(centralDirectory);
+        writeInt(central, CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(central, version);
+        writeShort(central, version);
+        writeShort(central, FLAGS);
+        writeShort(central, entry.method);
+        writeShort(central, DOS_TIME);
+        writeShort(central, DOS_DATE);
+        writeInt(central, entry.crc);
+        writeInt(central, entry.data.length);
+        writeInt(central, entry.size);
+        writeShort(central, entry.name.length);
+        writeShort(central, extra.length);
+        writeShort(central, 0);
+        writeShort(central, 0);
+        writeShort(central, 0);
+        writeInt(central, 0);
+        writeInt(central, (int) offset);
+        central.write(entry.name);
+        central.write(extra);
+
+        writeInt(output, LOCAL_HEADER_SIGNATURE);
+        writeShort(output, version);
+        writeShort(output, FLAGS);
+        writeShort(output, entry.method);
+        writeShort(output, DOS_TIME);
+        writeShort(output, DOS_DATE);
+        writeInt(output, entry.crc);
+        writeInt(output, entry.data.length);
+        writeInt(output, entry.size);
+        writeShort(output, entry.name.length);
+        writeShort(output, extra.length);
+        output.write(entry.name);
+        output.write(extra);
+        output.write(entry.data);
+
+        offset += 30 + entry.name.length + extra.length + entry.data.length;
+        entryCount++;
+    }
+
+    private static void writeShort(@NotNull DataOutputStream output, int value) throws IOException {
+        output.writeShort(Short.reverseBytes((short) value));
+    }
+
+    private static void writeInt(@NotNull DataOutputStream output, int value) throws IOException {
+        output.writeInt(Integer.reverseBytes(value));
+    }
+}
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.cli.jvm.compiler
 
 import com.intellij.core.CoreJavaFileManager
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiClass
@@ -26,10 +27,20 @@ import com.intellij.psi.PsiManager
 import com.intellij.psi.PsiPackage
 import com.intellij.psi.impl.file.PsiPackageImpl
 import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.annotations.TestOnly
+import org.jetbrains.kotlin.asJava.JavaElementFinder
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.JavaClassImpl
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryJavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.sources.JavaSourceDeclarationParser
+import org.jetbrains.kotlin.load.java.structure.impl.sources.SourceJavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.sources.SourceJavaFile
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.resolve.jvm.KotlinCliJavaFileManager
 import java.util.ArrayList
+import java.util.HashMap
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.properties.Delegates
 
 public class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager)
@@ -37,8 +48,129 @@ public class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager)
 
     private var index: JvmDependenciesIndex by Delegates.notNull()
 
-    public fun initIndex(packagesCache: JvmDependenciesIndex) {
+    private var useBinaryClassModel = false
+
+    private var useSourceDeclarationModel = false
+
+    // Binary classes are cached to read each class file only once and to keep the identity of their type parameters.
+    // Classes are also looked up from background threads, e.g. by the classpath prefetcher
+    private val binaryClasses = ConcurrentHashMap<ClassId, BinaryJavaClass>()
+
+    // Same for the classes of Java sources, each source file is parsed only once
+    private val sourceClasses = ConcurrentHashMap<ClassId, SourceJavaClass>()
+
+    // Null values stand for files which are read by PSI instead. Guarded by itself, because ConcurrentHashMap doesn't allow nulls
+    private val sourceFiles = HashMap<VirtualFile, SourceJavaFile?>()
+
+    public fun initIndex(
+            packagesCache: JvmDependenciesIndex,
+            useBinaryClassModel: Boolean = false,
+            useSourceDeclarationModel: Boolean = false
+    ) {
         this.index = packagesCache
+        this.useBinaryClassModel = useBinaryClassModel
+        this.useSourceDeclarationModel = useSourceDeclarationModel
+    }
+
+    override fun isJavaClassModelEnabled(): Boolean = useBinaryClassModel || useSourceDeclarationModel
+
+    override fun findJavaClass(classId: ClassId, searchScope: GlobalSearchScope): JavaClass? {
+        if (!isJavaClassModelEnabled()) return null
+
+        val cachedBinary = binaryClasses[classId]
+        if (cachedBinary != null) {
+            return if (cachedBinary.virtualFile in searchScope) cachedBinary else null
+        }
+        val cachedSource = sourceClasses[classId]
+        if (cachedSource != null) {
+            return if (cachedSource.virtualFile in searchScope) cachedSource else null
+        }
+
+        val classNameWithInnerClasses = classId.getRelativeClassName().asString()
+        return index.findClass(classId) { dir, type ->
+            when {
+                type == JavaRoot.RootType.BINARY && useBinaryClassModel -> findBinaryClass(classId, dir, searchScope)
+                type == JavaRoot.RootType.SOURCE && useSourceDeclarationModel -> findSourceClass(classId, dir, searchScope)
+                else -> findClassGivenPackage(searchScope, dir, classNameWithInnerClasses, type)?.let { JavaClassImpl(it) }
+            }
+        }
+    }
+
+    private fun findSourceClass(classId: ClassId, packageDir: VirtualFile, searchScope: GlobalSearchScope): JavaClass? {
+        val classNameWithInnerClasses = classId.getRelativeClassName().asString()
+        val vFile = packageDir.findChild(classNameWithInnerClasses.substringBefore('.') + ".java") ?: return null
+        if (vFile !in searchScope) return null
+
+        val sourceFile = getSourceFile(vFile)
+        if (sourceFile == null) {
+            return findClassGivenPackage(searchScope, packageDir, classNameWithInnerClasses, JavaRoot.RootType.SOURCE)?.let { JavaClassImpl(it) }
+        }
+
+        val javaClass = sourceFile.createClass(classId) ?: return null
+        // Another thread may have created the same class in the meantime, only one instance must be used
+        return sourceClasses.putIfAbsent(classId, javaClass) ?: javaClass
+    }
+
+    /**
+     * @return the parsed file, or null if it must be read by PSI
+     */
+    private fun getSourceFile(vFile: VirtualFile): SourceJavaFile? {
+        synchronized (sourceFiles) {
+            if (sourceFiles.containsKey(vFile)) return sourceFiles[vFile]
+        }
+
+        val declarations = JavaSourceDeclarationParser.parse(LoadTextUtil.loadText(vFile))
+        val sourceFile = when {
+            declarations == null -> {
+                // The declaration parser gives up on syntax errors, they are reported by the PSI-based analysis
+                LOG.debug("Falling back to PSI for a Java source which could not be parsed: ${vFile.getPath()}")
+                null
+            }
+            declarations.hasUnevaluatedExpressions -> {
+                // Values of constants and annotation arguments would differ from the ones computed by PSI otherwise
+                LOG.debug("Falling back to PSI for a Java source with constant expressions: ${vFile.getPath()}")
+                null
+            }
+            else -> SourceJavaFile(vFile, declarations, { classId -> findClassForReferences(classId) })
+        }
+
+        synchronized (sourceFiles) {
+            // Another thread may have parsed the same file in the meantime
+            if (sourceFiles.containsKey(vFile)) return sourceFiles[vFile]
+            sourceFiles[vFile] = sourceFile
+            return sourceFile
+        }
+    }
+
+    /**
+     * Java sources which were requested as [JavaClass]es, but were read by PSI because the declaration parser couldn't handle them
+     */
+    TestOnly public fun getJavaSourcesReadByPsi(): List<VirtualFile> = synchronized (sourceFiles) {
+        sourceFiles.keySet().filter { sourceFiles[it] == null }
+    }
+
+    /**
+     * Resolves classes referenced from cached Java classes. The scope of the request which created a cached class can't be used,
+     * because the class is later returned for other requests too, so the references are resolved in the whole project like in PSI
+     */
+    private fun findClassForReferences(classId: ClassId): JavaClass? {
+        val project = myPsiManager.getProject()
+        val allScope = GlobalSearchScope.allScope(project)
+        // Java code may refer to Kotlin classes compiled together with it, which are only visible as light classes.
+        // Roots of the classpath have already been searched, so only the finder of light classes is asked
+        return findJavaClass(classId, allScope)
+               ?: JavaElementFinder.getInstance(project).findClass(classId.asSingleFqName().asString(), allScope)?.let { JavaClassImpl(it) }
+    }
+
+    private fun findBinaryClass(classId: ClassId, packageDir: VirtualFile, searchScope: GlobalSearchScope): JavaClass? {
+        // Nested class A.B.C is stored in the file A$B$C.class in the package directory
+        val fileName = classId.getRelativeClassName().asString().replace('.', '$') + ".class"
+        val vFile = packageDir.findChild(fileName) ?: return null
+        if (vFile !in searchScope) return null
+
+        val javaClass = BinaryJavaClass(vFile, classId, { findClassForReferences(it) })
+        // Another thread may have read the same class in the meantime, only one instance must be used
+        return binaryClasses.putIfAbsent(classId, javaClass) ?: javaClass
     }
 
     public override fun findClass(classId: ClassId, searchScope: GlobalSearchScope): PsiClass? {
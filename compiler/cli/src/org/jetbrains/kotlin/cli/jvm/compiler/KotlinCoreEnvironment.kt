@@ -58,7 +58,10 @@ import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.INFO
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.LOGGING
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.WARNING
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.MappedJarFileSystem
 import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys
 import org.jetbrains.kotlin.cli.jvm.config.JavaSourceRoot
 import org.jetbrains.kotlin.cli.jvm.config.JvmClasspathRoot
@@ -68,6 +71,7 @@ import org.jetbrains.kotlin.compiler.plugin.ComponentRegistrar
 import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.KotlinSourceRoot
+import org.jetbrains.kotlin.extensions.ExtensionCosts
 import org.jetbrains.kotlin.extensions.ExternalDeclarationsProvider
 import org.jetbrains.kotlin.idea.JetFileType
 import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache
@@ -118,7 +122,11 @@ public class KotlinCoreEnvironment private(
         fillClasspath(configuration)
         val fileManager = ServiceManager.getService(project, javaClass<CoreJavaFileManager>())
         val index = JvmDependenciesIndex(javaRoots)
-        (fileManager as KotlinCliJavaFileManagerImpl).initIndex(index)
+        (fileManager as KotlinCliJavaFileManagerImpl).initIndex(
+                index,
+                configuration.get(JVMConfigurationKeys.USE_BINARY_JAVA_CLASSES, false),
+                configuration.get(JVMConfigurationKeys.USE_LIGHT_JAVA_SOURCES, false)
+        )
 
         for (path in configuration.getList(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY)) {
             addExternalAnnotationsRoot(path)
@@ -135,11 +143,36 @@ public class KotlinCoreEnvironment private(
 
         JetScriptDefinitionProvider.getInstance(project).addScriptDefinitions(configuration.getList(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY))
 
+        if (configuration.get(JVMConfigurationKeys.PARALLEL_PARSING, false)) {
+            val statistics = ParallelSourceParser.parse(sourceFiles)
+            if (statistics != null) {
+                configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)
+                        ?.report(LOGGING, statistics.toString(), CompilerMessageLocation.NO_LOCATION)
+            }
+        }
+
+        if (configuration.get(JVMConfigurationKeys.PREFETCH_CLASSPATH, false)) {
+            val binaryRoots = javaRoots.filter { it.type == JavaRoot.RootType.BINARY }.map { it.file }
+            ClasspathPrefetcher(binaryRoots, parentDisposable).prefetch(sourceFiles)
+        }
+
         project.registerService(javaClass<VirtualFileFinderFactory>(), CliVirtualFileFinderFactory(index))
 
         ExternalDeclarationsProvider.registerExtensionPoint(project)
         ExpressionCodegenExtension.registerExtensionPoint(project)
 
+        if (configuration.get(JVMConfigurationKeys.REPORT_PLUGIN_COSTS, false)) {
+            val costs = ExtensionCosts.enable(project)
+            // Disposed before the project, after everything is compiled
+            Disposer.register(parentDisposable, object : Disposable {
+                override fun dispose() {
+                    val lines = costs.report()
+                    report(INFO, if (lines.isEmpty()) "No compiler plugin extensions were called"
+                                 else "Compiler plugin extensions:\n" + lines.joinToString("\n"))
+                }
+            })
+        }
+
         for (registrar in configuration.getList(ComponentRegistrar.PLUGIN_COMPONENT_REGISTRARS)) {
             registrar.registerProjectComponents(project, configuration)
         }
@@ -201,7 +234,9 @@ public class KotlinCoreEnvironment private(
 
     private fun findJarRoot(root: JvmClasspathRoot): VirtualFile? {
         val path = root.file
-        val jarFile = applicationEnvironment.getJarFileSystem().findFileByPath("${path}!/")
+        val mappedJarFile = if (configuration.get(JVMConfigurationKeys.DISABLE_MAPPED_JARS, false)) null
+                            else ServiceManager.getService(javaClass<MappedJarFileSystem>()).findJarRoot(path)
+        val jarFile = mappedJarFile ?: applicationEnvironment.getJarFileSystem().findFileByPath("${path}!/")
         if (jarFile == null) {
             report(WARNING, "Classpath entry points to a file that is not a JAR archive: $path")
             return null
@@ -235,6 +270,8 @@ public class KotlinCoreEnvironment private(
         private val APPLICATION_LOCK = Object()
         private var ourApplicationEnvironment: JavaCoreApplicationEnvironment? = null
         private var ourProjectCount = 0
+        private var ourConfigFilePaths: List<String>? = null
+        private var keepApplicationEnvironment = false
 
         platformStatic public fun createForProduction(
                 parentDisposable: Disposable, configuration: CompilerConfiguration, configFilePaths: List<String>
@@ -244,7 +281,7 @@ public class KotlinCoreEnvironment private(
             Disposer.register(parentDisposable, object : Disposable {
                 override fun dispose() {
                     synchronized (APPLICATION_LOCK) {
-                        if (--ourProjectCount <= 0) {
+                        if (--ourProjectCount <= 0 && !keepApplicationEnvironment) {
                             disposeApplicationEnvironment()
                         }
                     }
@@ -267,10 +304,15 @@ public class KotlinCoreEnvironment private(
 
         private fun getOrCreateApplicationEnvironmentForProduction(configuration: CompilerConfiguration, configFilePaths: List<String>): JavaCoreApplicationEnvironment {
             synchronized (APPLICATION_LOCK) {
-                if (ourApplicationEnvironment != null) return ourApplicationEnvironment!!
+                if (ourApplicationEnvironment != null) {
+                    if (ourProjectCount > 0 || ourConfigFilePaths == configFilePaths) return ourApplicationEnvironment!!
+                    // Kept alive after a compilation with other configuration files, e.g. for another platform
+                    disposeApplicationEnvironment()
+                }
 
                 val parentDisposable = Disposer.newDisposable()
                 ourApplicationEnvironment = createApplicationEnvironment(parentDisposable, configuration, configFilePaths)
+                ourConfigFilePaths = configFilePaths
                 ourProjectCount = 0
                 Disposer.register(parentDisposable, object : Disposable {
                     override fun dispose() {
@@ -283,7 +325,17 @@ public class KotlinCoreEnvironment private(
             }
         }
 
-        public fun disposeApplicationEnvironment() {
+        /**
+         * Keeps the application environment with its caches, e.g. the jar file systems, when the last project is disposed,
+         * so that the next compilations in the same process reuse it. Used by the compile daemon
+         */
+        platformStatic public fun setKeepApplicationEnvironment(keep: Boolean) {
+            synchronized (APPLICATION_LOCK) {
+                keepApplicationEnvironment = keep
+            }
+        }
+
+        platformStatic public fun disposeApplicationEnvironment() {
             synchronized (APPLICATION_LOCK) {
                 if (ourApplicationEnvironment == null) return
                 val environment = ourApplicationEnvironment
@@ -343,6 +395,7 @@ public class KotlinCoreEnvironment private(
             // ability to get text from annotations xml files
             applicationEnvironment.registerFileType(PlainTextFileType.INSTANCE, "xml")
             applicationEnvironment.registerParserDefinition(JavaParserDefinition())
+            applicationEnvironment.getApplication().registerService(javaClass<MappedJarFileSystem>(), MappedJarFileSystem())
         }
 
         // made public for Upsource
@@ -351,7 +404,9 @@ public class KotlinCoreEnvironment private(
                 registerFileType(JetFileType.INSTANCE, "kt")
                 registerFileType(JetFileType.INSTANCE, JetParserDefinition.STD_SCRIPT_SUFFIX)
                 registerParserDefinition(JetParserDefinition())
-                getApplication().registerService(javaClass<KotlinBinaryClassCache>(), KotlinBinaryClassCache())
+                getApplication().registerService(
+                        javaClass<KotlinBinaryClassCache>(), KotlinBinaryClassCache(KotlinBinaryClassCache.COMPILER_MAX_SIZE_IN_BYTES)
+                )
             }
         }
 
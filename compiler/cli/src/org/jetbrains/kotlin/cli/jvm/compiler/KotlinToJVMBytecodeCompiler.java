@@ -17,7 +17,6 @@
 package org.jetbrains.kotlin.cli.jvm.compiler;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.util.ArrayUtil;
@@ -32,6 +31,8 @@ import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
 import org.jetbrains.kotlin.cli.common.CompilerPlugin;
 import org.jetbrains.kotlin.cli.common.CompilerPluginContext;
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
 import org.jetbrains.kotlin.cli.common.modules.Module;
 import org.jetbrains.kotlin.cli.common.output.outputUtils.OutputUtilsPackage;
@@ -42,6 +43,7 @@ import org.jetbrains.kotlin.codegen.state.Progress;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.context.ContextPackage;
 import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl;
+import org.jetbrains.kotlin.extensions.ExtensionCosts;
 import org.jetbrains.kotlin.idea.MainFunctionDetector;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
 import org.jetbrains.kotlin.load.kotlin.incremental.cache.IncrementalCache;
@@ -54,17 +56,24 @@ import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
 import org.jetbrains.kotlin.resolve.BindingTrace;
 import org.jetbrains.kotlin.resolve.BindingTraceContext;
 import org.jetbrains.kotlin.resolve.ScriptNameUtil;
+import org.jetbrains.kotlin.resolve.TopDownAnalysisMode;
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName;
 import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
 import org.jetbrains.kotlin.utils.KotlinPaths;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 import static org.jetbrains.kotlin.cli.jvm.config.ConfigPackage.*;
 import static org.jetbrains.kotlin.config.ConfigPackage.addKotlinSourceRoots;
@@ -102,7 +111,8 @@ public class KotlinToJVMBytecodeCompiler {
             @Nullable FqName mainClass
     ) {
         if (jarPath != null) {
-            CompileEnvironmentUtil.writeToJar(jarPath, jarRuntime, mainClass, outputFiles);
+            boolean compress = !configuration.get(JVMConfigurationKeys.UNCOMPRESSED_JAR, false);
+            CompileEnvironmentUtil.writeToJar(jarPath, jarRuntime, mainClass, outputFiles, compress);
         }
         else {
             MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
@@ -117,12 +127,17 @@ public class KotlinToJVMBytecodeCompiler {
             @Nullable File jarPath,
             boolean jarRuntime
     ) {
-        Map<Module, ClassFileFactory> outputFiles = Maps.newHashMap();
-
         CompilerConfiguration compilerConfiguration = createCompilerConfiguration(configuration, chunk, directory);
 
+        MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
+        boolean compress = !configuration.get(JVMConfigurationKeys.UNCOMPRESSED_JAR, false);
+        ModuleOutputWriter outputWriter = new ModuleOutputWriter(messageCollector, jarPath, jarRuntime, compress);
+
+        // All modules of the chunk are analyzed together, so they share the environment and the descriptors of the libraries.
+        // The code is generated module by module on this thread, because the results of the analysis are not thread-safe
         Disposable parentDisposable = Disposer.newDisposable();
         KotlinCoreEnvironment environment = null;
+        boolean success = false;
         try {
             environment = KotlinCoreEnvironment
                     .createForProduction(parentDisposable, compilerConfiguration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
@@ -143,20 +158,23 @@ public class KotlinToJVMBytecodeCompiler {
                             }
                         }
                 );
-                GenerationState generationState =
-                        generate(environment, result, jetFiles, module.getModuleName(), new File(module.getOutputDirectory()));
-                outputFiles.put(module, generationState.getFactory());
+                File outputDirectory = new File(module.getOutputDirectory());
+                GenerationState generationState = generate(environment, result, jetFiles, module.getModuleName(), outputDirectory);
+                outputWriter.write(generationState.getFactory(), outputDirectory);
+                generationState.destroy();
             }
+            success = true;
         }
         finally {
+            if (!success) {
+                outputWriter.cancel();
+            }
             if (environment != null) {
                 Disposer.dispose(parentDisposable);
             }
         }
 
-        for (Module module : chunk) {
-            writeOutput(configuration, outputFiles.get(module), new File(module.getOutputDirectory()), jarPath, jarRuntime, null);
-        }
+        outputWriter.finish();
         return true;
     }
 
@@ -238,11 +256,17 @@ public class KotlinToJVMBytecodeCompiler {
     public static void compileAndExecuteScript(
             @NotNull CompilerConfiguration configuration,
             @NotNull KotlinPaths paths,
-            @NotNull KotlinCoreEnvironment environment,
+            @NotNull Disposable rootDisposable,
             @NotNull List<String> scriptArgs
     ) {
-        Class<?> scriptClass = compileScript(configuration, paths, environment);
-        if (scriptClass == null) return;
+        CompiledScriptCache scriptCache = CompiledScriptCache.create(configuration, paths);
+        Class<?> scriptClass = scriptCache != null ? scriptCache.load(createScriptParentClassLoader(configuration, paths)) : null;
+        if (scriptClass == null) {
+            KotlinCoreEnvironment environment =
+                    KotlinCoreEnvironment.createForProduction(rootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+            scriptClass = compileScript(configuration, paths, environment, scriptCache);
+            if (scriptClass == null) return;
+        }
 
         try {
             scriptClass.getConstructor(String[].class).newInstance(new Object[] {ArrayUtil.toStringArray(scriptArgs)});
@@ -260,6 +284,16 @@ public class KotlinToJVMBytecodeCompiler {
             @NotNull CompilerConfiguration configuration,
             @NotNull KotlinPaths paths,
             @NotNull KotlinCoreEnvironment environment
+    ) {
+        return compileScript(configuration, paths, environment, null);
+    }
+
+    @Nullable
+    private static Class<?> compileScript(
+            @NotNull CompilerConfiguration configuration,
+            @NotNull KotlinPaths paths,
+            @NotNull KotlinCoreEnvironment environment,
+            @Nullable CompiledScriptCache scriptCache
     ) {
         List<AnalyzerScriptParameter> scriptParameters = environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS);
         if (!scriptParameters.isEmpty()) {
@@ -272,22 +306,40 @@ public class KotlinToJVMBytecodeCompiler {
             return null;
         }
 
-        GeneratedClassLoader classLoader;
+        FqName nameForScript = ScriptNameUtil.classNameForScript(environment.getSourceFiles().get(0).getScript());
+
+        if (scriptCache != null) {
+            try {
+                scriptCache.store(state.getFactory(), nameForScript);
+            }
+            catch (IOException e) {
+                MessageCollector collector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY);
+                assert collector != null;
+                collector.report(CompilerMessageSeverity.WARNING, "Could not cache the compiled script: " + e.getMessage(),
+                                 CompilerMessageLocation.NO_LOCATION);
+            }
+        }
+
+        try {
+            GeneratedClassLoader classLoader = new GeneratedClassLoader(state.getFactory(), createScriptParentClassLoader(configuration, paths));
+            return classLoader.loadClass(nameForScript.asString());
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate script: " + e, e);
+        }
+    }
+
+    @NotNull
+    private static ClassLoader createScriptParentClassLoader(@NotNull CompilerConfiguration configuration, @NotNull KotlinPaths paths) {
         try {
             List<URL> classPaths = Lists.newArrayList(paths.getRuntimePath().toURI().toURL());
             for (File file : getJvmClasspathRoots(configuration)) {
                 classPaths.add(file.toURI().toURL());
             }
             //noinspection UnnecessaryFullyQualifiedName
-            classLoader = new GeneratedClassLoader(state.getFactory(),
-                                                   new URLClassLoader(classPaths.toArray(new URL[classPaths.size()]),
-                                                                      kotlin.KotlinPackage.class.getClassLoader())
-            );
-
-            FqName nameForScript = ScriptNameUtil.classNameForScript(environment.getSourceFiles().get(0).getScript());
-            return classLoader.loadClass(nameForScript.asString());
+            return new URLClassLoader(classPaths.toArray(new URL[classPaths.size()]), kotlin.KotlinPackage.class.getClassLoader());
         }
-        catch (Exception e) {
+        catch (MalformedURLException e) {
             throw new RuntimeException("Failed to evaluate script: " + e, e);
         }
     }
@@ -319,10 +371,16 @@ public class KotlinToJVMBytecodeCompiler {
                         BindingTrace sharedTrace = new CliLightClassGenerationSupport.NoScopeRecordCliBindingTrace();
                         ModuleDescriptorImpl analyzeModule = TopDownAnalyzerFacadeForJVM.createSealedJavaModule();
 
-                        return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
+                        // Bodies of non-inline functions are not needed to generate ABI stubs
+                        TopDownAnalysisMode mode = environment.getConfiguration().get(JVMConfigurationKeys.GENERATE_ABI_STUBS, false)
+                                                   ? TopDownAnalysisMode.TopLevelDeclarationsOnly
+                                                   : TopDownAnalysisMode.TopLevelDeclarations;
+
+                        return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
                                 ContextPackage.ModuleContext(analyzeModule, environment.getProject()),
                                 environment.getSourceFiles(),
                                 sharedTrace,
+                                mode,
                                 environment.getConfiguration().get(JVMConfigurationKeys.MODULE_IDS),
                                 environment.getConfiguration().get(JVMConfigurationKeys.INCREMENTAL_CACHE_PROVIDER)
                         );
@@ -335,8 +393,9 @@ public class KotlinToJVMBytecodeCompiler {
 
         CompilerPluginContext context = new CompilerPluginContext(environment.getProject(), result.getBindingContext(),
                                                                   environment.getSourceFiles());
+        ExtensionCosts costs = ExtensionCosts.Companion.getInstance(environment.getProject());
         for (CompilerPlugin plugin : environment.getConfiguration().getList(CLIConfigurationKeys.COMPILER_PLUGINS)) {
-            plugin.processFiles(context);
+            (costs != null ? costs.wrap(plugin, CompilerPlugin.class) : plugin).processFiles(context);
         }
 
         return analyzerWithCompilerReport.hasErrors() ? null : result;
@@ -367,7 +426,9 @@ public class KotlinToJVMBytecodeCompiler {
         BindingTraceContext diagnosticHolder = new BindingTraceContext();
         GenerationState generationState = new GenerationState(
                 environment.getProject(),
-                ClassBuilderFactories.BINARIES,
+                configuration.get(JVMConfigurationKeys.GENERATE_ABI_STUBS, false)
+                ? ClassBuilderFactories.ABI_BINARIES
+                : ClassBuilderFactories.BINARIES,
                 Progress.DEAF,
                 result.getModuleDescriptor(),
                 result.getBindingContext(),
@@ -382,6 +443,21 @@ public class KotlinToJVMBytecodeCompiler {
                 diagnosticHolder,
                 outputDirectory
         );
+        if (configuration.get(JVMConfigurationKeys.SHARED_STRING_TABLE, false)) {
+            if (incrementalCacheProvider == null) {
+                generationState.setSharedStringTablePath(getSharedStringTablePath(moduleId, sourceFiles));
+            }
+            else {
+                // With incremental compilation only a part of the classes is regenerated, so the shared table would miss strings
+                // of the rest
+                configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                        CompilerMessageSeverity.WARNING,
+                        "Shared string table is not supported in incremental compilation, classes of " +
+                        (moduleId != null ? "module " + moduleId : "the module") + " get their own string tables",
+                        CompilerMessageLocation.NO_LOCATION
+                );
+            }
+        }
         KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
         AnalyzerWithCompilerReport.reportDiagnostics(
                 new FilteredJvmDiagnostics(
@@ -392,4 +468,52 @@ public class KotlinToJVMBytecodeCompiler {
         );
         return generationState;
     }
+
+    /**
+     * The path of the shared string table must be unique on the class path, because the reflection can only look it up by name
+     * in the class loader. It's derived from the packages, the names and the contents of the source files, which determine the contents
+     * of the table. So the table of a module compiled from changed sources gets another name, and the classes left in the output
+     * from an earlier compilation still refer to the table they were compiled with
+     */
+    @NotNull
+    private static String getSharedStringTablePath(@Nullable String moduleId, @NotNull List<JetFile> sourceFiles) {
+        List<JetFile> files = Lists.newArrayList(sourceFiles);
+        Collections.sort(files, new Comparator<JetFile>() {
+            @Override
+            public int compare(@NotNull JetFile file1, @NotNull JetFile file2) {
+                return getPath(file1).compareTo(getPath(file2));
+            }
+        });
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Charset charset = Charset.forName("UTF-8");
+        for (JetFile file : files) {
+            byte[] text = file.getText().getBytes(charset);
+            digest.update((getPath(file) + "\n" + text.length + "\n").getBytes(charset));
+            digest.update(text);
+        }
+
+        StringBuilder path = new StringBuilder("META-INF/");
+        if (moduleId != null) {
+            path.append(moduleId).append('-');
+        }
+        // 8 bytes of the digest are enough to tell modules apart
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            path.append(String.format("%02x", hash[i] & 0xff));
+        }
+        return path.append(".kotlin_string_table").toString();
+    }
+
+    // Not the absolute path, so that the same sources compiled in another directory give the same table
+    @NotNull
+    private static String getPath(@NotNull JetFile file) {
+        return file.getPackageFqName().asString() + "/" + file.getName();
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import kotlin.Function2;
+import kotlin.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil;
+import org.jetbrains.kotlin.cli.common.output.outputUtils.OutputUtilsPackage;
+import org.jetbrains.kotlin.codegen.ClassFileFactory;
+import org.jetbrains.kotlin.utils.UtilsPackage;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Writes the classes of the modules compiled together on a background thread, so that the output of a module is written
+ * while the next one is generated, and the classes of a module aren't kept in memory after they're written.
+ *
+ * The modules are written in the order they are generated, and the output messages are reported on the compiling thread
+ * in the same order by {@link #finish()}, so the result doesn't depend on the timing
+ */
+class ModuleOutputWriter {
+    private final MessageCollector messageCollector;
+    private final File jarPath;
+    private final boolean jarRuntime;
+    private final boolean compressJar;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, "Kotlin module output writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final List<Future<List<String>>> writes = Lists.newArrayList();
+
+    ModuleOutputWriter(@NotNull MessageCollector messageCollector, @Nullable File jarPath, boolean jarRuntime, boolean compressJar) {
+        this.messageCollector = messageCollector;
+        this.jarPath = jarPath;
+        this.jarRuntime = jarRuntime;
+        this.compressJar = compressJar;
+    }
+
+    /**
+     * Schedules writing the classes of a module. The factory must not be changed afterwards
+     */
+    void write(@NotNull final ClassFileFactory outputFiles, @NotNull final File outputDirectory) {
+        writes.add(executor.submit(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                final List<String> outputMessages = Lists.newArrayList();
+                if (jarPath != null) {
+                    CompileEnvironmentUtil.writeToJar(jarPath, jarRuntime, null, outputFiles, compressJar);
+                }
+                else {
+                    OutputUtilsPackage.writeAll(outputFiles, outputDirectory, new Function2<List<? extends File>, File, Unit>() {
+                        @Override
+                        public Unit invoke(List<? extends File> sources, File output) {
+                            outputMessages.add(OutputMessageUtil.formatOutputMessage(sources, output));
+                            return Unit.INSTANCE$;
+                        }
+                    });
+                }
+                return outputMessages;
+            }
+        }));
+    }
+
+    /**
+     * Waits until all scheduled modules are written and reports their output
+     */
+    void finish() {
+        executor.shutdown();
+        try {
+            for (Future<List<String>> write : writes) {
+                for (String message : write.get()) {
+                    messageCollector.report(CompilerMessageSeverity.OUTPUT, message, CompilerMessageLocation.NO_LOCATION);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw UtilsPackage.rethrow(e);
+        }
+        catch (ExecutionException e) {
+            throw UtilsPackage.rethrow(e.getCause());
+        }
+        finally {
+            writes.clear();
+        }
+    }
+
+    /**
+     * Stops writing after the compilation has failed, leaving the output of the modules which are already written
+     */
+    void cancel() {
+        executor.shutdownNow();
+        writes.clear();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.Computable
+import com.intellij.psi.impl.source.tree.TreeUtil
+import org.jetbrains.kotlin.idea.JetFileType
+import org.jetbrains.kotlin.psi.JetFile
+import org.jetbrains.kotlin.utils.rethrow
+import java.lang.management.ManagementFactory
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Reads and parses source files on a pool of threads before the analysis, which otherwise parses them one by one on first access.
+ *
+ * Only the syntax trees of the files are built here, so the files keep their identity and order, and the PSI is created later
+ * by the thread which uses it. Trees of different files are independent, but loading the tree of a file takes the global
+ * PsiLock.LOCK, so the time the workers are blocked on locks is measured to see how much of the parsing runs in parallel.
+ *
+ * Scripts are left to be parsed lazily, because the way a script is parsed depends on the script definitions,
+ * which may be registered after the environment is created
+ */
+object ParallelSourceParser {
+    private val THREAD_COUNT = Runtime.getRuntime().availableProcessors()
+
+    public class Statistics(
+            public val fileCount: Int,
+            public val threadCount: Int,
+            public val wallTimeMillis: Long,
+            public val parsingTimeMillis: Long,
+            // Null if the JVM doesn't measure the time threads are blocked on monitors
+            public val blockedTimeMillis: Long?
+    ) {
+        override fun toString(): String {
+            val blocked = if (blockedTimeMillis != null) ", blocked on locks for $blockedTimeMillis ms of it" else ""
+            return "Parsed $fileCount source files on $threadCount threads in $wallTimeMillis ms: " +
+                   "$parsingTimeMillis ms of parsing in total$blocked"
+        }
+    }
+
+    /**
+     * @return how long the parsing took, or null if there are no source files to parse
+     */
+    public fun parse(files: List<JetFile>): Statistics? {
+        val sources = files.filter { it.getVirtualFile()?.getExtension() == JetFileType.INSTANCE.getDefaultExtension() }
+        if (sources.isEmpty()) return null
+
+        val threadBean = ManagementFactory.getThreadMXBean()
+        val measureBlockedTime = threadBean.isThreadContentionMonitoringSupported()
+        val contentionMonitoringWasEnabled = measureBlockedTime && threadBean.isThreadContentionMonitoringEnabled()
+        if (measureBlockedTime && !contentionMonitoringWasEnabled) {
+            threadBean.setThreadContentionMonitoringEnabled(true)
+        }
+
+        val threadCount = Math.min(THREAD_COUNT, sources.size())
+        val threads = CopyOnWriteArrayList<Thread>()
+        val executor = Executors.newFixedThreadPool(threadCount, object : ThreadFactory {
+            override fun newThread(r: Runnable): Thread {
+                val thread = Thread(r, "Kotlin source parser")
+                thread.setDaemon(true)
+                threads.add(thread)
+                return thread
+            }
+        })
+        try {
+            val parsingTime = AtomicLong()
+            val tasks = sources.map { file ->
+                Callable<Unit> {
+                    val start = System.nanoTime()
+                    ApplicationManager.getApplication().runReadAction(Computable {
+                        TreeUtil.ensureParsed(file.getNode())
+                    })
+                    parsingTime.addAndGet(System.nanoTime() - start)
+                }
+            }
+
+            val start = System.nanoTime()
+            for (future in executor.invokeAll(tasks)) {
+                try {
+                    future.get()
+                }
+                catch (e: ExecutionException) {
+                    throw rethrow(e.getCause() ?: e)
+                }
+            }
+            val wallTime = System.nanoTime() - start
+
+            // The workers are still alive, the pool is shut down below
+            val blockedTime =
+                    if (measureBlockedTime) threads.map { threadBean.getThreadInfo(it.getId())?.getBlockedTime() ?: 0L }.sum()
+                    else null
+
+            return Statistics(sources.size(), threadCount, TimeUnit.NANOSECONDS.toMillis(wallTime),
+                              TimeUnit.NANOSECONDS.toMillis(parsingTime.get()), blockedTime)
+        }
+        finally {
+            executor.shutdownNow()
+            if (measureBlockedTime && !contentionMonitoringWasEnabled) {
+                threadBean.setThreadContentionMonitoringEnabled(false)
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.DeprecatedVirtualFileSystem
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.File
+import java.io.IOException
+import java.util.LinkedHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Read-only file system for jars on the compiler classpath, an alternative to CoreJarFileSystem which avoids building
+ * a tree of entries for each jar and inflating an entry each time its contents are requested.
+ *
+ * Each jar is memory-mapped and indexed by [MappedJarHandler], virtual files are created only for entries which are
+ * actually looked up. Decompressed contents of recently read entries are kept in a cache bounded by their total size.
+ * The mappings are released when the file system is disposed together with the application
+ */
+public class MappedJarFileSystem(private val maxCachedContentsSizeInBytes: Long = DEFAULT_MAX_CACHED_CONTENTS_SIZE_IN_BYTES) :
+        DeprecatedVirtualFileSystem(), Disposable {
+    private val roots = ConcurrentHashMap<String, MappedJarVirtualFile>()
+
+    // Jars which can't be read by this file system, e.g. ZIP64 archives
+    private val unsupportedJars = ConcurrentHashMap<String, Boolean>()
+
+    // Access order, the least recently used entry goes first. Guarded by itself
+    private val cachedContents = LinkedHashMap<MappedJarVirtualFile, ByteArray>(256, 0.75f, true)
+    private var cachedContentsSizeInBytes = 0L
+
+    override fun getProtocol(): String = StandardFileSystems.JAR_PROTOCOL
+
+    /**
+     * @return the root of the given jar, or null if it can't be read by this file system, in which case
+     * the caller is expected to use the default jar file system
+     */
+    public fun findJarRoot(jar: File): VirtualFile? {
+        val path = FileUtil.toSystemIndependentName(jar.getAbsolutePath())
+        roots[path]?.let { return it }
+        if (unsupportedJars.containsKey(path)) return null
+
+        val handler = try {
+            MappedJarHandler(jar.getAbsoluteFile())
+        }
+        catch (e: IOException) {
+            LOG.debug("Falling back to the default jar file system for $jar: ${e.getMessage()}")
+            unsupportedJars[path] = true
+            return null
+        }
+
+        val root = MappedJarVirtualFile(this, handler, jar.getName(), "", null, true, -1)
+        return roots.putIfAbsent(path, root) ?: root
+    }
+
+    override fun findFileByPath(path: String): VirtualFile? {
+        val separator = path.indexOf(JAR_SEPARATOR)
+        if (separator < 0) return null
+
+        val root = findJarRoot(File(path.substring(0, separator))) ?: return null
+        val relativePath = path.substring(separator + JAR_SEPARATOR.length())
+        return if (relativePath.isEmpty()) root else root.findFileByRelativePath(relativePath)
+    }
+
+    override fun refreshAndFindFileByPath(path: String): VirtualFile? = findFileByPath(path)
+
+    override fun refresh(asynchronous: Boolean) {
+    }
+
+    override fun isReadOnly(): Boolean = true
+
+    override fun dispose() {
+        for (root in roots.values()) {
+            root.handler.close()
+        }
+        roots.clear()
+        synchronized (cachedContents) {
+            cachedContents.clear()
+            cachedContentsSizeInBytes = 0
+        }
+    }
+
+    internal fun getContents(file: MappedJarVirtualFile, handler: MappedJarHandler, entry: Int): ByteArray {
+        synchronized (cachedContents) {
+            cachedContents[file]?.let { return it }
+        }
+
+        // Entries are inflated outside of the lock, several threads may read the same entry at once, the last one wins
+        val contents = handler.getContents(entry)
+        if (contents.size() > maxCachedContentsSizeInBytes / 8) return contents
+
+        synchronized (cachedContents) {
+            cachedContents.put(file, contents)?.let { cachedContentsSizeInBytes -= it.size() }
+            cachedContentsSizeInBytes += contents.size()
+
+            val iterator = cachedContents.values().iterator()
+            while (cachedContentsSizeInBytes > maxCachedContentsSizeInBytes && iterator.hasNext()) {
+                cachedContentsSizeInBytes -= iterator.next().size()
+                iterator.remove()
+            }
+        }
+
+        return contents
+    }
+
+    override fun deleteFile(requestor: Any?, vFile: VirtualFile) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun moveFile(requestor: Any?, vFile: VirtualFile, newParent: VirtualFile) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun renameFile(requestor: Any?, vFile: VirtualFile, newName: String) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun createChildFile(requestor: Any?, vDir: VirtualFile, fileName: String): VirtualFile =
+            throw UnsupportedOperationException()
+
+    override fun createChildDirectory(requestor: Any?, vDir: VirtualFile, dirName: String): VirtualFile =
+            throw UnsupportedOperationException()
+
+    override fun copyFile(requestor: Any?, virtualFile: VirtualFile, newParent: VirtualFile, copyName: String): VirtualFile =
+            throw UnsupportedOperationException()
+
+    companion object {
+        private val LOG = Logger.getInstance(javaClass<MappedJarFileSystem>())
+
+        private val DEFAULT_MAX_CACHED_CONTENTS_SIZE_IN_BYTES = 16L * 1024 * 1024
+
+        internal val JAR_SEPARATOR = "!/"
+    }
+}
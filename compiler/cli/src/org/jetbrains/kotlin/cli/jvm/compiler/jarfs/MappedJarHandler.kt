@@ -0,0 +1,351 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import com.intellij.openapi.diagnostic.Logger
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Arrays
+import java.util.Comparator
+import java.util.zip.Inflater
+
+/**
+ * Index of a jar file built from its central directory, which is memory-mapped together with the rest of the file.
+ *
+ * Entries are kept in a few parallel arrays sorted by entry name, the names themselves are not copied from the mapped
+ * buffer. This way no objects are created per entry, and all entries of a directory form a contiguous range of indices,
+ * so that both lookup of a single entry and listing of a directory are binary searches.
+ *
+ * Only the subset of the format produced by the usual tools is supported: no ZIP64, no jars larger than 2 GB and
+ * no compression methods other than STORED and DEFLATED. An [IOException] is thrown for anything else, in which case
+ * the caller should fall back to the default jar file system.
+ *
+ * The mapping is released by [close], after which the handler can't be used anymore
+ */
+public class MappedJarHandler(public val file: File) {
+    private val buffer: ByteBuffer
+
+    private val entryCount: Int
+
+    // Parallel arrays indexed by the position of the entry in the sorted order
+    private val nameOffsets: IntArray
+    private val nameLengths: IntArray
+    private val methods: IntArray
+    private val crcs: IntArray
+    private val compressedSizes: IntArray
+    private val sizes: IntArray
+    private val localHeaderOffsets: IntArray
+
+    public val timeStamp: Long = file.lastModified()
+
+    volatile private var closed = false
+
+    init {
+        buffer = map(file)
+
+        val endOfCentralDirectory = findEndOfCentralDirectory(buffer)
+        if (endOfCentralDirectory < 0) failToOpen("End of central directory is not found")
+        // 0xFFFF is a valid number of entries, only the locator tells that it is a placeholder for the number in the ZIP64 record
+        if (endOfCentralDirectory >= ZIP64_LOCATOR_SIZE &&
+            buffer.getInt(endOfCentralDirectory - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE) {
+            failToOpen("ZIP64 archives are not supported")
+        }
+
+        val count = buffer.getUnsignedShort(endOfCentralDirectory + 10)
+        val centralDirectoryOffset = buffer.getInt(endOfCentralDirectory + 16)
+        if (centralDirectoryOffset < 0 || centralDirectoryOffset > endOfCentralDirectory) {
+            failToOpen("Malformed end of central directory")
+        }
+
+        val unsortedNameOffsets = IntArray(count)
+        val unsortedCentralOffsets = IntArray(count)
+        var offset = centralDirectoryOffset
+        for (i in 0..count - 1) {
+            if (offset > endOfCentralDirectory - 46 || buffer.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+                failToOpen("Malformed central directory")
+            }
+            unsortedCentralOffsets[i] = offset
+            unsortedNameOffsets[i] = offset + 46
+            offset += 46 + buffer.getUnsignedShort(offset + 28) + buffer.getUnsignedShort(offset + 30) + buffer.getUnsignedShort(offset + 32)
+        }
+
+        // Sorting is the only place where objects are created per entry, and they die right away
+        val order = Array(count) { it }
+        Arrays.sort(order, object : Comparator<Int> {
+            override fun compare(o1: Int, o2: Int): Int {
+                val centralOffset1 = unsortedCentralOffsets[o1]
+                val centralOffset2 = unsortedCentralOffsets[o2]
+                return compareBytes(unsortedNameOffsets[o1], buffer.getUnsignedShort(centralOffset1 + 28),
+                                    unsortedNameOffsets[o2], buffer.getUnsignedShort(centralOffset2 + 28))
+            }
+        })
+
+        entryCount = count
+        nameOffsets = IntArray(count)
+        nameLengths = IntArray(count)
+        methods = IntArray(count)
+        crcs = IntArray(count)
+        compressedSizes = IntArray(count)
+        sizes = IntArray(count)
+        localHeaderOffsets = IntArray(count)
+        for ((i, unsortedIndex) in order.withIndex()) {
+            val centralOffset = unsortedCentralOffsets[unsortedIndex]
+            nameOffsets[i] = unsortedNameOffsets[unsortedIndex]
+            nameLengths[i] = buffer.getUnsignedShort(centralOffset + 28)
+            methods[i] = buffer.getUnsignedShort(centralOffset + 10)
+            crcs[i] = buffer.getInt(centralOffset + 16)
+            compressedSizes[i] = buffer.getInt(centralOffset + 20)
+            sizes[i] = buffer.getInt(centralOffset + 24)
+            localHeaderOffsets[i] = buffer.getInt(centralOffset + 42)
+        }
+    }
+
+    /**
+     * @return index of the entry with exactly this name, or a negative number if there's no such entry
+     */
+    public fun findEntry(name: ByteArray): Int {
+        checkNotClosed()
+        val index = lowerBound(name, name.size())
+        return if (index < entryCount && compareWithName(index, name, name.size()) == 0) index else -1
+    }
+
+    /**
+     * @return whether there are entries with names starting with the given prefix, e.g. "a/b/" for a directory
+     */
+    public fun hasEntriesWithPrefix(prefix: ByteArray): Boolean {
+        checkNotClosed()
+        val index = lowerBound(prefix, prefix.size())
+        return index < entryCount && startsWith(index, prefix)
+    }
+
+    /**
+     * Calls [processor] with the name of each immediate child of the directory with the given prefix (e.g. "a/b/", or ""
+     * for the root) and the index of its entry, which is negative for directories. Directories are reported even if
+     * the jar doesn't have entries for them, as long as there are files in them
+     */
+    public fun processChildren(directoryPrefix: ByteArray, processor: (name: String, entry: Int) -> Unit) {
+        checkNotClosed()
+        var index = lowerBound(directoryPrefix, directoryPrefix.size())
+        var lastDirectory: String? = null
+        while (index < entryCount && startsWith(index, directoryPrefix)) {
+            val entry = index++
+            val rest = String(nameBytes(entry, directoryPrefix.size()), Charsets.UTF_8)
+
+            val slash = rest.indexOf('/')
+            if (slash < 0) {
+                if (rest.isNotEmpty()) processor(rest, entry)
+            }
+            else if (slash > 0) {
+                val directory = rest.substring(0, slash)
+                // All entries in the same subdirectory go one after another, because they share the prefix
+                if (directory != lastDirectory) {
+                    lastDirectory = directory
+                    processor(directory, -1)
+                }
+            }
+        }
+    }
+
+    public fun getEntryCount(): Int = entryCount
+
+    public fun getName(entry: Int): String {
+        checkNotClosed()
+        return String(nameBytes(entry, 0), Charsets.UTF_8)
+    }
+
+    public fun getSize(entry: Int): Int = sizes[entry]
+
+    /**
+     * @return compression method of the entry, either [STORED] or [DEFLATED]
+     */
+    public fun getMethod(entry: Int): Int = methods[entry]
+
+    public fun getCrc(entry: Int): Int = crcs[entry]
+
+    /**
+     * @return data of the entry as it's stored in the jar, compressed with [getMethod]
+     */
+    public fun getRawContents(entry: Int): ByteArray {
+        checkNotClosed()
+        val localHeaderOffset = localHeaderOffsets[entry]
+        if (buffer.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) throw IOException("Malformed local header in $file")
+
+        val dataOffset = localHeaderOffset + 30 + buffer.getUnsignedShort(localHeaderOffset + 26) +
+                         buffer.getUnsignedShort(localHeaderOffset + 28)
+        val compressed = ByteArray(compressedSizes[entry])
+        val slice = buffer.duplicate()
+        slice.position(dataOffset)
+        slice.get(compressed)
+        return compressed
+    }
+
+    public fun getContents(entry: Int): ByteArray {
+        val compressed = getRawContents(entry)
+
+        return when (methods[entry]) {
+            STORED -> compressed
+            DEFLATED -> {
+                val result = ByteArray(sizes[entry])
+                val inflater = Inflater(true)
+                try {
+                    inflater.setInput(compressed)
+                    var read = 0
+                    while (read < result.size()) {
+                        val count = inflater.inflate(result, read, result.size() - read)
+                        if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                            throw IOException("Unexpected end of compressed data in $file")
+                        }
+                        read += count
+                    }
+                }
+                finally {
+                    inflater.end()
+                }
+                result
+            }
+            else -> throw IOException("Unsupported compression method ${methods[entry]} in $file")
+        }
+    }
+
+    private fun lowerBound(key: ByteArray, keyLength: Int): Int {
+        var low = 0
+        var high = entryCount
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (compareWithName(middle, key, keyLength) < 0) low = middle + 1 else high = middle
+        }
+        return low
+    }
+
+    // Compares the name of the entry with the key
+    private fun compareWithName(entry: Int, key: ByteArray, keyLength: Int): Int {
+        val offset = nameOffsets[entry]
+        val length = nameLengths[entry]
+        for (i in 0..Math.min(length, keyLength) - 1) {
+            val difference = (buffer.get(offset + i).toInt() and 0xFF) - (key[i].toInt() and 0xFF)
+            if (difference != 0) return difference
+        }
+        return length - keyLength
+    }
+
+    private fun compareBytes(offset1: Int, length1: Int, offset2: Int, length2: Int): Int {
+        for (i in 0..Math.min(length1, length2) - 1) {
+            val difference = (buffer.get(offset1 + i).toInt() and 0xFF) - (buffer.get(offset2 + i).toInt() and 0xFF)
+            if (difference != 0) return difference
+        }
+        return length1 - length2
+    }
+
+    private fun startsWith(entry: Int, prefix: ByteArray): Boolean {
+        if (nameLengths[entry] < prefix.size()) return false
+        val offset = nameOffsets[entry]
+        for (i in prefix.indices) {
+            if (buffer.get(offset + i) != prefix[i]) return false
+        }
+        return true
+    }
+
+    private fun nameBytes(entry: Int, from: Int): ByteArray {
+        val result = ByteArray(nameLengths[entry] - from)
+        for (i in result.indices) {
+            result[i] = buffer.get(nameOffsets[entry] + from + i)
+        }
+        return result
+    }
+
+    /**
+     * Releases the mapping of the jar, so that the file is not locked anymore, e.g. on Windows. Accessing the buffer
+     * after that would crash the VM, so the handler throws an exception on any further use
+     */
+    public fun close() {
+        if (closed) return
+        closed = true
+        unmap(buffer)
+    }
+
+    private fun failToOpen(message: String): Nothing {
+        unmap(buffer)
+        throw IOException("$message: $file")
+    }
+
+    private fun checkNotClosed() {
+        if (closed) throw IOException("Jar is already closed: $file")
+    }
+
+    override fun toString(): String = "MappedJarHandler: $file"
+
+    companion object {
+        private val LOG = Logger.getInstance(javaClass<MappedJarHandler>())
+
+        private val LOCAL_HEADER_SIGNATURE = 0x04034b50
+        private val CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50
+        private val END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50
+        private val END_OF_CENTRAL_DIRECTORY_SIZE = 22
+        private val ZIP64_LOCATOR_SIGNATURE = 0x07064b50
+        private val ZIP64_LOCATOR_SIZE = 20
+        private val MAX_COMMENT_SIZE = 0xFFFF
+
+        private val STORED = 0
+        private val DEFLATED = 8
+
+        private fun map(file: File): MappedByteBuffer {
+            val randomAccessFile = RandomAccessFile(file, "r")
+            try {
+                // A mapped buffer is indexed by ints, and map() throws IllegalArgumentException for larger sizes
+                if (randomAccessFile.length() > Integer.MAX_VALUE) throw IOException("Jars larger than 2 GB are not supported: $file")
+
+                // The mapping stays valid after the channel is closed
+                val buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length())
+                buffer.order(ByteOrder.LITTLE_ENDIAN)
+                return buffer
+            }
+            finally {
+                randomAccessFile.close()
+            }
+        }
+
+        // There's no public API to release a mapping before the buffer is garbage collected
+        private fun unmap(buffer: ByteBuffer) {
+            try {
+                val cleanerMethod = buffer.javaClass.getMethod("cleaner")
+                cleanerMethod.setAccessible(true)
+                val cleaner = cleanerMethod.invoke(buffer) ?: return
+                cleaner.javaClass.getMethod("clean").invoke(cleaner)
+            }
+            catch (e: Exception) {
+                LOG.debug("Could not release the mapping of a jar: ${e.getMessage()}")
+            }
+        }
+
+        // Returns -1 if the end of central directory is not found
+        private fun findEndOfCentralDirectory(buffer: ByteBuffer): Int {
+            val last = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE
+            val first = Math.max(0, last - MAX_COMMENT_SIZE)
+            for (offset in last downTo first) {
+                if (buffer.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) return offset
+            }
+            return -1
+        }
+
+        private fun ByteBuffer.getUnsignedShort(offset: Int): Int = getShort(offset).toInt() and 0xFFFF
+    }
+}
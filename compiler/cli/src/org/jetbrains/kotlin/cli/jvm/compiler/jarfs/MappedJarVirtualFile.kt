@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileSystem
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.ArrayList
+import java.util.HashMap
+
+/**
+ * File or directory in a jar read by [MappedJarFileSystem]. Children of a directory are created when they are looked up
+ * for the first time and are then reused, so that there's at most one instance for each entry of the jar.
+ *
+ * Directories don't need to have their own entries in the jar, they exist as long as there are files in them
+ */
+public class MappedJarVirtualFile(
+        private val fileSystem: MappedJarFileSystem,
+        internal val handler: MappedJarHandler,
+        private val name: String,
+        // Path of the entry relative to the jar root without the trailing slash, empty for the root
+        private val relativePath: String,
+        private val parent: MappedJarVirtualFile?,
+        private val isDirectory: Boolean,
+        // Index of the entry in the handler, negative for directories
+        private val entry: Int
+) : VirtualFile() {
+    // Guarded by itself, null values stand for names which are known not to be children of this directory
+    private val children = HashMap<String, MappedJarVirtualFile?>()
+    private var allChildren: Array<VirtualFile>? = null
+
+    override fun getName(): String = name
+
+    override fun getFileSystem(): VirtualFileSystem = fileSystem
+
+    override fun getPath(): String = handler.file.getPath().replace('\\', '/') + MappedJarFileSystem.JAR_SEPARATOR + relativePath
+
+    override fun isWritable(): Boolean = false
+
+    override fun isDirectory(): Boolean = isDirectory
+
+    override fun isValid(): Boolean = true
+
+    override fun getParent(): VirtualFile? = parent
+
+    override fun getChildren(): Array<VirtualFile> {
+        if (!isDirectory) return VirtualFile.EMPTY_ARRAY
+
+        synchronized (children) {
+            allChildren?.let { return it }
+
+            val result = ArrayList<VirtualFile>()
+            handler.processChildren(childPrefix().toByteArray(Charsets.UTF_8)) { childName, childEntry ->
+                result.add(children[childName] ?: createChild(childName, childEntry))
+            }
+            val array = result.toTypedArray()
+            allChildren = array
+            return array
+        }
+    }
+
+    override fun findChild(name: String): VirtualFile? {
+        if (!isDirectory || name.isEmpty() || name.contains('/')) return null
+
+        synchronized (children) {
+            if (children.containsKey(name)) return children[name]
+
+            val path = childPrefix() + name
+            val entry = handler.findEntry(path.toByteArray(Charsets.UTF_8))
+            val child = when {
+                entry >= 0 -> createChild(name, entry)
+                handler.hasEntriesWithPrefix((path + "/").toByteArray(Charsets.UTF_8)) -> createChild(name, -1)
+                else -> null
+            }
+            children[name] = child
+            return child
+        }
+    }
+
+    // Should be called under the lock
+    private fun createChild(childName: String, childEntry: Int): MappedJarVirtualFile {
+        val child = MappedJarVirtualFile(fileSystem, handler, childName, childPrefix() + childName, this, childEntry < 0, childEntry)
+        children[childName] = child
+        return child
+    }
+
+    private fun childPrefix(): String = if (relativePath.isEmpty()) "" else relativePath + "/"
+
+    override fun getOutputStream(requestor: Any?, newModificationStamp: Long, newTimeStamp: Long): OutputStream =
+            throw UnsupportedOperationException()
+
+    override fun contentsToByteArray(): ByteArray {
+        if (entry < 0) throw UnsupportedOperationException("Directory has no contents: $this")
+        return fileSystem.getContents(this, handler, entry)
+    }
+
+    override fun getInputStream(): InputStream = ByteArrayInputStream(contentsToByteArray())
+
+    override fun getTimeStamp(): Long = handler.timeStamp
+
+    // Entries only change together with the jar, which is never reread by this file system
+    override fun getModificationStamp(): Long = handler.timeStamp
+
+    override fun getLength(): Long = if (entry < 0) 0 else handler.getSize(entry).toLong()
+
+    override fun refresh(asynchronous: Boolean, recursive: Boolean, postRunnable: Runnable?) {
+    }
+}
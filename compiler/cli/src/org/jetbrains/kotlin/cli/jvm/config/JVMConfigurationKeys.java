@@ -41,6 +41,30 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("disable inline");
     public static final CompilerConfigurationKey<Boolean> DISABLE_OPTIMIZATION =
             CompilerConfigurationKey.create("disable optimization");
+    public static final CompilerConfigurationKey<Boolean> GENERATE_ABI_STUBS =
+            CompilerConfigurationKey.create("generate ABI stubs");
+    public static final CompilerConfigurationKey<Boolean> USE_BINARY_JAVA_CLASSES =
+            CompilerConfigurationKey.create("read Java classes from class files without PSI");
+    public static final CompilerConfigurationKey<Boolean> DISABLE_MAPPED_JARS =
+            CompilerConfigurationKey.create("read classpath jars with the default jar file system");
+    public static final CompilerConfigurationKey<Boolean> SHARED_STRING_TABLE =
+            CompilerConfigurationKey.create("write one string table for all classes of a module");
+    public static final CompilerConfigurationKey<Boolean> PREFETCH_CLASSPATH =
+            CompilerConfigurationKey.create("read classes of the imported library packages in background");
+    public static final CompilerConfigurationKey<Boolean> USE_LIGHT_JAVA_SOURCES =
+            CompilerConfigurationKey.create("read only declarations of Java sources without PSI");
+    public static final CompilerConfigurationKey<File> SCRIPT_CACHE_DIRECTORY =
+            CompilerConfigurationKey.create("directory of compiled scripts cache");
+    public static final CompilerConfigurationKey<List<File>> PLUGIN_CLASSPATH =
+            CompilerConfigurationKey.create("classpath of compiler plugins");
+    public static final CompilerConfigurationKey<List<String>> PLUGIN_OPTIONS =
+            CompilerConfigurationKey.create("options of compiler plugins");
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_PARSING =
+            CompilerConfigurationKey.create("parse source files in parallel");
+    public static final CompilerConfigurationKey<Boolean> UNCOMPRESSED_JAR =
+            CompilerConfigurationKey.create("store entries of the output jar without compression");
+    public static final CompilerConfigurationKey<Boolean> REPORT_PLUGIN_COSTS =
+            CompilerConfigurationKey.create("report time and memory spent in compiler plugin extensions");
 
     public static final CompilerConfigurationKey<IncrementalCacheProvider> INCREMENTAL_CACHE_PROVIDER =
             CompilerConfigurationKey.create("incremental cache provider");
@@ -25,9 +25,14 @@ import org.jetbrains.org.objectweb.asm.util.TraceClassVisitor;
 import java.io.PrintWriter;
 import java.util.Map;
 
+/**
+ * Defines the classes compiled from the REPL lines. The bytecode of a class is dropped once the class is defined,
+ * only the bytecode of the last line is kept to be dumped
+ */
 public class ReplClassLoader extends ClassLoader {
 
-    private final Map<JvmClassName, byte[]> classes = Maps.newLinkedHashMap();
+    private final Map<JvmClassName, byte[]> classes = Maps.newHashMap();
+    private final Map<JvmClassName, byte[]> lastLineClasses = Maps.newLinkedHashMap();
 
     public ReplClassLoader(@NotNull ClassLoader parent) {
         super(parent);
@@ -36,24 +41,33 @@ public class ReplClassLoader extends ClassLoader {
     @NotNull
     @Override
     protected Class<?> findClass(@NotNull String name) throws ClassNotFoundException {
-        byte[] classBytes = classes.get(JvmClassName.byFqNameWithoutInnerClasses(name));
+        JvmClassName className = JvmClassName.byFqNameWithoutInnerClasses(name);
+        byte[] classBytes = classes.get(className);
         if (classBytes != null) {
-            return defineClass(name, classBytes, 0, classBytes.length);
+            Class<?> result = defineClass(name, classBytes, 0, classBytes.length);
+            // Kept until the class is defined, so that it can be loaded again if defining it fails, e.g. with a LinkageError
+            classes.remove(className);
+            return result;
         }
         else {
             return super.findClass(name);
         }
     }
 
+    public void startLine() {
+        lastLineClasses.clear();
+    }
+
     public void addClass(@NotNull JvmClassName className, @NotNull byte[] bytes) {
         byte[] oldBytes = classes.put(className, bytes);
         if (oldBytes != null) {
             throw new IllegalStateException("Rewrite at key " + className);
         }
+        lastLineClasses.put(className, bytes);
     }
 
     public void dumpClasses(@NotNull PrintWriter writer) {
-        for (byte[] classBytes : classes.values()) {
+        for (byte[] classBytes : lastLineClasses.values()) {
             new ClassReader(classBytes).accept(new TraceClassVisitor(writer), 0);
         }
     }
@@ -170,7 +170,7 @@ public class ReplFromTerminal {
             System.out.println("Available commands:");
             System.out.println(":help                   show this help");
             System.out.println(":quit                   exit the interpreter");
-            System.out.println(":dump bytecode          dump classes to terminal");
+            System.out.println(":dump bytecode          dump classes of the last line to terminal");
             System.out.println(":load <file>            load script from specified file");
             return true;
         }
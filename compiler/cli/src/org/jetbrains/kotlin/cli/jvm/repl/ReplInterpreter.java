@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.cli.jvm.repl;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
@@ -28,6 +29,7 @@ import com.intellij.psi.impl.PsiFileFactoryImpl;
 import com.intellij.psi.search.ProjectScope;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.backend.common.output.OutputFile;
@@ -45,6 +47,7 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.context.ContextPackage;
 import org.jetbrains.kotlin.context.ModuleContext;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
 import org.jetbrains.kotlin.descriptors.ScriptDescriptor;
 import org.jetbrains.kotlin.descriptors.impl.CompositePackageFragmentProvider;
 import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl;
@@ -52,12 +55,12 @@ import org.jetbrains.kotlin.di.InjectorForReplWithJava;
 import org.jetbrains.kotlin.idea.JetLanguage;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.parsing.JetParserDefinition;
-import org.jetbrains.kotlin.psi.JetFile;
-import org.jetbrains.kotlin.psi.JetScript;
+import org.jetbrains.kotlin.psi.*;
 import org.jetbrains.kotlin.resolve.*;
 import org.jetbrains.kotlin.resolve.calls.smartcasts.DataFlowInfo;
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName;
 import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.jetbrains.kotlin.resolve.lazy.LazyFileScope;
 import org.jetbrains.kotlin.resolve.lazy.ResolveSession;
 import org.jetbrains.kotlin.resolve.lazy.ScopeProvider;
 import org.jetbrains.kotlin.resolve.lazy.data.JetClassLikeInfo;
@@ -78,18 +81,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.jetbrains.kotlin.cli.jvm.config.ConfigPackage.getJvmClasspathRoots;
 import static org.jetbrains.kotlin.codegen.AsmUtil.asmTypeByFqNameWithoutInnerClasses;
+import static org.jetbrains.kotlin.codegen.binding.CodegenBinding.CLASS_FOR_SCRIPT;
 import static org.jetbrains.kotlin.codegen.binding.CodegenBinding.registerClassNameForScript;
 import static org.jetbrains.kotlin.resolve.DescriptorToSourceUtils.descriptorToDeclaration;
 
 public class ReplInterpreter {
     private int lineNumber = 0;
 
-    @Nullable
-    private JetScope lastLineScope;
-    private final List<EarlierLine> earlierLines = Lists.newArrayList();
+    private final Map<ScriptDescriptor, EarlierLine> earlierLines = Maps.newLinkedHashMap();
     private final List<String> previousIncompleteLines = Lists.newArrayList();
     private final ReplClassLoader classLoader;
 
@@ -101,6 +105,7 @@ public class ReplInterpreter {
     private final LazyTopDownAnalyzerForTopLevel topDownAnalyzer;
     private final ResolveSession resolveSession;
     private final ScriptMutableDeclarationProviderFactory scriptDeclarationFactory;
+    private final ReplScope replScope;
 
     public ReplInterpreter(@NotNull Disposable disposable, @NotNull CompilerConfiguration configuration) {
         KotlinCoreEnvironment environment =
@@ -118,7 +123,7 @@ public class ReplInterpreter {
             @NotNull
             @Override
             public List<JetScope> scopes(@NotNull JetFile file) {
-                return lastLineScope != null ? new SmartList<JetScope>(lastLineScope) : Collections.<JetScope>emptyList();
+                return !earlierLines.isEmpty() ? new SmartList<JetScope>(replScope) : Collections.<JetScope>emptyList();
             }
         };
 
@@ -144,6 +149,8 @@ public class ReplInterpreter {
         module.addDependencyOnModule(KotlinBuiltIns.getInstance().getBuiltInsModule());
         module.seal();
 
+        this.replScope = new ReplScope(resolveSession.getPackageFragment(FqName.ROOT));
+
         List<URL> classpath = Lists.newArrayList();
         for (File file : getJvmClasspathRoots(configuration)) {
             try {
@@ -270,10 +277,18 @@ public class ReplInterpreter {
             return LineResult.error(errorCollector.getString());
         }
 
+        // Only the earlier lines which this line refers to are passed to its constructor, so that the number of parameters
+        // doesn't grow with the number of lines
+        Set<ScriptDescriptor> referencedScripts =
+                ReplPackage.collectReferencedScripts(psiFile, trace.getBindingContext(), earlierLines.keySet());
+        List<EarlierLine> referencedLines = Lists.newArrayList();
         List<Pair<ScriptDescriptor, Type>> earlierScripts = Lists.newArrayList();
 
-        for (EarlierLine earlierLine : earlierLines) {
-            earlierScripts.add(Pair.create(earlierLine.getScriptDescriptor(), earlierLine.getClassType()));
+        for (EarlierLine earlierLine : earlierLines.values()) {
+            if (referencedScripts.contains(earlierLine.getScriptDescriptor())) {
+                referencedLines.add(earlierLine);
+                earlierScripts.add(Pair.create(earlierLine.getScriptDescriptor(), earlierLine.getClassType()));
+            }
         }
 
         GenerationState state = new GenerationState(psiFile.getProject(), ClassBuilderFactories.BINARIES,
@@ -281,6 +296,7 @@ public class ReplInterpreter {
 
         compileScript(psiFile.getScript(), scriptClassType, earlierScripts, state, CompilationErrorHandler.THROW_EXCEPTION);
 
+        classLoader.startLine();
         for (OutputFile outputFile : state.getFactory().asList()) {
             classLoader.addClass(JvmClassName.byInternalName(outputFile.getRelativePath().replaceFirst("\\.class$", "")), outputFile.asByteArray());
         }
@@ -288,12 +304,12 @@ public class ReplInterpreter {
         try {
             Class<?> scriptClass = classLoader.loadClass(scriptFqName.asString());
 
-            Class<?>[] constructorParams = new Class<?>[earlierLines.size()];
-            Object[] constructorArgs = new Object[earlierLines.size()];
+            Class<?>[] constructorParams = new Class<?>[referencedLines.size()];
+            Object[] constructorArgs = new Object[referencedLines.size()];
 
-            for (int i = 0; i < earlierLines.size(); ++i) {
-                constructorParams[i] = earlierLines.get(i).getScriptClass();
-                constructorArgs[i] = earlierLines.get(i).getScriptInstance();
+            for (int i = 0; i < referencedLines.size(); ++i) {
+                constructorParams[i] = referencedLines.get(i).getScriptClass();
+                constructorArgs[i] = referencedLines.get(i).getScriptInstance();
             }
 
             Constructor<?> scriptInstanceConstructor = scriptClass.getConstructor(constructorParams);
@@ -308,7 +324,8 @@ public class ReplInterpreter {
             rvField.setAccessible(true);
             Object rv = rvField.get(scriptInstance);
 
-            earlierLines.add(new EarlierLine(line, scriptDescriptor, scriptClass, scriptInstance, scriptClassType));
+            earlierLines.put(scriptDescriptor, new EarlierLine(line, scriptDescriptor, scriptClass, scriptInstance, scriptClassType));
+            addToReplScope(psiFile, scriptDescriptor, scriptClassType);
 
             JetType returnType = scriptDescriptor.getScriptCodeDescriptor().getReturnType();
             return LineResult.successful(rv, returnType != null && KotlinBuiltIns.isUnit(returnType));
@@ -362,13 +379,40 @@ public class ReplInterpreter {
             return null;
         }
 
-        ScriptDescriptor scriptDescriptor = context.getScripts().get(psiFile.getScript());
-        lastLineScope = trace.get(BindingContext.SCRIPT_SCOPE, scriptDescriptor);
-        if (lastLineScope == null) {
-            throw new IllegalStateException("last line scope is not initialized");
+        return context.getScripts().get(psiFile.getScript());
+    }
+
+    private void addToReplScope(@NotNull JetFile psiFile, @NotNull ScriptDescriptor scriptDescriptor, @NotNull Type scriptClassType) {
+        JetScript script = psiFile.getScript();
+        assert script != null : "No script in " + psiFile.getName();
+
+        List<DeclarationDescriptor> declarations = new ArrayList<DeclarationDescriptor>();
+        for (JetDeclaration declaration : script.getDeclarations()) {
+            if (declaration instanceof JetMultiDeclaration) {
+                for (JetMultiDeclarationEntry entry : ((JetMultiDeclaration) declaration).getEntries()) {
+                    ContainerUtil.addIfNotNull(declarations, trace.get(BindingContext.VARIABLE, entry));
+                }
+            }
+            else {
+                ContainerUtil.addIfNotNull(declarations, trace.get(BindingContext.DECLARATION_TO_DESCRIPTOR, declaration));
+            }
+        }
+
+        JetScope importScope = null;
+        if (!psiFile.getImportDirectives().isEmpty()) {
+            // The file scope of the line can't be used, since it contains the REPL scope itself
+            TemporaryBindingTrace importTrace = TemporaryBindingTrace.create(trace, "Imports of " + psiFile.getName());
+            importScope = LazyFileScope.Factory.create(
+                    resolveSession, psiFile, Collections.<JetImportDirective>emptyList(), Collections.<JetScope>emptyList(),
+                    importTrace, importTrace, "Imports of " + psiFile.getName()
+            );
         }
 
-        return scriptDescriptor;
+        replScope.addLine(scriptDescriptor, declarations, importScope);
+
+        // Class names of the earlier lines are needed to generate any reference to their declarations, so they're
+        // registered once, rather than in each generation state
+        registerClassNameForScript(trace, script, scriptClassType);
     }
 
     public void dumpClasses(@NotNull PrintWriter out) {
@@ -384,6 +428,11 @@ public class ReplInterpreter {
             ScriptDescriptor earlierDescriptor = pair.first;
             Type earlierClassType = pair.second;
 
+            if (state.getBindingContext().get(CLASS_FOR_SCRIPT, earlierDescriptor) != null) {
+                earlierScriptDescriptors.add(earlierDescriptor);
+                continue;
+            }
+
             PsiElement jetScript = descriptorToDeclaration(earlierDescriptor);
             if (jetScript != null) {
                 registerClassNameForScript(state.getBindingTrace(), (JetScript) jetScript, earlierClassType);
@@ -414,19 +463,14 @@ public class ReplInterpreter {
 
     private static class ScriptMutableDeclarationProviderFactory implements DeclarationProviderFactory {
         private DeclarationProviderFactory delegateFactory;
-        private AdaptablePackageMemberDeclarationProvider rootPackageProvider;
+        private final ReplPackageMemberDeclarationProvider rootPackageProvider = new ReplPackageMemberDeclarationProvider();
 
         public void setDelegateFactory(DeclarationProviderFactory delegateFactory) {
             this.delegateFactory = delegateFactory;
 
             PackageMemberDeclarationProvider provider = delegateFactory.getPackageMemberDeclarationProvider(FqName.ROOT);
-            if (rootPackageProvider == null) {
-                assert provider != null;
-                rootPackageProvider = new AdaptablePackageMemberDeclarationProvider(provider);
-            }
-            else {
-                rootPackageProvider.addDelegateProvider(provider);
-            }
+            assert provider != null;
+            rootPackageProvider.addLine(provider);
         }
 
         @NotNull
@@ -444,21 +488,5 @@ public class ReplInterpreter {
 
             return this.delegateFactory.getPackageMemberDeclarationProvider(packageFqName);
         }
-
-        public static class AdaptablePackageMemberDeclarationProvider extends DelegatePackageMemberDeclarationProvider {
-            @NotNull
-            private PackageMemberDeclarationProvider delegateProvider;
-
-            public AdaptablePackageMemberDeclarationProvider(@NotNull PackageMemberDeclarationProvider delegateProvider) {
-                super(delegateProvider);
-                this.delegateProvider = delegateProvider;
-            }
-
-            public void addDelegateProvider(PackageMemberDeclarationProvider provider) {
-                delegateProvider = new CombinedPackageMemberDeclarationProvider(Lists.newArrayList(provider, delegateProvider));
-
-                setDelegate(delegateProvider);
-            }
-        }
     }
 }
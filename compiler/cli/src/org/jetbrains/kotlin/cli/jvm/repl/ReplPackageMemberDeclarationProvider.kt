@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.repl
+
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.JetDeclaration
+import org.jetbrains.kotlin.psi.JetFile
+import org.jetbrains.kotlin.psi.JetNamedDeclaration
+import org.jetbrains.kotlin.psi.JetScript
+import org.jetbrains.kotlin.resolve.lazy.ResolveSessionUtils.safeNameForLazyResolve
+import org.jetbrains.kotlin.resolve.lazy.data.JetScriptInfo
+import org.jetbrains.kotlin.resolve.lazy.declarations.PackageMemberDeclarationProvider
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.JetScope
+import java.util.HashMap
+import java.util.LinkedHashSet
+import java.util.LinkedList
+
+/**
+ * Root package declarations of all REPL lines, the newest first.
+ *
+ * The lines are indexed by the names they declare when they are added, so looking a name up asks only the lines
+ * declaring it, rather than the declaration providers of all earlier lines
+ */
+public class ReplPackageMemberDeclarationProvider : PackageMemberDeclarationProvider {
+    private val lines = LinkedList<PackageMemberDeclarationProvider>()
+    private val linesByName = HashMap<Name, LinkedList<PackageMemberDeclarationProvider>>()
+    private val packageFiles = LinkedList<JetFile>()
+    private val subPackages = LinkedHashSet<FqName>()
+
+    public fun addLine(provider: PackageMemberDeclarationProvider) {
+        lines.addFirst(provider)
+        packageFiles.addAll(0, provider.getPackageFiles())
+        subPackages.addAll(provider.getAllDeclaredSubPackages())
+
+        val names = provider.getDeclarations(DescriptorKindFilter.ALL, JetScope.ALL_NAME_FILTER).map { declaredName(it) }.filterNotNull()
+        for (name in names.toSet()) {
+            linesByName.getOrPut(name) { LinkedList() }.addFirst(provider)
+        }
+    }
+
+    private fun declaredName(declaration: JetDeclaration): Name? = when (declaration) {
+        is JetScript -> JetScriptInfo(declaration).fqName.shortName()
+        is JetNamedDeclaration -> safeNameForLazyResolve(declaration)
+        else -> null
+    }
+
+    private fun linesDeclaring(name: Name): List<PackageMemberDeclarationProvider> = linesByName[safeNameForLazyResolve(name)] ?: listOf()
+
+    override fun getAllDeclaredSubPackages() = subPackages
+
+    override fun getPackageFiles() = packageFiles
+
+    override fun getDeclarations(kindFilter: DescriptorKindFilter, nameFilter: (Name) -> Boolean)
+            = lines.flatMap { it.getDeclarations(kindFilter, nameFilter) }
+
+    override fun getFunctionDeclarations(name: Name) = linesDeclaring(name).flatMap { it.getFunctionDeclarations(name) }
+
+    override fun getPropertyDeclarations(name: Name) = linesDeclaring(name).flatMap { it.getPropertyDeclarations(name) }
+
+    override fun getClassOrObjectDeclarations(name: Name) = linesDeclaring(name).flatMap { it.getClassOrObjectDeclarations(name) }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.repl
+
+import com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
+import org.jetbrains.kotlin.descriptors.PropertyDescriptor
+import org.jetbrains.kotlin.descriptors.ScriptDescriptor
+import org.jetbrains.kotlin.psi.*
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.calls.callUtil.getResolvedCall
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall
+import org.jetbrains.kotlin.resolve.calls.model.VariableAsFunctionResolvedCall
+import org.jetbrains.kotlin.resolve.scopes.receivers.ReceiverValue
+import org.jetbrains.kotlin.resolve.scopes.receivers.ScriptReceiver
+import java.util.HashSet
+
+/**
+ * Earlier REPL lines which the given line needs the instances of: the ones declaring something the line refers to,
+ * and the ones which are implicit receivers of its calls.
+ *
+ * An inline function of an earlier line needs only the line declaring it: its body refers to the lines it needs through the fields
+ * of that line's instance, which is the receiver of the call
+ */
+public fun collectReferencedScripts(
+        file: JetFile,
+        bindingContext: BindingContext,
+        earlierScripts: Collection<ScriptDescriptor>
+): Set<ScriptDescriptor> {
+    val result = HashSet<ScriptDescriptor>()
+
+    fun addContainingScript(descriptor: DeclarationDescriptor?) {
+        var current = descriptor
+        while (current != null) {
+            if (current is ScriptDescriptor) {
+                if (current in earlierScripts) {
+                    result.add(current)
+                }
+                return
+            }
+            current = current.getContainingDeclaration()
+        }
+    }
+
+    fun addReceiver(receiver: ReceiverValue) {
+        if (receiver is ScriptReceiver) {
+            addContainingScript(receiver.getDeclarationDescriptor())
+        }
+    }
+
+    fun addCall(resolvedCall: ResolvedCall<*>?) {
+        if (resolvedCall == null) return
+        if (resolvedCall is VariableAsFunctionResolvedCall) {
+            addCall(resolvedCall.variableCall)
+            addCall(resolvedCall.functionCall)
+            return
+        }
+        addContainingScript(resolvedCall.getResultingDescriptor())
+        addReceiver(resolvedCall.getDispatchReceiver())
+        addReceiver(resolvedCall.getExtensionReceiver())
+    }
+
+    file.accept(object : JetTreeVisitorVoid() {
+        override fun visitElement(element: PsiElement) {
+            if (element is JetElement) {
+                addCall(element.getResolvedCall(bindingContext))
+            }
+            if (element is JetReferenceExpression) {
+                addContainingScript(bindingContext[BindingContext.REFERENCE_TARGET, element])
+            }
+            if (element is JetExpression) {
+                // Calls made by language constructs are not bound to the call elements
+                addCall(bindingContext[BindingContext.LOOP_RANGE_ITERATOR_RESOLVED_CALL, element])
+                addCall(bindingContext[BindingContext.LOOP_RANGE_HAS_NEXT_RESOLVED_CALL, element])
+                addCall(bindingContext[BindingContext.LOOP_RANGE_NEXT_RESOLVED_CALL, element])
+                addCall(bindingContext[BindingContext.INDEXED_LVALUE_GET, element])
+                addCall(bindingContext[BindingContext.INDEXED_LVALUE_SET, element])
+            }
+            if (element is JetMultiDeclarationEntry) {
+                addCall(bindingContext[BindingContext.COMPONENT_RESOLVED_CALL, element])
+            }
+            if (element is JetProperty && element.hasDelegate()) {
+                val property = bindingContext[BindingContext.VARIABLE, element] as? PropertyDescriptor
+                if (property != null) {
+                    addCall(bindingContext[BindingContext.DELEGATED_PROPERTY_PD_RESOLVED_CALL, property])
+                    for (accessor in property.getAccessors()) {
+                        addCall(bindingContext[BindingContext.DELEGATED_PROPERTY_RESOLVED_CALL, accessor])
+                    }
+                }
+            }
+            super.visitElement(element)
+        }
+    })
+
+    return result
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.repl
+
+import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.JetScope
+import org.jetbrains.kotlin.resolve.scopes.JetScopeImpl
+import org.jetbrains.kotlin.utils.Printer
+import java.util.ArrayList
+import java.util.HashMap
+import java.util.LinkedHashSet
+
+/**
+ * Declarations, imports and implicit receivers of all successfully analyzed REPL lines, which the next line sees.
+ *
+ * The scope of a script body is chained to the file scope, which is chained to the scope of the previous line and so on,
+ * so using it for the next line makes every lookup walk through all earlier lines. Here declarations are indexed by name instead,
+ * and the newer lines come first, as they would in the chain
+ */
+public class ReplScope(private val containingDeclaration: DeclarationDescriptor) : JetScopeImpl() {
+    private val properties = HashMap<Name, MutableList<VariableDescriptor>>()
+    private val localVariables = HashMap<Name, VariableDescriptor>()
+    private val functions = HashMap<Name, MutableList<FunctionDescriptor>>()
+    private val classifiers = HashMap<Name, ClassifierDescriptor>()
+    private val declarations = ArrayList<DeclarationDescriptor>()
+    private val implicitReceivers = ArrayList<ReceiverParameterDescriptor>()
+    private val importScopes = ArrayList<JetScope>()
+
+    public fun addLine(script: ScriptDescriptor, lineDeclarations: Collection<DeclarationDescriptor>, importScope: JetScope?) {
+        for (descriptor in lineDeclarations) {
+            val name = descriptor.getName()
+            when (descriptor) {
+                is PropertyDescriptor -> properties.getOrPut(name) { ArrayList() }.add(0, descriptor)
+                is VariableDescriptor -> localVariables[name] = descriptor
+                is FunctionDescriptor -> functions.getOrPut(name) { ArrayList() }.add(0, descriptor)
+                is ClassifierDescriptor -> classifiers[name] = descriptor
+                else -> continue
+            }
+            declarations.add(descriptor)
+        }
+
+        // A line which declares nothing, like most lines evaluating an expression, is never a receiver of a call. Such lines are
+        // not added, since every call goes through the whole receiver hierarchy
+        if (lineDeclarations.isNotEmpty()) {
+            implicitReceivers.add(0, script.getThisAsReceiverParameter())
+        }
+
+        if (importScope != null) {
+            importScopes.add(0, importScope)
+        }
+    }
+
+    override fun getContainingDeclaration() = containingDeclaration
+
+    override fun getClassifier(name: Name): ClassifierDescriptor?
+            = classifiers[name] ?: firstInImports { it.getClassifier(name) }
+
+    override fun getPackage(name: Name): PackageViewDescriptor?
+            = firstInImports { it.getPackage(name) }
+
+    override fun getProperties(name: Name): Collection<VariableDescriptor> {
+        val result = LinkedHashSet<VariableDescriptor>(properties[name] ?: listOf())
+        importScopes.flatMapTo(result) { it.getProperties(name) }
+        return result
+    }
+
+    override fun getLocalVariable(name: Name): VariableDescriptor?
+            = localVariables[name] ?: firstInImports { it.getLocalVariable(name) }
+
+    override fun getFunctions(name: Name): Collection<FunctionDescriptor> {
+        val result = LinkedHashSet<FunctionDescriptor>(functions[name] ?: listOf())
+        importScopes.flatMapTo(result) { it.getFunctions(name) }
+        return result
+    }
+
+    override fun getDescriptors(kindFilter: DescriptorKindFilter, nameFilter: (Name) -> Boolean): Collection<DeclarationDescriptor> {
+        val result = declarations.filterTo(ArrayList<DeclarationDescriptor>()) { kindFilter.accepts(it) && nameFilter(it.getName()) }
+        importScopes.flatMapTo(result) { it.getDescriptors(kindFilter, nameFilter) }
+        return result
+    }
+
+    override fun getImplicitReceiversHierarchy(): List<ReceiverParameterDescriptor> = implicitReceivers
+
+    override fun getOwnDeclaredDescriptors(): Collection<DeclarationDescriptor> = declarations
+
+    private inline fun <T : Any> firstInImports(lookup: (JetScope) -> T?): T? {
+        for (scope in importScopes) {
+            val result = lookup(scope)
+            if (result != null) return result
+        }
+        return null
+    }
+
+    override fun printScopeStructure(p: Printer) {
+        p.println(javaClass.getSimpleName(), " {")
+        p.pushIndent()
+
+        p.println("receivers = ", implicitReceivers.size())
+        p.println("declarations = ", declarations.size())
+        for (scope in importScopes) {
+            scope.printScopeStructure(p)
+        }
+
+        p.popIndent()
+        p.println("}")
+    }
+}
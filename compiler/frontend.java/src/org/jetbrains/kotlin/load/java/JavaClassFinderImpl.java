@@ -16,10 +16,12 @@
 
 package org.jetbrains.kotlin.load.java;
 
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiPackage;
+import com.intellij.psi.impl.file.impl.JavaFileManager;
 import com.intellij.psi.search.DelegatingGlobalSearchScope;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
@@ -32,6 +34,7 @@ import org.jetbrains.kotlin.load.java.structure.impl.JavaPackageImpl;
 import org.jetbrains.kotlin.name.ClassId;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.resolve.jvm.JavaClassFinderPostConstruct;
+import org.jetbrains.kotlin.resolve.jvm.KotlinCliJavaFileManager;
 import org.jetbrains.kotlin.resolve.jvm.KotlinJavaPsiFacade;
 
 import javax.annotation.PostConstruct;
@@ -43,6 +46,7 @@ public class JavaClassFinderImpl implements JavaClassFinder {
 
     private GlobalSearchScope javaSearchScope;
     private KotlinJavaPsiFacade javaFacade;
+    private KotlinCliJavaFileManager cliJavaFileManager;
 
     @Inject
     public void setProject(@NotNull Project project) {
@@ -81,11 +85,20 @@ public class JavaClassFinderImpl implements JavaClassFinder {
         };
 
         javaFacade = KotlinJavaPsiFacade.getInstance(project);
+
+        JavaFileManager javaFileManager = ServiceManager.getService(project, JavaFileManager.class);
+        if (javaFileManager instanceof KotlinCliJavaFileManager) {
+            cliJavaFileManager = (KotlinCliJavaFileManager) javaFileManager;
+        }
     }
 
     @Nullable
     @Override
     public JavaClass findClass(@NotNull ClassId classId) {
+        if (cliJavaFileManager != null && cliJavaFileManager.isJavaClassModelEnabled()) {
+            return cliJavaFileManager.findJavaClass(classId, javaSearchScope);
+        }
+
         PsiClass psiClass = javaFacade.findClass(classId, javaSearchScope);
         if (psiClass == null) return null;
 
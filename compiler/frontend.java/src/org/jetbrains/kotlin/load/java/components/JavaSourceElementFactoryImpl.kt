@@ -25,7 +25,8 @@ import org.jetbrains.kotlin.load.java.sources.JavaSourceElement
 
 private class JavaSourceElementImpl(override val javaElement: JavaElement) : PsiSourceElement, JavaSourceElement {
     override val psi: PsiElement?
-        get() = (javaElement as JavaElementImpl<*>).getPsi()
+        // Elements read from class files without PSI (see BinaryJavaClass) have no PSI to report
+        get() = (javaElement as? JavaElementImpl<*>)?.getPsi()
 }
 
 public class JavaSourceElementFactoryImpl : JavaSourceElementFactory {
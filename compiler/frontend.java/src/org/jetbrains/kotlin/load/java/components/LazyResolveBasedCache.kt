@@ -44,19 +44,24 @@ public class LazyResolveBasedCache : JavaResolverCache {
     }
 
     override fun recordMethod(method: JavaMethod, descriptor: SimpleFunctionDescriptor) {
-        BindingContextUtils.recordFunctionDeclarationToDescriptor(trace, (method as JavaMethodImpl).getPsi(), descriptor)
+        // Members of classes read from class files without PSI are not recorded
+        val psiMethod = (method as? JavaMethodImpl)?.getPsi() ?: return
+        BindingContextUtils.recordFunctionDeclarationToDescriptor(trace, psiMethod, descriptor)
     }
 
     override fun recordConstructor(element: JavaElement, descriptor: ConstructorDescriptor) {
-        trace.record(CONSTRUCTOR, (element as JavaElementImpl<*>).getPsi(), descriptor)
+        val psiElement = (element as? JavaElementImpl<*>)?.getPsi() ?: return
+        trace.record(CONSTRUCTOR, psiElement, descriptor)
     }
 
     override fun recordField(field: JavaField, descriptor: PropertyDescriptor) {
-        trace.record(VARIABLE, (field as JavaFieldImpl).getPsi(), descriptor)
+        val psiField = (field as? JavaFieldImpl)?.getPsi() ?: return
+        trace.record(VARIABLE, psiField, descriptor)
     }
 
     override fun recordClass(javaClass: JavaClass, descriptor: ClassDescriptor) {
-        trace.record(CLASS, (javaClass as JavaClassImpl).getPsi(), descriptor)
+        val psiClass = (javaClass as? JavaClassImpl)?.getPsi() ?: return
+        trace.record(CLASS, psiClass, descriptor)
     }
 
     private fun findInPackageFragments(fullFqName: FqName): ClassDescriptor? {
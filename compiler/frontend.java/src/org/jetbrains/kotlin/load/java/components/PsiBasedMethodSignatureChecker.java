@@ -171,19 +171,38 @@ public class PsiBasedMethodSignatureChecker implements MethodSignatureChecker {
         // This optimization speed things up because hasRawTypesInHierarchicalSignature() is very expensive
         if (superFunctions.isEmpty() && (signatureErrors.isEmpty() || !reportSignatureErrors)) return;
 
+        if (!(method instanceof JavaMethodImpl)) {
+            // Methods of classes read from class files or Java sources without PSI have no hierarchy to check for raw types
+            // and incompatible return types, so only their own signature is checked
+            if (!RawTypesCheck.hasRawTypesInSignature(method) && !containsErrorType(superFunctions, descriptor)) {
+                checkOverridesOrReportErrors(method, reportSignatureErrors, descriptor, signatureErrors, superFunctions);
+            }
+            return;
+        }
+
         JavaMethodImpl methodWithPsi = (JavaMethodImpl) method;
         if (!RawTypesCheck.hasRawTypesInHierarchicalSignature(methodWithPsi) &&
             isMethodReturnTypeCompatible(methodWithPsi) &&
             !containsErrorType(superFunctions, descriptor)) {
-            if (signatureErrors.isEmpty()) {
-                for (FunctionDescriptor superFunction : superFunctions) {
-                    checkFunctionOverridesCorrectly(method, descriptor, superFunction);
-                }
-            }
-            else if (reportSignatureErrors) {
-                externalSignatureResolver.reportSignatureErrors(descriptor, signatureErrors);
+            checkOverridesOrReportErrors(method, reportSignatureErrors, descriptor, signatureErrors, superFunctions);
+        }
+    }
+
+    private void checkOverridesOrReportErrors(
+            @NotNull JavaMethod method,
+            boolean reportSignatureErrors,
+            @NotNull SimpleFunctionDescriptor descriptor,
+            @NotNull List<String> signatureErrors,
+            @NotNull List<FunctionDescriptor> superFunctions
+    ) {
+        if (signatureErrors.isEmpty()) {
+            for (FunctionDescriptor superFunction : superFunctions) {
+                checkFunctionOverridesCorrectly(method, descriptor, superFunction);
             }
         }
+        else if (reportSignatureErrors) {
+            externalSignatureResolver.reportSignatureErrors(descriptor, signatureErrors);
+        }
     }
 
     private static class RawTypesCheck {
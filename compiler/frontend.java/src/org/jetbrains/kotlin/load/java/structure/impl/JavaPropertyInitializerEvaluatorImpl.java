@@ -24,6 +24,8 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.descriptors.PropertyDescriptor;
 import org.jetbrains.kotlin.load.java.structure.JavaField;
 import org.jetbrains.kotlin.load.java.structure.JavaPropertyInitializerEvaluator;
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryJavaField;
+import org.jetbrains.kotlin.load.java.structure.impl.sources.SourceJavaField;
 import org.jetbrains.kotlin.resolve.constants.CompileTimeConstant;
 import org.jetbrains.kotlin.resolve.constants.ConstantsPackage;
 import org.jetbrains.kotlin.resolve.constants.evaluate.ConstantExpressionEvaluator;
@@ -32,8 +34,18 @@ public class JavaPropertyInitializerEvaluatorImpl implements JavaPropertyInitial
     @Nullable
     @Override
     public CompileTimeConstant<?> getInitializerConstant(@NotNull JavaField field, @NotNull PropertyDescriptor descriptor) {
-        PsiExpression initializer = ((JavaFieldImpl) field).getInitializer();
-        Object evaluatedExpression = JavaConstantExpressionEvaluator.computeConstantExpression(initializer, false);
+        Object evaluatedExpression;
+        if (field instanceof BinaryJavaField) {
+            evaluatedExpression = ((BinaryJavaField) field).getConstantValue();
+        }
+        else if (field instanceof SourceJavaField) {
+            evaluatedExpression = ((SourceJavaField) field).getConstantValue();
+        }
+        else {
+            PsiExpression initializer = ((JavaFieldImpl) field).getInitializer();
+            evaluatedExpression = JavaConstantExpressionEvaluator.computeConstantExpression(initializer, false);
+        }
+
         if (evaluatedExpression != null) {
             return ConstantsPackage.createCompileTimeConstant(
                     evaluatedExpression,
@@ -47,6 +59,14 @@ public class JavaPropertyInitializerEvaluatorImpl implements JavaPropertyInitial
 
     @Override
     public boolean isNotNullCompileTimeConstant(@NotNull JavaField field) {
+        if (field instanceof BinaryJavaField) {
+            // Only fields initialized with non-null constants have the ConstantValue attribute
+            return ((BinaryJavaField) field).getConstantValue() != null;
+        }
+        if (field instanceof SourceJavaField) {
+            return ((SourceJavaField) field).getConstantValue() != null;
+        }
+
         // PsiUtil.isCompileTimeConstant returns false for null-initialized fields,
         // see com.intellij.psi.util.IsConstantExpressionVisitor.visitLiteralExpression()
         return PsiUtil.isCompileTimeConstant(((JavaFieldImpl) field).getPsi());
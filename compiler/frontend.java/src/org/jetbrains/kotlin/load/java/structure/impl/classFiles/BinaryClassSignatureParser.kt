@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import org.jetbrains.kotlin.builtins.PrimitiveType
+import org.jetbrains.kotlin.load.java.structure.JavaType
+import org.jetbrains.kotlin.load.java.structure.JavaTypeParameter
+import org.jetbrains.kotlin.name.Name
+import java.text.CharacterIterator
+import java.util.ArrayList
+
+/**
+ * Parses generic signatures (JVMS 4.7.9.1) and plain descriptors, which are a subset of the signature grammar, into Java types
+ */
+public object BinaryClassSignatureParser {
+    public fun parseTypeParametersDeclaration(signature: CharacterIterator, context: ClassifierResolutionContext): List<JavaTypeParameter> {
+        if (signature.current() != '<') return listOf()
+
+        signature.next()
+        val typeParameters = ArrayList<JavaTypeParameter>()
+        while (signature.current() != '>') {
+            typeParameters.add(parseTypeParameter(signature, context))
+        }
+        signature.next()
+        return typeParameters
+    }
+
+    private fun parseTypeParameter(signature: CharacterIterator, context: ClassifierResolutionContext): JavaTypeParameter {
+        val name = parseIdentifier(signature, ':')
+
+        val bounds = ArrayList<JavaType>()
+        while (signature.current() == ':') {
+            signature.next()
+            // Class bound is empty if there are only interface bounds, e.g. "T::Ljava/lang/Comparable<TT;>;"
+            if (signature.current() != ':') {
+                bounds.add(parseTypeString(signature, context))
+            }
+        }
+
+        val typeParameter = BinaryJavaTypeParameter(Name.identifier(name), context, bounds)
+        context.addTypeParameter(typeParameter)
+        return typeParameter
+    }
+
+    public fun parseTypeString(signature: CharacterIterator, context: ClassifierResolutionContext): JavaType {
+        val c = signature.current()
+        return when (c) {
+            'L' -> parseClassifierType(signature, context)
+            'T' -> {
+                signature.next()
+                val name = parseIdentifier(signature, ';')
+                signature.next()
+                PlainJavaClassifierType(context, null, name, listOf(), null, null)
+            }
+            '[' -> {
+                signature.next()
+                PlainJavaArrayType(parseTypeString(signature, context))
+            }
+            else -> {
+                signature.next()
+                PlainJavaPrimitiveType(parsePrimitiveType(c))
+            }
+        }
+    }
+
+    private fun parsePrimitiveType(c: Char): PrimitiveType? {
+        return when (c) {
+            'Z' -> PrimitiveType.BOOLEAN
+            'C' -> PrimitiveType.CHAR
+            'B' -> PrimitiveType.BYTE
+            'S' -> PrimitiveType.SHORT
+            'I' -> PrimitiveType.INT
+            'F' -> PrimitiveType.FLOAT
+            'J' -> PrimitiveType.LONG
+            'D' -> PrimitiveType.DOUBLE
+            'V' -> null
+            else -> throw IllegalStateException("Unexpected character in a signature: $c")
+        }
+    }
+
+    private fun parseClassifierType(signature: CharacterIterator, context: ClassifierResolutionContext): PlainJavaClassifierType {
+        signature.next()
+
+        val internalName = StringBuilder()
+        var typeArguments = listOf<JavaType>()
+        var outerType: PlainJavaClassifierType? = null
+
+        while (true) {
+            val c = signature.current()
+            when (c) {
+                ';' -> {
+                    signature.next()
+                    return PlainJavaClassifierType(context, internalName.toString(), null, typeArguments, outerType, null)
+                }
+                '<' -> typeArguments = parseTypeArguments(signature, context)
+                '.' -> {
+                    // Outer<A>.Inner<B>: the inner class is Outer$Inner and its outer type is Outer<A>
+                    outerType = PlainJavaClassifierType(context, internalName.toString(), null, typeArguments, outerType, null)
+                    typeArguments = listOf()
+                    internalName.append('$')
+                    signature.next()
+                }
+                CharacterIterator.DONE -> throw IllegalStateException("Unexpected end of signature")
+                else -> {
+                    internalName.append(c)
+                    signature.next()
+                }
+            }
+        }
+    }
+
+    private fun parseTypeArguments(signature: CharacterIterator, context: ClassifierResolutionContext): List<JavaType> {
+        signature.next()
+
+        val typeProvider = PlainJavaTypeProvider(context)
+        val result = ArrayList<JavaType>()
+        while (signature.current() != '>') {
+            when (signature.current()) {
+                '*' -> {
+                    signature.next()
+                    result.add(typeProvider.createUnboundedWildcard())
+                }
+                '+' -> {
+                    signature.next()
+                    result.add(typeProvider.createUpperBoundWildcard(parseTypeString(signature, context)))
+                }
+                '-' -> {
+                    signature.next()
+                    result.add(typeProvider.createLowerBoundWildcard(parseTypeString(signature, context)))
+                }
+                else -> result.add(parseTypeString(signature, context))
+            }
+        }
+        signature.next()
+        return result
+    }
+
+    private fun parseIdentifier(signature: CharacterIterator, terminator: Char): String {
+        val result = StringBuilder()
+        while (signature.current() != terminator) {
+            if (signature.current() == CharacterIterator.DONE) throw IllegalStateException("Unexpected end of signature")
+            result.append(signature.current())
+            signature.next()
+        }
+        return result.toString()
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor
+import org.jetbrains.org.objectweb.asm.Opcodes.ASM5
+import org.jetbrains.org.objectweb.asm.Type
+import java.text.StringCharacterIterator
+import java.util.ArrayList
+import kotlin.properties.Delegates
+
+public trait BinaryJavaAnnotationOwner : JavaAnnotationOwner {
+    override fun findAnnotation(fqName: FqName): JavaAnnotation? =
+            getAnnotations().firstOrNull { it.getClassId()?.asSingleFqName() == fqName }
+}
+
+public class BinaryJavaAnnotation(
+        private val desc: String,
+        private val context: ClassifierResolutionContext
+) : JavaAnnotation {
+    private val argumentList = ArrayList<JavaAnnotationArgument>()
+
+    private val classId: ClassId by Delegates.lazy { context.mapInternalNameToClassId(Type.getType(desc).getInternalName()) }
+
+    override fun findArgument(name: Name): JavaAnnotationArgument? = argumentList.firstOrNull { it.name == name }
+
+    override fun getArguments(): Collection<JavaAnnotationArgument> = argumentList
+
+    override fun getClassId(): ClassId = classId
+
+    override fun resolve(): JavaClass? = context.resolveClass(Type.getType(desc).getInternalName())
+
+    override fun toString(): String = "BinaryJavaAnnotation: $desc"
+
+    companion object {
+        /**
+         * Creates an annotation, adds it to the given collection and returns the visitor which reads its arguments
+         */
+        public fun addAnnotation(
+                annotations: MutableCollection<JavaAnnotation>,
+                desc: String,
+                context: ClassifierResolutionContext
+        ): AnnotationVisitor {
+            val annotation = BinaryJavaAnnotation(desc, context)
+            annotations.add(annotation)
+            return BinaryJavaAnnotationVisitor(context) { annotation.argumentList.add(it) }
+        }
+    }
+}
+
+private class BinaryJavaAnnotationVisitor(
+        private val context: ClassifierResolutionContext,
+        private val sink: (JavaAnnotationArgument) -> Unit
+) : AnnotationVisitor(ASM5) {
+    override fun visit(name: String?, value: Any?) {
+        sink(createConstantArgument(name?.let { Name.identifier(it) }, value))
+    }
+
+    private fun createConstantArgument(name: Name?, value: Any?): JavaAnnotationArgument {
+        return when {
+            value is Type -> PlainJavaClassObjectAnnotationArgument(
+                    name, BinaryClassSignatureParser.parseTypeString(StringCharacterIterator(value.getDescriptor()), context))
+            // Arrays of primitives are passed to visit() as Java arrays instead of going through visitArray()
+            value != null && value.javaClass.isArray() -> PlainJavaArrayAnnotationArgument(
+                    name, (0..java.lang.reflect.Array.getLength(value) - 1).map {
+                        createConstantArgument(null, java.lang.reflect.Array.get(value, it))
+                    })
+            else -> PlainJavaLiteralAnnotationArgument(name, value)
+        }
+    }
+
+    override fun visitEnum(name: String?, desc: String, value: String) {
+        sink(PlainJavaEnumValueAnnotationArgument(name?.let { Name.identifier(it) }, desc, Name.identifier(value), context))
+    }
+
+    override fun visitAnnotation(name: String?, desc: String): AnnotationVisitor {
+        val arguments = ArrayList<JavaAnnotation>(1)
+        val visitor = BinaryJavaAnnotation.addAnnotation(arguments, desc, context)
+        sink(PlainJavaAnnotationAsAnnotationArgument(name?.let { Name.identifier(it) }, arguments.single()))
+        return visitor
+    }
+
+    override fun visitArray(name: String?): AnnotationVisitor {
+        val elements = ArrayList<JavaAnnotationArgument>()
+        sink(PlainJavaArrayAnnotationArgument(name?.let { Name.identifier(it) }, elements))
+        return BinaryJavaAnnotationVisitor(context) { elements.add(it) }
+    }
+}
+
+public class PlainJavaLiteralAnnotationArgument(
+        override val name: Name?,
+        override val value: Any?
+) : JavaLiteralAnnotationArgument
+
+public class PlainJavaArrayAnnotationArgument(
+        override val name: Name?,
+        private val elements: List<JavaAnnotationArgument>
+) : JavaArrayAnnotationArgument {
+    override fun getElements(): List<JavaAnnotationArgument> = elements
+}
+
+public class PlainJavaClassObjectAnnotationArgument(
+        override val name: Name?,
+        private val type: JavaType
+) : JavaClassObjectAnnotationArgument {
+    override fun getReferencedType(): JavaType = type
+}
+
+public class PlainJavaEnumValueAnnotationArgument(
+        override val name: Name?,
+        private val enumDesc: String,
+        private val entryName: Name,
+        private val context: ClassifierResolutionContext
+) : JavaEnumValueAnnotationArgument {
+    override fun resolve(): JavaField? {
+        val enumClass = context.resolveClass(Type.getType(enumDesc).getInternalName()) ?: return null
+        return enumClass.getFields().firstOrNull { it.isEnumEntry() && it.getName() == entryName }
+    }
+}
+
+public class PlainJavaAnnotationAsAnnotationArgument(
+        override val name: Name?,
+        private val annotation: JavaAnnotation
+) : JavaAnnotationAsAnnotationArgument {
+    override fun getAnnotation(): JavaAnnotation = annotation
+}
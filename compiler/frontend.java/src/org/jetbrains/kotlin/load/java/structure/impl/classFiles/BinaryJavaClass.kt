@@ -0,0 +1,236 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.*
+import org.jetbrains.org.objectweb.asm.ClassReader.SKIP_CODE
+import org.jetbrains.org.objectweb.asm.ClassReader.SKIP_FRAMES
+import org.jetbrains.org.objectweb.asm.Opcodes.ASM5
+import java.text.StringCharacterIterator
+import java.util.ArrayList
+
+/**
+ * Java class read directly from a class file with ASM, without building PSI for it. The class file is read once
+ * with the method bodies skipped, the signatures of members are parsed when they are requested for the first time.
+ *
+ * Classes referenced from signatures are looked up with the given finder, which is expected to return the same
+ * instance for the same class id, so that the identity of type parameters is preserved
+ */
+public class BinaryJavaClass(
+        public val virtualFile: VirtualFile,
+        private val classId: ClassId,
+        classFinder: (ClassId) -> JavaClass?,
+        classContent: ByteArray = virtualFile.contentsToByteArray()
+) : BinaryJavaModifierListOwner, BinaryJavaAnnotationOwner, JavaClass {
+    override var access: Int = 0
+        private set
+
+    internal val context: ClassifierResolutionContext = ClassifierResolutionContext(classFinder) {
+        if (isStatic()) null else (getOuterClass() as? BinaryJavaClass)?.context
+    }
+
+    private var internalName: String = ""
+    private var outerClassInternalName: String? = null
+
+    private var typeParameters: List<JavaTypeParameter> = listOf()
+    private val supertypes = ArrayList<JavaClassifierType>()
+    private val innerClassNames = ArrayList<Name>()
+    private val methods = ArrayList<JavaMethod>()
+    private val fields = ArrayList<JavaField>()
+    private val constructors = ArrayList<JavaConstructor>()
+    private val annotationList = ArrayList<JavaAnnotation>(1)
+
+    init {
+        // Debug info is not skipped because the MethodParameters attribute is considered a part of it
+        ClassReader(classContent).accept(Reader(), SKIP_CODE or SKIP_FRAMES)
+    }
+
+    private inner class Reader : ClassVisitor(ASM5) {
+        override fun visit(version: Int, access: Int, name: String, signature: String?, superName: String?, interfaces: Array<String>?) {
+            this@BinaryJavaClass.access = access
+            internalName = name
+
+            if (signature != null) {
+                val iterator = StringCharacterIterator(signature)
+                typeParameters = BinaryClassSignatureParser.parseTypeParametersDeclaration(iterator, context)
+                for (typeParameter in typeParameters) {
+                    (typeParameter as BinaryJavaTypeParameter).initOwner(this@BinaryJavaClass)
+                }
+                while (iterator.current() != StringCharacterIterator.DONE) {
+                    addSupertype(BinaryClassSignatureParser.parseTypeString(iterator, context) as PlainJavaClassifierType)
+                }
+            }
+            else {
+                superName?.let { addSupertype(PlainJavaClassifierType(context, it, null, listOf(), null, null)) }
+                interfaces?.forEach { addSupertype(PlainJavaClassifierType(context, it, null, listOf(), null, null)) }
+            }
+        }
+
+        private fun addSupertype(type: PlainJavaClassifierType) {
+            // java.lang.Object is not considered a supertype, as in the reflection-based implementation
+            if (type.internalName != "java/lang/Object") {
+                supertypes.add(type)
+            }
+        }
+
+        override fun visitInnerClass(name: String, outerName: String?, innerName: String?, access: Int) {
+            // Local and anonymous classes don't have the outer name, they are never looked up by class id
+            if (outerName == null || innerName == null) return
+
+            context.addInnerClass(name, outerName, innerName)
+
+            if (name == internalName) {
+                // Nested class flags like static, private and protected are only present in the InnerClasses attribute
+                this@BinaryJavaClass.access = access
+                outerClassInternalName = outerName
+            }
+            else if (outerName == internalName && (access and Opcodes.ACC_SYNTHETIC) == 0) {
+                innerClassNames.add(Name.identifier(innerName))
+            }
+        }
+
+        override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                BinaryJavaAnnotation.addAnnotation(annotationList, desc, context)
+
+        override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+            if ((access and Opcodes.ACC_SYNTHETIC) != 0) return null
+
+            val field = BinaryJavaField(
+                    access, this@BinaryJavaClass, Name.identifier(name), context, signature ?: desc, convertConstantValue(desc, value)
+            )
+            fields.add(field)
+
+            return object : FieldVisitor(ASM5) {
+                override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                        BinaryJavaAnnotation.addAnnotation(field.annotationList, desc, context)
+            }
+        }
+
+        override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<String>?): MethodVisitor? {
+            if ((access and (Opcodes.ACC_SYNTHETIC or Opcodes.ACC_BRIDGE)) != 0 || name == "<clinit>") return null
+            if (isEnum() && isEnumValuesOrValueOf(name, desc)) return null
+
+            val method: BinaryJavaMethodBase
+            if (name == "<init>") {
+                val constructor = BinaryJavaConstructor(access, this@BinaryJavaClass, context.createChildContext(), desc, signature)
+                constructors.add(constructor)
+                method = constructor
+            }
+            else {
+                val function = BinaryJavaMethod(access, this@BinaryJavaClass, Name.identifier(name), context.createChildContext(), desc, signature)
+                methods.add(function)
+                method = function
+            }
+
+            return object : MethodVisitor(ASM5) {
+                override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                        BinaryJavaAnnotation.addAnnotation(method.annotationList, desc, context)
+
+                override fun visitParameterAnnotation(parameter: Int, desc: String, visible: Boolean): AnnotationVisitor? {
+                    // ASM reports parameters absent from the Java source (e.g. the outer instance) with this fake annotation
+                    if (desc == "Ljava/lang/Synthetic;") return null
+                    return BinaryJavaAnnotation.addAnnotation(method.parameterAnnotations[parameter], desc, context)
+                }
+
+                override fun visitParameter(name: String?, access: Int) {
+                    val index = method.parameterNameCount++
+                    if (name != null && index < method.parameterNames.size()) {
+                        method.parameterNames[index] = name
+                    }
+                }
+
+                override fun visitAnnotationDefault(): AnnotationVisitor? {
+                    if (method is BinaryJavaMethod) {
+                        method.hasDefaultValue = true
+                    }
+                    return null
+                }
+            }
+        }
+    }
+
+    private fun isEnumValuesOrValueOf(name: String, desc: String): Boolean {
+        return when (name) {
+            "values" -> desc.startsWith("()")
+            "valueOf" -> desc.startsWith("(Ljava/lang/String;)")
+            else -> false
+        }
+    }
+
+    // The ConstantValue attribute stores booleans, chars, bytes and shorts as ints
+    private fun convertConstantValue(desc: String, value: Any?): Any? {
+        if (value !is Int) return value
+        return when (desc) {
+            "Z" -> value != 0
+            "C" -> value.toChar()
+            "B" -> value.toByte()
+            "S" -> value.toShort()
+            else -> value
+        }
+    }
+
+    override fun getName(): Name = classId.getShortClassName()
+
+    override fun getFqName(): FqName = classId.asSingleFqName()
+
+    override fun getTypeParameters(): List<JavaTypeParameter> = typeParameters
+
+    override fun getSupertypes(): Collection<JavaClassifierType> = supertypes
+
+    override fun getInnerClasses(): Collection<JavaClass> =
+            innerClassNames.map { context.resolveClass(internalName + "$" + it.asString()) }.filterNotNull()
+
+    override fun getOuterClass(): JavaClass? = outerClassInternalName?.let { context.resolveClass(it) }
+
+    override fun getMethods(): Collection<JavaMethod> = methods
+
+    override fun getFields(): Collection<JavaField> = fields
+
+    override fun getConstructors(): Collection<JavaConstructor> = constructors
+
+    override fun getAnnotations(): Collection<JavaAnnotation> = annotationList
+
+    override fun isInterface(): Boolean = (access and Opcodes.ACC_INTERFACE) != 0
+    override fun isAnnotationType(): Boolean = (access and Opcodes.ACC_ANNOTATION) != 0
+    override fun isEnum(): Boolean = (access and Opcodes.ACC_ENUM) != 0
+
+    override fun getDefaultType(): JavaClassifierType {
+        val outerType = if (isStatic()) null else getOuterClass()?.getDefaultType() as? PlainJavaClassifierType
+        return PlainJavaClassifierType(context, internalName, null, typeParameters.map { it.getType() }, outerType, null)
+    }
+
+    override fun createImmediateType(substitutor: JavaTypeSubstitutor): JavaType {
+        val substitutionMap = substitutor.getSubstitutionMap()
+        val typeArguments = typeParameters.map { substitutionMap[it] }
+        // Type parameters substituted with null mean a raw type, see JavaTypeSubstitutorImpl
+        val arguments = if (typeArguments.any { it == null }) listOf() else typeArguments.filterNotNull()
+        return PlainJavaClassifierType(context, internalName, null, arguments, null, substitutionMap)
+    }
+
+    override fun getOriginKind(): JavaClass.OriginKind = JavaClass.OriginKind.COMPILED
+
+    override fun equals(other: Any?): Boolean = other is BinaryJavaClass && classId == other.classId && virtualFile == other.virtualFile
+
+    override fun hashCode(): Int = classId.hashCode()
+
+    override fun toString(): String = javaClass.getName() + ": " + classId
+}
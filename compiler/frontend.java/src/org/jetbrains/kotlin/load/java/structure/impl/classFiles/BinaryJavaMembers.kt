@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import org.jetbrains.kotlin.descriptors.Visibilities
+import org.jetbrains.kotlin.descriptors.Visibility
+import org.jetbrains.kotlin.load.java.JavaVisibilities
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import java.text.StringCharacterIterator
+import java.util.ArrayList
+import kotlin.properties.Delegates
+
+public trait BinaryJavaModifierListOwner : JavaModifierListOwner {
+    val access: Int
+
+    override fun isAbstract(): Boolean = (access and Opcodes.ACC_ABSTRACT) != 0
+    override fun isStatic(): Boolean = (access and Opcodes.ACC_STATIC) != 0
+    override fun isFinal(): Boolean = (access and Opcodes.ACC_FINAL) != 0
+
+    override fun getVisibility(): Visibility = when {
+        (access and Opcodes.ACC_PUBLIC) != 0 -> Visibilities.PUBLIC
+        (access and Opcodes.ACC_PRIVATE) != 0 -> Visibilities.PRIVATE
+        (access and Opcodes.ACC_PROTECTED) != 0 ->
+            if (isStatic()) JavaVisibilities.PROTECTED_STATIC_VISIBILITY else JavaVisibilities.PROTECTED_AND_PACKAGE
+        else -> JavaVisibilities.PACKAGE_VISIBILITY
+    }
+}
+
+public abstract class BinaryJavaMember(
+        override val access: Int,
+        private val containingClass: JavaClass,
+        private val name: Name
+) : BinaryJavaModifierListOwner, BinaryJavaAnnotationOwner, JavaMember {
+    internal val annotationList = ArrayList<JavaAnnotation>(0)
+
+    override fun getContainingClass(): JavaClass = containingClass
+
+    override fun getName(): Name = name
+
+    override fun getAnnotations(): Collection<JavaAnnotation> = annotationList
+
+    override fun toString(): String = javaClass.getSimpleName() + ": " + containingClass + "." + name
+}
+
+public class BinaryJavaField(
+        access: Int,
+        containingClass: JavaClass,
+        name: Name,
+        private val context: ClassifierResolutionContext,
+        private val signature: String,
+        /**
+         * Value of the ConstantValue attribute converted to the field type, or null if there's no such attribute
+         */
+        public val constantValue: Any?
+) : BinaryJavaMember(access, containingClass, name), JavaField {
+    private val type: JavaType by Delegates.lazy {
+        BinaryClassSignatureParser.parseTypeString(StringCharacterIterator(signature), context)
+    }
+
+    override fun isEnumEntry(): Boolean = (access and Opcodes.ACC_ENUM) != 0
+
+    override fun getType(): JavaType = type
+}
+
+public class BinaryJavaValueParameter(
+        private val name: Name,
+        private val type: JavaType,
+        private val isVararg: Boolean,
+        private val annotations: Collection<JavaAnnotation>
+) : BinaryJavaAnnotationOwner, JavaValueParameter {
+    override fun getName(): Name = name
+
+    override fun getType(): JavaType = type
+
+    override fun isVararg(): Boolean = isVararg
+
+    override fun getAnnotations(): Collection<JavaAnnotation> = annotations
+}
+
+/**
+ * Base class for methods and constructors. Their signatures are parsed only when asked for, the annotations and names
+ * of value parameters are collected while reading the class file and are indexed by the position in the method descriptor
+ */
+public abstract class BinaryJavaMethodBase(
+        access: Int,
+        containingClass: JavaClass,
+        name: Name,
+        protected val context: ClassifierResolutionContext,
+        private val desc: String,
+        private val signature: String?
+) : BinaryJavaMember(access, containingClass, name), JavaTypeParameterListOwner {
+    private class MethodSignature(
+            val typeParameters: List<JavaTypeParameter>,
+            val valueParameters: List<JavaValueParameter>,
+            val returnType: JavaType
+    )
+
+    internal val parameterAnnotations: Array<MutableList<JavaAnnotation>> =
+            Array(Type.getArgumentTypes(desc).size()) { ArrayList<JavaAnnotation>(0) }
+
+    // Names from the MethodParameters attribute, which is only present in classes compiled by javac with -parameters
+    internal val parameterNames: Array<String?> = arrayOfNulls<String>(parameterAnnotations.size())
+    internal var parameterNameCount = 0
+
+    private val methodSignature: MethodSignature by Delegates.lazy { parseSignature() }
+
+    /**
+     * Number of leading parameters of the descriptor which are not present in the Java source, e.g. the outer instance
+     * of an inner class constructor. Only used when there's no generic signature, which never includes such parameters
+     */
+    protected open fun getSyntheticParameterCount(): Int = 0
+
+    private fun parseSignature(): MethodSignature {
+        val iterator = StringCharacterIterator(signature ?: desc)
+        val typeParameters = BinaryClassSignatureParser.parseTypeParametersDeclaration(iterator, context)
+        for (typeParameter in typeParameters) {
+            (typeParameter as BinaryJavaTypeParameter).initOwner(this)
+        }
+
+        val parameterTypes = ArrayList<JavaType>()
+        iterator.next()
+        while (iterator.current() != ')') {
+            parameterTypes.add(BinaryClassSignatureParser.parseTypeString(iterator, context))
+        }
+        iterator.next()
+        val returnType = BinaryClassSignatureParser.parseTypeString(iterator, context)
+
+        val skipped = if (signature == null) getSyntheticParameterCount() else parameterAnnotations.size() - parameterTypes.size()
+        val types = if (signature == null) parameterTypes.drop(skipped) else parameterTypes
+        val isVararg = (access and Opcodes.ACC_VARARGS) != 0
+        val valueParameters = types.withIndex().map { indexed ->
+            val (i, type) = indexed
+            // Same names as the ones of compiled PSI parameters when there's no MethodParameters attribute
+            val name = parameterNames[i + skipped] ?: "p$i"
+            BinaryJavaValueParameter(Name.identifier(name), type, isVararg && i == types.lastIndex, parameterAnnotations[i + skipped])
+        }
+
+        return MethodSignature(typeParameters, valueParameters, returnType)
+    }
+
+    override fun getTypeParameters(): List<JavaTypeParameter> = methodSignature.typeParameters
+
+    protected fun getValueParametersFromSignature(): List<JavaValueParameter> = methodSignature.valueParameters
+
+    protected fun getReturnTypeFromSignature(): JavaType = methodSignature.returnType
+}
+
+public class BinaryJavaMethod(
+        access: Int,
+        containingClass: JavaClass,
+        name: Name,
+        context: ClassifierResolutionContext,
+        desc: String,
+        signature: String?
+) : BinaryJavaMethodBase(access, containingClass, name, context, desc, signature), JavaMethod {
+    internal var hasDefaultValue = false
+
+    override fun hasAnnotationParameterDefaultValue(): Boolean = hasDefaultValue
+
+    override fun getValueParameters(): List<JavaValueParameter> = getValueParametersFromSignature()
+
+    override fun getReturnType(): JavaType = getReturnTypeFromSignature()
+}
+
+public class BinaryJavaConstructor(
+        access: Int,
+        containingClass: BinaryJavaClass,
+        context: ClassifierResolutionContext,
+        desc: String,
+        signature: String?
+) : BinaryJavaMethodBase(access, containingClass, containingClass.getName(), context, desc, signature), JavaConstructor {
+    override fun getValueParameters(): List<JavaValueParameter> = getValueParametersFromSignature()
+
+    override fun getSyntheticParameterCount(): Int {
+        val javaClass = getContainingClass()
+        return when {
+            // Name and ordinal
+            javaClass.isEnum() -> 2
+            // Outer instance
+            javaClass.getOuterClass() != null && !javaClass.isStatic() -> 1
+            else -> 0
+        }
+    }
+}
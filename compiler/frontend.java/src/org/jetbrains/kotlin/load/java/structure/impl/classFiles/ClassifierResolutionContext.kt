@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.load.java.structure.JavaClassifier
+import org.jetbrains.kotlin.load.java.structure.JavaTypeParameter
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import java.util.ArrayList
+import java.util.HashMap
+
+/**
+ * Resolves names found in class file signatures: internal names of classes (using the InnerClasses attribute of the class file
+ * to tell nested classes from top level classes with '$' in their names) and type variables visible at the place of a signature
+ */
+public class ClassifierResolutionContext(
+        private val classFinder: (ClassId) -> JavaClass?,
+        private val outerClassContext: () -> ClassifierResolutionContext?
+) {
+    private class InnerClassInfo(val outerInternalName: String, val simpleName: String)
+
+    private var parent: ClassifierResolutionContext? = null
+
+    private val typeParameters = ArrayList<JavaTypeParameter>()
+
+    // These two are only filled in the root context, i.e. the one of the class
+    private val innerClasses = HashMap<String, InnerClassInfo>()
+    private val classIds = HashMap<String, ClassId>()
+
+    /**
+     * Creates a context for a member of the class, which can declare its own type parameters
+     */
+    public fun createChildContext(): ClassifierResolutionContext {
+        val child = ClassifierResolutionContext(classFinder, { null })
+        child.parent = this
+        return child
+    }
+
+    public fun addInnerClass(innerInternalName: String, outerInternalName: String, simpleName: String) {
+        root().innerClasses[innerInternalName] = InnerClassInfo(outerInternalName, simpleName)
+    }
+
+    public fun addTypeParameter(typeParameter: JavaTypeParameter) {
+        typeParameters.add(typeParameter)
+    }
+
+    public fun mapInternalNameToClassId(internalName: String): ClassId {
+        val root = root()
+        root.classIds[internalName]?.let { return it }
+
+        val info = root.innerClasses[internalName]
+        val classId =
+                if (info != null) mapInternalNameToClassId(info.outerInternalName).createNestedClassId(Name.identifier(info.simpleName))
+                else ClassId.topLevel(FqName(internalName.replace('/', '.')))
+
+        root.classIds[internalName] = classId
+        return classId
+    }
+
+    public fun resolveClass(internalName: String): JavaClass? = classFinder(mapInternalNameToClassId(internalName))
+
+    public fun resolveTypeParameter(name: String): JavaTypeParameter? {
+        var context: ClassifierResolutionContext? = this
+        while (context != null) {
+            context.typeParameters.firstOrNull { it.getName().asString() == name }?.let { return it }
+            context = context.parent ?: context.outerClassContext()
+        }
+        return null
+    }
+
+    public fun resolveClassifier(internalName: String?, typeVariableName: String?): JavaClassifier? =
+            if (typeVariableName != null) resolveTypeParameter(typeVariableName) else resolveClass(internalName!!)
+
+    private fun root(): ClassifierResolutionContext = parent?.root() ?: this
+}
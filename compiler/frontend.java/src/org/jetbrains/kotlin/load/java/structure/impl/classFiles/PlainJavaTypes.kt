@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.classFiles
+
+import org.jetbrains.kotlin.builtins.PrimitiveType
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.load.java.structure.impl.JavaTypeSubstitutorImpl
+import org.jetbrains.kotlin.name.Name
+import java.util.LinkedHashMap
+import kotlin.properties.Delegates
+
+public abstract class PlainJavaType : JavaType {
+    override fun createArrayType(): JavaArrayType = PlainJavaArrayType(this)
+}
+
+/**
+ * A class or a type variable reference from a class file signature. The classifier is resolved lazily,
+ * because the signature may refer to type parameters which are not yet read, or to classes which are never needed
+ */
+public class PlainJavaClassifierType(
+        private val context: ClassifierResolutionContext,
+        // Exactly one of these two is not null
+        public val internalName: String?,
+        public val typeVariableName: String?,
+        private val typeArguments: List<JavaType>,
+        // Outer type for signatures like Outer<A>.Inner<B>, null otherwise
+        private val outerType: PlainJavaClassifierType?,
+        // Explicit substitution of the classifier's type parameters, only for types created by JavaClass.createImmediateType
+        private val substitution: Map<JavaTypeParameter, JavaType?>?
+) : PlainJavaType(), JavaClassifierType {
+    private val classifier: JavaClassifier? by Delegates.lazy { context.resolveClassifier(internalName, typeVariableName) }
+
+    override fun getClassifier(): JavaClassifier? = classifier
+
+    override fun getTypeArguments(): List<JavaType> = typeArguments
+
+    override fun isRaw(): Boolean {
+        if (typeArguments.isNotEmpty()) return false
+        val javaClass = classifier as? JavaClass ?: return false
+        return javaClass.getTypeParameters().isNotEmpty()
+    }
+
+    override fun getSubstitutor(): JavaTypeSubstitutor {
+        if (substitution != null) return JavaTypeSubstitutorImpl(substitution)
+
+        val javaClass = classifier as? JavaClass ?: return JavaTypeSubstitutor.EMPTY
+        val result = LinkedHashMap<JavaTypeParameter, JavaType?>()
+        fillSubstitution(javaClass, this, result)
+        return JavaTypeSubstitutorImpl(result)
+    }
+
+    private fun fillSubstitution(javaClass: JavaClass, type: PlainJavaClassifierType?, result: MutableMap<JavaTypeParameter, JavaType?>) {
+        val typeParameters = javaClass.getTypeParameters()
+        val arguments = type?.typeArguments.orEmpty()
+        // Raw types are represented by mapping type parameters to null, see JavaTypeSubstitutorImpl
+        val isRaw = arguments.size() != typeParameters.size()
+        for ((i, typeParameter) in typeParameters.withIndex()) {
+            result[typeParameter] = if (isRaw) null else arguments[i]
+        }
+
+        if (javaClass.isStatic()) return
+        val outerClass = javaClass.getOuterClass() ?: return
+        fillSubstitution(outerClass, type?.outerType, result)
+    }
+
+    override fun getSupertypes(): Collection<JavaClassifierType> {
+        val classifier = classifier
+        return when (classifier) {
+            is JavaClass -> {
+                val substitutor = getSubstitutor()
+                classifier.getSupertypes().map { substitutor.substitute(it) as JavaClassifierType }
+            }
+            is JavaTypeParameter -> classifier.getUpperBounds()
+            else -> listOf()
+        }
+    }
+
+    override fun getPresentableText(): String {
+        val name = typeVariableName ?: internalName!!.replace('/', '.').replace('$', '.')
+        if (typeArguments.isEmpty()) return name
+        return typeArguments.joinToString(prefix = "$name<", postfix = ">")
+    }
+
+    override fun equals(other: Any?): Boolean =
+            other is PlainJavaClassifierType &&
+            internalName == other.internalName &&
+            typeVariableName == other.typeVariableName &&
+            typeArguments == other.typeArguments &&
+            outerType == other.outerType &&
+            substitution == other.substitution
+
+    override fun hashCode(): Int = (internalName ?: typeVariableName)!!.hashCode() * 31 + typeArguments.hashCode()
+
+    override fun toString(): String = getPresentableText()
+}
+
+public class PlainJavaArrayType(private val componentType: JavaType) : PlainJavaType(), JavaArrayType {
+    override fun getComponentType(): JavaType = componentType
+
+    override fun equals(other: Any?): Boolean = other is PlainJavaArrayType && componentType == other.componentType
+
+    override fun hashCode(): Int = componentType.hashCode() + 1
+
+    override fun toString(): String = "$componentType[]"
+}
+
+public class PlainJavaPrimitiveType(private val type: PrimitiveType?) : PlainJavaType(), JavaPrimitiveType {
+    override fun getType(): PrimitiveType? = type
+
+    override fun equals(other: Any?): Boolean = other is PlainJavaPrimitiveType && type == other.type
+
+    override fun hashCode(): Int = type?.hashCode() ?: 0
+
+    override fun toString(): String = type?.getTypeName()?.asString() ?: "void"
+}
+
+public class PlainJavaWildcardType(
+        private val bound: JavaType?,
+        private val isExtends: Boolean,
+        private val typeProvider: JavaTypeProvider
+) : PlainJavaType(), JavaWildcardType {
+    override fun getBound(): JavaType? = bound
+
+    override fun isExtends(): Boolean = isExtends
+
+    override fun getTypeProvider(): JavaTypeProvider = typeProvider
+
+    override fun equals(other: Any?): Boolean = other is PlainJavaWildcardType && bound == other.bound && isExtends == other.isExtends
+
+    override fun hashCode(): Int = (bound?.hashCode() ?: 0) * 31 + (if (isExtends) 1 else 0)
+
+    override fun toString(): String = if (bound == null) "?" else if (isExtends) "? extends $bound" else "? super $bound"
+}
+
+public class PlainJavaTypeProvider(private val context: ClassifierResolutionContext) : JavaTypeProvider {
+    override fun createJavaLangObjectType(): JavaType =
+            PlainJavaClassifierType(context, "java/lang/Object", null, listOf(), null, null)
+
+    override fun createUpperBoundWildcard(bound: JavaType): JavaWildcardType = PlainJavaWildcardType(bound, true, this)
+
+    override fun createLowerBoundWildcard(bound: JavaType): JavaWildcardType = PlainJavaWildcardType(bound, false, this)
+
+    override fun createUnboundedWildcard(): JavaWildcardType = PlainJavaWildcardType(null, true, this)
+}
+
+public class BinaryJavaTypeParameter(
+        private val name: Name,
+        private val context: ClassifierResolutionContext,
+        private val bounds: List<JavaType>
+) : JavaTypeParameter {
+    private var owner: JavaTypeParameterListOwner? = null
+
+    internal fun initOwner(owner: JavaTypeParameterListOwner) {
+        this.owner = owner
+    }
+
+    override fun getName(): Name = name
+
+    override fun getUpperBounds(): Collection<JavaClassifierType> {
+        val classifierBounds = bounds.filterIsInstance<PlainJavaClassifierType>()
+        // A single java.lang.Object bound is the same as no bounds at all, as in the PSI-based implementation
+        if (classifierBounds.size() == 1 && classifierBounds[0].internalName == "java/lang/Object") return listOf()
+        return classifierBounds
+    }
+
+    override fun getOwner(): JavaTypeParameterListOwner? = owner
+
+    override fun getType(): JavaType = PlainJavaClassifierType(context, null, name.asString(), listOf(), null, null)
+
+    override fun getTypeProvider(): JavaTypeProvider = PlainJavaTypeProvider(context)
+
+    override fun toString(): String = name.asString()
+}
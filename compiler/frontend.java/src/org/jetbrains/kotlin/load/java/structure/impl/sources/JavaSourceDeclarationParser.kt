@@ -0,0 +1,762 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import org.jetbrains.kotlin.builtins.PrimitiveType
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import java.math.BigInteger
+import java.util.ArrayList
+
+/**
+ * Reads the declarations of a Java source file which are visible to other classes: classes, their supertypes,
+ * fields and method signatures with their annotations. Method bodies, initializer blocks and field initializers are skipped
+ * by matching the brackets, except for the literal initializers of final fields, which are needed for constants.
+ *
+ * This is much cheaper than building PSI for the whole file, most of which is usually method bodies
+ */
+public object JavaSourceDeclarationParser {
+    /**
+     * @return the declarations of the file, or null if it has a syntax error that prevents reading them
+     */
+    public fun parse(text: CharSequence): SourceFileDeclarations? {
+        try {
+            return Parser(JavaSourceLexer(text.toString())).parseFile()
+        }
+        catch (e: JavaSourceSyntaxException) {
+            return null
+        }
+    }
+
+    private val MODIFIER_FLAGS = mapOf(
+            "public" to ACC_PUBLIC,
+            "protected" to ACC_PROTECTED,
+            "private" to ACC_PRIVATE,
+            "static" to ACC_STATIC,
+            "abstract" to ACC_ABSTRACT,
+            "final" to ACC_FINAL,
+            "native" to ACC_NATIVE,
+            "synchronized" to ACC_SYNCHRONIZED,
+            "transient" to ACC_TRANSIENT,
+            "volatile" to ACC_VOLATILE,
+            "strictfp" to ACC_STRICT,
+            // Default methods of interfaces are just not abstract
+            "default" to 0
+    )
+
+    private val PRIMITIVE_TYPES = mapOf(
+            "boolean" to PrimitiveType.BOOLEAN,
+            "char" to PrimitiveType.CHAR,
+            "byte" to PrimitiveType.BYTE,
+            "short" to PrimitiveType.SHORT,
+            "int" to PrimitiveType.INT,
+            "long" to PrimitiveType.LONG,
+            "float" to PrimitiveType.FLOAT,
+            "double" to PrimitiveType.DOUBLE
+    )
+
+    // Distinguishes "not a literal" from the null literal, which is not a constant either
+    private val NO_VALUE = Any()
+
+    private class Modifiers(val access: Int, val annotations: List<SourceAnnotationDeclaration>)
+
+    private class Parser(private val lexer: JavaSourceLexer) {
+        private var hasUnevaluatedExpressions = false
+
+        fun parseFile(): SourceFileDeclarations {
+            // Annotations of the package are only allowed in package-info.java and are not needed.
+            // Without the package statement, they are the annotations of the first class
+            val start = lexer.tokenStart
+            parseModifiers()
+            if (!at("package")) {
+                lexer.reset(start)
+            }
+
+            var packageName = listOf<String>()
+            if (skip("package")) {
+                packageName = parseQualifiedName()
+                expect(";")
+            }
+
+            val imports = ArrayList<SourceImport>()
+            while (true) {
+                if (skip(";")) continue
+                if (!skip("import")) break
+
+                val isStatic = skip("static")
+                val name = arrayListOf(expectIdentifier())
+                var isOnDemand = false
+                while (skip(".")) {
+                    if (skip("*")) {
+                        isOnDemand = true
+                        break
+                    }
+                    name.add(expectIdentifier())
+                }
+                expect(";")
+                imports.add(SourceImport(name, isStatic, isOnDemand))
+            }
+
+            val classes = ArrayList<SourceClassDeclaration>()
+            while (lexer.tokenType != JavaTokenType.EOF) {
+                if (skip(";")) continue
+                classes.add(parseClass(parseModifiers(), isNested = false, isInInterface = false))
+            }
+
+            return SourceFileDeclarations(packageName, imports, classes, hasUnevaluatedExpressions)
+        }
+
+        private fun parseClass(modifiers: Modifiers, isNested: Boolean, isInInterface: Boolean): SourceClassDeclaration {
+            var access = modifiers.access
+            when {
+                skip("class") -> {}
+                skip("interface") -> access = access or ACC_INTERFACE or ACC_ABSTRACT
+                skip("enum") -> access = access or ACC_ENUM
+                skip("@") -> {
+                    expect("interface")
+                    access = access or ACC_INTERFACE or ACC_ABSTRACT or ACC_ANNOTATION
+                }
+                else -> throw syntaxError("class declaration")
+            }
+            val isInterface = (access and ACC_INTERFACE) != 0
+            val isEnum = (access and ACC_ENUM) != 0
+
+            if (isInInterface) {
+                access = access or ACC_PUBLIC or ACC_STATIC
+            }
+            else if (isNested && (isInterface || isEnum)) {
+                access = access or ACC_STATIC
+            }
+
+            val name = expectIdentifier()
+            val typeParameters = parseTypeParameters()
+
+            val supertypes = ArrayList<SourceTypeReference>()
+            if (skip("extends")) supertypes.addAll(parseTypeList())
+            if (skip("implements")) supertypes.addAll(parseTypeList())
+
+            val fields = ArrayList<SourceFieldDeclaration>()
+            val methods = ArrayList<SourceMethodDeclaration>()
+            val nestedClasses = ArrayList<SourceClassDeclaration>()
+
+            expect("{")
+
+            if (isEnum) {
+                val hasConstantBodies = parseEnumConstants(name, fields)
+                // Enum classes are implicitly final unless some of the constants have their own bodies, i.e. subclasses
+                if (!hasConstantBodies) {
+                    access = access or ACC_FINAL
+                }
+            }
+
+            while (!skip("}")) {
+                if (skip(";")) continue
+
+                val memberModifiers = parseModifiers()
+                if (at("{")) {
+                    // Initializer block, possibly static
+                    skipBalanced("{", "}")
+                    continue
+                }
+                if (atClassKeyword()) {
+                    nestedClasses.add(parseClass(memberModifiers, isNested = true, isInInterface = isInterface))
+                    continue
+                }
+
+                val memberTypeParameters = parseTypeParameters()
+
+                if (at(name) && nextIs("(")) {
+                    lexer.advance()
+                    val valueParameters = parseValueParameters()
+                    skipThrowsAndBody()
+                    // Constructors of enums are always private
+                    val constructorAccess = if (isEnum) memberModifiers.access or ACC_PRIVATE else memberModifiers.access
+                    methods.add(SourceMethodDeclaration(
+                            withVarargs(constructorAccess, valueParameters), memberModifiers.annotations, memberTypeParameters,
+                            null, name, valueParameters, false
+                    ))
+                    continue
+                }
+
+                val type = parseType()
+                val memberName = expectIdentifier()
+
+                if (at("(")) {
+                    methods.add(parseMethodRest(memberModifiers, memberTypeParameters, type, memberName, isInterface))
+                }
+                else {
+                    parseFieldsRest(memberModifiers, type, memberName, isInterface, fields)
+                }
+            }
+
+            return SourceClassDeclaration(
+                    access, modifiers.annotations, name, typeParameters, supertypes, fields, methods, nestedClasses
+            )
+        }
+
+        /**
+         * @return true if some of the constants have bodies
+         */
+        private fun parseEnumConstants(enumName: String, fields: MutableList<SourceFieldDeclaration>): Boolean {
+            var hasBodies = false
+            while (!at("}")) {
+                if (skip(";")) break
+
+                val modifiers = parseModifiers()
+                val name = expectIdentifier()
+                if (at("(")) skipBalanced("(", ")")
+                if (at("{")) {
+                    skipBalanced("{", "}")
+                    hasBodies = true
+                }
+                val type = SourceClassifierTypeReference(listOf(enumName), listOf(listOf()))
+                fields.add(SourceFieldDeclaration(ACC_PUBLIC or ACC_STATIC or ACC_FINAL or ACC_ENUM, modifiers.annotations, name, type, null))
+
+                if (!skip(",")) {
+                    skip(";")
+                    break
+                }
+            }
+            return hasBodies
+        }
+
+        private fun parseMethodRest(
+                modifiers: Modifiers,
+                typeParameters: List<SourceTypeParameterDeclaration>,
+                type: SourceTypeReference,
+                name: String,
+                isInterface: Boolean
+        ): SourceMethodDeclaration {
+            val valueParameters = parseValueParameters()
+
+            // Old-style array return types: int foo()[]
+            var returnType = type
+            while (skip("[")) {
+                expect("]")
+                returnType = SourceArrayTypeReference(returnType)
+            }
+
+            var hasDefaultValue = false
+            var hasBody = false
+            if (skip("throws")) parseTypeList()
+            if (skip("default")) {
+                // Default value of an annotation method
+                hasDefaultValue = true
+                skipUntil(";")
+                expect(";")
+            }
+            else if (at("{")) {
+                skipBalanced("{", "}")
+                hasBody = true
+            }
+            else {
+                expect(";")
+            }
+
+            var access = modifiers.access
+            if (isInterface) {
+                access = access or ACC_PUBLIC
+                // Default and static methods of interfaces have bodies
+                if (!hasBody) {
+                    access = access or ACC_ABSTRACT
+                }
+            }
+
+            return SourceMethodDeclaration(
+                    withVarargs(access, valueParameters), modifiers.annotations, typeParameters, returnType, name, valueParameters,
+                    hasDefaultValue
+            )
+        }
+
+        private fun withVarargs(access: Int, valueParameters: List<SourceValueParameterDeclaration>): Int =
+                if (valueParameters.lastOrNull()?.isVararg ?: false) access or ACC_VARARGS else access
+
+        private fun parseFieldsRest(
+                modifiers: Modifiers,
+                type: SourceTypeReference,
+                firstName: String,
+                isInterface: Boolean,
+                fields: MutableList<SourceFieldDeclaration>
+        ) {
+            val access = if (isInterface) modifiers.access or ACC_PUBLIC or ACC_STATIC or ACC_FINAL else modifiers.access
+
+            var name = firstName
+            while (true) {
+                // Old-style array fields: int a[]
+                var fieldType = type
+                while (skip("[")) {
+                    expect("]")
+                    fieldType = SourceArrayTypeReference(fieldType)
+                }
+
+                val value = if (skip("=")) parseFieldInitializer((access and ACC_FINAL) != 0, fieldType) else null
+                fields.add(SourceFieldDeclaration(access, modifiers.annotations, name, fieldType, value))
+
+                if (!skip(",")) {
+                    expect(";")
+                    return
+                }
+                name = expectIdentifier()
+            }
+        }
+
+        private fun parseFieldInitializer(isFinal: Boolean, type: SourceTypeReference): Any? {
+            val start = lexer.tokenStart
+            if (isFinal) {
+                val value = parseLiteral()
+                if (value !== NO_VALUE && (at(",") || at(";"))) return value
+                lexer.reset(start)
+                // E.g. "A + 1" or "OTHER_CONSTANT" may still be a constant, whose value is only known after resolution
+                if (mayBeConstantType(type)) {
+                    hasUnevaluatedExpressions = true
+                }
+            }
+            skipInitializer()
+            return null
+        }
+
+        private fun mayBeConstantType(type: SourceTypeReference): Boolean = when (type) {
+            is SourcePrimitiveTypeReference -> type.type != null
+            is SourceClassifierTypeReference -> type.names == listOf("String") || type.names == listOf("java", "lang", "String")
+            else -> false
+        }
+
+        /**
+         * Skips an arbitrary expression up to the comma separating declarators or the semicolon. A comma at the top level may also be
+         * a part of the type arguments, e.g. in "new HashMap<K, V>()", so it's taken as a separator only if a declarator follows it
+         */
+        private fun skipInitializer() {
+            var depth = 0
+            while (true) {
+                if (lexer.tokenType == JavaTokenType.EOF) throw syntaxError("end of initializer")
+                if (depth == 0) {
+                    if (at(";")) return
+                    if (at(",") && isDeclaratorAfterComma()) return
+                }
+                when {
+                    at("(") || at("[") || at("{") -> depth++
+                    at(")") || at("]") || at("}") -> depth--
+                }
+                lexer.advance()
+            }
+        }
+
+        private fun isDeclaratorAfterComma(): Boolean {
+            val start = lexer.tokenStart
+            lexer.advance()
+            var result = false
+            if (lexer.tokenType == JavaTokenType.IDENTIFIER) {
+                lexer.advance()
+                result = at("=") || at(",") || at(";") || at("[")
+            }
+            lexer.reset(start)
+            return result
+        }
+
+        private fun skipThrowsAndBody() {
+            if (skip("throws")) parseTypeList()
+            if (at("{")) skipBalanced("{", "}") else expect(";")
+        }
+
+        private fun parseValueParameters(): List<SourceValueParameterDeclaration> {
+            expect("(")
+            val result = ArrayList<SourceValueParameterDeclaration>()
+            if (skip(")")) return result
+
+            do {
+                val modifiers = parseModifiers()
+                var type = parseType()
+                val isVararg = skip("...")
+                if (isVararg) {
+                    type = SourceArrayTypeReference(type)
+                }
+
+                val name = expectIdentifier()
+                // Explicit receiver parameters, e.g. "Foo this" or "Outer Outer.this", are not real parameters
+                if (name == "this") continue
+                if (skip(".")) {
+                    expect("this")
+                    continue
+                }
+
+                while (skip("[")) {
+                    expect("]")
+                    type = SourceArrayTypeReference(type)
+                }
+                result.add(SourceValueParameterDeclaration(modifiers.annotations, type, isVararg, name))
+            }
+            while (skip(","))
+
+            expect(")")
+            return result
+        }
+
+        private fun parseModifiers(): Modifiers {
+            var access = 0
+            val annotations = ArrayList<SourceAnnotationDeclaration>(0)
+            while (true) {
+                if (at("@")) {
+                    if (nextIs("interface")) break
+                    annotations.add(parseAnnotation())
+                    continue
+                }
+                if (lexer.tokenType != JavaTokenType.IDENTIFIER) break
+                val flag = MODIFIER_FLAGS[lexer.tokenText()] ?: break
+                access = access or flag
+                lexer.advance()
+            }
+            return Modifiers(access, annotations)
+        }
+
+        private fun parseAnnotation(): SourceAnnotationDeclaration {
+            expect("@")
+            val name = parseQualifiedName()
+            val arguments = ArrayList<SourceAnnotationArgumentDeclaration>(0)
+            if (skip("(") && !skip(")")) {
+                if (lexer.tokenType == JavaTokenType.IDENTIFIER && nextIs("=")) {
+                    do {
+                        val argumentName = expectIdentifier()
+                        expect("=")
+                        parseElementValue()?.let { arguments.add(SourceAnnotationArgumentDeclaration(argumentName, it)) }
+                    }
+                    while (skip(","))
+                }
+                else {
+                    parseElementValue()?.let { arguments.add(SourceAnnotationArgumentDeclaration(null, it)) }
+                }
+                expect(")")
+            }
+            return SourceAnnotationDeclaration(name, arguments)
+        }
+
+        /**
+         * @return the value, or null if it's an expression other than a literal, a reference or a class literal
+         */
+        private fun parseElementValue(): SourceAnnotationValue? {
+            if (at("@")) return SourceAnnotationValueAnnotation(parseAnnotation())
+
+            if (skip("{")) {
+                val elements = ArrayList<SourceAnnotationValue>()
+                while (!skip("}")) {
+                    parseElementValue()?.let { elements.add(it) }
+                    if (!skip(",")) {
+                        expect("}")
+                        break
+                    }
+                }
+                return SourceArrayValue(elements)
+            }
+
+            val start = lexer.tokenStart
+            val value = try {
+                parseSimpleElementValue()
+            }
+            catch (e: JavaSourceSyntaxException) {
+                null
+            }
+            if (value != null && (at(",") || at(")") || at("}"))) return value
+
+            lexer.reset(start)
+            skipUntil(",", ")", "}")
+            hasUnevaluatedExpressions = true
+            return null
+        }
+
+        private fun parseSimpleElementValue(): SourceAnnotationValue? {
+            val literal = parseLiteral()
+            if (literal !== NO_VALUE) return SourceLiteralValue(literal)
+
+            if (lexer.tokenType != JavaTokenType.IDENTIFIER) return null
+
+            val type = parseType()
+            if (skip(".")) {
+                expect("class")
+                return SourceClassLiteralValue(type)
+            }
+            if (type is SourceClassifierTypeReference && type.typeArguments.all { it.isEmpty() }) {
+                return SourceReferenceValue(type.names)
+            }
+            return null
+        }
+
+        /**
+         * @return the value of a literal, possibly negated, or NO_VALUE if there's no literal at the current position
+         */
+        private fun parseLiteral(): Any? {
+            if (at("-")) {
+                val start = lexer.tokenStart
+                lexer.advance()
+                if (lexer.tokenType == JavaTokenType.NUMBER) {
+                    val value = parseNumber(lexer.tokenText())
+                    lexer.advance()
+                    return negate(value)
+                }
+                lexer.reset(start)
+                return NO_VALUE
+            }
+
+            val value: Any = when (lexer.tokenType) {
+                JavaTokenType.NUMBER -> parseNumber(lexer.tokenText())
+                JavaTokenType.STRING -> unescape(lexer.tokenText())
+                JavaTokenType.CHAR -> unescape(lexer.tokenText())[0]
+                JavaTokenType.IDENTIFIER -> when {
+                    at("true") -> true
+                    at("false") -> false
+                    else -> return NO_VALUE
+                }
+                else -> return NO_VALUE
+            }
+            lexer.advance()
+            return value
+        }
+
+        private fun parseType(): SourceTypeReference {
+            skipAnnotations()
+
+            val primitiveType = if (lexer.tokenType == JavaTokenType.IDENTIFIER) PRIMITIVE_TYPES[lexer.tokenText()] else null
+            var type: SourceTypeReference
+            if (primitiveType != null || at("void")) {
+                lexer.advance()
+                type = SourcePrimitiveTypeReference(primitiveType)
+            }
+            else {
+                val names = arrayListOf(expectIdentifier())
+                val typeArguments = arrayListOf(parseTypeArguments())
+                // Stops before ".class" of class literals
+                while (at(".") && !nextIs("class") && !nextIs("this")) {
+                    lexer.advance()
+                    skipAnnotations()
+                    names.add(expectIdentifier())
+                    typeArguments.add(parseTypeArguments())
+                }
+                type = SourceClassifierTypeReference(names, typeArguments)
+            }
+
+            while (at("[") && nextIs("]")) {
+                lexer.advance()
+                lexer.advance()
+                type = SourceArrayTypeReference(type)
+            }
+            return type
+        }
+
+        private fun parseTypeArguments(): List<SourceTypeReference> {
+            if (!skip("<")) return listOf()
+
+            val result = ArrayList<SourceTypeReference>()
+            if (skip(">")) return result
+
+            do {
+                skipAnnotations()
+                if (skip("?")) {
+                    result.add(when {
+                        skip("extends") -> SourceWildcardTypeReference(parseType(), true)
+                        skip("super") -> SourceWildcardTypeReference(parseType(), false)
+                        else -> SourceWildcardTypeReference(null, true)
+                    })
+                }
+                else {
+                    result.add(parseType())
+                }
+            }
+            while (skip(","))
+
+            expect(">")
+            return result
+        }
+
+        private fun parseTypeParameters(): List<SourceTypeParameterDeclaration> {
+            if (!skip("<")) return listOf()
+
+            val result = ArrayList<SourceTypeParameterDeclaration>()
+            do {
+                skipAnnotations()
+                val name = expectIdentifier()
+                val bounds = ArrayList<SourceTypeReference>()
+                if (skip("extends")) {
+                    do {
+                        bounds.add(parseType())
+                    }
+                    while (skip("&"))
+                }
+                result.add(SourceTypeParameterDeclaration(name, bounds))
+            }
+            while (skip(","))
+
+            expect(">")
+            return result
+        }
+
+        private fun parseTypeList(): List<SourceTypeReference> {
+            val result = arrayListOf(parseType())
+            while (skip(",")) {
+                result.add(parseType())
+            }
+            return result
+        }
+
+        private fun parseQualifiedName(): List<String> {
+            val result = arrayListOf(expectIdentifier())
+            while (at(".") && nextIsIdentifier()) {
+                lexer.advance()
+                result.add(expectIdentifier())
+            }
+            return result
+        }
+
+        private fun skipAnnotations() {
+            while (at("@") && !nextIs("interface")) {
+                parseAnnotation()
+            }
+        }
+
+        private fun skipBalanced(open: String, close: String) {
+            expect(open)
+            var depth = 1
+            while (depth > 0) {
+                if (lexer.tokenType == JavaTokenType.EOF) throw syntaxError(close)
+                if (at(open)) depth++
+                else if (at(close)) depth--
+                lexer.advance()
+            }
+        }
+
+        /**
+         * Skips tokens up to one of the given ones outside of any brackets
+         */
+        private fun skipUntil(vararg delimiters: String) {
+            var depth = 0
+            while (true) {
+                if (lexer.tokenType == JavaTokenType.EOF) throw syntaxError(delimiters.joinToString())
+                if (depth == 0 && delimiters.any { at(it) }) return
+                when {
+                    at("(") || at("[") || at("{") -> depth++
+                    at(")") || at("]") || at("}") -> depth--
+                }
+                lexer.advance()
+            }
+        }
+
+        private fun atClassKeyword(): Boolean =
+                at("class") || at("interface") || at("enum") || (at("@") && nextIs("interface"))
+
+        private fun at(token: String): Boolean = lexer.tokenIs(token)
+
+        private fun nextIs(token: String): Boolean = lookAhead { lexer.tokenIs(token) }
+
+        private fun nextIsIdentifier(): Boolean = lookAhead { lexer.tokenType == JavaTokenType.IDENTIFIER }
+
+        private inline fun lookAhead(predicate: () -> Boolean): Boolean {
+            val start = lexer.tokenStart
+            lexer.advance()
+            val result = predicate()
+            lexer.reset(start)
+            return result
+        }
+
+        private fun skip(token: String): Boolean {
+            if (!at(token)) return false
+            lexer.advance()
+            return true
+        }
+
+        private fun expect(token: String) {
+            if (!skip(token)) throw syntaxError("'$token'")
+        }
+
+        private fun expectIdentifier(): String {
+            if (lexer.tokenType != JavaTokenType.IDENTIFIER) throw syntaxError("identifier")
+            val result = lexer.tokenText()
+            lexer.advance()
+            return result
+        }
+
+        private fun syntaxError(expected: String): JavaSourceSyntaxException =
+                JavaSourceSyntaxException("$expected expected at ${lexer.tokenStart}")
+    }
+
+    private fun parseNumber(text: String): Any {
+        val number = text.replace("_", "")
+        val isHex = number.startsWith("0x") || number.startsWith("0X")
+        try {
+            return when {
+                number.endsWith("l") || number.endsWith("L") -> parseInteger(number.substring(0, number.length() - 1), isHex)
+                isHex && (number.contains("p") || number.contains("P")) ->
+                    if (number.endsWith("f") || number.endsWith("F")) java.lang.Float.parseFloat(number)
+                    else java.lang.Double.parseDouble(number)
+                isHex -> parseInteger(number, isHex).toInt()
+                number.endsWith("f") || number.endsWith("F") -> java.lang.Float.parseFloat(number)
+                number.endsWith("d") || number.endsWith("D") || number.contains(".") || number.contains("e") || number.contains("E") ->
+                    java.lang.Double.parseDouble(number)
+                // Overflows only for 2147483648, which is only allowed after the minus and is negated back to Int.MIN_VALUE
+                else -> parseInteger(number, isHex).toInt()
+            }
+        }
+        catch (e: NumberFormatException) {
+            throw JavaSourceSyntaxException("Malformed number: $text")
+        }
+    }
+
+    private fun parseInteger(number: String, isHex: Boolean): Long = when {
+        isHex -> BigInteger(number.substring(2), 16).toLong()
+        number.startsWith("0b") || number.startsWith("0B") -> BigInteger(number.substring(2), 2).toLong()
+        number.length() > 1 && number.startsWith("0") -> BigInteger(number.substring(1), 8).toLong()
+        else -> BigInteger(number).toLong()
+    }
+
+    private fun negate(value: Any): Any = when (value) {
+        is Int -> -value
+        is Long -> -value
+        is Float -> -value
+        is Double -> -value
+        else -> value
+    }
+
+    /**
+     * @param literal a string or a character literal including the quotes
+     */
+    private fun unescape(literal: String): String {
+        val result = StringBuilder(literal.length())
+        var i = 1
+        while (i < literal.length() - 1) {
+            val c = literal[i++]
+            if (c != '\\') {
+                result.append(c)
+                continue
+            }
+
+            val escaped = literal[i++]
+            when (escaped) {
+                'b' -> result.append('\b')
+                't' -> result.append('\t')
+                'n' -> result.append('\n')
+                'f' -> result.append('\u000C')
+                'r' -> result.append('\r')
+                '"', '\'', '\\' -> result.append(escaped)
+                in '0'..'7' -> {
+                    // Octal escapes have up to three digits, and three only if the first one is at most 3
+                    val maxLength = if (escaped <= '3') 3 else 2
+                    var end = i
+                    while (end < literal.length() - 1 && end - i + 1 < maxLength && literal[end] in '0'..'7') end++
+                    result.append(Integer.parseInt(literal.substring(i - 1, end), 8).toChar())
+                    i = end
+                }
+                else -> throw JavaSourceSyntaxException("Illegal escape: \\$escaped")
+            }
+        }
+        return result.toString()
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+public enum class JavaTokenType {
+    // Keywords are identifiers too, they're told apart by the parser
+    IDENTIFIER,
+    NUMBER,
+    CHAR,
+    STRING,
+    // All operators are single characters except for "...", e.g. ">>" is two tokens, which is what generics need
+    OPERATOR,
+    EOF
+}
+
+public class JavaSourceSyntaxException(message: String) : RuntimeException(message)
+
+/**
+ * Splits Java source into tokens, skipping whitespace and comments. Token text is not allocated unless asked for,
+ * so that skipping method bodies costs only a pass over the characters.
+ *
+ * Unicode escapes are translated before lexing, because they may stand for any character of the source and not only
+ * in literals (JLS 3.3). Positions of tokens are positions in the translated text
+ */
+public class JavaSourceLexer(text: String) {
+    private val text = translateUnicodeEscapes(text)
+
+    public var tokenType: JavaTokenType = JavaTokenType.EOF
+        private set
+
+    public var tokenStart: Int = 0
+        private set
+
+    private var tokenEnd: Int = 0
+
+    init {
+        advance()
+    }
+
+    public fun advance() {
+        var i = skipWhitespaceAndComments(tokenEnd)
+        tokenStart = i
+        if (i >= text.length()) {
+            tokenType = JavaTokenType.EOF
+            tokenEnd = i
+            return
+        }
+
+        val c = text[i]
+        when {
+            Character.isJavaIdentifierStart(c) -> {
+                i++
+                while (i < text.length() && Character.isJavaIdentifierPart(text[i])) i++
+                tokenType = JavaTokenType.IDENTIFIER
+            }
+            Character.isDigit(c) || (c == '.' && i + 1 < text.length() && Character.isDigit(text[i + 1])) -> {
+                i = skipNumber(i)
+                tokenType = JavaTokenType.NUMBER
+            }
+            c == '"' || c == '\'' -> {
+                i = skipQuoted(i, c)
+                tokenType = if (c == '"') JavaTokenType.STRING else JavaTokenType.CHAR
+            }
+            text.startsWith("...", i) -> {
+                i += 3
+                tokenType = JavaTokenType.OPERATOR
+            }
+            else -> {
+                i++
+                tokenType = JavaTokenType.OPERATOR
+            }
+        }
+        tokenEnd = i
+    }
+
+    public fun tokenText(): String = text.substring(tokenStart, tokenEnd)
+
+    public fun tokenIs(expected: String): Boolean =
+            tokenType != JavaTokenType.EOF && tokenEnd - tokenStart == expected.length() && text.startsWith(expected, tokenStart)
+
+    /**
+     * Moves back to the token at the given position, which must be a value of [tokenStart] seen earlier
+     */
+    public fun reset(position: Int) {
+        tokenEnd = position
+        advance()
+    }
+
+    private fun skipWhitespaceAndComments(start: Int): Int {
+        var i = start
+        while (i < text.length()) {
+            val c = text[i]
+            if (Character.isWhitespace(c)) {
+                i++
+            }
+            else if (text.startsWith("//", i)) {
+                while (i < text.length() && text[i] != '\n' && text[i] != '\r') i++
+            }
+            else if (text.startsWith("/*", i)) {
+                val end = text.indexOf("*/", i + 2)
+                if (end < 0) throw JavaSourceSyntaxException("Unterminated comment at $i")
+                i = end + 2
+            }
+            else {
+                break
+            }
+        }
+        return i
+    }
+
+    private fun skipNumber(start: Int): Int {
+        var i = start
+        val isHex = text.startsWith("0x", i) || text.startsWith("0X", i)
+        while (i < text.length()) {
+            val c = text[i]
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                i++
+            }
+            else if ((c == '+' || c == '-') && isExponentChar(text[i - 1], isHex)) {
+                i++
+            }
+            else {
+                break
+            }
+        }
+        return i
+    }
+
+    private fun isExponentChar(c: Char, isHex: Boolean): Boolean =
+            if (isHex) c == 'p' || c == 'P' else c == 'e' || c == 'E'
+
+    private fun skipQuoted(start: Int, quote: Char): Int {
+        var i = start + 1
+        while (i < text.length()) {
+            val c = text[i]
+            when (c) {
+                quote -> return i + 1
+                '\\' -> i += 2
+                '\n', '\r' -> throw JavaSourceSyntaxException("Line break in a literal at $start")
+                else -> i++
+            }
+        }
+        throw JavaSourceSyntaxException("Unterminated literal at $start")
+    }
+}
+
+private fun translateUnicodeEscapes(text: String): String {
+    if (text.indexOf("\\u") < 0) return text
+
+    val result = StringBuilder(text.length())
+    var i = 0
+    while (i < text.length()) {
+        val c = text[i]
+        if (c != '\\' || i + 1 == text.length()) {
+            result.append(c)
+            i++
+        }
+        else if (text[i + 1] == '\\') {
+            // An escaped backslash, the second one can't start a unicode escape
+            result.append(c).append(c)
+            i += 2
+        }
+        else if (text[i + 1] == 'u') {
+            val start = i
+            i++
+            while (i < text.length() && text[i] == 'u') i++
+            val digits = if (i + 4 <= text.length()) text.substring(i, i + 4) else ""
+            if (digits.length() != 4 || !digits.all { Character.digit(it, 16) >= 0 }) {
+                throw JavaSourceSyntaxException("Malformed unicode escape at $start")
+            }
+            result.append(Integer.parseInt(digits, 16).toChar())
+            i += 4
+        }
+        else {
+            result.append(c)
+            i++
+        }
+    }
+    return result.toString()
+}
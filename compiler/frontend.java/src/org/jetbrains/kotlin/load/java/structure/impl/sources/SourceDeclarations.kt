@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import org.jetbrains.kotlin.builtins.PrimitiveType
+
+// Declarations of a Java source file exactly as they are written, before any name resolution. See JavaSourceDeclarationParser
+
+public class SourceFileDeclarations(
+        val packageName: List<String>,
+        val imports: List<SourceImport>,
+        val classes: List<SourceClassDeclaration>,
+        /**
+         * Whether some of the constants or annotation arguments are initialized with expressions other than literals and references,
+         * e.g. "A + 1". The parser doesn't evaluate them, so the declarations alone don't give the same results as PSI for such a file
+         */
+        val hasUnevaluatedExpressions: Boolean
+)
+
+public class SourceImport(val name: List<String>, val isStatic: Boolean, val isOnDemand: Boolean)
+
+public class SourceClassDeclaration(
+        /**
+         * Modifiers as the class file access flags, including the implicit ones (e.g. static for nested interfaces)
+         */
+        val access: Int,
+        val annotations: List<SourceAnnotationDeclaration>,
+        val name: String,
+        val typeParameters: List<SourceTypeParameterDeclaration>,
+        val supertypes: List<SourceTypeReference>,
+        val fields: List<SourceFieldDeclaration>,
+        /**
+         * Methods and constructors, the latter have no return type
+         */
+        val methods: List<SourceMethodDeclaration>,
+        val nestedClasses: List<SourceClassDeclaration>
+)
+
+public class SourceFieldDeclaration(
+        val access: Int,
+        val annotations: List<SourceAnnotationDeclaration>,
+        val name: String,
+        val type: SourceTypeReference,
+        /**
+         * Value of the initializer if it's a literal, possibly negated, and the field is final. Not converted to the field type.
+         * Other initializers of final fields which may be constants are reported by [SourceFileDeclarations.hasUnevaluatedExpressions]
+         */
+        val initializerValue: Any?
+)
+
+public class SourceMethodDeclaration(
+        val access: Int,
+        val annotations: List<SourceAnnotationDeclaration>,
+        val typeParameters: List<SourceTypeParameterDeclaration>,
+        val returnType: SourceTypeReference?,
+        val name: String,
+        val valueParameters: List<SourceValueParameterDeclaration>,
+        val hasDefaultValue: Boolean
+)
+
+public class SourceValueParameterDeclaration(
+        val annotations: List<SourceAnnotationDeclaration>,
+        val type: SourceTypeReference,
+        val isVararg: Boolean,
+        val name: String
+)
+
+public class SourceTypeParameterDeclaration(val name: String, val bounds: List<SourceTypeReference>)
+
+public abstract class SourceTypeReference
+
+/**
+ * @param type null for void
+ */
+public class SourcePrimitiveTypeReference(val type: PrimitiveType?) : SourceTypeReference()
+
+public class SourceArrayTypeReference(val componentType: SourceTypeReference) : SourceTypeReference()
+
+public class SourceWildcardTypeReference(val bound: SourceTypeReference?, val isExtends: Boolean) : SourceTypeReference()
+
+/**
+ * A possibly qualified name with type arguments for each of its segments, e.g. Map.Entry<K, V> or java.util.List<String>.
+ * It's not known before resolution which segments are packages and which are classes or type variables
+ */
+public class SourceClassifierTypeReference(
+        val names: List<String>,
+        val typeArguments: List<List<SourceTypeReference>>
+) : SourceTypeReference()
+
+public class SourceAnnotationDeclaration(val name: List<String>, val arguments: List<SourceAnnotationArgumentDeclaration>)
+
+/**
+ * Annotation arguments which are not literals, references or class literals, e.g. constant expressions, are not kept,
+ * see [SourceFileDeclarations.hasUnevaluatedExpressions]
+ */
+public class SourceAnnotationArgumentDeclaration(val name: String?, val value: SourceAnnotationValue)
+
+public abstract class SourceAnnotationValue
+
+public class SourceLiteralValue(val value: Any?) : SourceAnnotationValue()
+
+/**
+ * A reference to an enum entry or to a constant, which can be told apart only after resolution
+ */
+public class SourceReferenceValue(val names: List<String>) : SourceAnnotationValue()
+
+public class SourceClassLiteralValue(val type: SourceTypeReference) : SourceAnnotationValue()
+
+public class SourceArrayValue(val elements: List<SourceAnnotationValue>) : SourceAnnotationValue()
+
+public class SourceAnnotationValueAnnotation(val annotation: SourceAnnotationDeclaration) : SourceAnnotationValue()
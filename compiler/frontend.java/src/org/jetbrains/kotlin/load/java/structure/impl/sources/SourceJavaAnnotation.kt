@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.*
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import kotlin.properties.Delegates
+
+/**
+ * Annotation from a Java source, resolved in the scope of the given class when it's asked for its class or arguments
+ */
+public class SourceJavaAnnotation(
+        private val declaration: SourceAnnotationDeclaration,
+        private val sourceClass: SourceJavaClass,
+        private val includeInherited: Boolean = true
+) : JavaAnnotation {
+    private val classId: ClassId by Delegates.lazy {
+        sourceClass.resolveClassName(declaration.name, includeInherited) ?: ClassId.topLevel(FqName.fromSegments(declaration.name))
+    }
+
+    private val argumentList: List<JavaAnnotationArgument> by Delegates.lazy {
+        declaration.arguments.map { argument -> createArgument(argument.name?.let { Name.identifier(it) }, argument.value) }.filterNotNull()
+    }
+
+    override fun findArgument(name: Name): JavaAnnotationArgument? = argumentList.firstOrNull { it.name == name }
+
+    override fun getArguments(): Collection<JavaAnnotationArgument> = argumentList
+
+    override fun getClassId(): ClassId = classId
+
+    override fun resolve(): JavaClass? = sourceClass.findClass(classId)
+
+    private fun createArgument(name: Name?, value: SourceAnnotationValue): JavaAnnotationArgument? {
+        return when (value) {
+            is SourceLiteralValue -> PlainJavaLiteralAnnotationArgument(name, value.value)
+            is SourceArrayValue -> PlainJavaArrayAnnotationArgument(name, value.elements.map { createArgument(null, it) }.filterNotNull())
+            is SourceClassLiteralValue -> PlainJavaClassObjectAnnotationArgument(
+                    name, sourceClass.resolveType(value.type, sourceClass.context, includeInherited)
+            )
+            is SourceAnnotationValueAnnotation -> PlainJavaAnnotationAsAnnotationArgument(
+                    name, SourceJavaAnnotation(value.annotation, sourceClass, includeInherited)
+            )
+            is SourceReferenceValue -> createReferenceArgument(name, value.names)
+            else -> null
+        }
+    }
+
+    /**
+     * References to enum entries become enum arguments and references to constants become literals with their values,
+     * references to anything else are not supported
+     */
+    private fun createReferenceArgument(name: Name?, names: List<String>): JavaAnnotationArgument? {
+        // Unqualified references are only supported for the fields of the class itself
+        val containerClassId =
+                if (names.size() == 1) sourceClass.classId
+                else sourceClass.resolveClassName(names.subList(0, names.size() - 1), includeInherited)
+        if (containerClassId == null) return null
+
+        val fieldName = Name.identifier(names.last())
+        val field = sourceClass.findClass(containerClassId)?.getFields()?.firstOrNull { it.getName() == fieldName } ?: return null
+        if (field.isEnumEntry()) {
+            return PlainJavaEnumValueAnnotationArgument(
+                    name, "L" + sourceClass.getInternalName(containerClassId) + ";", fieldName, sourceClass.context
+            )
+        }
+
+        val constantValue = when (field) {
+            is BinaryJavaField -> field.constantValue
+            is SourceJavaField -> field.constantValue
+            else -> null
+        }
+        return constantValue?.let { PlainJavaLiteralAnnotationArgument(name, it) }
+    }
+
+    override fun toString(): String = "SourceJavaAnnotation: " + declaration.name.joinToString(".")
+}
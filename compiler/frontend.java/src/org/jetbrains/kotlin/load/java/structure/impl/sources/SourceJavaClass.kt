@@ -0,0 +1,289 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.*
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.Opcodes
+import java.util.ArrayList
+import java.util.HashMap
+import java.util.HashSet
+import kotlin.properties.Delegates
+
+/**
+ * Java class read from a source file with [JavaSourceDeclarationParser], without building PSI for it. Names in the declarations
+ * are resolved when the corresponding members are requested for the first time, and then they are represented with the same types
+ * as the classes read from class files (see BinaryJavaClass), as if the source was compiled.
+ *
+ * Classes are looked up with the finder of the file, which is expected to return the same instance for the same class id
+ */
+public class SourceJavaClass(
+        private val file: SourceJavaFile,
+        internal val classId: ClassId,
+        private val declaration: SourceClassDeclaration,
+        classFinder: (ClassId) -> JavaClass?
+) : BinaryJavaModifierListOwner, BinaryJavaAnnotationOwner, JavaClass {
+    override val access: Int = declaration.access
+
+    public val virtualFile: VirtualFile
+        get() = file.virtualFile
+
+    internal val context: ClassifierResolutionContext = ClassifierResolutionContext(classFinder) {
+        if (isStatic()) null else (getOuterClass() as? SourceJavaClass)?.context
+    }
+
+    private val internalName = getInternalName(classId)
+
+    // Bounds of the type parameters and supertypes of the class can't refer to the classes inherited by it
+    private val typeParameters: List<JavaTypeParameter> =
+            createTypeParameters(declaration.typeParameters, this, context, includeInherited = false)
+
+    private val supertypes: Collection<JavaClassifierType> by Delegates.lazy { resolveSupertypes() }
+
+    private val fields: Collection<JavaField> by Delegates.lazy {
+        declaration.fields.map { SourceJavaField(this, it) }
+    }
+
+    private val methods: Collection<JavaMethod> by Delegates.lazy {
+        declaration.methods.filter { it.returnType != null }.map { SourceJavaMethod(this, it) }
+    }
+
+    private val constructors: Collection<JavaConstructor> by Delegates.lazy {
+        declaration.methods.filter { it.returnType == null }.map { SourceJavaConstructor(this, it) }
+    }
+
+    private val annotationList: Collection<JavaAnnotation> =
+            declaration.annotations.map { SourceJavaAnnotation(it, this, includeInherited = false) }
+
+    // Simple names resolved in the scope of the class body, null values stand for names which are not found
+    private val resolvedNames = HashMap<String, ClassId?>()
+
+    // Member classes inherited from the supertypes by their simple names, the nearest supertypes go first
+    private val inheritedClasses: Map<String, ClassId> by Delegates.lazy { collectInheritedClasses() }
+
+    private fun resolveSupertypes(): Collection<JavaClassifierType> {
+        val result = ArrayList<JavaClassifierType>()
+        if (isEnum()) {
+            result.add(PlainJavaClassifierType(context, "java/lang/Enum", null, listOf(getDefaultType()), null, null))
+        }
+        for (reference in declaration.supertypes) {
+            val type = resolveType(reference, context, includeInherited = false) as? PlainJavaClassifierType ?: continue
+            // java.lang.Object is not considered a supertype, as in the class file based implementation
+            if (type.internalName != "java/lang/Object") {
+                result.add(type)
+            }
+        }
+        if (isAnnotationType()) {
+            result.add(PlainJavaClassifierType(context, "java/lang/annotation/Annotation", null, listOf(), null, null))
+        }
+        return result
+    }
+
+    internal fun findClass(classId: ClassId): JavaClass? = file.findClass(classId)
+
+    internal fun resolveType(reference: SourceTypeReference, context: ClassifierResolutionContext, includeInherited: Boolean = true): JavaType {
+        return when (reference) {
+            is SourcePrimitiveTypeReference -> PlainJavaPrimitiveType(reference.type)
+            is SourceArrayTypeReference -> PlainJavaArrayType(resolveType(reference.componentType, context, includeInherited))
+            is SourceWildcardTypeReference -> PlainJavaWildcardType(
+                    reference.bound?.let { resolveType(it, context, includeInherited) }, reference.isExtends, PlainJavaTypeProvider(context)
+            )
+            is SourceClassifierTypeReference -> resolveClassifierType(reference, context, includeInherited)
+            else -> throw IllegalArgumentException("Unknown type reference: $reference")
+        }
+    }
+
+    private fun resolveClassifierType(
+            reference: SourceClassifierTypeReference,
+            context: ClassifierResolutionContext,
+            includeInherited: Boolean
+    ): PlainJavaClassifierType {
+        val names = reference.names
+        val typeArguments = reference.typeArguments.last().map { resolveType(it, context, includeInherited) }
+
+        // Type variables shadow classes with the same name
+        if (names.size() == 1 && context.resolveTypeParameter(names[0]) != null) {
+            return PlainJavaClassifierType(context, null, names[0], listOf(), null, null)
+        }
+
+        val classId = resolveClassName(names, includeInherited)
+        if (classId == null) {
+            // Unresolved classes are kept as they are written, the class finder won't find them either
+            return PlainJavaClassifierType(context, names.joinToString("/"), null, typeArguments, null, null)
+        }
+
+        val outerType = resolveOuterType(classId, reference, names.lastIndex, context, includeInherited)
+        return PlainJavaClassifierType(context, getInternalName(classId), null, typeArguments, outerType, null)
+    }
+
+    /**
+     * Type of the outer class for references to inner classes, either explicit, e.g. Outer<String>.Inner, or implicit, when an inner class
+     * of a generic class is referred to by its simple name in the body of the latter
+     */
+    private fun resolveOuterType(
+            classId: ClassId,
+            reference: SourceClassifierTypeReference,
+            index: Int,
+            context: ClassifierResolutionContext,
+            includeInherited: Boolean
+    ): PlainJavaClassifierType? {
+        if (!classId.isNestedClass()) return null
+        val outerClassId = classId.getOuterClassId()
+
+        if (index > 0 && reference.typeArguments[index - 1].isNotEmpty()) {
+            val outerTypeArguments = reference.typeArguments[index - 1].map { resolveType(it, context, includeInherited) }
+            val outerOuterType = resolveOuterType(outerClassId, reference, index - 1, context, includeInherited)
+            return PlainJavaClassifierType(context, getInternalName(outerClassId), null, outerTypeArguments, outerOuterType, null)
+        }
+
+        var enclosingClass: SourceJavaClass? = this
+        while (enclosingClass != null && enclosingClass.classId != outerClassId) {
+            enclosingClass = enclosingClass.getOuterClass() as? SourceJavaClass
+        }
+        if (enclosingClass == null || (findClass(classId)?.isStatic() ?: true)) return null
+        return enclosingClass.getDefaultType() as? PlainJavaClassifierType
+    }
+
+    /**
+     * Resolves a possibly qualified name of a class, e.g. Map.Entry or java.util.Map.Entry
+     *
+     * @param includeInherited whether the member classes inherited by this class are visible
+     */
+    internal fun resolveClassName(names: List<String>, includeInherited: Boolean = true): ClassId? {
+        val first = resolveSimpleName(names[0], includeInherited) ?: return file.resolveQualifiedName(names)
+        return file.findNestedClass(first, names.subList(1, names.size()))
+    }
+
+    private fun resolveSimpleName(name: String, includeInherited: Boolean): ClassId? {
+        if (!includeInherited) return doResolveSimpleName(name, false)
+        if (resolvedNames.containsKey(name)) return resolvedNames[name]
+
+        val result = doResolveSimpleName(name, true)
+        resolvedNames[name] = result
+        return result
+    }
+
+    // Member classes of this class, declared or inherited, shadow the ones of the outer classes, which shadow the file scope
+    private fun doResolveSimpleName(name: String, includeInherited: Boolean): ClassId? {
+        if (declaration.nestedClasses.any { it.name == name }) return classId.createNestedClassId(Name.identifier(name))
+        if (includeInherited) {
+            inheritedClasses[name]?.let { return it }
+        }
+
+        val outerClass = getOuterClass() as? SourceJavaClass
+        return if (outerClass != null) outerClass.resolveSimpleName(name, true) else file.resolveSimpleName(name)
+    }
+
+    private fun collectInheritedClasses(): Map<String, ClassId> {
+        val result = HashMap<String, ClassId>()
+        val visited = HashSet<JavaClass>()
+        var current: List<JavaClass> = listOf(this)
+        while (current.isNotEmpty()) {
+            val next = ArrayList<JavaClass>()
+            for (javaClass in current) {
+                for (supertype in javaClass.getSupertypes()) {
+                    val superclass = supertype.getClassifier() as? JavaClass ?: continue
+                    if (!visited.add(superclass)) continue
+
+                    for (innerClass in superclass.getInnerClasses()) {
+                        val innerClassName = innerClass.getName().asString()
+                        if (!result.containsKey(innerClassName)) {
+                            getClassId(innerClass)?.let { result[innerClassName] = it }
+                        }
+                    }
+                    next.add(superclass)
+                }
+            }
+            current = next
+        }
+        return result
+    }
+
+    private fun getClassId(javaClass: JavaClass): ClassId? {
+        if (javaClass is SourceJavaClass) return javaClass.classId
+
+        val outerClass = javaClass.getOuterClass()
+        if (outerClass != null) return getClassId(outerClass)?.createNestedClassId(javaClass.getName())
+
+        return javaClass.getFqName()?.let { ClassId.topLevel(it) }
+    }
+
+    /**
+     * Maps the class id to the internal name, registering the nested classes in the context so that it maps the name back
+     */
+    internal fun getInternalName(classId: ClassId): String {
+        if (!classId.isNestedClass()) {
+            return classId.asSingleFqName().asString().replace('.', '/')
+        }
+
+        val outerInternalName = getInternalName(classId.getOuterClassId())
+        val simpleName = classId.getShortClassName().asString()
+        val internalName = outerInternalName + "$" + simpleName
+        context.addInnerClass(internalName, outerInternalName, simpleName)
+        return internalName
+    }
+
+    override fun getName(): Name = classId.getShortClassName()
+
+    override fun getFqName(): FqName = classId.asSingleFqName()
+
+    override fun getTypeParameters(): List<JavaTypeParameter> = typeParameters
+
+    override fun getSupertypes(): Collection<JavaClassifierType> = supertypes
+
+    override fun getInnerClasses(): Collection<JavaClass> =
+            declaration.nestedClasses.map { findClass(classId.createNestedClassId(Name.identifier(it.name))) }.filterNotNull()
+
+    override fun getOuterClass(): JavaClass? = if (classId.isNestedClass()) findClass(classId.getOuterClassId()) else null
+
+    override fun getMethods(): Collection<JavaMethod> = methods
+
+    override fun getFields(): Collection<JavaField> = fields
+
+    override fun getConstructors(): Collection<JavaConstructor> = constructors
+
+    override fun getAnnotations(): Collection<JavaAnnotation> = annotationList
+
+    override fun isInterface(): Boolean = (access and Opcodes.ACC_INTERFACE) != 0
+    override fun isAnnotationType(): Boolean = (access and Opcodes.ACC_ANNOTATION) != 0
+    override fun isEnum(): Boolean = (access and Opcodes.ACC_ENUM) != 0
+
+    override fun getDefaultType(): JavaClassifierType {
+        val outerType = if (isStatic()) null else getOuterClass()?.getDefaultType() as? PlainJavaClassifierType
+        return PlainJavaClassifierType(context, internalName, null, typeParameters.map { it.getType() }, outerType, null)
+    }
+
+    override fun createImmediateType(substitutor: JavaTypeSubstitutor): JavaType {
+        val substitutionMap = substitutor.getSubstitutionMap()
+        val typeArguments = typeParameters.map { substitutionMap[it] }
+        // Type parameters substituted with null mean a raw type, see JavaTypeSubstitutorImpl
+        val arguments = if (typeArguments.any { it == null }) listOf() else typeArguments.filterNotNull()
+        return PlainJavaClassifierType(context, internalName, null, arguments, null, substitutionMap)
+    }
+
+    override fun getOriginKind(): JavaClass.OriginKind = JavaClass.OriginKind.SOURCE
+
+    override fun equals(other: Any?): Boolean = other is SourceJavaClass && classId == other.classId && virtualFile == other.virtualFile
+
+    override fun hashCode(): Int = classId.hashCode()
+
+    override fun toString(): String = javaClass.getName() + ": " + classId
+}
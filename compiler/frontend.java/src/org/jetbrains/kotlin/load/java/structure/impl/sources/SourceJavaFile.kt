@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import java.util.HashMap
+
+/**
+ * Java source file read with [JavaSourceDeclarationParser]. Creates the classes declared in it and resolves the names
+ * used in their declarations in the scope of the file: imports, the package of the file and java.lang.
+ *
+ * Existence of classes is checked with the given finder, which is expected to find both Java classes and Kotlin light classes,
+ * because Java sources may refer to Kotlin classes compiled together with them
+ */
+public class SourceJavaFile(
+        public val virtualFile: VirtualFile,
+        private val declarations: SourceFileDeclarations,
+        private val classFinder: (ClassId) -> JavaClass?
+) {
+    private val packageFqName = FqName.fromSegments(declarations.packageName)
+
+    // Null values stand for names which are not found
+    private val resolvedSimpleNames = HashMap<String, ClassId?>()
+    private val resolvedQualifiedNames = HashMap<List<String>, ClassId?>()
+
+    /**
+     * @return the class with the given id declared in this file, or null if there's no such class
+     */
+    public fun createClass(classId: ClassId): SourceJavaClass? {
+        if (classId.getPackageFqName() != packageFqName) return null
+
+        val segments = classId.getRelativeClassName().pathSegments()
+        var declaration = declarations.classes.firstOrNull { it.name == segments[0].asString() } ?: return null
+        for (segment in segments.subList(1, segments.size())) {
+            declaration = declaration.nestedClasses.firstOrNull { it.name == segment.asString() } ?: return null
+        }
+        return SourceJavaClass(this, classId, declaration, classFinder)
+    }
+
+    internal fun findClass(classId: ClassId): JavaClass? = classFinder(classId)
+
+    /**
+     * Resolves a simple name of a class which is not a member of any class of this file. Single-type imports shadow the classes
+     * of the package, which shadow on-demand imports and java.lang, see JLS 6.4.1
+     */
+    internal fun resolveSimpleName(name: String): ClassId? {
+        if (resolvedSimpleNames.containsKey(name)) return resolvedSimpleNames[name]
+
+        val result = doResolveSimpleName(name)
+        resolvedSimpleNames[name] = result
+        return result
+    }
+
+    private fun doResolveSimpleName(name: String): ClassId? {
+        for (importDirective in declarations.imports) {
+            if (importDirective.isOnDemand || importDirective.name.last() != name) continue
+
+            val classId =
+                    if (importDirective.isStatic) {
+                        // Static imports may import nested classes too
+                        resolveQualifiedName(importDirective.name.subList(0, importDirective.name.size() - 1))?.let { findNestedClass(it, name) }
+                    }
+                    else {
+                        resolveQualifiedName(importDirective.name)
+                    }
+            if (classId != null) return classId
+        }
+
+        val classInPackage = ClassId(packageFqName, Name.identifier(name))
+        if (declarations.classes.any { it.name == name } || classFinder(classInPackage) != null) return classInPackage
+
+        for (importDirective in declarations.imports) {
+            if (!importDirective.isOnDemand) continue
+
+            if (!importDirective.isStatic) {
+                val classId = ClassId(FqName.fromSegments(importDirective.name), Name.identifier(name))
+                if (classFinder(classId) != null) return classId
+            }
+            // On-demand imports of a class import its nested classes
+            resolveQualifiedName(importDirective.name)?.let { findNestedClass(it, name) }?.let { return it }
+        }
+
+        val classInJavaLang = ClassId(JAVA_LANG, Name.identifier(name))
+        return if (classFinder(classInJavaLang) != null) classInJavaLang else null
+    }
+
+    /**
+     * Resolves a fully qualified name of a class, possibly nested, e.g. java.util.Map.Entry
+     */
+    internal fun resolveQualifiedName(names: List<String>): ClassId? {
+        if (resolvedQualifiedNames.containsKey(names)) return resolvedQualifiedNames[names]
+
+        var result: ClassId? = null
+        // Classes obscure packages with the same name, see JLS 6.4.2, so the shortest package is tried first
+        for (i in names.indices) {
+            val topLevelClassId = ClassId(FqName.fromSegments(names.subList(0, i)), Name.identifier(names[i]))
+            if (classFinder(topLevelClassId) != null) {
+                result = findNestedClass(topLevelClassId, names.subList(i + 1, names.size()))
+                break
+            }
+        }
+
+        resolvedQualifiedNames[names] = result
+        return result
+    }
+
+    internal fun findNestedClass(outerClassId: ClassId, names: List<String>): ClassId? {
+        var result = outerClassId
+        for (name in names) {
+            result = findNestedClass(result, name) ?: return null
+        }
+        return result
+    }
+
+    private fun findNestedClass(outerClassId: ClassId, name: String): ClassId? {
+        val classId = outerClassId.createNestedClassId(Name.identifier(name))
+        return if (classFinder(classId) != null) classId else null
+    }
+
+    companion object {
+        private val JAVA_LANG = FqName("java.lang")
+    }
+}
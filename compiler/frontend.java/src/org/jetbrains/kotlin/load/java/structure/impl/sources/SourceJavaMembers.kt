@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.java.structure.impl.sources
+
+import org.jetbrains.kotlin.builtins.PrimitiveType
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.*
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.Opcodes
+import kotlin.properties.Delegates
+
+public class SourceJavaField(
+        private val sourceClass: SourceJavaClass,
+        private val declaration: SourceFieldDeclaration
+) : BinaryJavaMember(declaration.access, sourceClass, Name.identifier(declaration.name)), JavaField {
+    private val type: JavaType by Delegates.lazy { sourceClass.resolveType(declaration.type, sourceClass.context) }
+
+    /**
+     * Value of the literal initializer converted to the field type, or null if the field is not a constant with such an initializer.
+     * Constants initialized with other expressions, e.g. "A + 1", are not recognized
+     */
+    public val constantValue: Any? by Delegates.lazy { convertConstantValue() }
+
+    init {
+        declaration.annotations.mapTo(annotationList) { SourceJavaAnnotation(it, sourceClass) }
+    }
+
+    private fun convertConstantValue(): Any? {
+        val value = declaration.initializerValue ?: return null
+        val fieldType = declaration.type
+
+        if (fieldType is SourceClassifierTypeReference) {
+            return if (value is String && sourceClass.resolveClassName(fieldType.names) == JAVA_LANG_STRING) value else null
+        }
+        if (fieldType !is SourcePrimitiveTypeReference) return null
+
+        // Same representation as the one of the ConstantValue attribute read by BinaryJavaClass
+        val number: Number? = if (value is Char) value.toInt() else value as? Number
+        return when (fieldType.type) {
+            PrimitiveType.BOOLEAN -> value as? Boolean
+            PrimitiveType.CHAR -> if (value is Char) value else number?.toChar()
+            PrimitiveType.BYTE -> number?.toByte()
+            PrimitiveType.SHORT -> number?.toShort()
+            PrimitiveType.INT -> number?.toInt()
+            PrimitiveType.LONG -> number?.toLong()
+            PrimitiveType.FLOAT -> number?.toFloat()
+            PrimitiveType.DOUBLE -> number?.toDouble()
+            else -> null
+        }
+    }
+
+    override fun isEnumEntry(): Boolean = (access and Opcodes.ACC_ENUM) != 0
+
+    override fun getType(): JavaType = type
+
+    companion object {
+        private val JAVA_LANG_STRING = ClassId.topLevel(FqName("java.lang.String"))
+    }
+}
+
+public class SourceJavaValueParameter(
+        private val name: Name,
+        private val type: JavaType,
+        private val isVararg: Boolean,
+        private val annotations: Collection<JavaAnnotation>
+) : BinaryJavaAnnotationOwner, JavaValueParameter {
+    override fun getName(): Name? = name
+
+    override fun getType(): JavaType = type
+
+    override fun isVararg(): Boolean = isVararg
+
+    override fun getAnnotations(): Collection<JavaAnnotation> = annotations
+}
+
+/**
+ * Base class for methods and constructors. Their type parameters are created right away, so that the names of the type variables
+ * can be told from the names of classes, and the types in the signature are resolved when they are asked for
+ */
+public abstract class SourceJavaMethodBase(
+        private val sourceClass: SourceJavaClass,
+        protected val declaration: SourceMethodDeclaration
+) : BinaryJavaMember(declaration.access, sourceClass, Name.identifier(declaration.name)), JavaTypeParameterListOwner {
+    protected val context: ClassifierResolutionContext = sourceClass.context.createChildContext()
+
+    private val typeParameters: List<JavaTypeParameter> = createTypeParameters(declaration.typeParameters, this, context)
+
+    protected val valueParameters: List<JavaValueParameter> by Delegates.lazy {
+        declaration.valueParameters.map { parameter ->
+            SourceJavaValueParameter(
+                    Name.identifier(parameter.name), sourceClass.resolveType(parameter.type, context), parameter.isVararg,
+                    parameter.annotations.map { SourceJavaAnnotation(it, sourceClass) }
+            )
+        }
+    }
+
+    init {
+        declaration.annotations.mapTo(annotationList) { SourceJavaAnnotation(it, sourceClass) }
+    }
+
+    protected fun resolveType(reference: SourceTypeReference): JavaType = sourceClass.resolveType(reference, context)
+
+    override fun getTypeParameters(): List<JavaTypeParameter> = typeParameters
+}
+
+public class SourceJavaMethod(
+        sourceClass: SourceJavaClass,
+        declaration: SourceMethodDeclaration
+) : SourceJavaMethodBase(sourceClass, declaration), JavaMethod {
+    private val returnType: JavaType by Delegates.lazy { resolveType(declaration.returnType!!) }
+
+    override fun hasAnnotationParameterDefaultValue(): Boolean = declaration.hasDefaultValue
+
+    override fun getValueParameters(): List<JavaValueParameter> = valueParameters
+
+    override fun getReturnType(): JavaType = returnType
+}
+
+public class SourceJavaConstructor(
+        sourceClass: SourceJavaClass,
+        declaration: SourceMethodDeclaration
+) : SourceJavaMethodBase(sourceClass, declaration), JavaConstructor {
+    override fun getValueParameters(): List<JavaValueParameter> = valueParameters
+}
+
+public class SourceJavaTypeParameter(
+        private val name: Name,
+        private val owner: JavaTypeParameterListOwner,
+        private val context: ClassifierResolutionContext,
+        resolveBounds: () -> List<JavaType>
+) : JavaTypeParameter {
+    private val upperBounds: Collection<JavaClassifierType> by Delegates.lazy {
+        val classifierBounds = resolveBounds().filterIsInstance<PlainJavaClassifierType>()
+        // A single java.lang.Object bound is the same as no bounds at all, as in BinaryJavaTypeParameter
+        if (classifierBounds.size() == 1 && classifierBounds[0].internalName == "java/lang/Object") listOf() else classifierBounds
+    }
+
+    override fun getName(): Name = name
+
+    override fun getUpperBounds(): Collection<JavaClassifierType> = upperBounds
+
+    override fun getOwner(): JavaTypeParameterListOwner? = owner
+
+    override fun getType(): JavaType = PlainJavaClassifierType(context, null, name.asString(), listOf(), null, null)
+
+    override fun getTypeProvider(): JavaTypeProvider = PlainJavaTypeProvider(context)
+
+    override fun toString(): String = name.asString()
+}
+
+/**
+ * Creates type parameters and adds them to the context, the bounds are resolved when they are asked for.
+ * The owner must be either the class or one of its members
+ */
+internal fun createTypeParameters(
+        declarations: List<SourceTypeParameterDeclaration>,
+        owner: JavaTypeParameterListOwner,
+        context: ClassifierResolutionContext,
+        includeInherited: Boolean = true
+): List<JavaTypeParameter> {
+    val sourceClass = owner as? SourceJavaClass ?: (owner as JavaMember).getContainingClass() as SourceJavaClass
+    return declarations.map { declaration ->
+        val typeParameter = SourceJavaTypeParameter(Name.identifier(declaration.name), owner, context) {
+            declaration.bounds.map { sourceClass.resolveType(it, context, includeInherited) }
+        }
+        context.addTypeParameter(typeParameter)
+        typeParameter
+    }
+}
@@ -31,6 +31,7 @@ import org.jetbrains.org.objectweb.asm.ClassVisitor;
 import org.jetbrains.org.objectweb.asm.FieldVisitor;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 
+import java.io.*;
 import java.util.*;
 
 import static org.jetbrains.org.objectweb.asm.ClassReader.*;
@@ -77,6 +78,123 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         }
     }
 
+    /**
+     * Thrown to stop reading a class file as soon as the first field or method is reached: the class name,
+     * its annotations and the InnerClasses attribute are all located before the members
+     */
+    private static class HeaderReadException extends RuntimeException {
+        private static final HeaderReadException INSTANCE = new HeaderReadException();
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Reads a class file, skipping its fields and methods. In a class file the class attributes, including the annotations and
+     * the InnerClasses attribute, follow the members, so they can't be reached without going through the whole stream,
+     * but the members are skipped instead of being loaded to memory. The result is a valid class file without members,
+     * which is enough for {@link #create}
+     */
+    @NotNull
+    public static byte[] readClassFileWithoutMembers(@NotNull InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        // Magic and version
+        copy(input, output, 8);
+
+        int constantPoolCount = input.readUnsignedShort();
+        output.writeShort(constantPoolCount);
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = input.readUnsignedByte();
+            output.writeByte(tag);
+            switch (tag) {
+                case 1: // Utf8
+                    int length = input.readUnsignedShort();
+                    output.writeShort(length);
+                    copy(input, output, length);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                    copy(input, output, 2);
+                    break;
+                case 15: // MethodHandle
+                    copy(input, output, 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 18: // InvokeDynamic
+                    copy(input, output, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    copy(input, output, 8);
+                    // Eight-byte constants take two entries of the pool
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        // Access flags, this class and super class
+        copy(input, output, 6);
+        int interfacesCount = input.readUnsignedShort();
+        output.writeShort(interfacesCount);
+        copy(input, output, 2 * interfacesCount);
+
+        // Fields and methods
+        skipMembers(input);
+        output.writeShort(0);
+        skipMembers(input);
+        output.writeShort(0);
+
+        int attributesCount = input.readUnsignedShort();
+        output.writeShort(attributesCount);
+        for (int i = 0; i < attributesCount; i++) {
+            copy(input, output, 2);
+            int length = input.readInt();
+            output.writeInt(length);
+            copy(input, output, length);
+        }
+
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void skipMembers(@NotNull DataInputStream input) throws IOException {
+        int count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // Access flags, name and descriptor
+            skip(input, 6);
+            int attributesCount = input.readUnsignedShort();
+            for (int j = 0; j < attributesCount; j++) {
+                skip(input, 2);
+                skip(input, input.readInt());
+            }
+        }
+    }
+
+    private static void copy(@NotNull DataInputStream input, @NotNull DataOutputStream output, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        input.readFully(buffer);
+        output.write(buffer);
+    }
+
+    private static void skip(@NotNull DataInputStream input, int length) throws IOException {
+        if (input.skipBytes(length) != length) {
+            throw new EOFException();
+        }
+    }
+
     @NotNull
     protected abstract byte[] getFileContents();
 
@@ -89,27 +207,40 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         final ReadKotlinClassHeaderAnnotationVisitor readHeaderVisitor = new ReadKotlinClassHeaderAnnotationVisitor();
         final Ref<String> classNameRef = Ref.create();
         final InnerClassesInfo innerClasses = new InnerClassesInfo();
-        new ClassReader(fileContents).accept(new ClassVisitor(ASM5) {
-            @Override
-            public void visit(int version, int access, @NotNull String name, String signature, String superName, String[] interfaces) {
-                classNameRef.set(name);
-            }
-
-            @Override
-            public void visitInnerClass(@NotNull String name, String outerName, String innerName, int access) {
-                innerClasses.add(name, outerName, innerName);
-            }
-
-            @Override
-            public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
-                return convertAnnotationVisitor(readHeaderVisitor, desc, innerClasses);
-            }
-
-            @Override
-            public void visitEnd() {
-                readHeaderVisitor.visitEnd();
-            }
-        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        try {
+            new ClassReader(fileContents).accept(new ClassVisitor(ASM5) {
+                @Override
+                public void visit(int version, int access, @NotNull String name, String signature, String superName, String[] interfaces) {
+                    classNameRef.set(name);
+                }
+
+                @Override
+                public void visitInnerClass(@NotNull String name, String outerName, String innerName, int access) {
+                    innerClasses.add(name, outerName, innerName);
+                }
+
+                @Override
+                public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                    return convertAnnotationVisitor(readHeaderVisitor, desc, innerClasses);
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, @NotNull String name, @NotNull String desc, String signature, Object value) {
+                    throw HeaderReadException.INSTANCE;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(
+                        int access, @NotNull String name, @NotNull String desc, String signature, String[] exceptions
+                ) {
+                    throw HeaderReadException.INSTANCE;
+                }
+            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        }
+        catch (HeaderReadException ignored) {
+            // Everything needed is read, the rest of the class file is skipped
+        }
+        readHeaderVisitor.visitEnd();
 
         String className = classNameRef.get();
         if (className == null) return null;
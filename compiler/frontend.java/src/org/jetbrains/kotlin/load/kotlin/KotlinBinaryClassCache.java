@@ -20,62 +20,208 @@ import com.intellij.ide.highlighter.JavaClassFileType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches Kotlin binary classes read from virtual files, shared by all threads.
+ *
+ * Reading a class only reads its header (see {@link FileBasedKotlinClass#readClassFileWithoutMembers}), the contents of the file
+ * are read and cached on the first full pass over the class, e.g. when loading annotations of members or inlining a function from it.
+ * The cache is bounded by the total size of the cached file contents, least recently used entries are evicted first.
+ *
+ * The IDE registers the service with the default size, the compiler, which reads the same classes over and over during a compilation,
+ * uses {@link #COMPILER_MAX_SIZE_IN_BYTES}
+ */
 public final class KotlinBinaryClassCache implements Disposable {
-    private static class RequestCache {
-        VirtualFile virtualFile;
-        long modificationStamp;
-        VirtualFileKotlinClass virtualFileKotlinClass;
+    private static final Logger LOG = Logger.getInstance(KotlinBinaryClassCache.class);
+
+    private static final long DEFAULT_MAX_SIZE_IN_BYTES = 1024 * 1024;
+
+    public static final long COMPILER_MAX_SIZE_IN_BYTES = 32 * 1024 * 1024;
+
+    // Approximate size of an entry without the file contents: the header, the inner classes info and the entry itself
+    static final int ENTRY_OVERHEAD_IN_BYTES = 512;
 
-        public VirtualFileKotlinClass cache(VirtualFile file, VirtualFileKotlinClass aClass) {
-            virtualFile = file;
-            virtualFileKotlinClass = aClass;
-            modificationStamp = file.getModificationStamp();
+    private static class Entry {
+        final long modificationStamp;
+        final VirtualFileKotlinClass kotlinClass;
+        byte[] fileContents;
 
-            return aClass;
+        Entry(long modificationStamp, @Nullable VirtualFileKotlinClass kotlinClass) {
+            this.modificationStamp = modificationStamp;
+            this.kotlinClass = kotlinClass;
+        }
+
+        int getSize() {
+            return ENTRY_OVERHEAD_IN_BYTES + (fileContents != null ? fileContents.length : 0);
         }
     }
 
-    private final ThreadLocal<RequestCache> cache =
-            new ThreadLocal<RequestCache>() {
-                @Override
-                protected RequestCache initialValue() {
-                    return new RequestCache();
-                }
-            };
+    private final long maxSizeInBytes;
+
+    // Access order, the least recently used entry goes first. Guarded by itself
+    private final LinkedHashMap<VirtualFile, Entry> entries = new LinkedHashMap<VirtualFile, Entry>(256, 0.75f, true);
+    private long sizeInBytes = 0;
+
+    private int classHits = 0;
+    private int classMisses = 0;
+    private int contentHits = 0;
+    private int contentMisses = 0;
+    private int evictions = 0;
+
+    public KotlinBinaryClassCache() {
+        this(DEFAULT_MAX_SIZE_IN_BYTES);
+    }
+
+    public KotlinBinaryClassCache(long maxSizeInBytes) {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    @Nullable
+    public static KotlinJvmBinaryClass getKotlinBinaryClass(@NotNull VirtualFile file) {
+        return ServiceManager.getService(KotlinBinaryClassCache.class).findKotlinBinaryClass(file);
+    }
+
+    /**
+     * @return contents of the given class file, cached if the file is a Kotlin binary class which is in the cache
+     */
+    @NotNull
+    public static byte[] getFileContents(@NotNull VirtualFile file) throws IOException {
+        return ServiceManager.getService(KotlinBinaryClassCache.class).findFileContents(file);
+    }
 
     @Nullable
-    public static KotlinJvmBinaryClass getKotlinBinaryClass(@NotNull final VirtualFile file) {
+    KotlinJvmBinaryClass findKotlinBinaryClass(@NotNull final VirtualFile file) {
         if (file.getFileType() != JavaClassFileType.INSTANCE) return null;
 
-        KotlinBinaryClassCache service = ServiceManager.getService(KotlinBinaryClassCache.class);
-        RequestCache requestCache = service.cache.get();
+        long modificationStamp = file.getModificationStamp();
+
+        synchronized (entries) {
+            Entry entry = entries.get(file);
+            if (entry != null && entry.modificationStamp == modificationStamp) {
+                classHits++;
+                return entry.kotlinClass;
+            }
+            classMisses++;
+        }
+
+        // The file is read outside of the lock, several threads may read the same file at once, the last one wins
+        VirtualFileKotlinClass aClass = ApplicationManager.getApplication().runReadAction(new Computable<VirtualFileKotlinClass>() {
+            @Override
+            public VirtualFileKotlinClass compute() {
+                //noinspection deprecation
+                return VirtualFileKotlinClass.Factory.create(file);
+            }
+        });
 
-        if (file.getModificationStamp() == requestCache.modificationStamp && file.equals(requestCache.virtualFile)) {
-            return requestCache.virtualFileKotlinClass;
+        synchronized (entries) {
+            put(file, new Entry(modificationStamp, aClass));
         }
-        else {
-            VirtualFileKotlinClass aClass = ApplicationManager.getApplication().runReadAction(new Computable<VirtualFileKotlinClass>() {
-                @Override
-                public VirtualFileKotlinClass compute() {
-                    //noinspection deprecation
-                    return VirtualFileKotlinClass.Factory.create(file);
+
+        return aClass;
+    }
+
+    @NotNull
+    byte[] findFileContents(@NotNull VirtualFile file) throws IOException {
+        long modificationStamp = file.getModificationStamp();
+
+        synchronized (entries) {
+            Entry entry = entries.get(file);
+            if (entry != null && entry.modificationStamp == modificationStamp && entry.fileContents != null) {
+                contentHits++;
+                return entry.fileContents;
+            }
+            contentMisses++;
+        }
+
+        byte[] contents = file.contentsToByteArray();
+
+        synchronized (entries) {
+            Entry entry = entries.get(file);
+            if (entry != null && entry.modificationStamp == modificationStamp && entry.fileContents == null) {
+                sizeInBytes -= entry.getSize();
+                entry.fileContents = contents;
+                sizeInBytes += entry.getSize();
+                evictIfNeeded();
+            }
+        }
+
+        return contents;
+    }
+
+    // Should be called under the lock
+    private void put(@NotNull VirtualFile file, @NotNull Entry entry) {
+        Entry old = entries.put(file, entry);
+        if (old != null) {
+            sizeInBytes -= old.getSize();
+        }
+        sizeInBytes += entry.getSize();
+        evictIfNeeded();
+    }
+
+    // Should be called under the lock
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<VirtualFile, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            sizeInBytes -= iterator.next().getValue().getSize();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Forgets the classes read from the local file system, which may change between compilations in the same application,
+     * e.g. in the compile daemon. Classes from jars are kept: the daemon recreates the whole application when a jar changes
+     */
+    public static void clearClassesFromLocalFileSystem() {
+        KotlinBinaryClassCache service = ServiceManager.getService(KotlinBinaryClassCache.class);
+        synchronized (service.entries) {
+            Iterator<Map.Entry<VirtualFile, Entry>> iterator = service.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<VirtualFile, Entry> entry = iterator.next();
+                if (StandardFileSystems.FILE_PROTOCOL.equals(entry.getKey().getFileSystem().getProtocol())) {
+                    service.sizeInBytes -= entry.getValue().getSize();
+                    iterator.remove();
                 }
-            });
+            }
+        }
+    }
 
-            return requestCache.cache(file, aClass);
+    @NotNull
+    public static String getStatistics() {
+        KotlinBinaryClassCache service = ServiceManager.getService(KotlinBinaryClassCache.class);
+        synchronized (service.entries) {
+            return service.renderStatistics();
         }
     }
 
+    @NotNull
+    private String renderStatistics() {
+        return String.format("KotlinBinaryClassCache: %d entries, %d bytes; classes: %d hits, %d misses; " +
+                             "contents: %d hits, %d misses; %d evictions",
+                             entries.size(), sizeInBytes, classHits, classMisses, contentHits, contentMisses, evictions);
+    }
+
     @Override
     public void dispose() {
-        // This is only relevant for tests. We create a new instance of Application for each test, and so a new instance of this service is
-        // also created for each test. However all tests share the same event dispatch thread, which would collect all instances of this
-        // thread-local if they're not removed properly. Each instance would transitively retain VFS resulting in OutOfMemoryError
-        cache.remove();
+        synchronized (entries) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(renderStatistics());
+            }
+            // This is only relevant for tests. We create a new instance of Application for each test, and so a new instance of this
+            // service is also created for each test. Cached classes transitively retain VFS, so they should not outlive the application
+            entries.clear();
+            sizeInBytes = 0;
+        }
     }
 }
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.load.kotlin
 
 import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
@@ -25,6 +26,7 @@ import org.jetbrains.kotlin.utils.*
 
 import java.io.IOException
 import java.io.FileNotFoundException
+import java.net.URL
 
 public class VirtualFileKotlinClass private(
         public val file: VirtualFile,
@@ -35,9 +37,18 @@ public class VirtualFileKotlinClass private(
 
     override fun getLocation() = file.getPath()
 
+    override fun findResourceInSameRoot(relativePath: String): URL? {
+        var root = file.getParent()
+        for (segment in getClassId().getPackageFqName().pathSegments()) {
+            root = root?.getParent()
+        }
+        val resource = root?.findFileByRelativePath(relativePath) ?: return null
+        return VfsUtilCore.convertToURL(resource.getUrl())
+    }
+
     override fun getFileContents(): ByteArray {
         try {
-            return file.contentsToByteArray()
+            return KotlinBinaryClassCache.getFileContents(file)
         }
         catch (e: IOException) {
             LOG.error(renderFileReadingErrorMessage(file), e)
@@ -57,10 +68,18 @@ public class VirtualFileKotlinClass private(
             assert(file.getFileType() == JavaClassFileType.INSTANCE) { "Trying to read binary data from a non-class file $file" }
 
             try {
-                val byteContent = file.contentsToByteArray()
-                if (byteContent.isEmpty()) return null
+                if (file.getLength() == 0L) return null
+
+                // Only the header is needed here, the rest of the file is read later if needed, see KotlinBinaryClassCache
+                val stream = file.getInputStream()
+                val headerContent = try {
+                    FileBasedKotlinClass.readClassFileWithoutMembers(stream)
+                }
+                finally {
+                    stream.close()
+                }
 
-                return FileBasedKotlinClass.create(byteContent) {
+                return FileBasedKotlinClass.create(headerContent) {
                     name, header, innerClasses ->
                     VirtualFileKotlinClass(file, name, header, innerClasses)
                 }
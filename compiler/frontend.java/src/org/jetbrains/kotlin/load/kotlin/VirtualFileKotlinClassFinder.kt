@@ -18,6 +18,8 @@ package org.jetbrains.kotlin.load.kotlin
 
 import org.jetbrains.kotlin.load.java.structure.JavaClass
 import org.jetbrains.kotlin.load.java.structure.impl.JavaClassImpl
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryJavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.sources.SourceJavaClass
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.utils.sure
 
@@ -28,6 +30,15 @@ public abstract class VirtualFileKotlinClassFinder : VirtualFileFinder {
     }
 
     override fun findKotlinClass(javaClass: JavaClass): KotlinJvmBinaryClass? {
+        if (javaClass is BinaryJavaClass) {
+            // Binary classes know their own class file, including the nested ones
+            return KotlinBinaryClassCache.getKotlinBinaryClass(javaClass.virtualFile)
+        }
+        if (javaClass is SourceJavaClass) {
+            // Java sources are never compiled Kotlin classes
+            return null
+        }
+
         var file = (javaClass as JavaClassImpl).getPsi().getContainingFile()!!.getVirtualFile() ?: return null
         if (javaClass.getOuterClass() != null) {
             // For nested classes we get a file of the containing class, to get the actual class file for A.B.C,
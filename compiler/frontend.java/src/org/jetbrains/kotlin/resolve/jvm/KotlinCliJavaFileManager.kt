@@ -19,8 +19,21 @@ package org.jetbrains.kotlin.resolve.jvm
 import com.intellij.psi.PsiClass
 import com.intellij.psi.impl.file.impl.JavaFileManager
 import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.kotlin.load.java.structure.JavaClass
 import org.jetbrains.kotlin.name.ClassId
 
 public trait KotlinCliJavaFileManager : JavaFileManager {
     public fun findClass(classId: ClassId, searchScope: GlobalSearchScope): PsiClass?
+
+    /**
+     * Whether [findJavaClass] is used to look up Java classes
+     */
+    public fun isJavaClassModelEnabled(): Boolean
+
+    /**
+     * Finds a Java class without building PSI for it if it comes from a binary root, see BinaryJavaClass.
+     * Returns null if the class is not found or if this mode is disabled. In the former case there's no need to look
+     * for the class with PSI, because the same index of roots is used for that
+     */
+    public fun findJavaClass(classId: ClassId, searchScope: GlobalSearchScope): JavaClass?
 }
\ No newline at end of file
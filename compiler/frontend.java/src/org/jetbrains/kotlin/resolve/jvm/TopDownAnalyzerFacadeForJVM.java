@@ -90,7 +90,7 @@ public enum TopDownAnalyzerFacadeForJVM {
     }
 
     @NotNull
-    private static AnalysisResult analyzeFilesWithJavaIntegration(
+    public static AnalysisResult analyzeFilesWithJavaIntegration(
             @NotNull ModuleContext moduleContext,
             @NotNull Collection<JetFile> files,
             @NotNull BindingTrace trace,
@@ -16,7 +16,6 @@
 
 package org.jetbrains.kotlin.diagnostics;
 
-import com.google.common.collect.Lists;
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
@@ -31,6 +30,7 @@ import org.jetbrains.kotlin.psi.JetExpression;
 import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils;
 import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -121,6 +121,13 @@ public class DiagnosticUtils {
         return getLineAndColumnInPsiFile(file, firstRange);
     }
 
+    @NotNull
+    public static LineAndColumn getLineAndColumn(@NotNull Diagnostic diagnostic, @NotNull LineOffsets.Cache lineOffsets) {
+        List<TextRange> textRanges = diagnostic.getTextRanges();
+        if (textRanges.isEmpty()) return LineAndColumn.NONE;
+        return lineOffsets.get(diagnostic.getPsiFile()).offsetToLineAndColumn(firstRange(textRanges).getStartOffset());
+    }
+
     @NotNull
     public static LineAndColumn getLineAndColumnInPsiFile(PsiFile file, TextRange range) {
         Document document = file.getViewProvider().getDocument();
@@ -160,26 +167,42 @@ public class DiagnosticUtils {
 
     @NotNull
     public static List<Diagnostic> sortedDiagnostics(@NotNull Collection<Diagnostic> diagnostics) {
-        Comparator<Diagnostic> diagnosticComparator = new Comparator<Diagnostic>() {
-            @Override
-            public int compare(@NotNull Diagnostic d1, @NotNull Diagnostic d2) {
-                String path1 = d1.getPsiFile().getViewProvider().getVirtualFile().getPath();
-                String path2 = d2.getPsiFile().getViewProvider().getVirtualFile().getPath();
-                if (!path1.equals(path2)) return path1.compareTo(path2);
+        // Paths and first ranges are computed once per diagnostic rather than on each comparison
+        List<DiagnosticWithPosition> withPositions = new ArrayList<DiagnosticWithPosition>(diagnostics.size());
+        for (Diagnostic diagnostic : diagnostics) {
+            withPositions.add(new DiagnosticWithPosition(diagnostic));
+        }
+        Collections.sort(withPositions);
+
+        List<Diagnostic> result = new ArrayList<Diagnostic>(withPositions.size());
+        for (DiagnosticWithPosition withPosition : withPositions) {
+            result.add(withPosition.diagnostic);
+        }
+        return result;
+    }
 
-                TextRange range1 = firstRange(d1.getTextRanges());
-                TextRange range2 = firstRange(d2.getTextRanges());
+    private static final class DiagnosticWithPosition implements Comparable<DiagnosticWithPosition> {
+        private final Diagnostic diagnostic;
+        private final String path;
+        private final TextRange range;
+
+        private DiagnosticWithPosition(@NotNull Diagnostic diagnostic) {
+            this.diagnostic = diagnostic;
+            this.path = diagnostic.getPsiFile().getViewProvider().getVirtualFile().getPath();
+            List<TextRange> ranges = diagnostic.getTextRanges();
+            this.range = ranges.isEmpty() ? TextRange.EMPTY_RANGE : firstRange(ranges);
+        }
 
-                if (!range1.equals(range2)) {
-                    return TEXT_RANGE_COMPARATOR.compare(range1, range2);
-                }
+        @Override
+        public int compareTo(@NotNull DiagnosticWithPosition other) {
+            if (!path.equals(other.path)) return path.compareTo(other.path);
 
-                return d1.getFactory().getName().compareTo(d2.getFactory().getName());
+            if (!range.equals(other.range)) {
+                return TEXT_RANGE_COMPARATOR.compare(range, other.range);
             }
-        };
-        List<Diagnostic> result = Lists.newArrayList(diagnostics);
-        Collections.sort(result, diagnosticComparator);
-        return result;
+
+            return diagnostic.getFactory().getName().compareTo(other.diagnostic.getFactory().getName());
+        }
     }
 
     public static final class LineAndColumn {
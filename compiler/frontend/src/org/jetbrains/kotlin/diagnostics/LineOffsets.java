@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.diagnostics;
+
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Start offsets of all lines of a text, used to compute line and column of an offset without creating a Document.
+ * Lines are separated by '\n' only, as in documents (and PSI files) with normalized line separators.
+ */
+public final class LineOffsets {
+    private final int[] lineStarts;
+    private final int textLength;
+
+    private LineOffsets(@NotNull int[] lineStarts, int textLength) {
+        this.lineStarts = lineStarts;
+        this.textLength = textLength;
+    }
+
+    @NotNull
+    public static LineOffsets create(@NotNull CharSequence text) {
+        int[] lineStarts = new int[16];
+        int lineCount = 1;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                }
+                lineStarts[lineCount++] = i + 1;
+            }
+        }
+        return new LineOffsets(Arrays.copyOf(lineStarts, lineCount), text.length());
+    }
+
+    @NotNull
+    public static LineOffsets create(@NotNull PsiFile file) {
+        return create(file.getViewProvider().getContents());
+    }
+
+    @NotNull
+    public DiagnosticUtils.LineAndColumn offsetToLineAndColumn(int offset) {
+        if (offset < 0 || offset > textLength) {
+            return new DiagnosticUtils.LineAndColumn(-1, offset);
+        }
+
+        int index = Arrays.binarySearch(lineStarts, offset);
+        // If the offset is not a start of some line, binarySearch returns (-(insertion point) - 1)
+        int line = index >= 0 ? index : -index - 2;
+        return new DiagnosticUtils.LineAndColumn(line + 1, offset - lineStarts[line] + 1);
+    }
+
+    /**
+     * Caches line offsets of files, should be used to compute positions of many diagnostics at once
+     */
+    public static final class Cache {
+        private final Map<PsiFile, LineOffsets> offsets = new HashMap<PsiFile, LineOffsets>();
+
+        @NotNull
+        public LineOffsets get(@NotNull PsiFile file) {
+            LineOffsets result = offsets.get(file);
+            if (result == null) {
+                result = create(file);
+                offsets.put(file, result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.extensions
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import java.lang.management.ManagementFactory
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.IdentityHashMap
+import java.util.LinkedHashMap
+
+/**
+ * Number of calls, time and allocated memory of the methods of compiler extensions provided by plugins, counted for a project
+ * where it's enabled by [enable].
+ *
+ * Extensions obtained with [ProjectExtensionDescriptor.getInstances] are wrapped into proxies which count the calls of their methods,
+ * so every extension point is counted without changes at the places where it's called. Allocated memory is only counted
+ * on JVMs which report it per thread. Calls of an extension made from another extension are counted in both
+ */
+public class ExtensionCosts private() {
+    private class Cost {
+        var calls = 0L
+        var nanos = 0L
+        var allocatedBytes = 0L
+    }
+
+    // Keyed by the class and the method name of the extension. Guarded by itself
+    private val costs = LinkedHashMap<String, Cost>()
+
+    // Guarded by itself
+    private val proxies = IdentityHashMap<Any, Any>()
+
+    /**
+     * @return the extension wrapped into a proxy which counts the calls of its methods of the given interface
+     */
+    public fun <T> wrap(extension: T, extensionInterface: Class<T>): T {
+        val instance: Any = extension ?: return extension
+        if (!extensionInterface.isInterface() || Proxy.isProxyClass(instance.javaClass)) return extension
+
+        synchronized (proxies) {
+            return proxies.getOrPut(instance) {
+                Proxy.newProxyInstance(extensionInterface.getClassLoader(), array<Class<*>>(extensionInterface), InvocationHandler { proxy, method, args ->
+                    if (method.getDeclaringClass() == javaClass<Any>()) {
+                        invokeMethod(instance, method, args)
+                    }
+                    else {
+                        measure(instance, method.getName()) { invokeMethod(instance, method, args) }
+                    }
+                })
+            } as T
+        }
+    }
+
+    public fun <T> measure(extension: Any, methodName: String, block: () -> T): T {
+        val allocatedBefore = AllocationCounter.currentThreadAllocatedBytes()
+        val start = System.nanoTime()
+        try {
+            return block()
+        }
+        finally {
+            val nanos = System.nanoTime() - start
+            val allocatedBytes = if (allocatedBefore >= 0) AllocationCounter.currentThreadAllocatedBytes() - allocatedBefore else 0L
+
+            synchronized (costs) {
+                val cost = costs.getOrPut(extension.javaClass.getName() + "." + methodName) { Cost() }
+                cost.calls++
+                cost.nanos += nanos
+                cost.allocatedBytes += allocatedBytes
+            }
+        }
+    }
+
+    /**
+     * @return one line for each called method of an extension, the most expensive ones first
+     */
+    public fun report(): List<String> {
+        val entries = synchronized (costs) { costs.entrySet().map { it.getKey() to it.getValue() } }
+        return entries.sortBy { -it.second.nanos }.map {
+            val (name, cost) = it
+            val allocated = if (AllocationCounter.isSupported) ", ${cost.allocatedBytes / 1024} KB allocated" else ""
+            "$name: ${cost.calls} calls, ${cost.nanos / 1000000} ms$allocated"
+        }
+    }
+
+    companion object {
+        private val KEY = Key.create<ExtensionCosts>("EXTENSION_COSTS")
+
+        public fun enable(project: Project): ExtensionCosts {
+            val costs = ExtensionCosts()
+            project.putUserData(KEY, costs)
+            return costs
+        }
+
+        /**
+         * @return the costs counted for the project, or null if they are not counted
+         */
+        public fun getInstance(project: Project): ExtensionCosts? = project.getUserData(KEY)
+
+        private fun invokeMethod(extension: Any, method: Method, args: Array<Any?>?): Any? {
+            try {
+                return method.invoke(extension, *(args ?: arrayOfNulls<Any>(0)))
+            }
+            catch (e: InvocationTargetException) {
+                throw e.getCause() ?: e
+            }
+        }
+    }
+
+    // Initialized on the first measured call, so the MXBean is not looked up when extensions are obtained without counting
+    private object AllocationCounter {
+        private val threadBean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+        val isSupported = threadBean != null && threadBean.isThreadAllocatedMemorySupported() &&
+                          threadBean.isThreadAllocatedMemoryEnabled()
+
+        fun currentThreadAllocatedBytes(): Long =
+                if (isSupported) threadBean!!.getThreadAllocatedBytes(Thread.currentThread().getId()) else -1
+    }
+}
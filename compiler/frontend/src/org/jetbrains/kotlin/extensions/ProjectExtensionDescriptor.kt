@@ -40,6 +40,8 @@ public open class ProjectExtensionDescriptor<T>(name: String, private val extens
         val projectArea = Extensions.getArea(project)
         if (!projectArea.hasExtensionPoint(extensionPointName.getName()!!)) return listOf()
 
-        return projectArea.getExtensionPoint(extensionPointName).getExtensions().toList()
+        val extensions = projectArea.getExtensionPoint(extensionPointName).getExtensions().toList()
+        val costs = ExtensionCosts.getInstance(project) ?: return extensions
+        return extensions.map { costs.wrap(it, extensionClass) }
     }
 }
\ No newline at end of file
@@ -33,6 +33,7 @@ import org.jetbrains.kotlin.resolve.calls.results.OverloadResolutionResults;
 import org.jetbrains.kotlin.resolve.calls.smartcasts.DataFlowInfo;
 import org.jetbrains.kotlin.resolve.calls.util.CallMaker;
 import org.jetbrains.kotlin.resolve.constants.CompileTimeConstant;
+import org.jetbrains.kotlin.resolve.inline.InlineUtil;
 import org.jetbrains.kotlin.resolve.scopes.*;
 import org.jetbrains.kotlin.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.kotlin.types.*;
@@ -255,6 +256,32 @@ public class BodyResolver {
         functionAnalyzerExtension.process(c);
     }
 
+    /**
+     * Resolves only what is needed to generate declarations of the analyzed files (see {@link TopDownAnalysisMode#getIsDeclarationsOnly()}):
+     * delegation specifiers, constructor parameters, inferred types and bodies of inline functions.
+     * Most diagnostics in bodies are not reported in this mode
+     */
+    public void resolveDeclarationsOnly(@NotNull BodiesResolveContext c) {
+        resolveDelegationSpecifierLists(c);
+        resolvePrimaryConstructorParameters(c);
+
+        for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
+            JetNamedFunction declaration = entry.getKey();
+            SimpleFunctionDescriptor descriptor = entry.getValue();
+            if (!InlineUtil.isInline(descriptor)) continue;
+
+            computeDeferredType(descriptor.getReturnType());
+
+            JetScope declaringScope = c.getDeclaringScopes().apply(declaration);
+            assert declaringScope != null;
+
+            resolveFunctionBody(c, trace, declaration, descriptor, declaringScope);
+            controlFlowAnalyzer.checkFunction(c, declaration, descriptor);
+        }
+
+        computeDeferredTypes();
+    }
+
     private void resolveDelegationSpecifierLists(@NotNull BodiesResolveContext c) {
         // TODO : Make sure the same thing is not initialized twice
         for (Map.Entry<JetClassOrObject, ClassDescriptorWithResolutionScopes> entry : c.getDeclaredClasses().entrySet()) {
@@ -50,12 +50,7 @@ public class ControlFlowAnalyzer {
             checkSecondaryConstructor(constructor);
         }
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
-            JetNamedFunction function = entry.getKey();
-            SimpleFunctionDescriptor functionDescriptor = entry.getValue();
-            JetType expectedReturnType = !function.hasBlockBody() && !function.hasDeclaredReturnType()
-                                               ? NO_EXPECTED_TYPE
-                                               : functionDescriptor.getReturnType();
-            checkFunction(c, function, expectedReturnType);
+            checkFunction(c, entry.getKey(), entry.getValue());
         }
         for (Map.Entry<JetProperty, PropertyDescriptor> entry : c.getProperties().entrySet()) {
             JetProperty property = entry.getKey();
@@ -64,6 +59,17 @@ public class ControlFlowAnalyzer {
         }
     }
 
+    /*package*/ void checkFunction(
+            @NotNull BodiesResolveContext c,
+            @NotNull JetNamedFunction function,
+            @NotNull SimpleFunctionDescriptor functionDescriptor
+    ) {
+        JetType expectedReturnType = !function.hasBlockBody() && !function.hasDeclaredReturnType()
+                                     ? NO_EXPECTED_TYPE
+                                     : functionDescriptor.getReturnType();
+        checkFunction(c, function, expectedReturnType);
+    }
+
     private void checkSecondaryConstructor(@NotNull JetSecondaryConstructor constructor) {
         JetFlowInformationProvider flowInformationProvider = new JetFlowInformationProvider(constructor, trace);
         flowInformationProvider.checkDeclaration();
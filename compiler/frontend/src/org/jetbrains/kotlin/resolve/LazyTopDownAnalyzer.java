@@ -304,7 +304,12 @@ public class LazyTopDownAnalyzer {
 
         overloadResolver.process(c);
 
-        bodyResolver.resolveBodies(c);
+        if (topDownAnalysisMode.getIsDeclarationsOnly()) {
+            bodyResolver.resolveDeclarationsOnly(c);
+        }
+        else {
+            bodyResolver.resolveBodies(c);
+        }
 
         return c;
     }
@@ -16,7 +16,9 @@
 
 package org.jetbrains.kotlin.resolve
 
-public enum class TopDownAnalysisMode(public val isLocalDeclarations: Boolean) {
-    LocalDeclarations : TopDownAnalysisMode(true)
-    TopLevelDeclarations : TopDownAnalysisMode(false)
+public enum class TopDownAnalysisMode(public val isLocalDeclarations: Boolean, public val isDeclarationsOnly: Boolean) {
+    LocalDeclarations : TopDownAnalysisMode(true, false)
+    TopLevelDeclarations : TopDownAnalysisMode(false, false)
+    // Only declarations are resolved, bodies are skipped except for inline functions (which are needed to compile their call sites)
+    TopLevelDeclarationsOnly : TopDownAnalysisMode(false, true)
 }
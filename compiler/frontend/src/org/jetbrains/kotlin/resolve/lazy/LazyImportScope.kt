@@ -79,6 +79,9 @@ class LazyImportResolver(
 
     private var directiveUnderResolve: JetImportDirective? = null
 
+    val isResolvingImport: Boolean
+        get() = directiveUnderResolve != null
+
     private class ImportResolveStatus(val lookupMode: LookupMode, val scope: JetScope, val descriptors: Collection<DeclarationDescriptor>)
 
     private inner class ImportDirectiveResolveCache(private val directive: JetImportDirective) {
@@ -246,25 +249,49 @@ class LazyImportScope(
         }
     }
 
+    // Results of lookups by short name (including "not found") are cached for the whole file,
+    // so that e.g. default imports are not probed again for every occurrence of 'String' or 'println'
+    private val storageManager = importResolver.resolveSession.getStorageManager()
+    private val classifiers = storageManager.createMemoizedFunctionWithNullableValues { name: Name -> computeClassifier(name) }
+    private val packages = storageManager.createMemoizedFunctionWithNullableValues { name: Name -> computePackage(name) }
+    private val properties = storageManager.createMemoizedFunction { name: Name -> computeProperties(name) }
+    private val functions = storageManager.createMemoizedFunction { name: Name -> computeFunctions(name) }
+
+    // Lookups made while an import directive is being resolved may see incomplete results (see selectSingleFromImports),
+    // so they are not cached
+    private fun canUseCache() = !importResolver.isResolvingImport
+
+    private fun computeClassifier(name: Name): ClassifierDescriptor? =
+            importResolver.selectSingleFromImports(name, LookupMode.ONLY_CLASSES_AND_PACKAGES, classifierDescriptorSelector)
+
+    private fun computePackage(name: Name): PackageViewDescriptor? =
+            importResolver.selectSingleFromImports(name, LookupMode.ONLY_CLASSES_AND_PACKAGES, JetScopeSelectorUtil.PACKAGE_SCOPE_SELECTOR)
+
+    private fun computeProperties(name: Name): Collection<VariableDescriptor> =
+            importResolver.collectFromImports(name, LookupMode.EVERYTHING, JetScopeSelectorUtil.NAMED_PROPERTIES_SCOPE_SELECTOR)
+
+    private fun computeFunctions(name: Name): Collection<FunctionDescriptor> =
+            importResolver.collectFromImports(name, LookupMode.EVERYTHING, JetScopeSelectorUtil.NAMED_FUNCTION_SCOPE_SELECTOR)
+
     override fun getClassifier(name: Name): ClassifierDescriptor? {
-        return importResolver.selectSingleFromImports(name, LookupMode.ONLY_CLASSES_AND_PACKAGES, classifierDescriptorSelector)
+        return if (canUseCache()) classifiers(name) else computeClassifier(name)
     }
 
     override fun getPackage(name: Name): PackageViewDescriptor? {
         if (filteringKind == FilteringKind.INVISIBLE_CLASSES) return null
-        return importResolver.selectSingleFromImports(name, LookupMode.ONLY_CLASSES_AND_PACKAGES, JetScopeSelectorUtil.PACKAGE_SCOPE_SELECTOR)
+        return if (canUseCache()) packages(name) else computePackage(name)
     }
 
     override fun getProperties(name: Name): Collection<VariableDescriptor> {
         if (filteringKind == FilteringKind.INVISIBLE_CLASSES) return listOf()
-        return importResolver.collectFromImports(name, LookupMode.EVERYTHING, JetScopeSelectorUtil.NAMED_PROPERTIES_SCOPE_SELECTOR)
+        return if (canUseCache()) properties(name) else computeProperties(name)
     }
 
     override fun getLocalVariable(name: Name) = null
 
     override fun getFunctions(name: Name): Collection<FunctionDescriptor> {
         if (filteringKind == FilteringKind.INVISIBLE_CLASSES) return listOf()
-        return importResolver.collectFromImports(name, LookupMode.EVERYTHING, JetScopeSelectorUtil.NAMED_FUNCTION_SCOPE_SELECTOR)
+        return if (canUseCache()) functions(name) else computeFunctions(name)
     }
 
     override fun getDeclarationsByLabel(labelName: Name): Collection<DeclarationDescriptor> = listOf()
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Uncompressed contents of all entries of several jars in a single file, which is memory-mapped on start instead of inflating
+ * the jars and copying all their entries to heap. Classes are defined right from the mapped memory when they are loaded.
+ *
+ * The snapshot is created on the first start with the given jars and is named after a fingerprint of their paths, followed by
+ * a fingerprint of their sizes and modification times, so it's recreated when any of the jars changes. The paths, sizes and times
+ * are also stored in the snapshot and checked on load. The contents of the jars are not hashed because that would require
+ * reading them on each start, which is exactly what the snapshot avoids. The preloader makes a separate snapshot for the jars
+ * from the Class-Path of the manifests, so only the outdated snapshots of the same jars are deleted.
+ *
+ * Layout: header (magic, version, offset of the index), contents of the entries, index (path, size and modification time of each jar,
+ * then the jar, name, offset and size of each entry)
+ */
+class ClassDataSnapshot {
+    private static final int MAGIC = 0x4b435344;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private static final String PREFIX = "classes-";
+    private static final String SUFFIX = ".snapshot";
+
+    private ClassDataSnapshot() {}
+
+    /**
+     * @return a map of name to resources in the same format as the one of ClassPreloadingUtils.loadAllClassesFromJars
+     */
+    static Map<String, Object> loadOrCreate(
+            Collection<File> jarFiles,
+            int classNumberEstimate,
+            File snapshotDir,
+            ClassHandler handler
+    ) throws IOException {
+        List<File> jars = new ArrayList<File>(jarFiles);
+        String prefix = PREFIX + fingerprint(jars, false) + "-";
+        File snapshot = new File(snapshotDir, prefix + fingerprint(jars, true) + SUFFIX);
+        if (!snapshot.isFile()) {
+            create(jars, snapshot, handler);
+            deleteOutdatedSnapshots(snapshot, prefix);
+        }
+
+        try {
+            return load(jars, classNumberEstimate, snapshot);
+        }
+        catch (RuntimeException e) {
+            // E.g. BufferUnderflowException or IllegalArgumentException for an offset out of the file
+            deleteCorruptSnapshot(snapshot);
+            throw new IOException("Corrupt class data snapshot: " + snapshot + ": " + e);
+        }
+        catch (IOException e) {
+            deleteCorruptSnapshot(snapshot);
+            throw e;
+        }
+    }
+
+    private static String fingerprint(List<File> jars, boolean withStamps) throws IOException {
+        CRC32 crc = new CRC32();
+        for (File jar : jars) {
+            String stamps = withStamps ? "\0" + jar.length() + "\0" + jar.lastModified() : "";
+            crc.update((jar.getCanonicalPath() + stamps + "\n").getBytes("UTF-8"));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static Map<String, Object> load(List<File> jars, int classNumberEstimate, File snapshot) throws IOException {
+        MappedByteBuffer buffer;
+        RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        finally {
+            file.close();
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a class data snapshot: " + snapshot);
+        }
+        buffer.position((int) buffer.getLong());
+
+        int jarCount = buffer.getInt();
+        if (jarCount != jars.size()) {
+            throw new IOException("Class data snapshot was created for other jars: " + snapshot);
+        }
+        for (File jar : jars) {
+            // Fingerprints may collide, so the snapshot is used only if it was created for exactly these jars
+            if (!readString(buffer).equals(jar.getCanonicalPath()) ||
+                buffer.getLong() != jar.length() ||
+                buffer.getLong() != jar.lastModified()) {
+                throw new IOException("Class data snapshot was created for other jars: " + snapshot);
+            }
+        }
+
+        // 0.75 is HashMap.DEFAULT_LOAD_FACTOR
+        Map<String, Object> resources = new HashMap<String, Object>((int) (classNumberEstimate / 0.75));
+        int entryCount = buffer.getInt();
+        for (int i = 0; i < entryCount; i++) {
+            File jar = jars.get(buffer.getInt());
+            String name = readString(buffer);
+            int offset = buffer.getInt();
+            int size = buffer.getInt();
+
+            ByteBuffer data = buffer.duplicate();
+            data.position(offset);
+            data.limit(offset + size);
+            ClassPreloadingUtils.putResource(resources, new ResourceData(jar, name, data.slice()));
+        }
+
+        ClassPreloadingUtils.trimResources(resources);
+
+        return resources;
+    }
+
+    private static void create(List<File> jars, File snapshot, ClassHandler handler) throws IOException {
+        File snapshotDir = snapshot.getParentFile();
+        if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+            throw new IOException("Could not create directory for class data snapshots: " + snapshotDir);
+        }
+
+        // Another process may be creating the same snapshot, so it's written to a unique file and then renamed
+        File tmpFile = File.createTempFile(PREFIX, ".tmp", snapshotDir);
+        try {
+            long indexOffset;
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOutput = new DataOutputStream(index);
+            indexOutput.writeInt(jars.size());
+            for (File jar : jars) {
+                writeString(indexOutput, jar.getCanonicalPath());
+                indexOutput.writeLong(jar.length());
+                indexOutput.writeLong(jar.lastModified());
+            }
+
+            CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            DataOutputStream output = new DataOutputStream(counter);
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                // Offset of the index, written when the contents are known
+                output.writeLong(0);
+
+                ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                int entryCount = writeContents(jars, counter, new DataOutputStream(entries), handler);
+
+                indexOffset = counter.count;
+                indexOutput.writeInt(entryCount);
+                indexOutput.flush();
+                index.writeTo(output);
+                entries.writeTo(output);
+            }
+            finally {
+                output.close();
+            }
+
+            if (indexOffset > Integer.MAX_VALUE) {
+                throw new IOException("Jars are too big for a class data snapshot: " + jars);
+            }
+
+            RandomAccessFile file = new RandomAccessFile(tmpFile, "rw");
+            try {
+                file.seek(HEADER_SIZE - 8);
+                file.writeLong(indexOffset);
+            }
+            finally {
+                file.close();
+            }
+
+            if (!tmpFile.renameTo(snapshot) && !snapshot.isFile()) {
+                throw new IOException("Could not create class data snapshot: " + snapshot);
+            }
+        }
+        finally {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+    }
+
+    private static int writeContents(
+            List<File> jars,
+            CountingOutputStream output,
+            DataOutputStream entries,
+            ClassHandler handler
+    ) throws IOException {
+        int entryCount = 0;
+        byte[] buffer = new byte[10 * 1024];
+        for (int jarIndex = 0; jarIndex < jars.size(); jarIndex++) {
+            File jarFile = jars.get(jarIndex);
+            if (handler != null) {
+                handler.beforeLoadJar(jarFile);
+            }
+
+            ZipInputStream stream = new ZipInputStream(new BufferedInputStream(new FileInputStream(jarFile)));
+            try {
+                while (true) {
+                    ZipEntry entry = stream.getNextEntry();
+                    if (entry == null) break;
+                    if (entry.isDirectory()) continue;
+
+                    long offset = output.count;
+                    int count;
+                    while ((count = stream.read(buffer)) > 0) {
+                        output.write(buffer, 0, count);
+                    }
+
+                    entries.writeInt(jarIndex);
+                    writeString(entries, entry.getName());
+                    entries.writeInt((int) offset);
+                    entries.writeInt((int) (output.count - offset));
+                    entryCount++;
+                }
+            }
+            finally {
+                stream.close();
+            }
+
+            if (handler != null) {
+                handler.afterLoadJar(jarFile);
+            }
+        }
+        return entryCount;
+    }
+
+    /**
+     * Deletes the snapshots of the same jars made before they changed, which all start with the given prefix
+     */
+    private static void deleteOutdatedSnapshots(File snapshot, String prefix) {
+        File[] files = snapshot.getParentFile().listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(SUFFIX) && !file.equals(snapshot)) {
+                // Snapshots which are still mapped by other processes can't be deleted on some platforms, it's fine
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private static void deleteCorruptSnapshot(File snapshot) {
+        // It's recreated on the next start. A snapshot mapped by other processes can't be deleted on some platforms, it's fine
+        //noinspection ResultOfMethodCallIgnored
+        snapshot.delete();
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Malformed string in a class data snapshot");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -46,16 +46,49 @@ public class ClassPreloadingUtils {
             ClassCondition classesToLoadByParent,
             ClassHandler handler
     ) throws IOException {
-        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
+        return preloadClasses(jarFiles, classCountEstimation, parentClassLoader, classesToLoadByParent, handler, null);
+    }
+
+    /**
+     * Same as above, but if {@code snapshotDir} is not null, the contents of the jars are read from a memory-mapped
+     * {@link ClassDataSnapshot} in this directory, which is created if there's no snapshot for these jars yet.
+     * The snapshot contains the original class files, so it should not be used with a handler which instruments them
+     */
+    public static ClassLoader preloadClasses(
+            Collection<File> jarFiles,
+            int classCountEstimation,
+            ClassLoader parentClassLoader,
+            ClassCondition classesToLoadByParent,
+            ClassHandler handler,
+            File snapshotDir
+    ) throws IOException {
+        Map<String, Object> entries = snapshotDir != null
+                                      ? loadClassesFromSnapshot(jarFiles, classCountEstimation, snapshotDir, handler)
+                                      : loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
 
         Collection<File> classpath = mergeClasspathFromManifests(entries);
         if (!classpath.isEmpty()) {
-            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler);
+            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler, snapshotDir);
         }
 
         return new MemoryBasedClassLoader(classesToLoadByParent, parentClassLoader, entries, handler, createFallbackClassLoader(jarFiles));
     }
 
+    private static Map<String, Object> loadClassesFromSnapshot(
+            Collection<File> jarFiles,
+            int classCountEstimation,
+            File snapshotDir,
+            ClassHandler handler
+    ) throws IOException {
+        try {
+            return ClassDataSnapshot.loadOrCreate(jarFiles, classCountEstimation, snapshotDir, handler);
+        }
+        catch (IOException e) {
+            System.err.println("PRELOADER WARNING: Class data snapshot is not used: " + e.getMessage());
+            return loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
+        }
+    }
+
     private static URLClassLoader createFallbackClassLoader(Collection<File> files) throws IOException {
         List<URL> urls = new ArrayList<URL>(files.size());
         for (File file : files) {
@@ -89,7 +122,7 @@ public class ClassPreloadingUtils {
     }
 
     private static Collection<File> extractManifestClasspath(ResourceData manifestData) throws IOException {
-        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.bytes));
+        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.getBytes()));
         String classpathSpaceSeparated = (String) manifest.getMainAttributes().get(Attributes.Name.CLASS_PATH);
         if (classpathSpaceSeparated == null) return Collections.emptyList();
 
@@ -147,23 +180,7 @@ public class ClassPreloadingUtils {
                     if (handler != null) {
                         data = handler.instrument(name, data);
                     }
-                    ResourceData resourceData = new ResourceData(jarFile, name, data);
-
-                    Object previous = resources.get(name);
-                    if (previous == null) {
-                        resources.put(name, resourceData);
-                    }
-                    else if (previous instanceof ResourceData) {
-                        List<ResourceData> list = new ArrayList<ResourceData>();
-                        list.add((ResourceData) previous);
-                        list.add(resourceData);
-                        resources.put(name, list);
-                    }
-                    else {
-                        assert previous instanceof ArrayList :
-                                "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
-                        ((ArrayList<ResourceData>) previous).add(resourceData);
-                    }
+                    putResource(resources, new ResourceData(jarFile, name, data));
                 }
             }
             finally {
@@ -180,12 +197,35 @@ public class ClassPreloadingUtils {
             }
         }
 
+        trimResources(resources);
+
+        return resources;
+    }
+
+    static void putResource(Map<String, Object> resources, ResourceData resourceData) {
+        String name = resourceData.resourceName;
+        Object previous = resources.get(name);
+        if (previous == null) {
+            resources.put(name, resourceData);
+        }
+        else if (previous instanceof ResourceData) {
+            List<ResourceData> list = new ArrayList<ResourceData>();
+            list.add((ResourceData) previous);
+            list.add(resourceData);
+            resources.put(name, list);
+        }
+        else {
+            assert previous instanceof ArrayList :
+                    "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
+            ((ArrayList<ResourceData>) previous).add(resourceData);
+        }
+    }
+
+    static void trimResources(Map<String, Object> resources) {
         for (Object value : resources.values()) {
             if (value instanceof ArrayList) {
                 ((ArrayList) value).trimToSize();
             }
         }
-
-        return resources;
     }
 }
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.preloading;
 
 import java.io.IOException;
 import java.net.URL;
+import java.security.ProtectionDomain;
 import java.util.*;
 
 @SuppressWarnings("unchecked")
@@ -95,12 +96,13 @@ public class MemoryBasedClassLoader extends ClassLoader {
                                     ? ((ResourceData) resources)
                                     : ((List<ResourceData>) resources).get(0);
 
-        int sizeInBytes = resourceData.bytes.length;
+        int sizeInBytes = resourceData.getSize();
         if (handler != null) {
             handler.beforeDefineClass(name, sizeInBytes);
         }
 
-        Class<?> definedClass = defineClass(name, resourceData.bytes, 0, sizeInBytes);
+        // Classes from a class data snapshot are defined right from the mapped memory, without copying them to heap
+        Class<?> definedClass = defineClass(name, resourceData.getByteBuffer(), (ProtectionDomain) null);
 
         if (handler != null) {
             handler.afterDefineClass(name);
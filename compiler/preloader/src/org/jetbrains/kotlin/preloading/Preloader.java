@@ -29,6 +29,10 @@ public class Preloader {
 
     public static final int PRELOADER_ARG_COUNT = 4;
     private static final String INSTRUMENT_PREFIX = "instrument=";
+    private static final String PROFILE_PREFIX = "profile=";
+    private static final String PROFILE_INTERVAL_PROPERTY = "kotlin.preloader.profile.interval";
+    private static final long DEFAULT_PROFILE_INTERVAL_MILLIS = 10;
+    private static final String SNAPSHOT_DIR_PROPERTY = "kotlin.preloader.snapshot.dir";
 
     public static void main(String[] args) throws Exception {
         if (args.length < PRELOADER_ARG_COUNT) {
@@ -60,11 +64,14 @@ public class Preloader {
         ClassLoader withInstrumenter = instrumentersClasspath.length > 0 ? new URLClassLoader(instrumentersClasspath, parent) : parent;
 
         final Handler handler = getHandler(mode, withInstrumenter);
-        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(files, classNumber, withInstrumenter, null, handler);
+        File snapshotDir = getSnapshotDir(mode);
+        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(files, classNumber, withInstrumenter, null, handler, snapshotDir);
 
         Class<?> mainClass = preloaded.loadClass(mainClassCanonicalName);
         Method mainMethod = mainClass.getMethod("main", String[].class);
 
+        final SamplingProfiler profiler = mode == Mode.PROFILE ? createProfiler(modeStr) : null;
+
         Runtime.getRuntime().addShutdownHook(
                 new Thread(new Runnable() {
                     @Override
@@ -74,15 +81,40 @@ public class Preloader {
                             System.out.println("=== Preloader's measurements: ");
                             long dt = System.nanoTime() - startTime;
                             System.out.format("Total time: %.3fs\n", dt / 1e9);
+                            Runtime runtime = Runtime.getRuntime();
+                            System.out.format("Used heap: %.1fMB\n", (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
                         }
                         handler.done();
+                        if (profiler != null) {
+                            profiler.stopAndDump(System.out);
+                        }
                     }
                 })
         );
 
+        if (profiler != null) {
+            profiler.start();
+        }
         mainMethod.invoke(0, new Object[] {Arrays.copyOfRange(args, PRELOADER_ARG_COUNT, args.length)});
     }
 
+    private static SamplingProfiler createProfiler(String modeStr) {
+        long interval = Long.getLong(PROFILE_INTERVAL_PROPERTY, DEFAULT_PROFILE_INTERVAL_MILLIS);
+        return new SamplingProfiler(new File(modeStr.substring(PROFILE_PREFIX.length())), interval);
+    }
+
+    private static File getSnapshotDir(Mode mode) {
+        String path = System.getProperty(SNAPSHOT_DIR_PROPERTY);
+        if (path == null) return null;
+
+        if (mode == Mode.INSTRUMENT) {
+            // The snapshot contains the original classes, not the instrumented ones
+            System.err.println("PRELOADER WARNING: Class data snapshot is not used in the instrumentation mode");
+            return null;
+        }
+        return new File(path);
+    }
+
     private static URL[] parseInstrumentersClasspath(Mode mode, String modeStr)
             throws MalformedURLException {
         URL[] instrumentersClasspath;
@@ -168,13 +200,15 @@ public class Preloader {
     private enum Mode {
         NO_TIME,
         TIME,
-        INSTRUMENT
+        INSTRUMENT,
+        PROFILE
     }
 
     private static Mode parseMode(String arg) {
         if ("time".equals(arg)) return Mode.TIME;
         if ("notime".equals(arg)) return Mode.NO_TIME;
         if (arg.startsWith(INSTRUMENT_PREFIX)) return Mode.INSTRUMENT;
+        if (arg.startsWith(PROFILE_PREFIX)) return Mode.PROFILE;
 
         System.out.println("Unrecognized argument: " + arg);
         printUsageAndExit();
@@ -182,7 +216,7 @@ public class Preloader {
     }
 
     private static void printUsageAndExit() {
-        System.out.println("Usage: Preloader <paths to jars> <main class> <class number estimate> <notime|time|instrument=<instrumenters class path>> <parameters to pass to the main class>");
+        System.out.println("Usage: Preloader <paths to jars> <main class> <class number estimate> <notime|time|instrument=<instrumenters class path>|profile=<output file>> <parameters to pass to the main class>");
         System.exit(1);
     }
 
@@ -24,16 +24,40 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
 
 public final class ResourceData {
     public final File jarFile;
     public final String resourceName;
-    public final byte[] bytes;
+    // Either wraps an array on heap or is a slice of a memory-mapped class data snapshot
+    private final ByteBuffer data;
 
     public ResourceData(File jarFile, String resourceName, byte[] bytes) {
+        this(jarFile, resourceName, ByteBuffer.wrap(bytes));
+    }
+
+    public ResourceData(File jarFile, String resourceName, ByteBuffer data) {
         this.jarFile = jarFile;
         this.resourceName = resourceName;
-        this.bytes = bytes;
+        this.data = data;
+    }
+
+    public int getSize() {
+        return data.remaining();
+    }
+
+    public ByteBuffer getByteBuffer() {
+        // Callers may move the position of the buffer
+        return data.duplicate();
+    }
+
+    public byte[] getBytes() {
+        if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.remaining()) {
+            return data.array();
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
     }
 
     public URL getURL() {
@@ -48,7 +72,7 @@ public final class ResourceData {
 
                         @Override
                         public InputStream getInputStream() throws IOException {
-                            return new ByteArrayInputStream(bytes);
+                            return new ByteArrayInputStream(getBytes());
                         }
                     };
                 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Periodically samples the stacks of the running threads, without instrumenting any code. The samples are aggregated
+ * by the compiler phase, which is determined by the innermost frame of the stack which belongs to a known phase (so that
+ * e.g. lazy resolution triggered by codegen is counted as analysis), and by the method on top of the stack.
+ *
+ * All samples are written in the "folded stacks" format, one line per distinct stack: "phase;outer frame;...;inner frame count",
+ * which is understood by flame graph tools, e.g. https://github.com/brendangregg/FlameGraph
+ */
+class SamplingProfiler {
+    private static final String OTHER_PHASE = "other";
+    private static final String SYSTEM_THREAD_GROUP = "system";
+
+    // Prefix of the class name of a frame -> phase
+    private static final String[][] PHASES = {
+            {"org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment", "environment"},
+            {"org.jetbrains.kotlin.parsing.", "parsing"},
+            {"org.jetbrains.kotlin.resolve.", "analysis"},
+            {"org.jetbrains.kotlin.codegen.", "codegen"},
+            {"org.jetbrains.kotlin.js.translate.", "codegen"},
+    };
+
+    private final File outputFile;
+    private final long intervalMillis;
+    private final Map<String, int[]> foldedStacks = new HashMap<String, int[]>();
+    private final Map<String, int[]> samplesByPhase = new HashMap<String, int[]>();
+    private final Map<String, int[]> samplesByMethod = new HashMap<String, int[]>();
+    private int sampleCount = 0;
+
+    private volatile boolean stopped = false;
+    private Thread samplingThread;
+
+    SamplingProfiler(File outputFile, long intervalMillis) {
+        this.outputFile = outputFile;
+        this.intervalMillis = intervalMillis;
+    }
+
+    void start() {
+        samplingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!stopped) {
+                    sample();
+                    try {
+                        Thread.sleep(intervalMillis);
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "Preloader sampling profiler");
+        samplingThread.setDaemon(true);
+        samplingThread.start();
+    }
+
+    private void sample() {
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            Thread thread = entry.getKey();
+            StackTraceElement[] stack = entry.getValue();
+            // Only the threads doing some work are interesting, not the ones which are waiting
+            if (thread == Thread.currentThread() || thread.getState() != Thread.State.RUNNABLE || stack.length == 0) continue;
+            // JVM threads, e.g. the reference handler, are runnable while they wait in native code
+            ThreadGroup group = thread.getThreadGroup();
+            if (group != null && SYSTEM_THREAD_GROUP.equals(group.getName())) continue;
+
+            addSample(stack);
+        }
+    }
+
+    // The innermost frame is the first one, as in Throwable.getStackTrace()
+    synchronized void addSample(StackTraceElement[] stack) {
+        String phase = getPhase(stack);
+        StringBuilder folded = new StringBuilder(phase);
+        for (int i = stack.length - 1; i >= 0; i--) {
+            folded.append(';').append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+
+        sampleCount++;
+        increment(foldedStacks, folded.toString());
+        increment(samplesByPhase, phase);
+        increment(samplesByMethod, stack[0].getClassName() + "." + stack[0].getMethodName());
+    }
+
+    private static String getPhase(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            for (String[] phase : PHASES) {
+                if (frame.getClassName().startsWith(phase[0])) return phase[1];
+            }
+        }
+        return OTHER_PHASE;
+    }
+
+    private static void increment(Map<String, int[]> counters, String key) {
+        int[] counter = counters.get(key);
+        if (counter == null) {
+            counters.put(key, new int[] {1});
+        }
+        else {
+            counter[0]++;
+        }
+    }
+
+    void stopAndDump(PrintStream out) {
+        stopped = true;
+        if (samplingThread != null) {
+            samplingThread.interrupt();
+            try {
+                samplingThread.join();
+            }
+            catch (InterruptedException e) {
+                // Dump what has been sampled so far
+            }
+        }
+
+        synchronized (this) {
+            try {
+                writeFoldedStacks();
+            }
+            catch (IOException e) {
+                out.println("Could not write profiler output to " + outputFile + ": " + e.getMessage());
+            }
+
+            out.println("Samples: " + sampleCount + ", every " + intervalMillis + "ms, written to " + outputFile);
+            out.println();
+            out.println("Samples by phase:");
+            printTop(out, samplesByPhase, Integer.MAX_VALUE);
+            out.println();
+            out.println("Samples by method on top of the stack:");
+            printTop(out, samplesByMethod, 30);
+        }
+    }
+
+    private void writeFoldedStacks() throws IOException {
+        PrintStream output = new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)), false, "UTF-8");
+        try {
+            for (Map.Entry<String, int[]> entry : sortByCount(foldedStacks)) {
+                output.print(entry.getKey());
+                output.print(' ');
+                output.println(entry.getValue()[0]);
+            }
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private void printTop(PrintStream out, Map<String, int[]> counters, int limit) {
+        List<Map.Entry<String, int[]>> entries = sortByCount(counters);
+        for (Map.Entry<String, int[]> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            int count = entry.getValue()[0];
+            out.format("%8d %5.1f%%  %s\n", count, 100.0 * count / sampleCount, entry.getKey());
+        }
+    }
+
+    private static List<Map.Entry<String, int[]>> sortByCount(Map<String, int[]> counters) {
+        List<Map.Entry<String, int[]>> entries = new ArrayList<Map.Entry<String, int[]>>(counters.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>() {
+            @Override
+            public int compare(Map.Entry<String, int[]> o1, Map.Entry<String, int[]> o2) {
+                return o2.getValue()[0] - o1.getValue()[0];
+            }
+        });
+        return entries;
+    }
+}
@@ -50,16 +50,33 @@ public class DescriptorSerializer {
 
     @NotNull
     public static DescriptorSerializer createTopLevel(@NotNull SerializerExtension extension) {
-        return new DescriptorSerializer(new StringTable(extension), new Interner<TypeParameterDescriptor>(), extension);
+        return createTopLevel(extension, new StringTable(extension));
+    }
+
+    /**
+     * @param stringTable the table to put the strings to, which may be shared between several serializers
+     */
+    @NotNull
+    public static DescriptorSerializer createTopLevel(@NotNull SerializerExtension extension, @NotNull StringTable stringTable) {
+        return new DescriptorSerializer(stringTable, new Interner<TypeParameterDescriptor>(), extension);
     }
 
     @NotNull
     public static DescriptorSerializer create(@NotNull ClassDescriptor descriptor, @NotNull SerializerExtension extension) {
+        return create(descriptor, extension, new StringTable(extension));
+    }
+
+    @NotNull
+    public static DescriptorSerializer create(
+            @NotNull ClassDescriptor descriptor,
+            @NotNull SerializerExtension extension,
+            @NotNull StringTable stringTable
+    ) {
         DeclarationDescriptor container = descriptor.getContainingDeclaration();
         DescriptorSerializer parentSerializer =
                 container instanceof ClassDescriptor
-                ? create((ClassDescriptor) container, extension)
-                : createTopLevel(extension);
+                ? create((ClassDescriptor) container, extension, stringTable)
+                : createTopLevel(extension, stringTable);
 
         // Calculate type parameter ids for the outer class beforehand, as it would've had happened if we were always
         // serializing outer classes before nested classes.
@@ -0,0 +1,12 @@
+package abiStubs
+
+class A(val x: Int) {
+    fun foo(): Int {
+        val unused = x
+        return x + 1
+    }
+
+    inline fun bar(block: (Int) -> Int): Int = block(x)
+}
+
+fun baz() = A(42).bar { it * 2 }
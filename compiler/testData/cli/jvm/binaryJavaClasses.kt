@@ -0,0 +1,18 @@
+package binaryJavaClasses
+
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+class StringList : ArrayList<String>() {
+    override fun add(element: String): Boolean = super.add(element.trim())
+}
+
+fun entries(map: HashMap<String, Int>): List<Map.Entry<String, Int>> = map.entrySet().toList()
+
+fun sort(list: MutableList<String>) {
+    Collections.sort(list, Comparator { a, b -> a.length() - b.length() })
+}
+
+fun thread() = Thread { println(TimeUnit.SECONDS.toMillis(1L)) }
+
+fun max(): Int = Integer.MAX_VALUE
@@ -0,0 +1,9 @@
+package jarOutput
+
+class Greeter(val name: String) {
+    fun greet() = "Hello, $name"
+}
+
+fun main(args: Array<String>) {
+    println(Greeter("jar").greet())
+}
@@ -0,0 +1,54 @@
+package test;
+
+import java.util.*;
+
+/**
+ * Only the declarations of this class are read, the bodies are skipped
+ */
+public abstract class JavaBase<T extends Comparable<? super T>> implements Iterable<T> {
+    public static final int LIMIT = 10;
+    public static final String PREFIX = "item: ";
+    private final List<T> items = new ArrayList<T>(LIMIT);
+
+    protected JavaBase(T... initial) {
+        for (T item : initial) {
+            if (items.size() < LIMIT) items.add(item);
+        }
+    }
+
+    public abstract JavaKind getKind();
+
+    public T max() {
+        return Collections.max(items, new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                return a.compareTo(b);
+            }
+        });
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return items.iterator();
+    }
+
+    public <R> Map<T, R> associate(Transformer<? super T, ? extends R> transformer) {
+        Map<T, R> result = new HashMap<T, R>();
+        for (T item : items) result.put(item, transformer.transform(item));
+        return result;
+    }
+
+    public interface Transformer<A, B> {
+        B transform(A a);
+    }
+
+    public static class Entry<V> {
+        public final V value;
+        public final int[] weights[];
+
+        public Entry(V value) {
+            this.value = value;
+            this.weights = new int[][] { { 1, 2 }, { 3 } };
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+public enum JavaKind {
+    NUMBERS("n") {
+        @Override
+        public boolean isNumeric() { return true; }
+    },
+    STRINGS("s");
+
+    private final String code;
+
+    JavaKind(String code) {
+        this.code = code;
+    }
+
+    public String getCode() { return code; }
+
+    public boolean isNumeric() { return false; }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Marker {
+        JavaKind value() default STRINGS;
+        String[] tags() default {};
+    }
+}
@@ -0,0 +1,21 @@
+package test
+
+import test.JavaKind.Marker
+
+class Numbers(vararg numbers: Int) : JavaBase<Int>(*numbers.toTypedArray()) {
+    override fun getKind(): JavaKind = JavaKind.NUMBERS
+}
+
+Marker(JavaKind.NUMBERS, tags = array("a"))
+fun describe(base: JavaBase<Int>): String {
+    val squares: Map<Int, String> = base.associate(object : JavaBase.Transformer<Int, String> {
+        override fun transform(a: Int): String = JavaBase.PREFIX + a * a
+    })
+    val entry = JavaBase.Entry(base.max())
+    return "${base.getKind().getCode()} ${base.getKind().isNumeric()} ${squares.size()} ${entry.value} ${entry.weights.size()}"
+}
+
+fun main(args: Array<String>) {
+    val limit: Int = JavaBase.LIMIT
+    println(describe(Numbers(1, 2, 3)) + " $limit ${args.size()}")
+}
@@ -0,0 +1,3 @@
+package parallelParsing
+
+fun first(): String = second() + "!"
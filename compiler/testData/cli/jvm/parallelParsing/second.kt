@@ -0,0 +1,5 @@
+package parallelParsing
+
+class Second(val value: String)
+
+fun second(): String = Second("parsing").value
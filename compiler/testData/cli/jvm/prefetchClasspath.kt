@@ -0,0 +1,15 @@
+package prefetchClasspath
+
+import java.util.concurrent.*
+import java.io.File
+import kotlin.properties.Delegates
+
+class Tasks {
+    val executor: ExecutorService by Delegates.lazy { Executors.newSingleThreadExecutor() }
+
+    fun submit(file: File): Future<Long> = executor.submit(Callable { file.length() })
+}
+
+fun main(args: Array<String>) {
+    println(Tasks().submit(File(args[0])).get(1, TimeUnit.SECONDS))
+}
@@ -0,0 +1 @@
+val answer = 6 * 7
@@ -0,0 +1,9 @@
+package uncompressedJar
+
+class Greeter(val name: String) {
+    fun greet() = "Hello, $name"
+}
+
+fun main(args: Array<String>) {
+    println(Greeter("jar").greet())
+}
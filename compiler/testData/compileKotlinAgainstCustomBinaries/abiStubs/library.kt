@@ -0,0 +1,52 @@
+package lib
+
+var counter = 0
+
+val topLevel: Int = computeTopLevel()
+val inferred = Pair("a", computeTopLevel())
+val CONST_LIKE = 42
+val STRING_CONST_LIKE = "const"
+
+fun computeTopLevel(): Int {
+    counter++
+    return 42
+}
+
+class A(val x: Int) {
+    val initialized: String = "x=" + x
+    val inferredMember = x * 2
+
+    fun foo(): Int {
+        val unused = x
+        return x + 1
+    }
+
+    inline fun bar(block: (Int) -> Int): Int = block(x)
+
+    inline fun adder(): (Int) -> Int {
+        val f = { y: Int -> y + x }
+        return f
+    }
+
+    inline fun wrap(block: () -> Int): Comparable<Int> = object : Comparable<Int> {
+        override fun compareTo(other: Int) = block() - other
+    }
+
+    companion object {
+        val DEFAULT = A(41)
+        val COMPANION_CONST_LIKE = "companion"
+
+        fun create(x: Int) = A(x)
+
+        inline fun <T> withDefault(block: (A) -> T): T = block(DEFAULT)
+    }
+}
+
+enum class Color(val rgb: Int) {
+    RED : Color(0xff0000)
+    GREEN : Color(0x00ff00) {
+        override fun describe() = "green " + rgb
+    }
+
+    open fun describe() = name().toLowerCase()
+}
@@ -0,0 +1,32 @@
+package usage
+
+import lib.*
+
+fun box(): String {
+    val a = A(40)
+    if (a.bar { it + 2 } != 42) return "Fail bar"
+    if (a.adder()(2) != 42) return "Fail adder"
+    if (a.wrap { 42 }.compareTo(40) != 2) return "Fail wrap"
+
+    if (a.initialized != "x=40") return "Fail initialized: ${a.initialized}"
+    if (a.inferredMember != 80) return "Fail inferredMember: ${a.inferredMember}"
+
+    if (topLevel != 42) return "Fail topLevel: $topLevel"
+    if (inferred.first != "a" || inferred.second != 42) return "Fail inferred: $inferred"
+    if (CONST_LIKE != 42) return "Fail CONST_LIKE: $CONST_LIKE"
+    if (STRING_CONST_LIKE != "const") return "Fail STRING_CONST_LIKE: $STRING_CONST_LIKE"
+    if (counter != 2) return "Fail counter: $counter"
+
+    if (A.DEFAULT.x != 41) return "Fail DEFAULT: ${A.DEFAULT.x}"
+    if (A.COMPANION_CONST_LIKE != "companion") return "Fail COMPANION_CONST_LIKE: ${A.COMPANION_CONST_LIKE}"
+    if (A.create(1).foo() != 2) return "Fail create"
+    if (A.withDefault { it.x + 1 } != 42) return "Fail withDefault"
+
+    if (Color.RED.rgb != 0xff0000) return "Fail RED: ${Color.RED.rgb}"
+    if (Color.RED.describe() != "red") return "Fail RED.describe: ${Color.RED.describe()}"
+    if (Color.GREEN.describe() != "green " + 0x00ff00) return "Fail GREEN.describe: ${Color.GREEN.describe()}"
+    if (Color.values().size() != 2) return "Fail values: ${Color.values().size()}"
+    if (Color.valueOf("GREEN") != Color.GREEN) return "Fail valueOf"
+
+    return "OK"
+}
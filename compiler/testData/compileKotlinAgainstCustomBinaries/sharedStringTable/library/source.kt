@@ -0,0 +1,11 @@
+package library
+
+class Box<T>(val value: T) {
+    fun <R> map(f: (T) -> R): Box<R> = Box(f(value))
+
+    class Nested(val name: String)
+}
+
+fun boxOf(s: String): Box<String> = Box(s)
+
+val emptyBox: Box<Int?> = Box(null)
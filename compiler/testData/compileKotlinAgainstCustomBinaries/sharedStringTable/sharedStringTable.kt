@@ -0,0 +1,8 @@
+package test
+
+import library.*
+
+val box = boxOf("box")
+val length = box.map { it.length() }
+val nested = Box.Nested("nested")
+val empty = emptyBox
@@ -0,0 +1,9 @@
+package lib
+
+trait Producer {
+    fun produce(): String
+}
+
+inline fun producer(f: () -> String): Producer = object : Producer {
+    override fun produce() = f()
+}
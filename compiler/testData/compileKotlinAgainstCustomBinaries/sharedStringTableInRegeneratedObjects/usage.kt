@@ -0,0 +1,5 @@
+package usage
+
+import lib.*
+
+fun box(): String = producer { "OK" }.produce()
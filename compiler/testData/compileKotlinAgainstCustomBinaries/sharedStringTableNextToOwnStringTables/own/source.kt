@@ -0,0 +1,7 @@
+package own
+
+class Pair<A, B>(val first: A, val second: B) {
+    fun swap(): Pair<B, A> = Pair(second, first)
+}
+
+fun pairOf(s: String, i: Int): Pair<String, Int> = Pair(s, i)
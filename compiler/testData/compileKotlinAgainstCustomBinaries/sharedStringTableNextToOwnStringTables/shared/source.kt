@@ -0,0 +1,9 @@
+package shared
+
+import own.Pair
+
+class Box<T>(val value: T) {
+    fun <R> map(f: (T) -> R): Box<R> = Box(f(value))
+}
+
+fun boxOf(pair: Pair<String, Int>): Box<Pair<String, Int>> = Box(pair)
@@ -0,0 +1,9 @@
+package test
+
+import own.*
+import shared.*
+
+val pair = pairOf("pair", 1)
+val swapped = pair.swap()
+val box = boxOf(pair)
+val first = box.map { it.first }
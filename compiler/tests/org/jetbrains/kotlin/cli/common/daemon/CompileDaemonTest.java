@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.common.daemon;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Runs the daemon on a thread of the test process, the client talks to it over a socket as it does to a separate process
+ */
+public class CompileDaemonTest extends TestCaseWithTmpdir {
+    private static final String TOKEN = "test-token";
+
+    private ServerSocket serverSocket;
+    private Thread daemonThread;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        KotlinCoreEnvironment.setKeepApplicationEnvironment(true);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new CompileDaemon(TOKEN).serve(serverSocket, new PrintStream(new ByteArrayOutputStream(), true));
+                }
+                catch (IOException e) {
+                    // The server socket is closed in tearDown()
+                }
+            }
+        });
+        daemonThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+        daemonThread.join();
+        KotlinCoreEnvironment.setKeepApplicationEnvironment(false);
+        KotlinCoreEnvironment.disposeApplicationEnvironment();
+        super.tearDown();
+    }
+
+    @Nullable
+    private ExitCode compile(@NotNull String token, @NotNull String... args) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), serverSocket.getLocalPort());
+        try {
+            return CompileDaemonClient.compile(
+                    socket, token, new K2JVMCompiler(), args, new PrintStream(out, true), new PrintStream(err, true)
+            );
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    @NotNull
+    private File writeSource(@NotNull String name, @NotNull String text) throws IOException {
+        File file = new File(tmpdir, name);
+        FileUtil.writeToFile(file, text);
+        return file;
+    }
+
+    public void testCompilationResultsAreSentToClient() throws Exception {
+        File source = writeSource("hello.kt", "package hello\n\nfun hello() = \"Hello\"\n");
+        File output = new File(tmpdir, "out");
+
+        assertEquals(ExitCode.OK, compile(TOKEN, source.getPath(), "-d", output.getPath(), "-version"));
+        assertTrue(new File(output, "hello/HelloPackage.class").isFile());
+        assertTrue(err.toString(), err.toString().contains("Kotlin Compiler version"));
+    }
+
+    public void testErrorsAreSentToClient() throws Exception {
+        File source = writeSource("error.kt", "fun foo(): Int = \"\"\n");
+
+        assertEquals(ExitCode.COMPILATION_ERROR, compile(TOKEN, source.getPath(), "-d", new File(tmpdir, "out").getPath()));
+        assertTrue(err.toString(), err.toString().contains("TYPE_MISMATCH") || err.toString().contains("Type mismatch"));
+    }
+
+    public void testScriptAndReplAreRejected() throws Exception {
+        File script = writeSource("script.kts", "println(\"Hello\")\n");
+
+        assertNull(compile(TOKEN, "-script", script.getPath()));
+        assertNull(compile(TOKEN));
+        assertTrue(err.toString(), err.toString().contains("compiling without the daemon: Scripts and the REPL need the terminal"));
+        assertEquals("", out.toString());
+
+        assertFalse(new K2JVMCompiler().canRunInDaemon(new String[] {"-script", script.getPath()}));
+        assertFalse(new K2JVMCompiler().canRunInDaemon(new String[0]));
+        assertTrue(new K2JVMCompiler().canRunInDaemon(new String[] {"-version"}));
+    }
+
+    public void testRequestWithWrongTokenIsIgnored() throws Exception {
+        File source = writeSource("hello.kt", "package hello\n\nfun hello() = \"Hello\"\n");
+        File output = new File(tmpdir, "out");
+
+        try {
+            compile("wrong-token", source.getPath(), "-d", output.getPath());
+            fail("The daemon must close the connection without starting the compilation");
+        }
+        catch (IOException e) {
+            // The client compiles in its own process then
+        }
+        assertFalse(output.exists());
+    }
+
+    public void testChangedClassDirectoryIsReadAgain() throws Exception {
+        File libraryOutput = new File(tmpdir, "lib");
+        File usageOutput = new File(tmpdir, "usage");
+
+        File library = writeSource("lib.kt", "package lib\n\nfun foo() = 1\n");
+        assertEquals(ExitCode.OK, compile(TOKEN, library.getPath(), "-d", libraryOutput.getPath()));
+        File usage = writeSource("usage.kt", "fun usage() = lib.foo()\n");
+        assertEquals(ExitCode.OK, compile(TOKEN, usage.getPath(), "-classpath", libraryOutput.getPath(), "-d", usageOutput.getPath()));
+
+        // The same class file of the package facade now has another function
+        writeSource("lib.kt", "package lib\n\nfun bar() = 2\n");
+        assertEquals(ExitCode.OK, compile(TOKEN, library.getPath(), "-d", libraryOutput.getPath()));
+        writeSource("usage.kt", "fun usage() = lib.bar()\n");
+        assertEquals(err.toString(), ExitCode.OK,
+                     compile(TOKEN, usage.getPath(), "-classpath", libraryOutput.getPath(), "-d", usageOutput.getPath()));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import org.jetbrains.kotlin.cli.jvm.compiler.ClasspathPrefetcher
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.JetTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironmentManagement
+import org.jetbrains.kotlin.utils.PathUtil
+
+public class ClasspathPrefetcherTest : KotlinTestWithEnvironmentManagement() {
+    fun testClassesOfImportedPackagesAreRead() {
+        val environment = createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+        val file = JetTestUtils.createFile("test.kt", "package test\n\nimport java.util.concurrent.*\n", environment.project)
+        val root = PathUtil.jarFileOrDirectoryToVirtualFile(JetTestUtils.findMockJdkRtJar())!!
+
+        val prefetcher = ClasspathPrefetcher(listOf(root), getTestRootDisposable())
+        prefetcher.prefetch(listOf(file))
+        assertTrue(prefetcher.awaitTermination(60))
+
+        val prefetched = prefetcher.getPrefetchedClasses().map { it.getPath().substringAfter("!/") }.toSet()
+        val expected = root.findFileByRelativePath("java/util/concurrent")!!.getChildren()
+                .filter { !it.isDirectory() }
+                .map { it.getPath().substringAfter("!/") }
+        assertTrue(expected.isNotEmpty())
+        assertTrue("Classes of the imported package are not prefetched: $prefetched", prefetched.containsAll(expected))
+
+        // Subpackages of imported packages are left alone
+        assertFalse(prefetched.any { it.startsWith("java/util/concurrent/locks/") })
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.cli.jvm;
 
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.cli.CliBaseTest;
@@ -23,6 +24,17 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.GregorianCalendar;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 public class K2JvmCliTest extends CliBaseTest {
     @Test
@@ -66,4 +78,126 @@ public class K2JvmCliTest extends CliBaseTest {
     public void warningsInDummy() throws Exception {
         executeCompilerCompareOutputJVM();
     }
+
+    @Test
+    public void binaryJavaClasses() throws Exception {
+        executeCompilerCompareOutputJVM();
+    }
+
+    @Test
+    public void prefetchClasspath() throws Exception {
+        executeCompilerCompareOutputJVM();
+    }
+
+    @Test
+    public void lightJavaSources() throws Exception {
+        executeCompilerCompareOutputJVM();
+    }
+
+    @Test
+    public void parallelParsing() throws Exception {
+        executeCompilerCompareOutputJVM();
+    }
+
+    @Test
+    public void jarOutput() throws Exception {
+        checkJarOutput("jarOutput", ZipEntry.DEFLATED);
+    }
+
+    @Test
+    public void uncompressedJar() throws Exception {
+        checkJarOutput("uncompressedJar", ZipEntry.STORED);
+    }
+
+    private void checkJarOutput(String name, int method) throws Exception {
+        File jar = new File(tmpdir.getTmpDir(), name + ".jar");
+
+        executeCompilerCompareOutputJVM();
+        byte[] contents = FileUtil.loadFileBytes(jar);
+        checkJarEntries(jar, name, method);
+
+        // Entries are compressed in parallel, but are written in the same order
+        executeCompilerCompareOutputJVM();
+        Assert.assertTrue(Arrays.equals(contents, FileUtil.loadFileBytes(jar)));
+    }
+
+    private static void checkJarEntries(File jar, String name, int method) throws IOException {
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Assert.assertEquals(PackageClassUtils.getPackageClassFqName(new FqName(name)).asString(),
+                                jarFile.getManifest().getMainAttributes().getValue("Main-Class"));
+
+            JarEntry entry = jarFile.getJarEntry(name + "/Greeter.class");
+            Assert.assertNotNull(entry);
+            Assert.assertEquals(method, entry.getMethod());
+            Assert.assertTrue(FileUtil.loadBytes(jarFile.getInputStream(entry)).length > 0);
+
+            // All entries have the same timestamp, 1980-02-01 00:00, so the jar doesn't depend on the time it's written.
+            // ZipEntry converts the DOS time and date to the local time zone, as the calendar does
+            long time = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis();
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                JarEntry next = entries.nextElement();
+                Assert.assertEquals(next.getName(), time, next.getTime());
+            }
+        }
+        finally {
+            jarFile.close();
+        }
+    }
+
+    @Test
+    public void scriptCache() throws Exception {
+        executeCompilerCompareOutputJVM();
+
+        File[] entries = tmpdir.getTmpDir().listFiles();
+        Assert.assertNotNull(entries);
+        Assert.assertEquals(1, entries.length);
+        File jar = entries[0];
+        Assert.assertTrue(jar.getName().endsWith(".jar"));
+
+        // If the second run compiled the script again, the jar would be replaced and lose the marker.
+        // Loading the script from the cache marks the jar as recently used
+        addEntry(jar, CACHE_MARKER_ENTRY);
+        Assert.assertTrue(jar.setLastModified(0));
+
+        executeCompilerCompareOutputJVM();
+
+        Assert.assertEquals(1, tmpdir.getTmpDir().listFiles().length);
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Assert.assertNotNull("The script was compiled again instead of being loaded from the cache",
+                                 jarFile.getEntry(CACHE_MARKER_ENTRY));
+        }
+        finally {
+            jarFile.close();
+        }
+        Assert.assertTrue("The cached script was not marked as used", jar.lastModified() > 0);
+    }
+
+    private static final String CACHE_MARKER_ENTRY = "cache-marker";
+
+    private static void addEntry(File jar, String name) throws IOException {
+        File copy = new File(jar.getPath() + ".copy");
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            ZipOutputStream output = new ZipOutputStream(new FileOutputStream(copy));
+            try {
+                for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    output.putNextEntry(new ZipEntry(entry.getName()));
+                    output.write(FileUtil.loadBytes(zipFile.getInputStream(entry)));
+                    output.closeEntry();
+                }
+                output.putNextEntry(new ZipEntry(name));
+                output.closeEntry();
+            }
+            finally {
+                output.close();
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+        FileUtil.rename(copy, jar);
+    }
 }
@@ -16,6 +16,8 @@
 package org.jetbrains.kotlin.cli.jvm
 
 import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiFileFactory
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.testFramework.PlatformTestCase
@@ -26,8 +28,12 @@ import org.intellij.lang.annotations.Language
 import org.jetbrains.kotlin.cli.jvm.compiler.JavaRoot
 import org.jetbrains.kotlin.cli.jvm.compiler.JvmDependenciesIndex
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCliJavaFileManagerImpl
+import org.jetbrains.kotlin.load.java.structure.impl.JavaClassImpl
+import org.jetbrains.kotlin.load.java.structure.impl.sources.SourceJavaClass
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.JetTestUtils
+import java.io.File
 
 //Partial copy of CoreJavaFileManagerTest
 public class KotlinCliJavaFileManagerTest : PsiTestCase() {
@@ -138,14 +144,45 @@ public class KotlinCliJavaFileManagerTest : PsiTestCase() {
         TestCase.assertNull("Should not find class in empty scope", manager.findClass("foo.Test", GlobalSearchScope.EMPTY_SCOPE))
     }
 
-    private fun configureManager(Language("JAVA") text: String, className: String): KotlinCliJavaFileManagerImpl {
+    public fun testSourceDeclarationModel() {
+        // Sources of the lightJavaSources CLI test, which must be read without PSI
+        val root = LocalFileSystem.getInstance().findFileByIoFile(File(JetTestUtils.getTestDataPathBase(), "cli/jvm/lightJavaSources"))!!
+        val manager = createManager(root, useSourceDeclarationModel = true)
+        val allScope = GlobalSearchScope.allScope(getProject())
+
+        for (className in listOf("JavaBase", "JavaBase.Transformer", "JavaBase.Entry", "JavaKind", "JavaKind.Marker")) {
+            val javaClass = manager.findJavaClass(ClassId(FqName("test"), FqName(className), false), allScope)
+            TestCase.assertTrue("Not read by the declaration parser: $className ($javaClass)", javaClass is SourceJavaClass)
+        }
+        TestCase.assertEquals(listOf<VirtualFile>(), manager.getJavaSourcesReadByPsi())
+    }
+
+    public fun testSourceDeclarationModelFallsBackToPsi() {
+        val manager = configureManager("package foo;\n\npublic class Constants {\n    public static final int A = 1 + 1;\n}", "Constants",
+                                       useSourceDeclarationModel = true)
+        val javaClass = manager.findJavaClass(ClassId(FqName("foo"), FqName("Constants"), false), GlobalSearchScope.allScope(getProject()))
+
+        TestCase.assertTrue("Expected the PSI-based class: $javaClass", javaClass is JavaClassImpl)
+        TestCase.assertEquals(listOf("Constants.java"), manager.getJavaSourcesReadByPsi().map { it.getName() })
+    }
+
+    private fun configureManager(
+            Language("JAVA") text: String, className: String, useSourceDeclarationModel: Boolean = false
+    ): KotlinCliJavaFileManagerImpl {
         val root = PsiTestUtil.createTestProjectStructure(myProject, myModule, PlatformTestCase.myFilesToDelete)
         val pkg = root.createChildDirectory(this, "foo")
         val dir = myPsiManager.findDirectory(pkg)
         TestCase.assertNotNull(dir)
         dir.add(PsiFileFactory.getInstance(getProject()).createFileFromText(className + ".java", JavaFileType.INSTANCE, text))
+        return createManager(root, useSourceDeclarationModel)
+    }
+
+    private fun createManager(root: VirtualFile, useSourceDeclarationModel: Boolean): KotlinCliJavaFileManagerImpl {
         val coreJavaFileManagerExt = KotlinCliJavaFileManagerImpl(myPsiManager)
-        coreJavaFileManagerExt.initIndex(JvmDependenciesIndex(listOf(JavaRoot(root, JavaRoot.RootType.SOURCE))))
+        coreJavaFileManagerExt.initIndex(
+                JvmDependenciesIndex(listOf(JavaRoot(root, JavaRoot.RootType.SOURCE))),
+                useSourceDeclarationModel = useSourceDeclarationModel
+        )
         coreJavaFileManagerExt.addToClasspath(root)
         return coreJavaFileManagerExt
     }
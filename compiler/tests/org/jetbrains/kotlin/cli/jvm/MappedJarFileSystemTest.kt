@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.testFramework.UsefulTestCase
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.MappedJarFileSystem
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.properties.Delegates
+
+public class MappedJarFileSystemTest : UsefulTestCase() {
+    private var tmpDir: File by Delegates.notNull()
+
+    override fun setUp() {
+        super.setUp()
+        tmpDir = FileUtil.createTempDirectory("mappedJar", null)
+    }
+
+    override fun tearDown() {
+        FileUtil.delete(tmpDir)
+        super.tearDown()
+    }
+
+    public fun testEntries() {
+        val jar = createJar(mapOf(
+                "a/b/C.class" to "C",
+                "a/b/D.class" to "D".repeat(1000),
+                "a-b/E.class" to "E",
+                "a.txt" to "text",
+                "META-INF/MANIFEST.MF" to "Manifest-Version: 1.0\n"
+        ), explicitDirectories = listOf("a/"))
+
+        val fileSystem = MappedJarFileSystem()
+        val root = fileSystem.findJarRoot(jar)!!
+        assertTrue(root.isDirectory())
+        assertEquals(listOf("META-INF", "a", "a-b", "a.txt"), root.getChildren().map { it.getName() }.sort())
+
+        val a = root.findChild("a")!!
+        assertTrue(a.isDirectory())
+        assertSame(a, root.findChild("a"))
+        assertEquals(listOf("b"), a.getChildren().map { it.getName() })
+
+        val c = fileSystem.findFileByPath(FileUtil.toSystemIndependentName(jar.getAbsolutePath()) + "!/a/b/C.class")!!
+        assertFalse(c.isDirectory())
+        assertSame(c, a.findChild("b")!!.findChild("C.class"))
+        assertEquals("C", String(c.contentsToByteArray()))
+        assertEquals(1000L, a.findChild("b")!!.findChild("D.class")!!.getLength())
+        assertEquals("D".repeat(1000), String(a.findChild("b")!!.findChild("D.class")!!.contentsToByteArray()))
+        assertEquals("text", String(root.findChild("a.txt")!!.contentsToByteArray()))
+
+        assertNull(root.findChild("b"))
+        assertNull(a.findChild("C.class"))
+        assertNull(fileSystem.findFileByPath(FileUtil.toSystemIndependentName(jar.getAbsolutePath()) + "!/a/b/X.class"))
+    }
+
+    public fun testNotAJar() {
+        val file = File(tmpDir, "notAJar.jar")
+        file.writeText("not a jar")
+        assertNull(MappedJarFileSystem().findJarRoot(file))
+    }
+
+    public fun testModificationStampOfEntries() {
+        val jar = createJar(mapOf("a/B.class" to "B"), explicitDirectories = listOf())
+        val entry = MappedJarFileSystem().findJarRoot(jar)!!.findFileByRelativePath("a/B.class")!!
+        assertEquals(jar.lastModified(), entry.getModificationStamp())
+    }
+
+    public fun testMaximumNumberOfEntriesWithoutZip64() {
+        val jar = createJarWithEmptyEntries(0xFFFF)
+        val root = MappedJarFileSystem().findJarRoot(jar)!!
+        assertNotNull(root.findChild("e00000"))
+        assertNotNull(root.findChild("e65534"))
+        assertEquals(0xFFFF, root.getChildren().size())
+    }
+
+    public fun testZip64IsNotSupported() {
+        // ZipOutputStream writes ZIP64 records starting from 65535 entries
+        val jar = File(tmpDir, "zip64.jar")
+        val output = ZipOutputStream(FileOutputStream(jar))
+        try {
+            for (i in 0..0xFFFF - 1) {
+                output.putNextEntry(ZipEntry("e$i"))
+                output.closeEntry()
+            }
+        }
+        finally {
+            output.close()
+        }
+        assertNull(MappedJarFileSystem().findJarRoot(jar))
+    }
+
+    public fun testDisposeReleasesJars() {
+        val jar = createJar(mapOf("a.txt" to "a", "b.txt" to "b"), explicitDirectories = listOf())
+        val fileSystem = MappedJarFileSystem()
+        val root = fileSystem.findJarRoot(jar)!!
+        assertEquals("a", String(root.findChild("a.txt")!!.contentsToByteArray()))
+
+        fileSystem.dispose()
+
+        try {
+            root.findChild("b.txt")
+            fail("The jar is not expected to be read after the file system is disposed")
+        }
+        catch (e: IOException) {
+            // Expected
+        }
+        assertTrue(jar.delete())
+    }
+
+    // Stored empty entries named e00000, e00001 etc. written by hand, because ZipOutputStream switches to ZIP64 at 65535 entries
+    private fun createJarWithEmptyEntries(count: Int): File {
+        val nameLength = 6
+        val buffer = ByteBuffer.allocate(count * (30 + 46 + 2 * nameLength) + 22).order(ByteOrder.LITTLE_ENDIAN)
+        fun name(i: Int) = "e%05d".format(i).toByteArray()
+
+        for (i in 0..count - 1) {
+            buffer.putInt(0x04034b50)
+            // Version, flags, method, time, date
+            for (value in listOf(10, 0, 0, 0, 0)) buffer.putShort(value.toShort())
+            // CRC, compressed size, size
+            for (value in listOf(0, 0, 0)) buffer.putInt(value)
+            buffer.putShort(nameLength.toShort()).putShort(0).put(name(i))
+        }
+
+        val centralDirectoryOffset = buffer.position()
+        for (i in 0..count - 1) {
+            buffer.putInt(0x02014b50)
+            // Version made by, version needed, flags, method, time, date
+            for (value in listOf(10, 10, 0, 0, 0, 0)) buffer.putShort(value.toShort())
+            // CRC, compressed size, size
+            for (value in listOf(0, 0, 0)) buffer.putInt(value)
+            // Name length, extra length, comment length, disk, internal attributes
+            for (value in listOf(nameLength, 0, 0, 0, 0)) buffer.putShort(value.toShort())
+            // External attributes, offset of the local header
+            buffer.putInt(0).putInt(i * (30 + nameLength)).put(name(i))
+        }
+
+        val centralDirectorySize = buffer.position() - centralDirectoryOffset
+        buffer.putInt(0x06054b50)
+        for (value in listOf(0, 0, count, count)) buffer.putShort(value.toShort())
+        buffer.putInt(centralDirectorySize).putInt(centralDirectoryOffset).putShort(0)
+
+        val jar = File(tmpDir, "manyEntries.jar")
+        jar.writeBytes(buffer.array())
+        return jar
+    }
+
+    private fun createJar(entries: Map<String, String>, explicitDirectories: List<String>): File {
+        val jar = File(tmpDir, "test.jar")
+        val output = ZipOutputStream(FileOutputStream(jar))
+        try {
+            for (directory in explicitDirectories) {
+                output.putNextEntry(ZipEntry(directory))
+                output.closeEntry()
+            }
+            for ((i, entry) in entries.entrySet().withIndex()) {
+                val bytes = entry.getValue().toByteArray()
+                val zipEntry = ZipEntry(entry.getKey())
+                // Half of the entries are stored to test both supported compression methods
+                if (i % 2 == 0) {
+                    val crc = CRC32()
+                    crc.update(bytes)
+                    zipEntry.setMethod(ZipEntry.STORED)
+                    zipEntry.setSize(bytes.size().toLong())
+                    zipEntry.setCompressedSize(bytes.size().toLong())
+                    zipEntry.setCrc(crc.getValue())
+                }
+                output.putNextEntry(zipEntry)
+                output.write(bytes)
+                output.closeEntry()
+            }
+        }
+        finally {
+            output.close()
+        }
+        return jar
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.psi.impl.source.PsiFileImpl
+import com.intellij.psi.impl.source.tree.LazyParseableElement
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.ParallelSourceParser
+import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.config.addKotlinSourceRoot
+import org.jetbrains.kotlin.psi.JetFile
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.JetTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironmentManagement
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+
+public class ParallelSourceParserTest : KotlinTestWithEnvironmentManagement() {
+    private val sourceNames = listOf("c.kt", "a.kt", "b/d.kt", "b/a.kt", "e.kt")
+
+    private fun createEnvironment(parallelParsing: Boolean): KotlinCoreEnvironment {
+        val tmpdir = JetTestUtils.tmpDirForTest(this)
+        val configuration = JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+        for (name in sourceNames) {
+            val file = File(tmpdir, name)
+            FileUtil.writeToFile(file, "fun ${name.replace('/', '_').removeSuffix(".kt")}() = \"$name\"\n")
+            configuration.addKotlinSourceRoot(file.getPath())
+        }
+        configuration.put(JVMConfigurationKeys.PARALLEL_PARSING, parallelParsing)
+        return KotlinCoreEnvironment.createForTests(getTestRootDisposable(), configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+    }
+
+    // Checked without loading the tree
+    private fun isParsed(file: JetFile) =
+            (file as PsiFileImpl).isContentsLoaded() && (file.getNode() as LazyParseableElement).isParsed()
+
+    fun testTreesAreBuiltBeforeAnalysisInInputOrder() {
+        val lazyFiles = createEnvironment(parallelParsing = false).getSourceFiles()
+        assertTrue(lazyFiles.none { isParsed(it) })
+
+        val parsedFiles = createEnvironment(parallelParsing = true).getSourceFiles()
+        val paths = lazyFiles.map { it.getVirtualFile().getPath() }
+        assertEquals(sourceNames.size(), paths.size())
+        assertEquals(paths, parsedFiles.map { it.getVirtualFile().getPath() })
+        assertTrue(parsedFiles.all { isParsed(it) })
+
+        val nodes = parsedFiles.map { it.getNode() }
+        val statistics = ParallelSourceParser.parse(parsedFiles)!!
+        assertEquals(sourceNames.size(), statistics.fileCount)
+        // The trees are not built again
+        assertEquals(nodes, parsedFiles.map { it.getNode() })
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.name.Name;
+import org.jetbrains.kotlin.parsing.JetScriptDefinition;
+import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir;
+import org.jetbrains.kotlin.utils.PathUtil;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.jetbrains.kotlin.config.ConfigPackage.addKotlinSourceRoot;
+
+public class CompiledScriptCacheTest extends TestCaseWithTmpdir {
+    private File script;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        script = new File(tmpdir, "script.kts");
+        FileUtil.writeToFile(script, "println(\"Hello\")\n");
+    }
+
+    @NotNull
+    private CompilerConfiguration createConfiguration() {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(JVMConfigurationKeys.SCRIPT_CACHE_DIRECTORY, new File(tmpdir, "cache"));
+        addKotlinSourceRoot(configuration, script.getPath());
+        return configuration;
+    }
+
+    @NotNull
+    private static String key(@NotNull CompilerConfiguration configuration) {
+        CompiledScriptCache cache = CompiledScriptCache.create(configuration, PathUtil.getKotlinPathsForDistDirectory());
+        assertNotNull(cache);
+        return cache.getEntryFile().getName();
+    }
+
+    @NotNull
+    private static AnalyzerScriptParameter parameter(@NotNull String name) {
+        return new AnalyzerScriptParameter(Name.identifier(name), KotlinBuiltIns.getInstance().getIntType());
+    }
+
+    public void testKeyDependsOnEverythingAffectingCompiledScript() throws Exception {
+        assertEquals(key(createConfiguration()), key(createConfiguration()));
+        Set<String> keys = new HashSet<String>();
+        keys.add(key(createConfiguration()));
+
+        CompilerConfiguration parameters = createConfiguration();
+        parameters.put(JVMConfigurationKeys.SCRIPT_PARAMETERS, Collections.singletonList(parameter("num")));
+        assertTrue(keys.add(key(parameters)));
+
+        CompilerConfiguration otherParameters = createConfiguration();
+        otherParameters.put(JVMConfigurationKeys.SCRIPT_PARAMETERS, Collections.singletonList(parameter("count")));
+        assertTrue(keys.add(key(otherParameters)));
+
+        CompilerConfiguration definitions = createConfiguration();
+        definitions.add(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY, new JetScriptDefinition(".kts", parameter("num")));
+        assertTrue(keys.add(key(definitions)));
+
+        File annotationsRoot = new File(tmpdir, "annotations");
+        FileUtil.writeToFile(new File(annotationsRoot, "java/lang/annotations.xml"), "<root/>");
+        CompilerConfiguration annotations = createConfiguration();
+        annotations.add(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY, annotationsRoot);
+        assertTrue(keys.add(key(annotations)));
+
+        CompilerConfiguration pluginOptions = createConfiguration();
+        pluginOptions.add(JVMConfigurationKeys.PLUGIN_OPTIONS, "plugin:org.example:option=value");
+        assertTrue(keys.add(key(pluginOptions)));
+
+        File pluginJar = new File(tmpdir, "plugin.jar");
+        FileUtil.writeToFile(pluginJar, "plugin");
+        CompilerConfiguration pluginClasspath = createConfiguration();
+        pluginClasspath.add(JVMConfigurationKeys.PLUGIN_CLASSPATH, pluginJar);
+        assertTrue(keys.add(key(pluginClasspath)));
+
+        // The plugin is changed
+        FileUtil.writeToFile(pluginJar, "another plugin");
+        assertTrue(keys.add(key(pluginClasspath)));
+    }
+}
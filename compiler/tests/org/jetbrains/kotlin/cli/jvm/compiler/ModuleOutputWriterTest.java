@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.CliBaseTest;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+public class ModuleOutputWriterTest extends TestCaseWithTmpdir {
+    private static final int MODULES = 3;
+    private static final int FILES_PER_MODULE = 4;
+    private static final Pattern ANY_FILE = Pattern.compile(".*");
+
+    private final List<File> sourceDirs = new ArrayList<File>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int module = 0; module < MODULES; module++) {
+            File sourceDir = new File(tmpdir, "src" + module);
+            for (int file = 0; file < FILES_PER_MODULE; file++) {
+                FileUtil.writeToFile(new File(sourceDir, "file" + file + ".kt"),
+                                     "package p" + module + "\n\n" +
+                                     "class A" + file + " {\n" +
+                                     "    fun f(): Int = " + file + "\n" +
+                                     "    inner class Inner\n" +
+                                     "}\n\n" +
+                                     "fun top" + file + "(): Int = A" + file + "().f()\n");
+            }
+            sourceDirs.add(sourceDir);
+        }
+    }
+
+    public void testOutputOfEveryModuleMatchesSequentialCompilation() throws Exception {
+        List<File> expected = compileEachModuleSeparately();
+
+        List<File> outputDirs = new ArrayList<File>();
+        for (int module = 0; module < MODULES; module++) {
+            outputDirs.add(new File(tmpdir, "together" + module));
+        }
+        Pair<String, ExitCode> result = compileModules(outputDirs);
+        assertEquals(result.first, ExitCode.OK, result.second);
+
+        for (int module = 0; module < MODULES; module++) {
+            assertSameOutput(expected.get(module), outputDirs.get(module));
+        }
+    }
+
+    public void testWriteFailureInOneModuleIsReported() throws Exception {
+        List<File> expected = compileEachModuleSeparately();
+
+        File blocked = new File(tmpdir, "blockedOutput");
+        FileUtil.writeToFile(blocked, "not a directory");
+
+        List<File> outputDirs = Arrays.asList(new File(tmpdir, "first"), blocked, new File(tmpdir, "last"));
+        Pair<String, ExitCode> result = compileModules(outputDirs);
+        assertEquals(result.first, ExitCode.INTERNAL_ERROR, result.second);
+        assertTrue(result.first, result.first.contains(blocked.getName()));
+
+        // Modules written before the failing one are complete
+        assertSameOutput(expected.get(0), outputDirs.get(0));
+    }
+
+    @NotNull
+    private List<File> compileEachModuleSeparately() throws IOException {
+        List<File> outputDirs = new ArrayList<File>();
+        for (int module = 0; module < MODULES; module++) {
+            File outputDir = new File(tmpdir, "separate" + module);
+            File xml = writeModulesXml("separate" + module + ".xml", Arrays.asList(module), Arrays.asList(outputDir));
+            Pair<String, ExitCode> result = compile(xml);
+            assertEquals(result.first, ExitCode.OK, result.second);
+            outputDirs.add(outputDir);
+        }
+        return outputDirs;
+    }
+
+    @NotNull
+    private Pair<String, ExitCode> compileModules(@NotNull List<File> outputDirs) throws IOException {
+        List<Integer> modules = new ArrayList<Integer>();
+        for (int module = 0; module < MODULES; module++) {
+            modules.add(module);
+        }
+        return compile(writeModulesXml("together.xml", modules, outputDirs));
+    }
+
+    @NotNull
+    private static Pair<String, ExitCode> compile(@NotNull File xml) {
+        return CliBaseTest.executeCompilerGrabOutput(new K2JVMCompiler(), Arrays.asList("-module", xml.getPath()));
+    }
+
+    @NotNull
+    private File writeModulesXml(@NotNull String name, @NotNull List<Integer> modules, @NotNull List<File> outputDirs)
+            throws IOException {
+        StringBuilder xml = new StringBuilder("<modules>\n");
+        for (int i = 0; i < modules.size(); i++) {
+            int module = modules.get(i);
+            xml.append("  <module name=\"m").append(module).append("\" outputDir=\"").append(outputDirs.get(i).getPath()).append("\">\n");
+            xml.append("    <sources path=\"").append(sourceDirs.get(module).getPath()).append("\"/>\n");
+            xml.append("  </module>\n");
+        }
+        xml.append("</modules>\n");
+
+        File file = new File(tmpdir, name);
+        FileUtil.writeToFile(file, xml.toString());
+        return file;
+    }
+
+    private static void assertSameOutput(@NotNull File expectedDir, @NotNull File actualDir) throws IOException {
+        Map<String, byte[]> expected = collectFiles(expectedDir);
+        Map<String, byte[]> actual = collectFiles(actualDir);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), actual.get(entry.getKey())));
+        }
+    }
+
+    @NotNull
+    private static Map<String, byte[]> collectFiles(@NotNull File root) throws IOException {
+        Map<String, byte[]> result = new TreeMap<String, byte[]>();
+        for (File file : FileUtil.findFilesByMask(ANY_FILE, root)) {
+            result.put(FileUtil.getRelativePath(root, file), FileUtil.loadFileBytes(file));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.extensions;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.analyzer.ModuleInfo;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class ExtensionCostsTest extends KotlinTestWithEnvironment {
+    private static class EmptyDeclarationsProvider implements ExternalDeclarationsProvider {
+        @NotNull
+        @Override
+        public Collection<JetFile> getExternalDeclarations(@Nullable ModuleInfo moduleInfo) {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    protected KotlinCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testExtensionsAreNotWrappedByDefault() {
+        EmptyDeclarationsProvider provider = new EmptyDeclarationsProvider();
+        ExternalDeclarationsProvider.Companion.registerExtension(getProject(), provider);
+
+        assertSame(provider, getSingleProvider());
+    }
+
+    public void testCallsAreCounted() {
+        ExtensionCosts costs = ExtensionCosts.Companion.enable(getProject());
+        ExternalDeclarationsProvider.Companion.registerExtension(getProject(), new EmptyDeclarationsProvider());
+
+        ExternalDeclarationsProvider provider = getSingleProvider();
+        assertSame(provider, getSingleProvider());
+        assertEmpty(provider.getExternalDeclarations(null));
+        assertEmpty(provider.getExternalDeclarations(null));
+
+        List<String> report = costs.report();
+        assertEquals(1, report.size());
+        String expectedPrefix = EmptyDeclarationsProvider.class.getName() + ".getExternalDeclarations: 2 calls, ";
+        assertTrue(report.get(0), report.get(0).startsWith(expectedPrefix));
+    }
+
+    @NotNull
+    private ExternalDeclarationsProvider getSingleProvider() {
+        Collection<ExternalDeclarationsProvider> providers = ExternalDeclarationsProvider.Companion.getInstances(getProject());
+        assertEquals(1, providers.size());
+        return providers.iterator().next();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler
+
+import com.intellij.testFramework.LightVirtualFile
+import junit.framework.TestCase
+import org.jetbrains.kotlin.load.java.structure.*
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryClassSignatureParser
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryJavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.ClassifierResolutionContext
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.PlainJavaClassifierType
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import java.text.StringCharacterIterator
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+public class BinaryJavaClassTest : TestCase() {
+    private val context = ClassifierResolutionContext({ null }, { null })
+
+    private fun parseType(signature: String): JavaType {
+        val iterator = StringCharacterIterator(signature)
+        val type = BinaryClassSignatureParser.parseTypeString(iterator, context)
+        assertEquals(StringCharacterIterator.DONE, iterator.current(), "Signature is not read till the end: $signature")
+        return type
+    }
+
+    fun testPrimitiveAndArrayTypes() {
+        assertEquals("int", parseType("I").toString())
+        assertEquals("void", parseType("V").toString())
+        assertEquals("boolean[][]", parseType("[[Z").toString())
+        assertEquals("java.lang.String[]", parseType("[Ljava/lang/String;").toString())
+    }
+
+    fun testGenericType() {
+        val type = parseType("Ljava/util/Map<TK;+Ljava/util/List<[I>;>;") as PlainJavaClassifierType
+        assertEquals("java/util/Map", type.internalName)
+        assertEquals("java.util.Map<K, ? extends java.util.List<int[]>>", type.toString())
+
+        val key = type.getTypeArguments()[0] as PlainJavaClassifierType
+        assertEquals("K", key.typeVariableName)
+
+        val value = type.getTypeArguments()[1] as JavaWildcardType
+        assertTrue(value.isExtends())
+    }
+
+    fun testWildcards() {
+        val type = parseType("Ljava/util/Map<*-Ljava/lang/Number;>;") as JavaClassifierType
+        val (unbounded, lowerBound) = type.getTypeArguments().map { it as JavaWildcardType }
+        assertEquals(null, unbounded.getBound())
+        assertTrue(!lowerBound.isExtends())
+        assertEquals("java.lang.Number", lowerBound.getBound().toString())
+    }
+
+    fun testInnerClassOfGenericClass() {
+        val type = parseType("Ltest/Outer<Ljava/lang/String;>.Inner<TT;>;") as PlainJavaClassifierType
+        assertEquals("test/Outer\$Inner", type.internalName)
+        assertEquals("test.Outer.Inner<T>", type.toString())
+        assertEquals(PlainJavaClassifierType(context, "test/Outer\$Inner", null, type.getTypeArguments(),
+                                             parseType("Ltest/Outer<Ljava/lang/String;>;") as PlainJavaClassifierType, null), type)
+    }
+
+    fun testTypeParameters() {
+        val iterator = StringCharacterIterator("<T::Ljava/lang/Comparable<TT;>;U:TT;>Ljava/lang/Object;")
+        val typeParameters = BinaryClassSignatureParser.parseTypeParametersDeclaration(iterator, context)
+        assertEquals('L', iterator.current())
+
+        val (t, u) = typeParameters
+        assertEquals("T", t.getName().asString())
+        assertEquals("java.lang.Comparable<T>", t.getUpperBounds().single().toString())
+        assertEquals("T", u.getUpperBounds().single().toString())
+
+        // The bound of U is resolved to the type parameter declared before it
+        assertTrue(u.getUpperBounds().single().getClassifier() === t)
+    }
+
+    fun testNestedClassIdsFromInnerClassesAttribute() {
+        context.addInnerClass("test/A\$B", "test/A", "B")
+        assertEquals(ClassId.topLevel(FqName("test.A")).createNestedClassId(Name.identifier("B")),
+                     context.mapInternalNameToClassId("test/A\$B"))
+        // Dollars in names of top level classes are kept if there's no InnerClasses entry
+        assertEquals(ClassId.topLevel(FqName("test.C\$D")), context.mapInternalNameToClassId("test/C\$D"))
+    }
+
+    fun testClassAnnotationArguments() {
+        val writer = createClassWriter()
+        val annotation = writer.visitAnnotation("Ltest/Ann;", true)
+        annotation.visit("int", 42)
+        annotation.visit("string", "str")
+        annotation.visit("ints", intArrayOf(1, 2))
+        annotation.visit("klass", Type.getType("[Ljava/lang/String;"))
+        annotation.visitEnum("enum", "Ltest/E;", "ENTRY")
+        annotation.visitAnnotation("nested", "Ltest/Nested;").visitEnd()
+        val array = annotation.visitArray("strings")
+        array.visit(null, "a")
+        array.visit(null, "b")
+        array.visitEnd()
+        annotation.visitEnd()
+
+        val javaClass = readClass(writer)
+        val ann = javaClass.findAnnotation(FqName("test.Ann"))!!
+        assertEquals(ClassId.topLevel(FqName("test.Ann")), ann.getClassId())
+
+        fun argument(name: String) = ann.findArgument(Name.identifier(name))!!
+
+        assertEquals(42, (argument("int") as JavaLiteralAnnotationArgument).value)
+        assertEquals("str", (argument("string") as JavaLiteralAnnotationArgument).value)
+        assertEquals(listOf(1, 2), (argument("ints") as JavaArrayAnnotationArgument).getElements().map {
+            (it as JavaLiteralAnnotationArgument).value
+        })
+        assertEquals("java.lang.String[]", (argument("klass") as JavaClassObjectAnnotationArgument).getReferencedType().toString())
+        assertTrue(argument("enum") is JavaEnumValueAnnotationArgument)
+        assertEquals(ClassId.topLevel(FqName("test.Nested")),
+                     (argument("nested") as JavaAnnotationAsAnnotationArgument).getAnnotation().getClassId())
+        assertEquals(listOf("a", "b"), (argument("strings") as JavaArrayAnnotationArgument).getElements().map {
+            (it as JavaLiteralAnnotationArgument).value
+        })
+    }
+
+    fun testMethodParameters() {
+        val writer = createClassWriter()
+
+        val withNames = writer.visitMethod(Opcodes.ACC_PUBLIC, "withNames", "(ILjava/lang/String;)V", null, null)
+        withNames.visitParameter("count", 0)
+        withNames.visitParameter("text", 0)
+        withNames.visitParameterAnnotation(1, "Ltest/Ann;", true).visitEnd()
+        withNames.visitEnd()
+
+        val generic = writer.visitMethod(
+                Opcodes.ACC_PUBLIC or Opcodes.ACC_VARARGS, "generic", "(J[Ljava/lang/Object;)Ljava/lang/Object;",
+                "<T:Ljava/lang/Object;>(J[TT;)TT;", null
+        )
+        generic.visitEnd()
+
+        val javaClass = readClass(writer)
+        val methods = javaClass.getMethods().toMap { it.getName().asString() }
+
+        val (count, text) = methods["withNames"]!!.getValueParameters()
+        assertEquals("count", count.getName()?.asString())
+        assertEquals("text", text.getName()?.asString())
+        assertTrue(count.getAnnotations().isEmpty())
+        assertEquals(ClassId.topLevel(FqName("test.Ann")), text.getAnnotations().single().getClassId())
+
+        val method = methods["generic"]!!
+        val (first, second) = method.getValueParameters()
+        assertEquals("p0", first.getName()?.asString())
+        assertEquals("p1", second.getName()?.asString())
+        assertTrue(second.isVararg())
+
+        val typeParameter = method.getTypeParameters().single()
+        assertTrue((method.getReturnType() as JavaClassifierType).getClassifier() === typeParameter)
+        assertTrue(((second.getType() as JavaArrayType).getComponentType() as JavaClassifierType).getClassifier() === typeParameter)
+    }
+
+    private fun createClassWriter(): ClassWriter {
+        val writer = ClassWriter(0)
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "test/A", null, "java/lang/Object", null)
+        return writer
+    }
+
+    private fun readClass(writer: ClassWriter): BinaryJavaClass {
+        writer.visitEnd()
+        return BinaryJavaClass(LightVirtualFile("A.class"), ClassId.topLevel(FqName("test.A")), { null }, writer.toByteArray())
+    }
+}
@@ -21,6 +21,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.analyzer.AnalysisResult;
 import org.jetbrains.kotlin.cli.CliBaseTest;
@@ -30,22 +31,35 @@ import org.jetbrains.kotlin.cli.common.messages.MessageCollectorPlainTextToStrea
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime;
 import org.jetbrains.kotlin.codegen.inline.InlineCodegenUtil;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
 import org.jetbrains.kotlin.descriptors.PackageViewDescriptor;
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames;
+import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
+import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.jvm.JvmClassName;
 import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
 import org.jetbrains.kotlin.test.*;
 import org.jetbrains.kotlin.test.util.DescriptorValidator;
 import org.jetbrains.kotlin.test.util.RecursiveDescriptorComparator;
 import org.jetbrains.kotlin.utils.UtilsPackage;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
 import org.jetbrains.org.objectweb.asm.ClassReader;
 import org.jetbrains.org.objectweb.asm.ClassVisitor;
 import org.jetbrains.org.objectweb.asm.ClassWriter;
+import org.jetbrains.org.objectweb.asm.FieldVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
 import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.tree.AnnotationNode;
 
 import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -165,6 +179,101 @@ public class CompileKotlinAgainstCustomBinariesTest extends TestCaseWithTmpdir {
         doTestWithTxt(copyJarFileWithoutEntry(compileLibrary("library"), "test/E.class"));
     }
 
+    public void testSharedStringTable() throws Exception {
+        File library = new File(tmpdir, "library");
+        compileWithCli(new File(getTestDataDirectory(), "library").getPath(), "-d", library.getPath(), "-Xshared-string-table");
+        findSharedStringTable(library);
+
+        doTestWithTxt(library);
+    }
+
+    public void testSharedStringTableNextToOwnStringTables() throws Exception {
+        File own = new File(tmpdir, "own");
+        File shared = new File(tmpdir, "shared");
+        compileWithCli(new File(getTestDataDirectory(), "own").getPath(), "-d", own.getPath());
+        compileWithCli(new File(getTestDataDirectory(), "shared").getPath(), "-classpath", own.getPath(), "-d", shared.getPath(),
+                       "-Xshared-string-table");
+
+        assertFalse(new File(own, "META-INF").exists());
+        findSharedStringTable(shared);
+        for (AnnotationNode annotation : collectKotlinClassAnnotations(new File(own, "own")).values()) {
+            assertFalse(annotation.values.contains(JvmAnnotationNames.STRING_TABLE_FIELD_NAME));
+        }
+        Map<String, AnnotationNode> sharedClasses = collectKotlinClassAnnotations(new File(shared, "shared"));
+        assertFalse(sharedClasses.isEmpty());
+        for (AnnotationNode annotation : sharedClasses.values()) {
+            assertTrue(annotation.values.contains(JvmAnnotationNames.STRING_TABLE_FIELD_NAME));
+        }
+
+        doTestWithTxt(own, shared);
+    }
+
+    public void testSharedStringTableInRegeneratedObjects() throws Exception {
+        File libraryDir = new File(tmpdir, "library");
+        File usageDir = new File(tmpdir, "usage");
+
+        compileWithCli(new File(getTestDataDirectory(), "library.kt").getPath(), "-d", libraryDir.getPath(), "-Xshared-string-table");
+        compileWithCli(new File(getTestDataDirectory(), "usage.kt").getPath(), "-classpath", libraryDir.getPath(),
+                       "-d", usageDir.getPath(), "-Xshared-string-table");
+
+        // Tables of different modules must not shadow each other on the class path
+        assertFalse(findSharedStringTable(libraryDir).equals(findSharedStringTable(usageDir)));
+
+        // The object regenerated from the inline function of the library refers to no table of the library
+        Map<String, AnnotationNode> kotlinClasses = collectKotlinClassAnnotations(new File(usageDir, "usage"));
+        assertFalse(kotlinClasses.isEmpty());
+        for (Map.Entry<String, AnnotationNode> entry : kotlinClasses.entrySet()) {
+            List<Object> values = entry.getValue().values;
+            assertFalse("Shared string table of another module is referenced: " + entry.getKey(),
+                        values.contains(JvmAnnotationNames.STRING_TABLE_FIELD_NAME));
+
+            @SuppressWarnings("unchecked")
+            List<String> data = (List<String>) values.get(values.indexOf(JvmAnnotationNames.DATA_FIELD_NAME) + 1);
+            ClassData classData = JvmProtoBufUtil.readClassDataFrom(ArrayUtil.toStringArray(data));
+            assertEquals("lib", classData.getNameResolver().getClassId(classData.getClassProto().getFqName()).getPackageFqName().asString());
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(
+                new URL[] {usageDir.toURI().toURL(), libraryDir.toURI().toURL()},
+                ForTestCompileRuntime.runtimeJarClassLoader()
+        );
+        Class<?> usagePackage = classLoader.loadClass(PackageClassUtils.getPackageClassFqName(new FqName("usage")).asString());
+        assertEquals("OK", usagePackage.getMethod("box").invoke(null));
+    }
+
+    @NotNull
+    private static String findSharedStringTable(@NotNull File outputDirectory) {
+        File[] tables = new File(outputDirectory, "META-INF").listFiles();
+        assertNotNull(tables);
+        assertEquals(1, tables.length);
+        assertTrue(tables[0].getName(), tables[0].getName().endsWith(".kotlin_string_table"));
+        return tables[0].getName();
+    }
+
+    // Class name -> KotlinClass annotation, for all Kotlin classes in the directory
+    @NotNull
+    private static Map<String, AnnotationNode> collectKotlinClassAnnotations(@NotNull File directory) throws IOException {
+        final Map<String, AnnotationNode> result = new HashMap<String, AnnotationNode>();
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            if (!file.getName().endsWith(".class")) continue;
+
+            final String className = FileUtil.getNameWithoutExtension(file);
+            new ClassReader(FileUtil.loadFileBytes(file)).accept(new ClassVisitor(Opcodes.ASM5) {
+                @Override
+                public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                    if (!desc.equals("L" + JvmClassName.byFqNameWithoutInnerClasses(JvmAnnotationNames.KOTLIN_CLASS).getInternalName() + ";")) return null;
+
+                    AnnotationNode annotation = new AnnotationNode(desc);
+                    result.put(className, annotation);
+                    return annotation;
+                }
+            }, ClassReader.SKIP_CODE);
+        }
+        return result;
+    }
+
     public void testNoWarningsOnJavaKotlinInheritance() throws Exception {
         // This test checks that there are no PARAMETER_NAME_CHANGED_ON_OVERRIDE or DIFFERENT_NAMES_FOR_THE_SAME_PARAMETER_IN_SUPERTYPES
         // warnings when subclassing in Kotlin from Java binaries (in case when no parameter names are available for Java classes)
@@ -214,6 +323,104 @@ public class CompileKotlinAgainstCustomBinariesTest extends TestCaseWithTmpdir {
         JetTestUtils.assertEqualsToFile(new File(getTestDataDirectory(), "output.txt"), output);
     }
 
+    public void testAbiStubs() throws Exception {
+        File stubsDir = new File(tmpdir, "stubs");
+        File libraryDir = new File(tmpdir, "library");
+        File usageDir = new File(tmpdir, "usage");
+        String librarySource = new File(getTestDataDirectory(), "library.kt").getPath();
+
+        compileWithCli(librarySource, "-d", stubsDir.getPath(), "-Xabi-stubs");
+        compileWithCli(librarySource, "-d", libraryDir.getPath());
+
+        Map<String, Boolean> methods = collectMethodsWithCode(new File(stubsDir, "lib"));
+        assertEquals(Boolean.FALSE, methods.get("A.foo"));
+        assertEquals(Boolean.TRUE, methods.get("A.bar"));
+        assertEquals(Boolean.TRUE, methods.get("A.adder"));
+        assertEquals(Boolean.TRUE, methods.get("A.wrap"));
+        assertEquals(Boolean.FALSE, methods.get("A.<init>"));
+        assertEquals(Boolean.FALSE, methods.get("A.getInitialized"));
+        assertEquals(Boolean.FALSE, methods.get("A$Companion.create"));
+        assertEquals(Boolean.TRUE, methods.get("A$Companion.withDefault"));
+        assertEquals(Boolean.FALSE, methods.get("Color.describe"));
+        assertEquals(Boolean.FALSE, methods.get(PackageClassUtils.getPackageClassName(new FqName("lib")) + ".getTopLevel"));
+        for (Map.Entry<String, Boolean> entry : methods.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith("A$") && !key.startsWith("A$Companion.")) {
+                assertTrue("Code of a class nested in an inline function is absent: " + key, entry.getValue());
+            }
+        }
+
+        // Constant values of fields are a part of the ABI: Java sources compiled against the stubs inline them
+        Map<String, Object> constants = collectFieldConstants(new File(stubsDir, "lib"));
+        assertEquals(collectFieldConstants(new File(libraryDir, "lib")), constants);
+        assertTrue(constants.toString(), constants.values().containsAll(Arrays.<Object>asList(42, "const", "companion")));
+
+        compileWithCli(new File(getTestDataDirectory(), "usage.kt").getPath(), "-classpath", stubsDir.getPath(), "-d", usageDir.getPath());
+
+        URLClassLoader classLoader = new URLClassLoader(
+                new URL[] {usageDir.toURI().toURL(), libraryDir.toURI().toURL()},
+                ForTestCompileRuntime.runtimeJarClassLoader()
+        );
+        Class<?> usagePackage = classLoader.loadClass(PackageClassUtils.getPackageClassFqName(new FqName("usage")).asString());
+        assertEquals("OK", usagePackage.getMethod("box").invoke(null));
+    }
+
+    private static void compileWithCli(@NotNull String... args) {
+        Pair<String, ExitCode> result = CliBaseTest.executeCompilerGrabOutput(new K2JVMCompiler(), Arrays.asList(args));
+        assertEquals(result.first, ExitCode.OK, result.second);
+    }
+
+    // "Class.method" -> whether the method has code, for all non-abstract methods of the classes in the directory
+    @NotNull
+    private static Map<String, Boolean> collectMethodsWithCode(@NotNull File directory) throws IOException {
+        final Map<String, Boolean> result = new HashMap<String, Boolean>();
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            if (!file.getName().endsWith(".class")) continue;
+
+            final String className = FileUtil.getNameWithoutExtension(file);
+            new ClassReader(FileUtil.loadFileBytes(file)).accept(new ClassVisitor(Opcodes.ASM5) {
+                @Override
+                public MethodVisitor visitMethod(int access, final String name, String desc, String signature, String[] exceptions) {
+                    if ((access & Opcodes.ACC_ABSTRACT) != 0) return null;
+
+                    result.put(className + "." + name, false);
+                    return new MethodVisitor(Opcodes.ASM5) {
+                        @Override
+                        public void visitCode() {
+                            result.put(className + "." + name, true);
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+        return result;
+    }
+
+    // "Class.field" -> constant value, for all fields of the classes in the directory which have a ConstantValue attribute
+    @NotNull
+    private static Map<String, Object> collectFieldConstants(@NotNull File directory) throws IOException {
+        final Map<String, Object> result = new HashMap<String, Object>();
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            if (!file.getName().endsWith(".class")) continue;
+
+            final String className = FileUtil.getNameWithoutExtension(file);
+            new ClassReader(FileUtil.loadFileBytes(file)).accept(new ClassVisitor(Opcodes.ASM5) {
+                @Override
+                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                    if (value != null) {
+                        result.put(className + "." + name, value);
+                    }
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE);
+        }
+        return result;
+    }
+
     /*test source mapping generation when source info is absent*/
     public void testInlineFunWithoutDebugInfo() throws Exception {
         File inlineSource = new File(getTestDataDirectory(), "sourceInline.kt");
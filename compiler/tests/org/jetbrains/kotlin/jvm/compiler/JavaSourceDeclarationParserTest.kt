@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.load.java.structure.impl.sources.*
+import org.jetbrains.org.objectweb.asm.Opcodes
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+public class JavaSourceDeclarationParserTest : TestCase() {
+    private fun parse(text: String): SourceFileDeclarations {
+        val declarations = JavaSourceDeclarationParser.parse(text)
+        assertNotNull(declarations, "Could not parse: $text")
+        return declarations!!
+    }
+
+    private fun parseClass(text: String): SourceClassDeclaration = parse(text).classes.single()
+
+    private fun render(type: SourceTypeReference): String = when (type) {
+        is SourcePrimitiveTypeReference -> type.type?.name()?.toLowerCase() ?: "void"
+        is SourceArrayTypeReference -> render(type.componentType) + "[]"
+        is SourceWildcardTypeReference -> type.bound?.let { (if (type.isExtends) "? extends " else "? super ") + render(it) } ?: "?"
+        is SourceClassifierTypeReference -> type.names.indices.map { i ->
+            val arguments = type.typeArguments[i]
+            type.names[i] + (if (arguments.isEmpty()) "" else arguments.map { render(it) }.joinToString(", ", "<", ">"))
+        }.joinToString(".")
+        else -> throw AssertionError("Unexpected type: $type")
+    }
+
+    private fun hasFlag(access: Int, flag: Int) = (access and flag) != 0
+
+    fun testPackageAndImports() {
+        val file = parse("package a.b; import java.util.*; import static java.lang.Math.max; import java.io.File; class A {}")
+        assertEquals(listOf("a", "b"), file.packageName)
+
+        val (util, max, ioFile) = file.imports
+        assertEquals(listOf("java", "util"), util.name)
+        assertTrue(util.isOnDemand)
+        assertTrue(max.isStatic)
+        assertEquals(listOf("java", "lang", "Math", "max"), max.name)
+        assertFalse(ioFile.isStatic || ioFile.isOnDemand)
+    }
+
+    fun testGenerics() {
+        val klass = parseClass("""
+            class A<T extends Comparable<? super T>, U> extends Base<Map.Entry<T, List<int[]>>> implements java.util.List<U> {
+                <R extends Number & Runnable> Map<T, List<R>> foo(List<? extends R>... lists) { return null; }
+                java.util.Map<String, ?> bar(int a[], Outer<String>.Inner<U> b)[] { if (a.length >> 1 > 0) {} return null; }
+            }
+        """)
+
+        val (t, u) = klass.typeParameters
+        assertEquals("T", t.name)
+        assertEquals(listOf("Comparable<? super T>"), t.bounds.map { render(it) })
+        assertTrue(u.bounds.isEmpty())
+        assertEquals(listOf("Base<Map.Entry<T, List<int[]>>>", "java.util.List<U>"), klass.supertypes.map { render(it) })
+
+        val (foo, bar) = klass.methods
+        assertEquals(listOf("Number", "Runnable"), foo.typeParameters.single().bounds.map { render(it) })
+        assertEquals("Map<T, List<R>>", render(foo.returnType!!))
+        val lists = foo.valueParameters.single()
+        assertTrue(lists.isVararg)
+        assertTrue(hasFlag(foo.access, Opcodes.ACC_VARARGS))
+        assertEquals("List<? extends R>[]", render(lists.type))
+
+        assertEquals("java.util.Map<String, ?>[]", render(bar.returnType!!))
+        assertEquals(listOf("int[]", "Outer<String>.Inner<U>"), bar.valueParameters.map { render(it.type) })
+    }
+
+    fun testAnnotations() {
+        val klass = parseClass("""
+            @Ann(s = "x", n = -1, c = String[].class, e = E.A, a = {1, 2,}, nested = @Nested(true))
+            @test.Marker
+            class A {
+                @Deprecated @SuppressWarnings("unchecked") public void foo(final @Nullable String s) {}
+                @interface Inner { int value() default 1; String[] names() default {}; }
+            }
+        """)
+
+        val (ann, marker) = klass.annotations
+        assertEquals(listOf("test", "Marker"), marker.name)
+        assertTrue(marker.arguments.isEmpty())
+
+        val arguments = ann.arguments.toMap { it.name!! }
+        assertEquals("x", (arguments["s"]!!.value as SourceLiteralValue).value)
+        assertEquals(-1, (arguments["n"]!!.value as SourceLiteralValue).value)
+        assertEquals("String[]", render((arguments["c"]!!.value as SourceClassLiteralValue).type))
+        assertEquals(listOf("E", "A"), (arguments["e"]!!.value as SourceReferenceValue).names)
+        assertEquals(listOf(1, 2), (arguments["a"]!!.value as SourceArrayValue).elements.map { (it as SourceLiteralValue).value })
+        val nested = (arguments["nested"]!!.value as SourceAnnotationValueAnnotation).annotation
+        assertEquals(true, (nested.arguments.single().value as SourceLiteralValue).value)
+        assertNull(nested.arguments.single().name)
+
+        val foo = klass.methods.single()
+        assertEquals(listOf("Deprecated", "SuppressWarnings"), foo.annotations.map { it.name.single() })
+        assertEquals(listOf("Nullable"), foo.valueParameters.single().annotations.map { it.name.single() })
+
+        val inner = klass.nestedClasses.single()
+        assertTrue(hasFlag(inner.access, Opcodes.ACC_INTERFACE))
+        assertEquals(listOf(true, true), inner.methods.map { it.hasDefaultValue })
+    }
+
+    fun testNestedEnumAndInterfaceMembers() {
+        val klass = parseClass("""
+            public class Outer {
+                { System.out.println("{"); }
+                static { }
+                interface I {
+                    int CONSTANT = 1;
+                    void method();
+                    default void withBody() { }
+                    class InInterface { }
+                }
+                enum E implements I {
+                    A(1) { @Override public void method() { } },
+                    B;
+                    E() { }
+                    E(int x) { }
+                    public void method() { }
+                }
+                private static final class Nested<T> { T field; }
+            }
+        """)
+
+        assertTrue(klass.methods.isEmpty())
+        val (i, e, nested) = klass.nestedClasses
+
+        assertTrue(hasFlag(i.access, Opcodes.ACC_INTERFACE))
+        assertTrue(hasFlag(i.access, Opcodes.ACC_STATIC))
+        val constant = i.fields.single()
+        assertEquals(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL, constant.access)
+        assertEquals(1, constant.initializerValue)
+        val (method, withBody) = i.methods
+        assertTrue(hasFlag(method.access, Opcodes.ACC_ABSTRACT) && hasFlag(method.access, Opcodes.ACC_PUBLIC))
+        assertFalse(hasFlag(withBody.access, Opcodes.ACC_ABSTRACT))
+        val inInterface = i.nestedClasses.single()
+        assertEquals("InInterface", inInterface.name)
+        assertTrue(hasFlag(inInterface.access, Opcodes.ACC_STATIC) && hasFlag(inInterface.access, Opcodes.ACC_PUBLIC))
+
+        assertTrue(hasFlag(e.access, Opcodes.ACC_ENUM))
+        assertTrue(hasFlag(e.access, Opcodes.ACC_STATIC))
+        assertEquals(listOf("A", "B"), e.fields.map { it.name })
+        assertTrue(e.fields.all { hasFlag(it.access, Opcodes.ACC_ENUM) && render(it.type) == "E" })
+        assertEquals(listOf("I"), e.supertypes.map { render(it) })
+        // Constructors have no return type
+        assertEquals(listOf(true, true, false), e.methods.map { it.returnType == null })
+        assertEquals(listOf(0, 1, 0), e.methods.map { it.valueParameters.size() })
+
+        assertEquals("Nested", nested.name)
+        assertTrue(hasFlag(nested.access, Opcodes.ACC_PRIVATE) && hasFlag(nested.access, Opcodes.ACC_FINAL))
+        assertEquals("T", render(nested.fields.single().type))
+    }
+
+    fun testUnicodeEscapes() {
+        val klass = parseClass("""
+            public class \u0041 {
+                public static final String S = "\u0042\\u0043";
+                public static final char C = '\uuu0044';
+                int a; \u002f\u002f int commentedOut;
+                int \u0062;
+            }
+        """)
+
+        assertEquals("A", klass.name)
+        val (s, c, a, b) = klass.fields
+        // The escaped backslash doesn't start a unicode escape
+        assertEquals("B\\u0043", s.initializerValue)
+        assertEquals('D', c.initializerValue)
+        assertEquals("a", a.name)
+        assertEquals("b", b.name)
+
+        assertNull(JavaSourceDeclarationParser.parse("class A { String s = \"\\u00G0\"; }"))
+        assertNull(JavaSourceDeclarationParser.parse("class A { String s = \"\\u000a\"; }"))
+    }
+
+    fun testLiteralConstants() {
+        val file = parse("""
+            class A {
+                static final int I = -2147483648, HEX = 0x7fff_ffff;
+                static final long L = 10L;
+                static final double D = 1e-3;
+                static final float F = -.5f;
+                static final boolean B = true;
+                static final String S = "a\tb\101";
+                static final Object O = new Object();
+                static final java.util.List<String> LIST = java.util.Collections.<String, String>emptyList(), OTHER = null;
+                int notFinal = 1 + 1;
+            }
+        """)
+        assertFalse(file.hasUnevaluatedExpressions)
+
+        val values = file.classes.single().fields.toMap { it.name }.mapValues { it.getValue().initializerValue }
+        assertEquals(Int.MIN_VALUE, values["I"])
+        assertEquals(Int.MAX_VALUE, values["HEX"])
+        assertEquals(10L, values["L"])
+        assertEquals(1e-3, values["D"])
+        assertEquals(-.5f, values["F"])
+        assertEquals(true, values["B"])
+        assertEquals("a\tbA", values["S"])
+        assertNull(values["O"])
+        assertNull(values["OTHER"])
+        assertNull(values["notFinal"])
+    }
+
+    fun testNonLiteralConstants() {
+        assertTrue(parse("class A { static final int X = 1 + 1; }").hasUnevaluatedExpressions)
+        assertTrue(parse("class A { static final String X = B.Y; }").hasUnevaluatedExpressions)
+        assertTrue(parse("class A { final java.lang.String x = \"a\" + \"b\"; }").hasUnevaluatedExpressions)
+        assertTrue(parse("interface A { long X = (long) 1; }").hasUnevaluatedExpressions)
+        assertTrue(parse("@Ann(1 << 2) class A { }").hasUnevaluatedExpressions)
+        assertTrue(parse("class A { @Ann(names = {\"a\", PREFIX + \"b\"}) void foo() { } }").hasUnevaluatedExpressions)
+
+        // These are never constants
+        assertFalse(parse("class A { static final Integer X = 1 + 1; int y = 1 + 1; }").hasUnevaluatedExpressions)
+    }
+
+    fun testSyntaxErrors() {
+        assertNull(JavaSourceDeclarationParser.parse("class A { void foo() { }"))
+        assertNull(JavaSourceDeclarationParser.parse("class A { String s = \"unterminated; }"))
+        assertNull(JavaSourceDeclarationParser.parse("class A { /* unterminated }"))
+    }
+}
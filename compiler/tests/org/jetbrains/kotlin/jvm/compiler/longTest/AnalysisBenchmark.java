@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Analyzes the same sources in a new environment on each iteration and prints how long each iteration took
+ */
+class AnalysisBenchmark {
+    interface SourceFiles {
+        @NotNull
+        List<JetFile> create(@NotNull Project project) throws IOException;
+    }
+
+    private AnalysisBenchmark() {}
+
+    static void run(
+            int iterations,
+            @NotNull CompilerConfiguration configuration,
+            @NotNull final String fileName,
+            @NotNull final String text
+    ) throws IOException {
+        run(iterations, configuration, new SourceFiles() {
+            @NotNull
+            @Override
+            public List<JetFile> create(@NotNull Project project) {
+                return Collections.singletonList(JetTestUtils.createFile(fileName, text, project));
+            }
+        });
+    }
+
+    static void run(int iterations, @NotNull CompilerConfiguration configuration, @NotNull SourceFiles sourceFiles)
+            throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int fileCount = analyze(configuration, sourceFiles);
+            System.out.format("Iteration %d: %d files analyzed in %.3fs\n", i, fileCount, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static int analyze(@NotNull CompilerConfiguration configuration, @NotNull SourceFiles sourceFiles)
+            throws IOException {
+        Disposable disposable = new Disposable() {
+            @Override
+            public void dispose() { }
+        };
+
+        try {
+            KotlinCoreEnvironment environment =
+                    KotlinCoreEnvironment.createForTests(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+
+            List<JetFile> files = sourceFiles.create(environment.getProject());
+            JvmResolveUtil.analyzeFilesWithJavaIntegration(environment.getProject(), files).throwIfError();
+            return files.size();
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+}
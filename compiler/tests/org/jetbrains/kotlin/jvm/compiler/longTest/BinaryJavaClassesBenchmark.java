@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+import java.util.Collections;
+
+/**
+ * Compares analysis of code which uses many JDK classes with Java classes from the classpath
+ * loaded via PSI and read directly from class files (-Xbinary-java-classes)
+ */
+public class BinaryJavaClassesBenchmark {
+    private static final int ITERATIONS = 5;
+
+    private static final String[] CLASSES = {
+            "java.util.ArrayList<String>", "java.util.HashMap<String, Int>", "java.util.TreeMap<String, Int>",
+            "java.util.LinkedList<String>", "java.util.ArrayDeque<String>", "java.util.PriorityQueue<String>",
+            "java.util.concurrent.ConcurrentHashMap<String, Int>", "java.util.concurrent.CopyOnWriteArrayList<String>",
+            "java.util.concurrent.ThreadPoolExecutor", "java.util.concurrent.ForkJoinPool", "java.util.concurrent.locks.ReentrantLock",
+            "java.io.File", "java.io.BufferedReader", "java.io.ByteArrayOutputStream", "java.io.PrintStream",
+            "java.lang.StringBuilder", "java.lang.Thread", "java.lang.ClassLoader", "java.lang.Character",
+            "java.math.BigDecimal", "java.math.BigInteger", "java.net.URI", "java.net.URL", "java.nio.ByteBuffer",
+            "java.nio.charset.Charset", "java.text.SimpleDateFormat", "java.util.Calendar", "java.util.regex.Pattern",
+            "java.util.zip.ZipFile", "java.util.jar.JarFile", "javax.swing.JTable", "javax.swing.JTree", "java.awt.Component"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String text = generateSource();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (boolean binary : new boolean[] {false, true}) {
+                long start = System.nanoTime();
+                analyze(text, binary);
+                System.out.format("Iteration %d, %s: %.3fs\n", i, binary ? "class files" : "PSI", (System.nanoTime() - start) / 1e9);
+            }
+        }
+    }
+
+    @NotNull
+    private static String generateSource() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package benchmark\n\n");
+        for (int i = 0; i < CLASSES.length; i++) {
+            // Calling a member forces loading of all the members of the class and its supertypes
+            sb.append("fun use").append(i).append("(x: ").append(CLASSES[i]).append(") = x.hashCode()\n");
+        }
+        return sb.toString();
+    }
+
+    private static void analyze(@NotNull String text, boolean binaryJavaClasses) {
+        Disposable disposable = new Disposable() {
+            @Override
+            public void dispose() { }
+        };
+
+        try {
+            CompilerConfiguration configuration =
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
+            configuration.put(JVMConfigurationKeys.USE_BINARY_JAVA_CLASSES, binaryJavaClasses);
+
+            KotlinCoreEnvironment environment =
+                    KotlinCoreEnvironment.createForTests(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+
+            JetFile file = JetTestUtils.createFile("usages.kt", text, environment.getProject());
+            JvmResolveUtil.analyzeFilesWithJavaIntegration(environment.getProject(), Collections.singletonList(file)).throwIfError();
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+}
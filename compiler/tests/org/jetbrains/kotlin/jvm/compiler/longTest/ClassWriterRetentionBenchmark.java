@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Compares the heap retained by the output of code generation when each finished class keeps its ClassWriter
+ * and when it keeps only the bytes of the class file. The classes of the runtime library (or of the jar given as
+ * the argument) are written again with the same writer flags as ClassBuilderFactories.BINARIES
+ */
+public class ClassWriterRetentionBenchmark {
+    private static final int ITERATIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        List<byte[]> classes = readClasses(args.length > 0 ? new File(args[0]) : ForTestCompileRuntime.runtimeJarForTests());
+        long classFileSize = 0;
+        for (byte[] bytes : classes) {
+            classFileSize += bytes.length;
+        }
+        System.out.format("%d classes, %d KB of class files\n", classes.size(), classFileSize / 1024);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (boolean keepWriters : new boolean[] {true, false}) {
+                long usedBefore = getUsedHeapAfterGc();
+                List<Object> output = new ArrayList<Object>(classes.size());
+                for (byte[] bytes : classes) {
+                    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+                        @Override
+                        protected String getCommonSuperClass(@NotNull String type1, @NotNull String type2) {
+                            // What BinaryClassWriter falls back to for the classes being compiled, which it can't load
+                            return "java/lang/Object";
+                        }
+                    };
+                    new ClassReader(bytes).accept(writer, ClassReader.SKIP_FRAMES);
+                    byte[] result = writer.toByteArray();
+                    output.add(keepWriters ? writer : result);
+                }
+                long retained = getUsedHeapAfterGc() - usedBefore;
+                System.out.format("Iteration %d, %s: %d KB retained by %d classes\n", i, keepWriters ? "writers" : "bytes",
+                                  retained / 1024, output.size());
+            }
+        }
+    }
+
+    private static long getUsedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @NotNull
+    private static List<byte[]> readClasses(@NotNull File file) throws Exception {
+        List<byte[]> result = new ArrayList<byte[]>();
+        JarFile jar = new JarFile(file);
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class") && !entry.getName().startsWith("META-INF/")) {
+                    result.add(FileUtil.loadBytes(jar.getInputStream(entry)));
+                }
+            }
+        }
+        finally {
+            jar.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
+
+import java.io.File;
+
+/**
+ * Measures the startup of the compiler on a trivial file: initialization of built-ins, which is done once per process,
+ * and then several compilations in the same process. Should be run in a fresh JVM each time
+ */
+public class CompilerStartupBenchmark {
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        builtIns.getAnyType();
+        builtIns.getStringType();
+        System.out.format("Built-ins initialization: %.3fs\n", (System.nanoTime() - start) / 1e9);
+
+        File tmpDir = FileUtil.createTempDirectory("compilerStartup", null);
+        try {
+            File source = new File(tmpDir, "trivial.kt");
+            FileUtil.writeToFile(source, "fun main(args: Array<String>) {\n    println(\"Hello\")\n}\n");
+            File output = new File(tmpDir, "out");
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                start = System.nanoTime();
+                ExitCode exitCode = new K2JVMCompiler().exec(System.err, source.getPath(), "-d", output.getPath());
+                System.out.format("Compilation %d: %s, %.3fs\n", i, exitCode, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        finally {
+            FileUtil.delete(tmpDir);
+        }
+    }
+}
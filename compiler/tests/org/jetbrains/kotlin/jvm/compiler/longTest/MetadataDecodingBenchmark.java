@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime;
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames;
+import org.jetbrains.kotlin.resolve.jvm.JvmClassName;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.serialization.jvm.BitDecodingInputStream;
+import org.jetbrains.kotlin.serialization.jvm.BitEncoding;
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Compares time and allocation of reading Kotlin class metadata from the annotation strings via an intermediate byte array
+ * (BitEncoding.decodeBytes) and directly from the strings (BitDecodingInputStream), on 10k classes of the runtime library
+ */
+public class MetadataDecodingBenchmark {
+    private static final int CLASS_COUNT = 10000;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<String[]> data = collectClassData();
+        System.out.println("Kotlin classes in the runtime: " + data.size());
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (boolean streaming : new boolean[] {false, true}) {
+                long allocatedBefore = getAllocatedBytes();
+                long start = System.nanoTime();
+                for (int j = 0; j < CLASS_COUNT; j++) {
+                    String[] classData = data.get(j % data.size());
+                    if (streaming) {
+                        ClassData.read(new BitDecodingInputStream(classData), JvmProtoBufUtil.getExtensionRegistry());
+                    }
+                    else {
+                        ClassData.read(BitEncoding.decodeBytes(classData), JvmProtoBufUtil.getExtensionRegistry());
+                    }
+                }
+                System.out.format("Iteration %d, %s: %.3fs, %d KB allocated\n", i, streaming ? "streaming" : "byte array",
+                                  (System.nanoTime() - start) / 1e9, (getAllocatedBytes() - allocatedBefore) / 1024);
+            }
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+
+    @NotNull
+    private static List<String[]> collectClassData() throws Exception {
+        final String kotlinClassDesc = "L" + JvmClassName.byFqNameWithoutInnerClasses(JvmAnnotationNames.KOTLIN_CLASS).getInternalName() + ";";
+        final List<String[]> result = new ArrayList<String[]>();
+
+        JarFile jar = new JarFile(ForTestCompileRuntime.runtimeJarForTests());
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) continue;
+
+                new ClassReader(FileUtil.loadBytes(jar.getInputStream(entry))).accept(new ClassVisitor(Opcodes.ASM5) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                        if (!desc.equals(kotlinClassDesc)) return null;
+                        return new AnnotationVisitor(Opcodes.ASM5) {
+                            @Override
+                            public AnnotationVisitor visitArray(String name) {
+                                if (!JvmAnnotationNames.DATA_FIELD_NAME.equals(name)) return null;
+                                final List<String> strings = new ArrayList<String>();
+                                return new AnnotationVisitor(Opcodes.ASM5) {
+                                    @Override
+                                    public void visit(String name, @NotNull Object value) {
+                                        strings.add((String) value);
+                                    }
+
+                                    @Override
+                                    public void visitEnd() {
+                                        result.add(strings.toArray(new String[strings.size()]));
+                                    }
+                                };
+                            }
+                        };
+                    }
+                }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            }
+        }
+        finally {
+            jar.close();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+/**
+ * Measures resolution of classes with many overloads of the same name and deep hierarchies,
+ * which is dominated by OverridingUtil.generateOverridesInFunctionGroup
+ */
+public class OverridesResolutionBenchmark {
+    private static final int OVERLOADS = 200;
+    private static final int HIERARCHY_DEPTH = 30;
+    private static final int ITERATIONS = 10;
+
+    private static final String[] PARAMETER_TYPES = {"Int", "Long", "String", "Any", "Double", "CharSequence", "java.util.Date"};
+
+    public static void main(String[] args) throws Exception {
+        AnalysisBenchmark.run(ITERATIONS, JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK),
+                              "overloads.kt", generateSource());
+    }
+
+    @NotNull
+    private static String generateSource() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package benchmark\n\n");
+
+        for (int level = 0; level < HIERARCHY_DEPTH; level++) {
+            sb.append("trait Level").append(level);
+            if (level > 0) {
+                sb.append(" : Level").append(level - 1);
+            }
+            sb.append(" {\n");
+            for (int i = 0; i < OVERLOADS; i++) {
+                sb.append(level > 0 ? "    override fun foo(" : "    fun foo(");
+                appendParameters(sb, i);
+                sb.append(level > 0 ? ") {}\n" : ")\n");
+            }
+            sb.append("}\n\n");
+        }
+
+        sb.append("abstract class Implementation : Level").append(HIERARCHY_DEPTH - 1)
+                .append(", java.util.AbstractList<String>(), java.util.RandomAccess {\n");
+        for (int i = 0; i < OVERLOADS; i++) {
+            sb.append("    override fun foo(");
+            appendParameters(sb, i);
+            sb.append(") {}\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Every overload gets a unique signature: parameter types are the digits of its index in base PARAMETER_TYPES.length
+    private static void appendParameters(@NotNull StringBuilder sb, int overload) {
+        int p = 0;
+        for (int rest = overload; rest > 0; rest /= PARAMETER_TYPES.length) {
+            if (p > 0) sb.append(", ");
+            sb.append("p").append(p++).append(": ").append(PARAMETER_TYPES[rest % PARAMETER_TYPES.length]);
+        }
+    }
+}
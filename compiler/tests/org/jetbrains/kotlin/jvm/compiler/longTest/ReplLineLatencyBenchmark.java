@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.cli.jvm.repl.ReplInterpreter;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+/**
+ * Evaluates many REPL lines, each declaring a value and referring to a few earlier ones, and prints the time per line
+ * as the history grows, which shouldn't depend on the number of earlier lines
+ */
+public class ReplLineLatencyBenchmark {
+    private static final int LINES = 1000;
+    private static final int REPORT_EVERY = 100;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            ReplInterpreter repl = new ReplInterpreter(
+                    disposable, JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LINES; i++) {
+                String line = i == 0 ? "val v0 = 0" : "val v" + i + " = v" + (i - 1) + " + v" + (i / 2) + " % 7";
+                ReplInterpreter.LineResult result = repl.eval(line);
+                if (result.getType() != ReplInterpreter.LineResultType.SUCCESS) {
+                    throw new AssertionError("Line " + i + " failed: " + line + "\n" + result.getErrorText());
+                }
+
+                if ((i + 1) % REPORT_EVERY == 0) {
+                    long time = System.nanoTime() - start;
+                    System.out.format("Lines %d-%d: %.2fms per line\n", i + 2 - REPORT_EVERY, i + 1, time / 1e6 / REPORT_EVERY);
+                    start = System.nanoTime();
+                }
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+}
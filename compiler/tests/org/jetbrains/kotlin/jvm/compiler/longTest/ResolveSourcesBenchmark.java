@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Measures full analysis of the given source roots (the standard library by default).
+ * Usage: ResolveSourcesBenchmark [iterations] [source roots...]
+ */
+public class ResolveSourcesBenchmark {
+    private static final Pattern KOTLIN_FILES = Pattern.compile(".*\\.kt");
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        final List<File> roots = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            roots.add(new File(args[i]));
+        }
+        if (roots.isEmpty()) {
+            roots.add(new File("libraries/stdlib/src"));
+        }
+
+        AnalysisBenchmark.run(
+                iterations,
+                JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK),
+                new AnalysisBenchmark.SourceFiles() {
+                    @NotNull
+                    @Override
+                    public List<JetFile> create(@NotNull Project project) throws IOException {
+                        List<JetFile> files = new ArrayList<JetFile>();
+                        for (File root : roots) {
+                            for (File file : FileUtil.findFilesByMask(KOTLIN_FILES, root)) {
+                                files.add(JetTestUtils.createFile(file.getName(), FileUtil.loadFile(file, true), project));
+                            }
+                        }
+                        return files;
+                    }
+                });
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler.longTest;
+
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+/**
+ * Measures analysis of a small file which calls a handful of functions from the huge package facade of the standard library,
+ * where only the members with the names used in the file should be deserialized
+ */
+public class StdlibPackageScopeBenchmark {
+    private static final int ITERATIONS = 10;
+
+    private static final String TEXT =
+            "package benchmark\n" +
+            "\n" +
+            "fun test(list: List<String>) {\n" +
+            "    val lengths = list.map { it.length() }.filter { it > 0 }\n" +
+            "    println(lengths.joinToString())\n" +
+            "    println(list.firstOrNull()?.trim())\n" +
+            "    println(listOf(1, 2, 3).sum() + arrayListOf<Int>().size())\n" +
+            "}\n";
+
+    public static void main(String[] args) throws Exception {
+        AnalysisBenchmark.run(ITERATIONS, JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.FULL_JDK),
+                              "stdlibUsages.kt", TEXT);
+    }
+}
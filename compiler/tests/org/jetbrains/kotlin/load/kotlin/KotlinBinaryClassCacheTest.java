@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironmentManagement;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class KotlinBinaryClassCacheTest extends KotlinTestWithEnvironmentManagement {
+    private byte[] classA;
+    private byte[] classB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The cache reads classes in a read action, so the application is needed
+        createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+
+        File tmpdir = JetTestUtils.tmpDirForTest(this);
+        JetTestUtils.compileKotlinWithJava(
+                Collections.<File>emptyList(), Collections.singletonList(new File("compiler/testData/kotlinClassFinder/nestedClass.kt")),
+                tmpdir, getTestRootDisposable()
+        );
+        classA = FileUtil.loadFileBytes(new File(tmpdir, "test/A.class"));
+        classB = FileUtil.loadFileBytes(new File(tmpdir, "test/A$B.class"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        classA = null;
+        classB = null;
+        super.tearDown();
+    }
+
+    public void testHeaderIsReadWithoutFullContents() throws Exception {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache(KotlinBinaryClassCache.COMPILER_MAX_SIZE_IN_BYTES);
+        TestClassFile file = new TestClassFile("A.class", classA);
+
+        KotlinJvmBinaryClass kotlinClass = cache.findKotlinBinaryClass(file);
+        assertNotNull(kotlinClass);
+        assertEquals("test/A", kotlinClass.getClassId().toString());
+        assertEquals(0, file.fullReads);
+
+        assertSame(kotlinClass, cache.findKotlinBinaryClass(file));
+        assertTrue(Arrays.equals(classA, cache.findFileContents(file)));
+        assertTrue(Arrays.equals(classA, cache.findFileContents(file)));
+        assertEquals(1, file.fullReads);
+    }
+
+    public void testModificationStampInvalidatesEntry() throws Exception {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache(KotlinBinaryClassCache.COMPILER_MAX_SIZE_IN_BYTES);
+        TestClassFile file = new TestClassFile("A.class", classA);
+
+        KotlinJvmBinaryClass before = cache.findKotlinBinaryClass(file);
+        cache.findFileContents(file);
+
+        file.update(classB);
+
+        KotlinJvmBinaryClass after = cache.findKotlinBinaryClass(file);
+        assertNotSame(before, after);
+        assertNotNull(after);
+        assertEquals("test/A.B", after.getClassId().toString());
+        assertTrue(Arrays.equals(classB, cache.findFileContents(file)));
+        assertEquals(2, file.fullReads);
+    }
+
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache(3 * KotlinBinaryClassCache.ENTRY_OVERHEAD_IN_BYTES);
+        TestClassFile a = new TestClassFile("A.class", classA);
+        TestClassFile b = new TestClassFile("B.class", classA);
+        TestClassFile c = new TestClassFile("C.class", classA);
+        TestClassFile d = new TestClassFile("D.class", classA);
+
+        KotlinJvmBinaryClass classForA = cache.findKotlinBinaryClass(a);
+        KotlinJvmBinaryClass classForB = cache.findKotlinBinaryClass(b);
+        KotlinJvmBinaryClass classForC = cache.findKotlinBinaryClass(c);
+        assertSame(classForA, cache.findKotlinBinaryClass(a));
+
+        // B is the least recently used one now
+        cache.findKotlinBinaryClass(d);
+
+        assertSame(classForA, cache.findKotlinBinaryClass(a));
+        assertSame(classForC, cache.findKotlinBinaryClass(c));
+        assertNotSame(classForB, cache.findKotlinBinaryClass(b));
+    }
+
+    public void testFileContentsCountTowardsSize() throws Exception {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache(KotlinBinaryClassCache.ENTRY_OVERHEAD_IN_BYTES + classA.length - 1);
+        TestClassFile file = new TestClassFile("A.class", classA);
+
+        KotlinJvmBinaryClass kotlinClass = cache.findKotlinBinaryClass(file);
+        cache.findFileContents(file);
+
+        // The entry with the contents doesn't fit, so it's evicted altogether
+        cache.findFileContents(file);
+        assertEquals(2, file.fullReads);
+        assertNotSame(kotlinClass, cache.findKotlinBinaryClass(file));
+    }
+
+    private static class TestClassFile extends LightVirtualFile {
+        private byte[] contents;
+        private long modificationStamp = 1;
+        private int fullReads = 0;
+
+        TestClassFile(@NotNull String name, @NotNull byte[] contents) {
+            super(name);
+            this.contents = contents;
+        }
+
+        void update(@NotNull byte[] newContents) {
+            contents = newContents;
+            modificationStamp++;
+        }
+
+        @NotNull
+        @Override
+        public FileType getFileType() {
+            return JavaClassFileType.INSTANCE;
+        }
+
+        @NotNull
+        @Override
+        public byte[] contentsToByteArray() throws IOException {
+            fullReads++;
+            return contents;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(contents);
+        }
+
+        @Override
+        public long getLength() {
+            return contents.length;
+        }
+
+        @Override
+        public long getModificationStamp() {
+            return modificationStamp;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class SamplingProfilerTest extends TestCaseWithTmpdir {
+    private static final String CODEGEN = "org.jetbrains.kotlin.codegen.ExpressionCodegen";
+    private static final String RESOLVE = "org.jetbrains.kotlin.resolve.lazy.ResolveSession";
+
+    // Outermost frame first, as it's written in the folded stacks
+    @NotNull
+    private static StackTraceElement[] stack(@NotNull String... frames) {
+        StackTraceElement[] result = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            String frame = frames[frames.length - 1 - i];
+            int dot = frame.lastIndexOf('.');
+            result[i] = new StackTraceElement(frame.substring(0, dot), frame.substring(dot + 1), null, -1);
+        }
+        return result;
+    }
+
+    @NotNull
+    private List<String> dump(@NotNull SamplingProfiler profiler, @NotNull ByteArrayOutputStream out) throws Exception {
+        profiler.stopAndDump(new PrintStream(out, true));
+        return FileUtil.loadLines(new File(tmpdir, "profile.folded"));
+    }
+
+    public void testFoldedStacks() throws Exception {
+        SamplingProfiler profiler = new SamplingProfiler(new File(tmpdir, "profile.folded"), 10);
+        profiler.addSample(stack("Main.main", CODEGEN + ".gen", "java.util.HashMap.get"));
+        profiler.addSample(stack("Main.main", CODEGEN + ".gen", "java.util.HashMap.get"));
+        profiler.addSample(stack("Main.main", "java.lang.String.length"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(Arrays.asList(
+                "codegen;Main.main;" + CODEGEN + ".gen;java.util.HashMap.get 2",
+                "other;Main.main;java.lang.String.length 1"
+        ), dump(profiler, out));
+
+        String summary = out.toString();
+        assertTrue(summary, summary.contains("Samples: 3, every 10ms"));
+        assertTrue(summary, summary.contains("       2  66.7%  java.util.HashMap.get"));
+    }
+
+    public void testPhaseIsTakenFromInnermostKnownFrame() throws Exception {
+        SamplingProfiler profiler = new SamplingProfiler(new File(tmpdir, "profile.folded"), 10);
+        // Lazy resolution triggered by codegen is analysis
+        profiler.addSample(stack("Main.main", CODEGEN + ".gen", RESOLVE + ".resolveToDescriptor", "java.util.HashMap.get"));
+        // Codegen called back from analysis, e.g. for a constant, is codegen
+        profiler.addSample(stack("Main.main", RESOLVE + ".resolveToDescriptor", CODEGEN + ".gen"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> folded = dump(profiler, out);
+        assertEquals(2, folded.size());
+        assertTrue(folded.toString(), folded.contains(
+                "analysis;Main.main;" + CODEGEN + ".gen;" + RESOLVE + ".resolveToDescriptor;java.util.HashMap.get 1"));
+        assertTrue(folded.toString(), folded.contains("codegen;Main.main;" + RESOLVE + ".resolveToDescriptor;" + CODEGEN + ".gen 1"));
+
+        String summary = out.toString();
+        assertTrue(summary, summary.contains("       1  50.0%  analysis"));
+        assertTrue(summary, summary.contains("       1  50.0%  codegen"));
+    }
+}
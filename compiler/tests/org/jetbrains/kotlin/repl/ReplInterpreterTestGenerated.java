@@ -89,6 +89,18 @@ public class ReplInterpreterTestGenerated extends AbstractReplInterpreterTest {
         doTest(fileName);
     }
 
+    @TestMetadata("inlineFunctionFromEarlierLine.repl")
+    public void testInlineFunctionFromEarlierLine() throws Exception {
+        String fileName = JetTestUtils.navigationMetadata("compiler/testData/repl/inlineFunctionFromEarlierLine.repl");
+        doTest(fileName);
+    }
+
+    @TestMetadata("referencesToEarlierLines.repl")
+    public void testReferencesToEarlierLines() throws Exception {
+        String fileName = JetTestUtils.navigationMetadata("compiler/testData/repl/referencesToEarlierLines.repl");
+        doTest(fileName);
+    }
+
     @TestMetadata("simple.repl")
     public void testSimple() throws Exception {
         String fileName = JetTestUtils.navigationMetadata("compiler/testData/repl/simple.repl");
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.resolve.constraintSystem
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import org.jetbrains.kotlin.descriptors.impl.TypeParameterDescriptorImpl
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.calls.inference.TypeBounds.BoundKind
+import org.jetbrains.kotlin.resolve.calls.inference.TypeBounds.BoundKind.*
+import org.jetbrains.kotlin.resolve.calls.inference.TypeBoundsImpl
+import org.jetbrains.kotlin.resolve.calls.inference.constraintPosition.ConstraintPositionKind.*
+import org.jetbrains.kotlin.types.JetType
+import org.jetbrains.kotlin.types.Variance
+import kotlin.test.assertEquals
+
+public class TypeBoundsCopyTest : TestCase() {
+    private val builtIns = KotlinBuiltIns.getInstance()
+    private val stringType = builtIns.getStringType()
+    private val intType = builtIns.getIntType()
+    private val anyType = builtIns.getAnyType()
+
+    private fun createBounds(): TypeBoundsImpl {
+        val typeVariable = TypeParameterDescriptorImpl.createWithDefaultBound(
+                builtIns.getAny(), Annotations.EMPTY, false, Variance.INVARIANT, Name.identifier("T"), 0)
+        return TypeBoundsImpl(typeVariable, Variance.INVARIANT)
+    }
+
+    private fun TypeBoundsImpl.add(kind: BoundKind, type: JetType) = addBound(kind, type, SPECIAL.position())
+
+    private fun TypeBoundsImpl.fork() = filter { true }
+
+    private fun TypeBoundsImpl.render(): List<Pair<BoundKind, JetType>> = bounds.map { it.kind to it.constrainingType }
+
+    fun testForkIsNotAffectedByOriginal() {
+        val original = createBounds()
+        original.add(LOWER_BOUND, stringType)
+        val fork = original.fork()
+
+        original.add(UPPER_BOUND, anyType)
+
+        assertEquals(listOf(LOWER_BOUND to stringType, UPPER_BOUND to anyType), original.render())
+        assertEquals(listOf(LOWER_BOUND to stringType), fork.render())
+    }
+
+    fun testOriginalIsNotAffectedByFork() {
+        val original = createBounds()
+        original.add(LOWER_BOUND, stringType)
+        assertEquals(stringType, original.getValue())
+        val fork = original.fork()
+
+        fork.add(EXACT_BOUND, intType)
+
+        assertEquals(listOf(LOWER_BOUND to stringType), original.render())
+        assertEquals(listOf(LOWER_BOUND to stringType, EXACT_BOUND to intType), fork.render())
+        // the value computed before forking must not leak into the fork after it got a new bound, and vice versa
+        assertEquals(stringType, original.getValue())
+        assertEquals(null, fork.getValue())
+    }
+
+    fun testSiblingForksAreIndependent() {
+        val original = createBounds()
+        original.add(LOWER_BOUND, stringType)
+        val first = original.fork()
+        val second = original.fork()
+        val forkOfFork = first.fork()
+
+        first.add(UPPER_BOUND, anyType)
+        second.add(EXACT_BOUND, intType)
+        forkOfFork.add(LOWER_BOUND, intType)
+
+        assertEquals(listOf(LOWER_BOUND to stringType), original.render())
+        assertEquals(listOf(LOWER_BOUND to stringType, UPPER_BOUND to anyType), first.render())
+        assertEquals(listOf(LOWER_BOUND to stringType, EXACT_BOUND to intType), second.render())
+        assertEquals(listOf(LOWER_BOUND to stringType, LOWER_BOUND to intType), forkOfFork.render())
+    }
+
+    fun testFilteredCopyIsIndependent() {
+        val original = createBounds()
+        original.add(LOWER_BOUND, stringType)
+        original.addBound(UPPER_BOUND, anyType, TYPE_BOUND_POSITION.position(0))
+        val filtered = original.filter { it.kind != TYPE_BOUND_POSITION }
+
+        filtered.add(EXACT_BOUND, intType)
+        original.add(LOWER_BOUND, intType)
+
+        assertEquals(listOf(LOWER_BOUND to stringType, UPPER_BOUND to anyType, LOWER_BOUND to intType), original.render())
+        assertEquals(listOf(LOWER_BOUND to stringType, EXACT_BOUND to intType), filtered.render())
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.resolve.lazy
+
+import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.JetFile
+import org.jetbrains.kotlin.resolve.DescriptorUtils
+import org.jetbrains.kotlin.resolve.scopes.JetScope
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.JetTestUtils
+import kotlin.test.assertEquals
+
+public class LazyImportScopeTest : KotlinTestWithEnvironment() {
+    override fun createEnvironment() = createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+
+    private fun file(name: String, text: String) = JetTestUtils.createFile(name, text, getProject())
+
+    private fun fileScope(file: JetFile, vararg otherFiles: JetFile): LazyFileScope {
+        val resolveSession = createResolveSessionForFiles(getProject(), listOf(file, *otherFiles), true)
+        return resolveSession.getScopeProvider().getFileScope(file)
+    }
+
+    private fun JetScope.classifier(name: String): String? =
+            getClassifier(Name.identifier(name))?.let { DescriptorUtils.getFqName(it).asString() }
+
+    private fun JetScope.functions(name: String): List<String> =
+            getFunctions(Name.identifier(name)).map { DescriptorUtils.getFqName(it).asString() }.sort()
+
+    fun testLookupsWhileResolvingImportAreNotCached() {
+        val scope = fileScope(
+                file("test.kt", """
+                    package test
+
+                    import test.A.Nested
+                    import other.Base
+
+                    open class A : Base() {
+                        class Nested
+                    }
+                """),
+                file("other.kt", "package other\n\nopen class Base")
+        )
+
+        // Resolving 'test.A.Nested' looks up all members named 'Nested' in A, which needs the supertypes of A,
+        // so 'Base' is looked up in the same alias imports while 'test.A.Nested' is being resolved
+        scope.forceResolveAllImports()
+
+        val a = scope.getClassifier(Name.identifier("A")) as ClassDescriptor
+        assertEquals(listOf("other.Base"), a.getTypeConstructor().getSupertypes().map {
+            DescriptorUtils.getFqName(it.getConstructor().getDeclarationDescriptor()!!).asString()
+        })
+        assertEquals("other.Base", scope.classifier("Base"))
+        assertEquals("test.A.Nested", scope.classifier("Nested"))
+    }
+
+    fun testRecursiveLookupResultIsNotCached() {
+        val scope = fileScope(
+                file("test.kt", """
+                    package test
+
+                    import test.A.Inner
+                    import other.*
+
+                    open class A : Inner() {
+                        open class Inner
+                    }
+                """),
+                file("other.kt", "package other\n\nopen class Inner")
+        )
+
+        // While 'test.A.Inner' is being resolved, the supertype 'Inner' of A can't be taken from that same import
+        // and is found in 'other.*' instead. That "not found" must not stick to the explicit import afterwards
+        scope.forceResolveAllImports()
+
+        assertEquals("test.A.Inner", scope.classifier("Inner"))
+        assertEquals("test.A.Inner", scope.classifier("Inner"))
+    }
+
+    fun testStarAndExplicitImportsOfSameShortName() {
+        val scope = fileScope(
+                file("test.kt", """
+                    package test
+
+                    import a.*
+                    import b.X
+                """),
+                file("a.kt", "package a\n\nclass X\nclass Y\nfun f() = 1"),
+                file("b.kt", "package b\n\nclass X\nfun f(s: String) = s")
+        )
+
+        for (i in 1..2) {
+            assertEquals("b.X", scope.classifier("X"))
+            assertEquals("a.Y", scope.classifier("Y"))
+            assertEquals(listOf("a.f"), scope.functions("f"))
+            assertEquals(null, scope.classifier("Z"))
+        }
+    }
+
+    fun testAliasedImports() {
+        val scope = fileScope(
+                file("test.kt", """
+                    package test
+
+                    import a.*
+                    import b.X as BX
+                    import b.f as bf
+                """),
+                file("a.kt", "package a\n\nclass X\nfun f() = 1"),
+                file("b.kt", "package b\n\nclass X\nfun f(s: String) = s")
+        )
+
+        for (i in 1..2) {
+            assertEquals("b.X", scope.classifier("BX"))
+            assertEquals("a.X", scope.classifier("X"))
+            assertEquals(listOf("b.f"), scope.functions("bf"))
+            assertEquals(listOf("a.f"), scope.functions("f"))
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.serialization
+
+import com.google.protobuf.ByteString
+import com.google.protobuf.CodedOutputStream
+import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime
+import org.jetbrains.kotlin.jvm.compiler.LoadDescriptorUtil
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames
+import org.jetbrains.kotlin.load.kotlin.PackageClassUtils
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.serialization.deserialization.CallableProtoIndex
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver
+import org.jetbrains.kotlin.serialization.jvm.BitEncoding
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.net.URLClassLoader
+import kotlin.test.assertEquals
+
+public class CallableProtoIndexTest : TestCaseWithTmpdir() {
+    private val registry = JvmProtoBufUtil.getExtensionRegistry()
+
+    private class SerializedPackage(val bytes: ByteArray, val offset: Int, val nameResolver: NameResolver) {
+        fun parse(): List<ProtoBuf.Callable> =
+                ProtoBuf.Package.parseFrom(ByteArrayInputStream(bytes, offset, bytes.size() - offset),
+                                           JvmProtoBufUtil.getExtensionRegistry()).getMemberList()
+    }
+
+    private fun compilePackage(text: String): SerializedPackage {
+        val source = File(tmpdir, "source.kt")
+        source.writeText("package test\n\n$text")
+        val outDir = File(tmpdir, "out")
+        LoadDescriptorUtil.compileKotlinToDirAndGetAnalysisResult(listOf(source), outDir, getTestRootDisposable(), ConfigurationKind.JDK_ONLY)
+
+        val classLoader = URLClassLoader(array(outDir.toURI().toURL()), ForTestCompileRuntime.runtimeJarClassLoader())
+        val facade = classLoader.loadClass(PackageClassUtils.getPackageClassFqName(FqName("test")).asString())
+        [suppress("UNCHECKED_CAST")]
+        val annotation = facade.getAnnotation(
+                classLoader.loadClass(JvmAnnotationNames.KOTLIN_PACKAGE.asString()) as Class<Annotation>
+        ) ?: error("KotlinPackage annotation is not found for $facade")
+        [suppress("UNCHECKED_CAST")]
+        val data = annotation.annotationType().getDeclaredMethod(JvmAnnotationNames.DATA_FIELD_NAME)(annotation) as Array<String>
+
+        val bytes = BitEncoding.decodeBytes(data)
+        val input = ByteArrayInputStream(bytes)
+        val nameResolver = NameResolver.read(input)
+        return SerializedPackage(bytes, bytes.size() - input.available(), nameResolver)
+    }
+
+    private fun ProtoBuf.Callable.key(): CallableProtoIndex.Key {
+        val kind = Flags.CALLABLE_KIND[getFlags()]
+        return CallableProtoIndex.Key(
+                getName(), kind == ProtoBuf.Callable.CallableKind.VAL || kind == ProtoBuf.Callable.CallableKind.VAR, hasReceiverType()
+        )
+    }
+
+    private fun ProtoBuf.Callable.bytes(): List<Byte> = toByteArray().toList()
+
+    private fun assertIndexMatchesEagerlyParsedPackage(serialized: SerializedPackage, index: CallableProtoIndex) {
+        val members = serialized.parse()
+        assertEquals(members.map { it.key() }.distinct(), index.getKeys().toList())
+
+        for (nameId in members.map { it.getName() }.distinct()) {
+            assertEquals(
+                    members.filter { it.getName() == nameId }.map { it.bytes() },
+                    index.getMembers(nameId).map { it.bytes() },
+                    serialized.nameResolver.getName(nameId).asString()
+            )
+        }
+        assertEquals(listOf<ProtoBuf.Callable>(), index.getMembers(Int.MAX_VALUE))
+    }
+
+    private fun membersByName(serialized: SerializedPackage, index: CallableProtoIndex, name: String): List<ProtoBuf.Callable> {
+        val nameId = index.getKeys().map { it.nameId }.first { serialized.nameResolver.getName(it).asString() == name }
+        return index.getMembers(nameId)
+    }
+
+    fun testOverloadsPropertiesAndExtensions() {
+        val serialized = compilePackage("""
+            fun foo() {}
+            fun foo(x: Int) = x
+            fun foo(s: String, vararg rest: Any?): String = s
+            fun <T> foo(t: T, f: (T) -> Unit) = f(t)
+            fun Int.foo() = this
+            val foo: Int = 0
+            val String.foo: String get() = this
+            var bar = "bar"
+            fun baz(): List<String> = java.util.ArrayList<String>()
+            val Long.baz: Long get() = this
+        """)
+        val index = CallableProtoIndex(serialized.bytes, serialized.offset, registry)
+
+        assertIndexMatchesEagerlyParsedPackage(serialized, index)
+        assertEquals(7, membersByName(serialized, index, "foo").size())
+        assertEquals(1, membersByName(serialized, index, "bar").size())
+        assertEquals(2, membersByName(serialized, index, "baz").size())
+    }
+
+    fun testUnknownFieldsAreSkipped() {
+        val serialized = compilePackage("""
+            fun foo(x: Int) = x
+            fun String.foo() = this
+            val foo = 1
+            var bar = 2
+        """)
+
+        // Same members, but with fields a newer compiler might write: before, between and after the members, and inside them
+        val out = ByteArrayOutputStream()
+        out.write(serialized.bytes, 0, serialized.offset)
+        val output = CodedOutputStream.newInstance(out)
+        output.writeInt32(UNKNOWN_FIELD, 42)
+        for (member in serialized.parse()) {
+            val memberOut = ByteArrayOutputStream()
+            val memberOutput = CodedOutputStream.newInstance(memberOut)
+            memberOutput.writeString(UNKNOWN_FIELD, "future")
+            member.writeTo(memberOutput)
+            memberOutput.writeInt64(UNKNOWN_FIELD + 1, Long.MAX_VALUE)
+            memberOutput.flush()
+
+            output.writeBytes(ProtoBuf.Package.MEMBER_FIELD_NUMBER, ByteString.copyFrom(memberOut.toByteArray()))
+            output.writeFixed32(UNKNOWN_FIELD + 2, 7)
+        }
+        output.flush()
+
+        val withUnknownFields = SerializedPackage(out.toByteArray(), serialized.offset, serialized.nameResolver)
+        val index = CallableProtoIndex(withUnknownFields.bytes, withUnknownFields.offset, registry)
+
+        assertIndexMatchesEagerlyParsedPackage(withUnknownFields, index)
+        assertEquals(serialized.parse().map { it.bytes() }, withUnknownFields.parse().map { it.bytes() })
+    }
+
+    companion object {
+        // Not used in ProtoBuf.Package and ProtoBuf.Callable, and not in their extension ranges
+        private val UNKNOWN_FIELD = 50
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.jetbrains.kotlin.serialization.builtins
 
+import org.jetbrains.kotlin.builtins.BuiltInsSerializedResourcePaths
+import org.jetbrains.kotlin.builtins.BuiltInsSnapshot
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns
 import org.jetbrains.kotlin.builtins.createBuiltInPackageFragmentProvider
 import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime
@@ -25,8 +27,13 @@ import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.test.JetTestUtils
 import org.jetbrains.kotlin.test.TestCaseWithTmpdir
 import org.jetbrains.kotlin.test.util.RecursiveDescriptorComparator
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.net.URL
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 public class BuiltInsSerializerTest : TestCaseWithTmpdir() {
     private fun doTest(fileName: String) {
@@ -48,6 +55,8 @@ public class BuiltInsSerializerTest : TestCaseWithTmpdir() {
             if (file.exists()) FileInputStream(file) else null
         }
 
+        checkSnapshotOfTestPackage()
+
         module.initialize(packageFragmentProvider)
         module.addDependencyOnModule(module)
         module.addDependencyOnModule(KotlinBuiltIns.getInstance().getBuiltInsModule())
@@ -60,6 +69,55 @@ public class BuiltInsSerializerTest : TestCaseWithTmpdir() {
         )
     }
 
+    // The snapshot of a package must contain exactly the separate files of the package
+    private fun checkSnapshotOfTestPackage() {
+        val snapshotFile = File(tmpdir, BuiltInsSerializedResourcePaths.getSnapshotFilePath(TEST_PACKAGE_FQNAME))
+        val snapshot = BuiltInsSnapshot.read(snapshotFile.toURI().toURL())!!
+        for (file in snapshotFile.getParentFile().listFiles()!!) {
+            if (file == snapshotFile || file.isDirectory()) continue
+            assertEquals(file.readBytes().toList(), snapshot.getFile(file.getName())?.readBytes()?.toList())
+        }
+    }
+
+    fun testSnapshotRoundtrip() {
+        val files = mapOf(
+                "B.kotlin_class" to byteArray(1, 2, 3),
+                "A.kotlin_class" to byteArray(),
+                "test.kotlin_string_table" to "x".repeat(100000).toByteArray()
+        )
+
+        val snapshotFile = File(tmpdir, "test.kotlin_builtins")
+        FileOutputStream(snapshotFile).use { BuiltInsSnapshot.write(files, it) }
+
+        // Snapshots in jars are not mapped but read into memory
+        val jar = File(tmpdir, "test.jar")
+        ZipOutputStream(FileOutputStream(jar)).use {
+            it.putNextEntry(ZipEntry("test/test.kotlin_builtins"))
+            it.write(snapshotFile.readBytes())
+            it.closeEntry()
+        }
+
+        for (url in listOf(snapshotFile.toURI().toURL(), URL("jar:" + jar.toURI().toURL() + "!/test/test.kotlin_builtins"))) {
+            val snapshot = BuiltInsSnapshot.read(url)!!
+            for ((name, contents) in files) {
+                assertEquals(contents.toList(), snapshot.getFile(name)?.readBytes()?.toList())
+            }
+            assertNull(snapshot.getFile("C.kotlin_class"))
+        }
+    }
+
+    fun testSnapshotOfUnknownVersion() {
+        val snapshotFile = File(tmpdir, "test.kotlin_builtins")
+        val bytes = ByteArrayOutputStream()
+        BuiltInsSnapshot.write(mapOf("A.kotlin_class" to byteArray(1)), bytes)
+        val contents = bytes.toByteArray()
+        // The version follows the magic number
+        contents[7]++
+        snapshotFile.writeBytes(contents)
+
+        assertNull(BuiltInsSnapshot.read(snapshotFile.toURI().toURL()))
+    }
+
     fun testSimple() {
         doTest("simple.kt")
     }
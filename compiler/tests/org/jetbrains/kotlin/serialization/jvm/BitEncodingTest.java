@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.serialization.jvm;
 
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.testFramework.UsefulTestCase;
 import org.jetbrains.annotations.NotNull;
 
@@ -48,6 +49,8 @@ public class BitEncodingTest extends UsefulTestCase {
         byte[] e = decodeBytes(d);
         assertArrayEquals(message, a, e);
 
+        byte[] f = FileUtil.loadBytes(new BitDecodingInputStream(b));
+        assertArrayEquals(message, a, f);
     }
 
     private static void assertStringConformsToJVMS(@NotNull String string) {
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.descriptors.*;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.name.Name;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.renderer.DescriptorRenderer;
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil;
+import org.jetbrains.kotlin.resolve.scopes.JetScope;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetLiteFixture;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Checks that members are bound to the members of supertypes they override in the cases where OverridingUtil could wrongly
+ * skip a match by its erased signature: type parameters, flexible types, receivers and overloads which differ only in type arguments.
+ * A skipped match makes a declared override report NOTHING_TO_OVERRIDE, which fails the analysis, or leaves two fake overrides
+ * instead of one
+ */
+public class OverrideBindingTest extends JetLiteFixture {
+    @Override
+    protected KotlinCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testTypeParameters() {
+        JetScope scope = analyze(
+                "trait Generic<T> {\n" +
+                "    fun foo(t: T)\n" +
+                "    fun <R> bar(r: R, t: T): R\n" +
+                "    fun baz(list: List<T>)\n" +
+                "}\n" +
+                "class Concrete : Generic<String> {\n" +
+                "    override fun foo(t: String) {}\n" +
+                "    override fun <R> bar(r: R, t: String): R = r\n" +
+                "    override fun baz(list: List<String>) {}\n" +
+                "}\n" +
+                "abstract class StillGeneric<U : CharSequence> : Generic<U> {\n" +
+                "    override fun foo(t: U) {}\n" +
+                "    override fun <R> bar(r: R, t: U): R = r\n" +
+                "}\n"
+        );
+        assertOverridesWithSameParameters(getClass(scope, "Concrete"));
+        assertOverridesWithSameParameters(getClass(scope, "StillGeneric"));
+    }
+
+    public void testReceivers() {
+        JetScope scope = analyze(
+                "trait Receivers<T> {\n" +
+                "    fun String.foo(): Int\n" +
+                "    fun foo(s: String): Int\n" +
+                "    fun <E> E.bar(t: T): Int\n" +
+                "    fun <E> bar(e: E, t: T): Int\n" +
+                "    val String.baz: Int\n" +
+                "    val baz: Int\n" +
+                "}\n" +
+                "class Implementation : Receivers<Int> {\n" +
+                "    override fun String.foo(): Int = 1\n" +
+                "    override fun foo(s: String): Int = 2\n" +
+                "    override fun <E> E.bar(t: Int): Int = 3\n" +
+                "    override fun <E> bar(e: E, t: Int): Int = 4\n" +
+                "    override val String.baz: Int get() = 5\n" +
+                "    override val baz: Int = 6\n" +
+                "}\n"
+        );
+        assertOverridesWithSameParameters(getClass(scope, "Implementation"));
+    }
+
+    public void testOverloadsDifferingInTypeArguments() {
+        JetScope scope = analyze(
+                "trait Overloads {\n" +
+                "    fun foo(list: List<String>): Int\n" +
+                "    fun foo(list: List<Int>): Int\n" +
+                "    fun foo(list: List<List<String>>): Int\n" +
+                "    fun foo(map: Map<String, Int>): Int\n" +
+                "}\n" +
+                "class Implementation : Overloads {\n" +
+                "    override fun foo(list: List<Int>): Int = 1\n" +
+                "    override fun foo(map: Map<String, Int>): Int = 2\n" +
+                "    override fun foo(list: List<List<String>>): Int = 3\n" +
+                "    override fun foo(list: List<String>): Int = 4\n" +
+                "}\n"
+        );
+        assertOverridesWithSameParameters(getClass(scope, "Implementation"));
+    }
+
+    public void testFlexibleTypes() {
+        JetScope scope = analyze(
+                "class StringList : java.util.ArrayList<String>() {\n" +
+                "    override fun add(element: String): Boolean = true\n" +
+                "    override fun set(index: Int, element: String): String = element\n" +
+                "}\n" +
+                "abstract class Appender : Appendable {\n" +
+                "    override fun append(csq: CharSequence?): Appendable = this\n" +
+                "    override fun append(csq: CharSequence?, start: Int, end: Int): Appendable = this\n" +
+                "    override fun append(c: Char): Appendable = this\n" +
+                "}\n"
+        );
+
+        for (String className : new String[] {"StringList", "Appender"}) {
+            for (CallableMemberDescriptor member : getDeclaredMembers(getClass(scope, className))) {
+                assertEquals(render(member), 1, member.getOverriddenDescriptors().size());
+            }
+        }
+    }
+
+    public void testFakeOverridesOfTheSameMemberAreMerged() {
+        JetScope scope = analyze(
+                "trait Generic<T> {\n" +
+                "    fun foo(t: T, s: String): Int\n" +
+                "    fun String.bar(t: T): Int\n" +
+                "}\n" +
+                "trait Plain {\n" +
+                "    fun foo(s1: String, s2: String): Int\n" +
+                "    fun String.bar(s: String): Int\n" +
+                "}\n" +
+                "abstract class Both : Generic<String>, Plain\n" +
+                "trait Adder {\n" +
+                "    fun add(element: String): Boolean\n" +
+                "}\n" +
+                "abstract class StringList : java.util.ArrayList<String>(), Adder\n"
+        );
+
+        ClassDescriptor both = getClass(scope, "Both");
+        assertMergedFakeOverride(getFunctions(both, "foo", 2));
+        assertMergedFakeOverride(getFunctions(both, "bar", 2));
+        assertMergedFakeOverride(getFunctions(getClass(scope, "StringList"), "add", 1));
+    }
+
+    @NotNull
+    private JetScope analyze(@NotNull String text) {
+        JetFile file = JetTestUtils.createFile("overrides.kt", "package test\n\n" + text, getProject());
+        ModuleDescriptor module = JvmResolveUtil.analyzeOneFileWithJavaIntegrationAndCheckForErrors(file).getModuleDescriptor();
+        PackageViewDescriptor packageView = module.getPackage(new FqName("test"));
+        assertNotNull(packageView);
+        return packageView.getMemberScope();
+    }
+
+    @NotNull
+    private static ClassDescriptor getClass(@NotNull JetScope scope, @NotNull String name) {
+        ClassifierDescriptor classifier = scope.getClassifier(Name.identifier(name));
+        assertTrue(name, classifier instanceof ClassDescriptor);
+        return (ClassDescriptor) classifier;
+    }
+
+    @NotNull
+    private static List<CallableMemberDescriptor> getDeclaredMembers(@NotNull ClassDescriptor klass) {
+        List<CallableMemberDescriptor> result = new ArrayList<CallableMemberDescriptor>();
+        for (DeclarationDescriptor descriptor : klass.getDefaultType().getMemberScope().getAllDescriptors()) {
+            if (descriptor instanceof CallableMemberDescriptor &&
+                ((CallableMemberDescriptor) descriptor).getKind() == CallableMemberDescriptor.Kind.DECLARATION) {
+                result.add((CallableMemberDescriptor) descriptor);
+            }
+        }
+        assertFalse(result.isEmpty());
+        return result;
+    }
+
+    // Functions with the given name and number of value parameters, including the extension receiver
+    @NotNull
+    private static List<FunctionDescriptor> getFunctions(@NotNull ClassDescriptor klass, @NotNull String name, int parameterCount) {
+        List<FunctionDescriptor> result = new ArrayList<FunctionDescriptor>();
+        for (FunctionDescriptor function : klass.getDefaultType().getMemberScope().getFunctions(Name.identifier(name))) {
+            int count = function.getValueParameters().size() + (function.getExtensionReceiverParameter() != null ? 1 : 0);
+            if (count == parameterCount) {
+                result.add(function);
+            }
+        }
+        return result;
+    }
+
+    private static void assertOverridesWithSameParameters(@NotNull ClassDescriptor klass) {
+        for (CallableMemberDescriptor member : getDeclaredMembers(klass)) {
+            Collection<? extends CallableDescriptor> overridden = member.getOverriddenDescriptors();
+            assertEquals(render(member), 1, overridden.size());
+            assertEquals(render(member), renderParameters(member), renderParameters(overridden.iterator().next()));
+        }
+    }
+
+    private static void assertMergedFakeOverride(@NotNull List<FunctionDescriptor> functions) {
+        assertEquals(functions.toString(), 1, functions.size());
+        FunctionDescriptor function = functions.get(0);
+        assertEquals(render(function), CallableMemberDescriptor.Kind.FAKE_OVERRIDE, function.getKind());
+        assertEquals(render(function), 2, function.getOverriddenDescriptors().size());
+    }
+
+    @NotNull
+    private static String render(@NotNull DeclarationDescriptor descriptor) {
+        return DescriptorRenderer.FQ_NAMES_IN_TYPES.render(descriptor);
+    }
+
+    // Type parameters of functions are rendered by name, which is the same in the tests
+    @NotNull
+    private static String renderParameters(@NotNull CallableDescriptor descriptor) {
+        StringBuilder sb = new StringBuilder();
+        ReceiverParameterDescriptor receiver = descriptor.getExtensionReceiverParameter();
+        if (receiver != null) {
+            sb.append(DescriptorRenderer.FQ_NAMES_IN_TYPES.renderType(receiver.getType())).append(".");
+        }
+        sb.append("(");
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            if (parameter.getIndex() > 0) sb.append(", ");
+            sb.append(DescriptorRenderer.FQ_NAMES_IN_TYPES.renderType(parameter.getType()));
+        }
+        return sb.append(")").toString();
+    }
+}
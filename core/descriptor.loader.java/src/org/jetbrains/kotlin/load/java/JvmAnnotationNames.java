@@ -37,6 +37,7 @@ public final class JvmAnnotationNames {
     public static final String ABI_VERSION_FIELD_NAME = "abiVersion";
     public static final String KIND_FIELD_NAME = "kind";
     public static final String DATA_FIELD_NAME = "data";
+    public static final String STRING_TABLE_FIELD_NAME = "stringTable";
     public static final Name DEFAULT_ANNOTATION_MEMBER_NAME = Name.identifier("value");
 
     public static final FqName JETBRAINS_NOT_NULL_ANNOTATION = new FqName("org.jetbrains.annotations.NotNull");
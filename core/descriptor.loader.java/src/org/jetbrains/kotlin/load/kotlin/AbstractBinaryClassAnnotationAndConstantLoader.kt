@@ -32,6 +32,7 @@ import org.jetbrains.kotlin.storage.StorageManager
 import org.jetbrains.kotlin.types.JetType
 import java.util.ArrayList
 import java.util.HashMap
+import java.util.concurrent.ConcurrentHashMap
 
 public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C : Any>(
         storageManager: StorageManager,
@@ -43,6 +44,12 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
         loadAnnotationsAndInitializers(kotlinClass)
     }
 
+    // Classes with annotations and constants are looked up once, and not again for each of their members
+    private val kotlinClasses = storageManager.createMemoizedFunctionWithNullableValues<ClassId, KotlinJvmBinaryClass> {
+        classId ->
+        kotlinClassFinder.findKotlinClass(classId)
+    }
+
     protected abstract fun loadConstant(desc: String, initializer: Any): C?
 
     protected abstract fun loadAnnotation(
@@ -91,24 +98,31 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
             nameResolver: NameResolver,
             kind: AnnotatedCallableKind
     ): List<A> {
-        val signature = getCallableSignature(proto, nameResolver, kind) ?: return listOf()
-        return findClassAndLoadMemberAnnotations(container, proto, nameResolver, kind, signature)
+        val storage = findStorage(container, proto, nameResolver, kind, "member annotations") ?: return listOf()
+        val signature = storage.signatureOf(proto, nameResolver, kind) ?: return listOf()
+        return storage.memberAnnotations[signature] ?: listOf()
     }
 
-    private fun findClassAndLoadMemberAnnotations(
+    /**
+     * @return annotations and constants of the class where the given callable is compiled to, or null if there's no such class.
+     * Not finding the class is only reported as an error if the callable has a JVM signature, i.e. it's expected to be there
+     */
+    private fun findStorage(
             container: ProtoContainer,
             proto: ProtoBuf.Callable,
             nameResolver: NameResolver,
             kind: AnnotatedCallableKind,
-            signature: MemberSignature
-    ): List<A> {
+            whatIsLoaded: String
+    ): Storage<A, C>? {
         val kotlinClass = findClassWithAnnotationsAndInitializers(container, proto, nameResolver, kind)
         if (kotlinClass == null) {
-            errorReporter.reportLoadingError("Kotlin class for loading member annotations is not found: ${container.getFqName(nameResolver)}", null)
-            return listOf()
+            if (getCallableSignature(proto, nameResolver, kind) != null) {
+                errorReporter.reportLoadingError("Kotlin class for loading $whatIsLoaded is not found: ${container.getFqName(nameResolver)}", null)
+            }
+            return null
         }
 
-        return storage(kotlinClass).memberAnnotations[signature] ?: listOf()
+        return storage(kotlinClass)
     }
 
     override fun loadValueParameterAnnotations(
@@ -118,15 +132,12 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
             kind: AnnotatedCallableKind,
             proto: ProtoBuf.Callable.ValueParameter
     ): List<A> {
-        val methodSignature = getCallableSignature(callable, nameResolver, kind)
-        if (methodSignature != null) {
-            if (proto.hasExtension(index)) {
-                val paramSignature = MemberSignature.fromMethodSignatureAndParameterIndex(methodSignature, proto.getExtension(index))
-                return findClassAndLoadMemberAnnotations(container, callable, nameResolver, kind, paramSignature)
-            }
-        }
+        if (!proto.hasExtension(index)) return listOf()
 
-        return listOf()
+        val storage = findStorage(container, callable, nameResolver, kind, "member annotations") ?: return listOf()
+        val methodSignature = storage.signatureOf(callable, nameResolver, kind) ?: return listOf()
+        val paramSignature = MemberSignature.fromMethodSignatureAndParameterIndex(methodSignature, proto.getExtension(index))
+        return storage.memberAnnotations[paramSignature] ?: listOf()
     }
 
     override fun loadTypeAnnotations(type: ProtoBuf.Type, nameResolver: NameResolver): List<A> {
@@ -139,15 +150,10 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
             nameResolver: NameResolver,
             expectedType: JetType
     ): C? {
-        val signature = getCallableSignature(proto, nameResolver, AnnotatedCallableKind.PROPERTY) ?: return null
-
-        val kotlinClass = findClassWithAnnotationsAndInitializers(container, proto, nameResolver, AnnotatedCallableKind.PROPERTY)
-        if (kotlinClass == null) {
-            errorReporter.reportLoadingError("Kotlin class for loading property constant is not found: ${container.getFqName(nameResolver)}", null)
-            return null
-        }
-
-        return storage(kotlinClass).propertyConstants[signature]
+        val kind = AnnotatedCallableKind.PROPERTY
+        val storage = findStorage(container, proto, nameResolver, kind, "property constant") ?: return null
+        val signature = storage.signatureOf(proto, nameResolver, kind) ?: return null
+        return storage.propertyConstants[signature]
     }
 
     private fun findClassWithAnnotationsAndInitializers(
@@ -165,19 +171,19 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
         val classId = nameResolver.getClassId(classProto.getFqName())
         if (classKind == ProtoBuf.Class.Kind.CLASS_OBJECT && isStaticFieldInOuter(proto)) {
             // Backing fields of properties of a companion object are generated in the outer class
-            return kotlinClassFinder.findKotlinClass(classId.getOuterClassId())
+            return kotlinClasses(classId.getOuterClassId())
         }
         else if (classKind == ProtoBuf.Class.Kind.TRAIT && annotatedCallableKind == AnnotatedCallableKind.PROPERTY) {
             if (proto.hasExtension(implClassName)) {
                 val parentPackageFqName = classId.getPackageFqName()
                 val tImplName = nameResolver.getName(proto.getExtension(implClassName))
                 // TODO: store accurate name for nested traits
-                return kotlinClassFinder.findKotlinClass(ClassId(parentPackageFqName, tImplName))
+                return kotlinClasses(ClassId(parentPackageFqName, tImplName))
             }
             return null
         }
 
-        return kotlinClassFinder.findKotlinClass(classId)
+        return kotlinClasses(classId)
     }
 
     private fun findPackagePartClass(
@@ -186,7 +192,7 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
             nameResolver: NameResolver
     ): KotlinJvmBinaryClass? {
         if (proto.hasExtension(implClassName)) {
-            return kotlinClassFinder.findKotlinClass(ClassId(packageFqName, nameResolver.getName(proto.getExtension(implClassName))))
+            return kotlinClasses(ClassId(packageFqName, nameResolver.getName(proto.getExtension(implClassName))))
         }
         return null
     }
@@ -201,27 +207,30 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
         val memberAnnotations = HashMap<MemberSignature, MutableList<A>>()
         val propertyConstants = HashMap<MemberSignature, C>()
 
+        // Signatures are only built for members which have annotations or constants, most members of most classes have neither
         kotlinClass.visitMembers(object : KotlinJvmBinaryClass.MemberVisitor {
             override fun visitMethod(name: Name, desc: String): KotlinJvmBinaryClass.MethodAnnotationVisitor? {
-                return AnnotationVisitorForMethod(MemberSignature.fromMethodNameAndDesc(name.asString() + desc))
+                return AnnotationVisitorForMethod(name, desc)
             }
 
             override fun visitField(name: Name, desc: String, initializer: Any?): KotlinJvmBinaryClass.AnnotationVisitor? {
-                val signature = MemberSignature.fromFieldNameAndDesc(name, desc)
-
                 if (initializer != null) {
                     val constant = loadConstant(desc, initializer)
                     if (constant != null) {
-                        propertyConstants[signature] = constant
+                        propertyConstants[MemberSignature.fromFieldNameAndDesc(name, desc)] = constant
                     }
                 }
-                return MemberAnnotationVisitor(signature)
+                return AnnotationVisitorForField(name, desc)
             }
 
-            inner class AnnotationVisitorForMethod(signature: MemberSignature) : MemberAnnotationVisitor(signature), KotlinJvmBinaryClass.MethodAnnotationVisitor {
+            inner class AnnotationVisitorForMethod(
+                    private val name: Name,
+                    private val desc: String
+            ) : MemberAnnotationVisitor(), KotlinJvmBinaryClass.MethodAnnotationVisitor {
+                override fun createSignature() = MemberSignature.fromMethodNameAndDesc(name.asString() + desc)
 
                 override fun visitParameterAnnotation(index: Int, classId: ClassId): KotlinJvmBinaryClass.AnnotationArgumentVisitor? {
-                    val paramSignature = MemberSignature.fromMethodSignatureAndParameterIndex(signature, index)
+                    val paramSignature = MemberSignature.fromMethodSignatureAndParameterIndex(getSignature(), index)
                     var result = memberAnnotations[paramSignature]
                     if (result == null) {
                         result = ArrayList<A>()
@@ -231,16 +240,34 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
                 }
             }
 
-            open inner class MemberAnnotationVisitor(protected val signature: MemberSignature) : KotlinJvmBinaryClass.AnnotationVisitor {
-                private val result = ArrayList<A>()
+            inner class AnnotationVisitorForField(private val name: Name, private val desc: String) : MemberAnnotationVisitor() {
+                override fun createSignature() = MemberSignature.fromFieldNameAndDesc(name, desc)
+            }
+
+            abstract inner class MemberAnnotationVisitor : KotlinJvmBinaryClass.AnnotationVisitor {
+                private var result: MutableList<A>? = null
+                private var signature: MemberSignature? = null
+
+                protected abstract fun createSignature(): MemberSignature
+
+                protected fun getSignature(): MemberSignature {
+                    if (signature == null) {
+                        signature = createSignature()
+                    }
+                    return signature!!
+                }
 
                 override fun visitAnnotation(classId: ClassId): KotlinJvmBinaryClass.AnnotationArgumentVisitor? {
-                    return loadAnnotationIfNotSpecial(classId, result)
+                    if (result == null) {
+                        result = ArrayList<A>(1)
+                    }
+                    return loadAnnotationIfNotSpecial(classId, result!!)
                 }
 
                 override fun visitEnd() {
-                    if (result.isNotEmpty()) {
-                        memberAnnotations[signature] = result
+                    val annotations = result
+                    if (annotations != null && annotations.isNotEmpty()) {
+                        memberAnnotations[getSignature()] = annotations
                     }
                 }
             }
@@ -249,10 +276,28 @@ public abstract class AbstractBinaryClassAnnotationAndConstantLoader<A : Any, C
         return Storage(memberAnnotations, propertyConstants)
     }
 
+    // Protos of lite runtime are compared by identity
+    private data class CallableSignatureKey(val proto: ProtoBuf.Callable, val kind: AnnotatedCallableKind)
+
     private class Storage<A, C>(
             public val memberAnnotations: Map<MemberSignature, List<A>>,
             public val propertyConstants: Map<MemberSignature, C>
-    )
+    ) {
+        // Signatures of the callables compiled to this class are built once per callable and kind, and not again for each of its
+        // value parameters or for its constant. Only protos of these callables are kept here, and no name resolvers
+        private val callableSignatures = ConcurrentHashMap<CallableSignatureKey, MemberSignature>()
+
+        public fun signatureOf(proto: ProtoBuf.Callable, nameResolver: NameResolver, kind: AnnotatedCallableKind): MemberSignature? {
+            val key = CallableSignatureKey(proto, kind)
+            val cached = callableSignatures[key]
+            if (cached != null) return cached
+
+            // Callables without a JVM signature are not cached, it takes no time to find that out
+            val signature = getCallableSignature(proto, nameResolver, kind) ?: return null
+            callableSignatures.putIfAbsent(key, signature)
+            return signature
+        }
+    }
 }
 
 private fun getCallableSignature(
@@ -25,14 +25,24 @@ import org.jetbrains.kotlin.serialization.deserialization.ErrorReporter;
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader;
 import org.jetbrains.kotlin.name.Name;
 import org.jetbrains.kotlin.resolve.scopes.JetScope;
-import org.jetbrains.kotlin.serialization.PackageData;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.serialization.ProtoBuf;
+import org.jetbrains.kotlin.serialization.deserialization.CallableProtoIndex;
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationComponents;
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedPackageMemberScope;
+import org.jetbrains.kotlin.serialization.jvm.BitEncoding;
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
+import org.jetbrains.kotlin.utils.UtilsPackage;
 
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader.Kind.CLASS;
 import static org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader.Kind.PACKAGE_FACADE;
@@ -41,6 +51,9 @@ public final class DeserializedDescriptorResolver {
     private final ErrorReporter errorReporter;
     private DeserializationComponents components;
 
+    // Name resolvers for the string tables shared by all classes of a module, by the URL of the table
+    private final Map<String, NameResolver> sharedNameResolvers = new HashMap<String, NameResolver>();
+
     public DeserializedDescriptorResolver(@NotNull ErrorReporter errorReporter) {
         this.errorReporter = errorReporter;
     }
@@ -52,29 +65,49 @@ public final class DeserializedDescriptorResolver {
 
     @Nullable
     public ClassDescriptor resolveClass(@NotNull KotlinJvmBinaryClass kotlinClass) {
-        String[] data = readData(kotlinClass, CLASS);
-        if (data != null) {
-            return components.getClassDeserializer().deserializeClass(
-                    kotlinClass.getClassId(), JvmProtoBufUtil.readClassDataFrom(data)
-            );
+        ClassData classData = readClassData(kotlinClass);
+        if (classData != null) {
+            return components.getClassDeserializer().deserializeClass(kotlinClass.getClassId(), classData);
         }
         return null;
     }
 
+    @Nullable
+    public ClassData readClassData(@NotNull KotlinJvmBinaryClass kotlinClass) {
+        String[] data = readData(kotlinClass, CLASS);
+        if (data == null) return null;
+
+        NameResolver sharedNameResolver = getSharedNameResolver(kotlinClass);
+        return sharedNameResolver != null
+               ? JvmProtoBufUtil.readClassDataFrom(data, sharedNameResolver)
+               : JvmProtoBufUtil.readClassDataFrom(data);
+    }
+
     @Nullable
     public JetScope createKotlinPackageScope(@NotNull PackageFragmentDescriptor descriptor, @NotNull KotlinJvmBinaryClass kotlinClass) {
         String[] data = readData(kotlinClass, PACKAGE_FACADE);
         if (data != null) {
+            // Package facades can be huge, so the members are not parsed here but indexed by name and parsed on demand
+            byte[] bytes = BitEncoding.decodeBytes(data);
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+            NameResolver nameResolver = NameResolver.read(in);
+            NameResolver sharedNameResolver = getSharedNameResolver(kotlinClass);
+            if (sharedNameResolver != null) {
+                nameResolver = sharedNameResolver;
+            }
+            CallableProtoIndex membersIndex =
+                    new CallableProtoIndex(bytes, bytes.length - in.available(), JvmProtoBufUtil.getExtensionRegistry());
+
             //all classes are included in java scope
-            PackageData packageData = JvmProtoBufUtil.readPackageDataFrom(data);
             return new DeserializedPackageMemberScope(
-                    descriptor, packageData.getPackageProto(), packageData.getNameResolver(), components,
+                    descriptor, ProtoBuf.Package.getDefaultInstance(), nameResolver, components,
                     new Function0<Collection<Name>>() {
                         @Override
                         public Collection<Name> invoke() {
                             return Collections.emptyList();
                         }
-                    }
+                    },
+                    membersIndex
             );
         }
         return null;
@@ -92,4 +125,30 @@ public final class DeserializedDescriptorResolver {
 
         return null;
     }
+
+    @Nullable
+    private NameResolver getSharedNameResolver(@NotNull KotlinJvmBinaryClass kotlinClass) {
+        String path = kotlinClass.getClassHeader().getStringTablePath();
+        if (path == null) return null;
+
+        URL url = kotlinClass.findResourceInSameRoot(path);
+        if (url == null) {
+            throw new IllegalStateException("Shared string table " + path + " is not found for " + kotlinClass.getLocation());
+        }
+
+        synchronized (sharedNameResolvers) {
+            String key = url.toString();
+            NameResolver result = sharedNameResolvers.get(key);
+            if (result == null) {
+                try {
+                    result = JvmProtoBufUtil.readSharedStringTable(url);
+                }
+                catch (IOException e) {
+                    throw UtilsPackage.rethrow(e);
+                }
+                sharedNameResolvers.put(key, result);
+            }
+            return result;
+        }
+    }
 }
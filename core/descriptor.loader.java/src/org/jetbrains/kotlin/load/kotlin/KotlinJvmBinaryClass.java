@@ -22,6 +22,8 @@ import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader;
 import org.jetbrains.kotlin.name.ClassId;
 import org.jetbrains.kotlin.name.Name;
 
+import java.net.URL;
+
 public interface KotlinJvmBinaryClass {
     @NotNull
     ClassId getClassId();
@@ -39,6 +41,13 @@ public interface KotlinJvmBinaryClass {
     @NotNull
     KotlinClassHeader getClassHeader();
 
+    /**
+     * @param relativePath path relative to the root of the class path entry (a directory or a jar) containing this class
+     * @return URL of the resource at this path in the same class path entry, or null if there's no such resource
+     */
+    @Nullable
+    URL findResourceInSameRoot(@NotNull String relativePath);
+
     interface MemberVisitor {
         // TODO: abstract signatures for methods and fields instead of ASM 'desc' strings?
 
@@ -25,7 +25,12 @@ public class KotlinClassHeader(
         public val version: Int,
         public val annotationData: Array<String>?,
         public val classKind: KotlinClass.Kind?,
-        public val syntheticClassKind: KotlinSyntheticClass.Kind?
+        public val syntheticClassKind: KotlinSyntheticClass.Kind?,
+        /**
+         * Path to the string table shared by the classes of the module, relative to the class path root.
+         * Null if the string table is serialized into [annotationData] itself
+         */
+        public val stringTablePath: String? = null
 ) {
     public val isCompatibleAbiVersion: Boolean get() = AbiVersionUtil.isAbiVersionCompatible(version)
 
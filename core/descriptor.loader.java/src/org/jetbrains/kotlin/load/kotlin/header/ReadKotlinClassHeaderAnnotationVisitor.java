@@ -58,6 +58,7 @@ public class ReadKotlinClassHeaderAnnotationVisitor implements AnnotationVisitor
     }
 
     private String[] annotationData = null;
+    private String stringTablePath = null;
     private KotlinClassHeader.Kind headerKind = null;
     private KotlinClass.Kind classKind = null;
     private KotlinSyntheticClass.Kind syntheticClassKind = null;
@@ -78,7 +79,7 @@ public class ReadKotlinClassHeaderAnnotationVisitor implements AnnotationVisitor
             return null;
         }
 
-        return new KotlinClassHeader(headerKind, version, annotationData, classKind, syntheticClassKind);
+        return new KotlinClassHeader(headerKind, version, annotationData, classKind, syntheticClassKind, stringTablePath);
     }
 
     @Nullable
@@ -131,6 +132,10 @@ public class ReadKotlinClassHeaderAnnotationVisitor implements AnnotationVisitor
             if (name != null && name.asString().equals(ABI_VERSION_FIELD_NAME)) {
                 version = value == null ? AbiVersionUtil.INVALID_VERSION : (Integer) value;
             }
+            else if (name != null && name.asString().equals(STRING_TABLE_FIELD_NAME) && value instanceof String) {
+                // Empty string is the default value, which means the class has its own string table
+                stringTablePath = ((String) value).isEmpty() ? null : (String) value;
+            }
             else {
                 unexpectedArgument(name);
             }
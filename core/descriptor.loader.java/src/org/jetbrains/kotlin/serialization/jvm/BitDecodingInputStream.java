@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.serialization.jvm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+
+/**
+ * Reads bytes encoded by {@link BitEncoding#encodeBytes(byte[])} directly from the array of strings, decoding them on the fly.
+ * Equivalent to reading from {@code new ByteArrayInputStream(BitEncoding.decodeBytes(data))}, but doesn't allocate
+ * the intermediate arrays, the size of each of which is the size of the whole data
+ */
+public class BitDecodingInputStream extends InputStream {
+    private final String[] data;
+
+    // Index of the current string and of the next char in it
+    private int stringIndex = 0;
+    private int charIndex = 0;
+
+    // Decoded bits which are not yet returned, the least significant go first
+    private int bits = 0;
+    private int bitCount = 0;
+
+    public BitDecodingInputStream(@NotNull String[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() {
+        // See BitEncoding.decode7to8: each char carries 7 bits, and the leftover bits at the end are just the padding
+        while (bitCount < 8) {
+            int next = nextSevenBits();
+            if (next < 0) return -1;
+            bits |= next << bitCount;
+            bitCount += 7;
+        }
+
+        int result = bits & 0xff;
+        bits >>>= 8;
+        bitCount -= 8;
+        return result;
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) {
+        if (len == 0) return 0;
+
+        for (int i = 0; i < len; i++) {
+            int next = read();
+            if (next < 0) {
+                return i == 0 ? -1 : i;
+            }
+            b[off + i] = (byte) next;
+        }
+        return len;
+    }
+
+    private int nextSevenBits() {
+        while (stringIndex < data.length && charIndex == data[stringIndex].length()) {
+            stringIndex++;
+            charIndex = 0;
+        }
+        if (stringIndex == data.length) return -1;
+
+        // Subtracting one modulo 0x80, which is inverse to what happens in BitEncoding.encodeBytes
+        return (data[stringIndex].charAt(charIndex++) + 0x7f) & 0x7f;
+    }
+}
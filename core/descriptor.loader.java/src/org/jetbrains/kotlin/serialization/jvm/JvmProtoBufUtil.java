@@ -20,6 +20,11 @@ import com.google.protobuf.ExtensionRegistryLite;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.serialization.ClassData;
 import org.jetbrains.kotlin.serialization.PackageData;
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 
 public class JvmProtoBufUtil {
     private JvmProtoBufUtil() {
@@ -34,12 +39,35 @@ public class JvmProtoBufUtil {
 
     @NotNull
     public static ClassData readClassDataFrom(@NotNull String[] encodedData) {
-        return ClassData.read(BitEncoding.decodeBytes(encodedData), getExtensionRegistry());
+        return ClassData.read(new BitDecodingInputStream(encodedData), getExtensionRegistry());
+    }
+
+    /**
+     * Reads the data of a class compiled with the string table shared by the module: the string tables serialized into the data
+     * itself are empty in this case and all indices refer to the shared table
+     */
+    @NotNull
+    public static ClassData readClassDataFrom(@NotNull String[] encodedData, @NotNull NameResolver sharedNameResolver) {
+        return new ClassData(sharedNameResolver, readClassDataFrom(encodedData).getClassProto());
+    }
+
+    /**
+     * Reads the string table shared by all classes of a module, which is written to a separate resource
+     */
+    @NotNull
+    public static NameResolver readSharedStringTable(@NotNull URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            return NameResolver.read(in);
+        }
+        finally {
+            in.close();
+        }
     }
 
     @NotNull
     public static PackageData readPackageDataFrom(@NotNull String[] encodedData) {
-        return readPackageDataFrom(BitEncoding.decodeBytes(encodedData));
+        return PackageData.read(new BitDecodingInputStream(encodedData), getExtensionRegistry());
     }
 
     @NotNull
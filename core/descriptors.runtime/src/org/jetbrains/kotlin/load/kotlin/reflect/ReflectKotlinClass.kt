@@ -26,6 +26,7 @@ import org.jetbrains.kotlin.name.Name
 import java.lang.reflect.Constructor
 import java.lang.reflect.Field
 import java.lang.reflect.Method
+import java.net.URL
 
 suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN")
 private val TYPES_ELIGIBLE_FOR_SIMPLE_VISIT = setOf(
@@ -59,6 +60,19 @@ public class ReflectKotlinClass private(
 
     override fun getClassHeader() = classHeader
 
+    override fun findResourceInSameRoot(relativePath: String): URL? {
+        val classLoader = klass.getClassLoader() ?: ClassLoader.getSystemClassLoader()
+        val classUrl = classLoader.getResource(getLocation())?.toString() ?: return null
+
+        // There's no way to look up a resource in a particular class path entry of a class loader,
+        // so the one with the same prefix as the class file is taken among all resources with this path
+        val expectedUrl = classUrl.substring(0, classUrl.length() - getLocation().length()) + relativePath
+        for (url in classLoader.getResources(relativePath)) {
+            if (url.toString() == expectedUrl) return url
+        }
+        return null
+    }
+
     override fun loadClassAnnotations(visitor: KotlinJvmBinaryClass.AnnotationVisitor) {
         ReflectClassStructure.loadClassAnnotations(klass, visitor)
     }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.builtins
+
+import org.jetbrains.kotlin.name.FqName
+import java.io.*
+import java.net.URL
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Arrays
+import java.util.HashMap
+
+/**
+ * All serialized files of one built-ins package packed into a single resource, so that loading built-ins takes one resource
+ * lookup per package instead of one per class, and lookups of classes absent from the package don't touch the class loader.
+ *
+ * The format is a header with the names of the files sorted alphabetically and the offsets and lengths of their contents,
+ * followed by the contents. When the resource is a plain file (e.g. in the output directory of the build), it's memory-mapped
+ */
+public class BuiltInsSnapshot private(
+        private val names: Array<String>,
+        private val offsets: IntArray,
+        private val lengths: IntArray,
+        private val contents: ByteBuffer
+) {
+    /**
+     * @param name name of the file relative to the package directory, e.g. "Int.kotlin_class"
+     */
+    public fun getFile(name: String): InputStream? {
+        val index = Arrays.binarySearch(names, name)
+        if (index < 0) return null
+
+        val bytes = ByteArray(lengths[index])
+        val slice = contents.duplicate()
+        slice.position(offsets[index])
+        slice.get(bytes)
+        return ByteArrayInputStream(bytes)
+    }
+
+    companion object {
+        private val MAGIC = 0x4B42534E // "KBSN"
+        private val VERSION = 1
+
+        public fun write(files: Map<String, ByteArray>, output: OutputStream) {
+            val names = files.keySet().sort()
+            val data = DataOutputStream(output)
+            data.writeInt(MAGIC)
+            data.writeInt(VERSION)
+            data.writeInt(names.size())
+            var offset = 0
+            for (name in names) {
+                val length = files[name]!!.size()
+                data.writeUTF(name)
+                data.writeInt(offset)
+                data.writeInt(length)
+                offset += length
+            }
+            for (name in names) {
+                data.write(files[name]!!)
+            }
+            data.flush()
+        }
+
+        /**
+         * @return the snapshot at the given location, or null if it's of an unknown format or version
+         */
+        public fun read(url: URL): BuiltInsSnapshot? {
+            val buffer = if (url.getProtocol() == "file") map(File(url.toURI())) else ByteBuffer.wrap(url.openStream().use { it.readBytes() })
+
+            val input = DataInputStream(ByteBufferInputStream(buffer.duplicate()))
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) return null
+
+            val count = input.readInt()
+            val names = Array(count) { "" }
+            val offsets = IntArray(count)
+            val lengths = IntArray(count)
+            for (i in 0..count - 1) {
+                names[i] = input.readUTF()
+                offsets[i] = input.readInt()
+                lengths[i] = input.readInt()
+            }
+
+            // Offsets are relative to the end of the header
+            val headerSize = buffer.remaining() - input.available()
+            buffer.position(headerSize)
+            return BuiltInsSnapshot(names, offsets, lengths, buffer.slice())
+        }
+
+        private fun map(file: File): ByteBuffer {
+            val randomAccessFile = RandomAccessFile(file, "r")
+            try {
+                return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length())
+            }
+            finally {
+                randomAccessFile.close()
+            }
+        }
+    }
+
+    private class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+        override fun read(): Int = if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (!buffer.hasRemaining()) return -1
+            val count = Math.min(len, buffer.remaining())
+            buffer.get(b, off, count)
+            return count
+        }
+
+        override fun available(): Int = buffer.remaining()
+    }
+}
+
+/**
+ * Loads serialized built-ins from the given class loader, from the package snapshots (see [BuiltInsSnapshot]) if they are present
+ * or from the separate resources otherwise
+ */
+public class BuiltInsResourceLoader(private val classLoader: ClassLoader) {
+    // Snapshots by package directory, guarded by itself. Null values stand for packages without a snapshot
+    private val snapshots = HashMap<String, BuiltInsSnapshot?>()
+
+    public fun loadResource(path: String): InputStream? {
+        val slash = path.lastIndexOf('/')
+        if (slash < 0) return classLoader.getResourceAsStream(path)
+
+        val snapshot = getSnapshot(path.substring(0, slash)) ?: return classLoader.getResourceAsStream(path)
+        return snapshot.getFile(path.substring(slash + 1))
+    }
+
+    private fun getSnapshot(directory: String): BuiltInsSnapshot? {
+        synchronized (snapshots) {
+            if (snapshots.containsKey(directory)) return snapshots[directory]
+
+            val snapshotPath = BuiltInsSerializedResourcePaths.getSnapshotFilePath(FqName(directory.replace('/', '.')))
+            val snapshot = classLoader.getResource(snapshotPath)?.let { BuiltInsSnapshot.read(it) }
+            snapshots[directory] = snapshot
+            return snapshot
+        }
+    }
+}
@@ -113,12 +113,13 @@ public class KotlinBuiltIns {
                 Name.special("<built-ins module>"), Collections.<ImportPath>emptyList(), PlatformToKotlinClassMap.EMPTY
         );
 
+        final BuiltInsResourceLoader resourceLoader = new BuiltInsResourceLoader(KotlinBuiltIns.class.getClassLoader());
         PackageFragmentProvider packageFragmentProvider = BuiltinsPackage.createBuiltInPackageFragmentProvider(
                 new LockBasedStorageManager(), builtInsModule, Collections.singleton(BUILT_INS_PACKAGE_FQ_NAME),
                 FlexibleTypeCapabilitiesDeserializer.ThrowException.INSTANCE$, new Function1<String, InputStream>() {
                     @Override
                     public InputStream invoke(String path) {
-                        return KotlinBuiltIns.class.getClassLoader().getResourceAsStream(path);
+                        return resourceLoader.loadResource(path);
                     }
                 }
         );
@@ -26,10 +26,12 @@ import org.jetbrains.kotlin.descriptors.*;
 import org.jetbrains.kotlin.descriptors.impl.FunctionDescriptorImpl;
 import org.jetbrains.kotlin.descriptors.impl.PropertyAccessorDescriptorImpl;
 import org.jetbrains.kotlin.descriptors.impl.PropertyDescriptorImpl;
+import org.jetbrains.kotlin.name.FqNameUnsafe;
 import org.jetbrains.kotlin.name.Name;
 import org.jetbrains.kotlin.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.kotlin.types.JetType;
 import org.jetbrains.kotlin.types.TypeConstructor;
+import org.jetbrains.kotlin.types.TypesPackage;
 import org.jetbrains.kotlin.types.checker.JetTypeChecker;
 import org.jetbrains.kotlin.utils.DFS;
 
@@ -250,24 +252,29 @@ public class OverridingUtil {
             @NotNull DescriptorSink sink
     ) {
         Collection<CallableMemberDescriptor> notOverridden = new LinkedHashSet<CallableMemberDescriptor>(membersFromSupertypes);
+        ErasedSignatureIndex index = new ErasedSignatureIndex(membersFromSupertypes);
 
         for (CallableMemberDescriptor fromCurrent : membersFromCurrent) {
             Collection<CallableMemberDescriptor> bound =
-                    extractAndBindOverridesForMember(fromCurrent, membersFromSupertypes, current, sink);
+                    extractAndBindOverridesForMember(fromCurrent, index, current, sink);
             notOverridden.removeAll(bound);
         }
 
-        createAndBindFakeOverrides(current, notOverridden, sink);
+        createAndBindFakeOverrides(current, notOverridden, index, sink);
     }
 
     private static Collection<CallableMemberDescriptor> extractAndBindOverridesForMember(
             @NotNull CallableMemberDescriptor fromCurrent,
-            @NotNull Collection<? extends CallableMemberDescriptor> descriptorsFromSuper,
+            @NotNull ErasedSignatureIndex index,
             @NotNull ClassDescriptor current,
             @NotNull DescriptorSink sink
     ) {
-        Collection<CallableMemberDescriptor> bound = new ArrayList<CallableMemberDescriptor>(descriptorsFromSuper.size());
-        for (CallableMemberDescriptor fromSupertype : descriptorsFromSuper) {
+        ErasedSignature signature = index.signatureOf(fromCurrent);
+        List<CallableMemberDescriptor> bucket = index.getBucket(signature);
+        Collection<CallableMemberDescriptor> bound = new ArrayList<CallableMemberDescriptor>(bucket.size());
+        for (CallableMemberDescriptor fromSupertype : bucket) {
+            if (!index.signatureOf(fromSupertype).mayMatch(signature)) continue;
+
             OverrideCompatibilityInfo.Result result = DEFAULT.isOverridableBy(fromSupertype, fromCurrent).getResult();
 
             boolean isVisible = Visibilities.isVisible(ReceiverValue.IRRELEVANT_RECEIVER, fromSupertype, current);
@@ -294,13 +301,14 @@ public class OverridingUtil {
     private static void createAndBindFakeOverrides(
             @NotNull ClassDescriptor current,
             @NotNull Collection<CallableMemberDescriptor> notOverridden,
+            @NotNull ErasedSignatureIndex index,
             @NotNull DescriptorSink sink
     ) {
         Queue<CallableMemberDescriptor> fromSuperQueue = new LinkedList<CallableMemberDescriptor>(notOverridden);
         while (!fromSuperQueue.isEmpty()) {
             CallableMemberDescriptor notOverriddenFromSuper = VisibilityUtil.findMemberWithMaxVisibility(fromSuperQueue);
             Collection<CallableMemberDescriptor> overridables =
-                    extractMembersOverridableInBothWays(notOverriddenFromSuper, fromSuperQueue, sink);
+                    extractMembersOverridableInBothWays(notOverriddenFromSuper, fromSuperQueue, index, sink);
             createAndBindFakeOverride(overridables, current, sink);
         }
     }
@@ -389,10 +397,12 @@ public class OverridingUtil {
     private static Collection<CallableMemberDescriptor> extractMembersOverridableInBothWays(
             @NotNull CallableMemberDescriptor overrider,
             @NotNull Queue<CallableMemberDescriptor> extractFrom,
+            @NotNull ErasedSignatureIndex index,
             @NotNull DescriptorSink sink
     ) {
         Collection<CallableMemberDescriptor> overridable = new ArrayList<CallableMemberDescriptor>();
         overridable.add(overrider);
+        ErasedSignature overriderSignature = index.signatureOf(overrider);
         for (Iterator<CallableMemberDescriptor> iterator = extractFrom.iterator(); iterator.hasNext(); ) {
             CallableMemberDescriptor candidate = iterator.next();
             if (overrider == candidate) {
@@ -400,6 +410,9 @@ public class OverridingUtil {
                 continue;
             }
 
+            // Both checks below would return INCOMPATIBLE, and the candidate would stay in the queue
+            if (!index.signatureOf(candidate).mayMatch(overriderSignature)) continue;
+
             OverrideCompatibilityInfo.Result result1 = DEFAULT.isOverridableBy(candidate, overrider).getResult();
             OverrideCompatibilityInfo.Result result2 = DEFAULT.isOverridableBy(overrider, candidate).getResult();
             if (result1 == OVERRIDABLE && result2 == OVERRIDABLE) {
@@ -568,6 +581,100 @@ public class OverridingUtil {
         );
     }
 
+    /**
+     * A cheap approximation of a member signature used to skip obviously incompatible pairs before the full
+     * {@link #isOverridableBy} check. Two members with different kinds, receiver presence or number of value parameters
+     * are never overridable, so members are bucketed by these properties. Inside a bucket, parameters of not flexible
+     * class types are compared by their classifier's fully qualified name: if those differ, the types can't be equal
+     * and the full check would return INCOMPATIBLE. Everything else (type parameters, flexible and error types)
+     * matches any type.
+     */
+    private static class ErasedSignature {
+        private final boolean isFunction;
+        private final boolean hasReceiver;
+        private final int valueParameterCount;
+        private final FqNameUnsafe[] parameterClassifiers;
+
+        private ErasedSignature(@NotNull CallableDescriptor descriptor) {
+            this.isFunction = descriptor instanceof FunctionDescriptor;
+            this.hasReceiver = descriptor.getExtensionReceiverParameter() != null;
+            this.valueParameterCount = descriptor.getValueParameters().size();
+
+            List<JetType> parameterTypes = compiledValueParameters(descriptor);
+            this.parameterClassifiers = new FqNameUnsafe[parameterTypes.size()];
+            for (int i = 0; i < parameterTypes.size(); i++) {
+                parameterClassifiers[i] = getClassifierFqNameIfExact(parameterTypes.get(i));
+            }
+        }
+
+        @Nullable
+        private static FqNameUnsafe getClassifierFqNameIfExact(@NotNull JetType type) {
+            if (type.isError() || TypesPackage.isFlexible(type)) return null;
+            ClassifierDescriptor classifier = type.getConstructor().getDeclarationDescriptor();
+            return classifier instanceof ClassDescriptor ? DescriptorUtils.getFqName(classifier) : null;
+        }
+
+        public boolean isInSameBucket(@NotNull ErasedSignature other) {
+            return isFunction == other.isFunction &&
+                   hasReceiver == other.hasReceiver &&
+                   valueParameterCount == other.valueParameterCount;
+        }
+
+        public boolean mayMatch(@NotNull ErasedSignature other) {
+            if (!isInSameBucket(other)) return false;
+            for (int i = 0; i < parameterClassifiers.length; i++) {
+                FqNameUnsafe mine = parameterClassifiers[i];
+                FqNameUnsafe theirs = other.parameterClassifiers[i];
+                if (mine != null && theirs != null && !mine.equals(theirs)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ErasedSignature && isInSameBucket((ErasedSignature) o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (isFunction ? 1 : 0) + (hasReceiver ? 1 : 0)) + valueParameterCount;
+        }
+    }
+
+    private static class ErasedSignatureIndex {
+        private final Map<CallableDescriptor, ErasedSignature> signatures = new IdentityHashMap<CallableDescriptor, ErasedSignature>();
+        private final Map<ErasedSignature, List<CallableMemberDescriptor>> buckets =
+                new HashMap<ErasedSignature, List<CallableMemberDescriptor>>();
+
+        public ErasedSignatureIndex(@NotNull Collection<? extends CallableMemberDescriptor> membersFromSupertypes) {
+            for (CallableMemberDescriptor member : membersFromSupertypes) {
+                ErasedSignature signature = signatureOf(member);
+                List<CallableMemberDescriptor> bucket = buckets.get(signature);
+                if (bucket == null) {
+                    bucket = new ArrayList<CallableMemberDescriptor>(1);
+                    buckets.put(signature, bucket);
+                }
+                bucket.add(member);
+            }
+        }
+
+        @NotNull
+        public ErasedSignature signatureOf(@NotNull CallableDescriptor descriptor) {
+            ErasedSignature signature = signatures.get(descriptor);
+            if (signature == null) {
+                signature = new ErasedSignature(descriptor);
+                signatures.put(descriptor, signature);
+            }
+            return signature;
+        }
+
+        @NotNull
+        public List<CallableMemberDescriptor> getBucket(@NotNull ErasedSignature signature) {
+            List<CallableMemberDescriptor> bucket = buckets.get(signature);
+            return bucket != null ? bucket : Collections.<CallableMemberDescriptor>emptyList();
+        }
+    }
+
     public interface DescriptorSink {
         void addToScope(@NotNull CallableMemberDescriptor fakeOverride);
 
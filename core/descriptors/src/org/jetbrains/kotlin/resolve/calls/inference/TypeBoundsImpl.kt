@@ -36,13 +36,23 @@ public class TypeBoundsImpl(
         override val typeVariable: TypeParameterDescriptor,
         override val varianceOfPosition: Variance
 ) : TypeBounds {
-    override val bounds = LinkedHashSet<Bound>()
+    private var boundsStorage = LinkedHashSet<Bound>()
+
+    // true if boundsStorage may be referenced by another TypeBoundsImpl (see copy()) and should be cloned before modification
+    private var isBoundsStorageShared = false
+
+    override val bounds: Collection<Bound>
+        get() = boundsStorage
 
     private var resultValues: Collection<JetType>? = null
 
     public fun addBound(kind: BoundKind, constrainingType: JetType, position: ConstraintPosition) {
         resultValues = null
-        bounds.add(Bound(constrainingType, kind, position))
+        if (isBoundsStorageShared) {
+            boundsStorage = LinkedHashSet(boundsStorage)
+            isBoundsStorageShared = false
+        }
+        boundsStorage.add(Bound(constrainingType, kind, position))
     }
 
     override fun isEmpty(): Boolean {
@@ -68,16 +78,24 @@ public class TypeBoundsImpl(
         return result
     }
 
+    /**
+     * The copy shares bounds with this instance until one of them gets a new bound,
+     * so that forking a constraint system costs only as much as the bounds added afterwards.
+     */
     fun copy(): TypeBoundsImpl {
         val typeBounds = TypeBoundsImpl(typeVariable, varianceOfPosition)
-        typeBounds.bounds.addAll(bounds)
+        typeBounds.boundsStorage = boundsStorage
+        typeBounds.isBoundsStorageShared = true
+        isBoundsStorageShared = true
         typeBounds.resultValues = resultValues
         return typeBounds
     }
 
     public fun filter(condition: (ConstraintPosition) -> Boolean): TypeBoundsImpl {
+        if (boundsStorage.all { condition(it.position) }) return copy()
+
         val result = TypeBoundsImpl(typeVariable, varianceOfPosition)
-        result.bounds.addAll(bounds.filter { condition(it.position) })
+        result.boundsStorage.addAll(boundsStorage.filter { condition(it.position) })
         return result
     }
 
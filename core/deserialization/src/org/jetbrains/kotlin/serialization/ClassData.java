@@ -23,12 +23,17 @@ import org.jetbrains.kotlin.utils.UtilsPackage;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public final class ClassData {
     @NotNull
     public static ClassData read(@NotNull byte[] bytes, @NotNull ExtensionRegistryLite registry) {
+        return read(new ByteArrayInputStream(bytes), registry);
+    }
+
+    @NotNull
+    public static ClassData read(@NotNull InputStream in, @NotNull ExtensionRegistryLite registry) {
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
             NameResolver nameResolver = NameResolver.read(in);
             ProtoBuf.Class classProto = ProtoBuf.Class.parseFrom(in, registry);
             return new ClassData(nameResolver, classProto);
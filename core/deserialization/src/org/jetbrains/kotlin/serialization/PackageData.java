@@ -23,12 +23,17 @@ import org.jetbrains.kotlin.utils.UtilsPackage;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public final class PackageData {
     @NotNull
     public static PackageData read(@NotNull byte[] bytes, @NotNull ExtensionRegistryLite registry) {
+        return read(new ByteArrayInputStream(bytes), registry);
+    }
+
+    @NotNull
+    public static PackageData read(@NotNull InputStream in, @NotNull ExtensionRegistryLite registry) {
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
             NameResolver nameResolver = NameResolver.read(in);
             ProtoBuf.Package packageProto = ProtoBuf.Package.parseFrom(in, registry);
             return new PackageData(nameResolver, packageProto);
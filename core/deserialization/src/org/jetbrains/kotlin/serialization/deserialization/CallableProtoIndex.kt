@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.serialization.deserialization
+
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.ExtensionRegistryLite
+import com.google.protobuf.WireFormat
+import org.jetbrains.kotlin.serialization.Flags
+import org.jetbrains.kotlin.serialization.ProtoBuf
+import java.util.ArrayList
+import java.util.Arrays
+import java.util.Comparator
+import java.util.LinkedHashSet
+
+/**
+ * Index of the members of a serialized ProtoBuf.Package by their names.
+ *
+ * The index is built by skipping over the serialized members and reading only their name, kind and whether they have
+ * a receiver type, which is much cheaper than parsing the whole package: types, value parameters and JVM signatures
+ * of a member are only parsed when the members with its name are requested. This matters for large package facades
+ * like the one of the standard library, where a typical file only uses a handful of several thousand functions
+ */
+public class CallableProtoIndex(
+        private val bytes: ByteArray,
+        // Offset of the serialized ProtoBuf.Package in the array, it lasts until the end of the array
+        offset: Int,
+        private val registry: ExtensionRegistryLite
+) {
+    public data class Key(val nameId: Int, val isProperty: Boolean, val isExtension: Boolean)
+
+    private val keys = LinkedHashSet<Key>()
+
+    // Offsets and lengths of the serialized members and ids of their names, sorted by name id and then by position
+    private val memberNameIds: IntArray
+    private val memberOffsets: IntArray
+    private val memberLengths: IntArray
+
+    init {
+        val nameIds = ArrayList<Int>()
+        val offsets = ArrayList<Int>()
+        val lengths = ArrayList<Int>()
+
+        val input = CodedInputStream.newInstance(bytes, offset, bytes.size() - offset)
+        while (true) {
+            val tag = input.readTag()
+            if (tag == 0) break
+            if (tag != MEMBER_TAG) {
+                input.skipField(tag)
+                continue
+            }
+
+            val length = input.readRawVarint32()
+            val memberOffset = offset + input.getTotalBytesRead()
+            val limit = input.pushLimit(length)
+            var flags = 0
+            var nameId = -1
+            var hasReceiverType = false
+            while (true) {
+                val memberTag = input.readTag()
+                if (memberTag == 0) break
+                when (WireFormat.getTagFieldNumber(memberTag)) {
+                    ProtoBuf.Callable.FLAGS_FIELD_NUMBER -> flags = input.readInt32()
+                    ProtoBuf.Callable.NAME_FIELD_NUMBER -> nameId = input.readInt32()
+                    ProtoBuf.Callable.RECEIVER_TYPE_FIELD_NUMBER -> {
+                        hasReceiverType = true
+                        input.skipField(memberTag)
+                    }
+                    else -> input.skipField(memberTag)
+                }
+            }
+            input.popLimit(limit)
+
+            if (nameId < 0) throw IllegalStateException("Callable without a name at offset $memberOffset")
+            val kind = Flags.CALLABLE_KIND[flags]
+            keys.add(Key(nameId, kind == ProtoBuf.Callable.CallableKind.VAL || kind == ProtoBuf.Callable.CallableKind.VAR, hasReceiverType))
+            nameIds.add(nameId)
+            offsets.add(memberOffset)
+            lengths.add(length)
+        }
+
+        // Stable sort, members with the same name stay in the serialization order
+        val order = Array(nameIds.size()) { it }
+        Arrays.sort(order, object : Comparator<Int> {
+            override fun compare(o1: Int, o2: Int): Int = nameIds[o1].compareTo(nameIds[o2])
+        })
+        memberNameIds = IntArray(order.size()) { nameIds[order[it]] }
+        memberOffsets = IntArray(order.size()) { offsets[order[it]] }
+        memberLengths = IntArray(order.size()) { lengths[order[it]] }
+    }
+
+    /**
+     * @return distinct keys of the members, in the order of the first appearance of each key in the serialized package
+     */
+    public fun getKeys(): Collection<Key> = keys
+
+    /**
+     * @return all members with the given name in the serialization order, parsed anew on each call
+     */
+    public fun getMembers(nameId: Int): List<ProtoBuf.Callable> {
+        var index = Arrays.binarySearch(memberNameIds, nameId)
+        if (index < 0) return listOf()
+        while (index > 0 && memberNameIds[index - 1] == nameId) index--
+
+        val result = ArrayList<ProtoBuf.Callable>(1)
+        while (index < memberNameIds.size() && memberNameIds[index] == nameId) {
+            val input = CodedInputStream.newInstance(bytes, memberOffsets[index], memberLengths[index])
+            result.add(ProtoBuf.Callable.parseFrom(input, registry))
+            index++
+        }
+        return result
+    }
+
+    companion object {
+        // See WireFormat.makeTag, which is not accessible
+        private val MEMBER_TAG = (ProtoBuf.Package.MEMBER_FIELD_NUMBER shl 3) or WireFormat.WIRETYPE_LENGTH_DELIMITED
+    }
+}
@@ -25,12 +25,15 @@ import org.jetbrains.kotlin.utils.Printer
 import org.jetbrains.kotlin.utils.toReadOnlyList
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.serialization.ProtoBuf.Callable.CallableKind
+import org.jetbrains.kotlin.serialization.deserialization.CallableProtoIndex
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationContext
 import java.util.*
 
 public abstract class DeserializedMemberScope protected(
         protected val c: DeserializationContext,
-        membersList: Collection<ProtoBuf.Callable>
+        membersList: Collection<ProtoBuf.Callable>,
+        // If present, members are taken from the index instead of membersList and are parsed only when their name is requested
+        private val membersIndex: CallableProtoIndex? = null
 ) : JetScope {
 
     private data class ProtoKey(val name: Name, val kind: Kind, val isExtension: Boolean)
@@ -46,6 +49,21 @@ public abstract class DeserializedMemberScope protected(
 
     private val membersProtos =
             c.storageManager.createLazyValue { groupByKey(filteredMemberProtos(membersList)) }
+    private val indexedKeys =
+            c.storageManager.createLazyValue { membersIndex!!.getKeys().map { it.toProtoKey() } }
+    private val indexedNameIds =
+            c.storageManager.createLazyValue {
+                val result = HashMap<Name, Int>()
+                for (key in membersIndex!!.getKeys()) {
+                    result[c.nameResolver.getName(key.nameId)] = key.nameId
+                }
+                result
+            }
+    private val indexedMembersProtos =
+            c.storageManager.createMemoizedFunction<Name, Map<ProtoKey, List<ProtoBuf.Callable>>> { name ->
+                val nameId = indexedNameIds()[name]
+                if (nameId == null) mapOf() else groupByKey(membersIndex!!.getMembers(nameId))
+            }
     private val functions =
             c.storageManager.createMemoizedFunction<Name, Collection<FunctionDescriptor>> { computeFunctions(it) }
     private val properties =
@@ -71,9 +89,19 @@ public abstract class DeserializedMemberScope protected(
         return map
     }
 
+    private fun CallableProtoIndex.Key.toProtoKey(): ProtoKey =
+            ProtoKey(c.nameResolver.getName(nameId), if (isProperty) Kind.PROPERTY else Kind.FUNCTION, isExtension)
+
+    private fun getMembersProtos(name: Name): Map<ProtoKey, List<ProtoBuf.Callable>> =
+            if (membersIndex != null) indexedMembersProtos(name) else membersProtos()
+
+    private fun getAllKeys(): Collection<ProtoKey> =
+            if (membersIndex != null) indexedKeys() else membersProtos().keySet()
+
     private fun <D : CallableMemberDescriptor> computeMembers(name: Name, kind: Kind): LinkedHashSet<D> {
-        val memberProtos = membersProtos()[ProtoKey(name, kind, isExtension = false)].orEmpty() +
-                           membersProtos()[ProtoKey(name, kind, isExtension = true)].orEmpty()
+        val protos = getMembersProtos(name)
+        val memberProtos = protos[ProtoKey(name, kind, isExtension = false)].orEmpty() +
+                           protos[ProtoKey(name, kind, isExtension = true)].orEmpty()
 
         [suppress("UNCHECKED_CAST")]
         return memberProtos.mapTo(LinkedHashSet<D>()) { memberProto ->
@@ -149,7 +177,7 @@ public abstract class DeserializedMemberScope protected(
             return
         }
 
-        val keys = membersProtos().keySet().filter { nameFilter(it.name) }
+        val keys = getAllKeys().filter { nameFilter(it.name) }
         if (acceptsProperties) {
             addMembers(result, keys, Kind.PROPERTY) { getProperties(it) }
         }
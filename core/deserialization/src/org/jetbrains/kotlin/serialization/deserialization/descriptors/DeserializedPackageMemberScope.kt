@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.serialization.deserialization.descriptors
 
 import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.deserialization.CallableProtoIndex
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationComponents
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor
@@ -32,8 +33,9 @@ public open class DeserializedPackageMemberScope(
         proto: ProtoBuf.Package,
         nameResolver: NameResolver,
         components: DeserializationComponents,
-        classNames: () -> Collection<Name>
-) : DeserializedMemberScope(components.createContext(packageDescriptor, nameResolver), proto.getMemberList()) {
+        classNames: () -> Collection<Name>,
+        membersIndex: CallableProtoIndex? = null
+) : DeserializedMemberScope(components.createContext(packageDescriptor, nameResolver), proto.getMemberList(), membersIndex) {
 
     private val packageFqName = packageDescriptor.fqName
     private val classNames = c.storageManager.createLazyValue(classNames)
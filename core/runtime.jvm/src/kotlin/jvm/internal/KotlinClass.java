@@ -27,6 +27,11 @@ public @interface KotlinClass {
 
     String[] data();
 
+    /**
+     * Path to the string table shared by all classes of the module, relative to the class path root, or "" if the class has its own
+     */
+    String stringTable() default "";
+
     enum Kind {
         CLASS,
 
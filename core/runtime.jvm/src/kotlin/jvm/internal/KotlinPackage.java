@@ -24,4 +24,9 @@ public @interface KotlinPackage {
     int abiVersion();
 
     String[] data();
+
+    /**
+     * @see KotlinClass#stringTable()
+     */
+    String stringTable() default "";
 }
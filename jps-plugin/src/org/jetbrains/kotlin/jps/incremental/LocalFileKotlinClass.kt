@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.load.kotlin.FileBasedKotlinClass
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
 import org.jetbrains.kotlin.name.ClassId
 import java.io.File
+import java.net.URL
 
 class LocalFileKotlinClass private(
         private val file: File,
@@ -41,6 +42,15 @@ class LocalFileKotlinClass private(
 
     override fun getLocation() = file.getAbsolutePath()
 
+    override fun findResourceInSameRoot(relativePath: String): URL? {
+        var root = file.getParentFile()
+        for (segment in getClassId().getPackageFqName().pathSegments()) {
+            root = root?.getParentFile()
+        }
+        val resource = File(root ?: return null, relativePath)
+        return if (resource.exists()) resource.toURI().toURL() else null
+    }
+
     public override fun getFileContents(): ByteArray = fileContents
 
     override fun hashCode(): Int = file.hashCode()